@@ -72,8 +72,6 @@ public class Restaurant {
         return true;
     }
 
-    private int numberOfMovesFromAppletonTower;
-
     /**
      * Inner class to represent the location with longitude and latitude.
      */
@@ -135,29 +133,6 @@ public class Restaurant {
         return this.location.getLatitude();
     }
 
-    /**
-     * Mutator method for the number of moves from Appleton Tower.
-     *
-     * @param noOfMoves The number of moves from Appleton Tower.
-     */
-    public void setNumberOfMovesFromAppleton(int noOfMoves) {
-        if (noOfMoves > 0) {
-            this.numberOfMovesFromAppletonTower = noOfMoves;
-        } else {
-            System.err.println("Number of moves must be greater than zero.");
-            throw new IllegalArgumentException();
-        }
-    }
-
-    /**
-     * Accessor method for the number of moves from Appleton Tower.
-     *
-     * @return The number of moves from Appleton Tower.
-     */
-    public int getNumberOfMovesFromAppletonTower() {
-        return this.numberOfMovesFromAppletonTower;
-    }
-
     /**
      * Accessor method for the name of the restaurant.
      *
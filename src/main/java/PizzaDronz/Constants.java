@@ -9,6 +9,11 @@ import RouteCalculation.LngLat;
 public final class Constants {
     static final LngLat APPLETON_TOWER = new LngLat(-3.186874, 55.944494);
     static final int MAX_MOVES = 2000;
+    // The most routes kept in the route cache at once.
+    static final int ROUTE_CACHE_CAPACITY = 1024;
+    // The most nodes and time the search for one leg may use.
+    static final long LEG_EXPANSION_BUDGET = 200_000;
+    static final long LEG_TIME_BUDGET_MILLIS = 5_000;
     // The following constants are used for the REST endpoint URL.
     static final String TEST_URL_SLUG = "/actuator/health/livenessState";
     static final String CENTRAL_AREA_URL_SLUG = "/centralarea";
@@ -0,0 +1,169 @@
+package PizzaDronz;
+
+import OrderInformation.Order;
+import Output.FlightPathPoint;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.RouteOptions;
+import RouteCalculation.RouteResult;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans the flight path of the drone for a day, delivering the valid orders in turn
+ * until the battery runs out.
+ * <p>
+ * A leg is not flown when no route for it is found. If the route does not fit in the
+ * moves left in the battery, no later order fits either, so the day ends. If the
+ * search ran out of its budget instead, only that order is skipped and the drone goes
+ * on to the next one.
+ */
+public final class DayPlanner {
+    private final LngLat appletonTower;
+    private final RouteOptions options;
+    private final LegTable legTable;
+
+    private List<FlightPathPoint> currentDirectionsFollowed;
+    private int remainingMoves;
+    private Instant startTime;
+
+    /**
+     * Create a planner for the day.
+     *
+     * @param appletonTower The location of Appleton Tower, where every order is
+     *                      delivered.
+     * @param options       The options to plan the legs with.
+     * @param legTable      The legs between Appleton Tower and each restaurant.
+     */
+    public DayPlanner(LngLat appletonTower, RouteOptions options, LegTable legTable) {
+        if (appletonTower == null || options == null || legTable == null) {
+            throw new IllegalArgumentException("DayPlanner called with null arguments.");
+        }
+        this.appletonTower = appletonTower;
+        this.options = options;
+        this.legTable = legTable;
+    }
+
+    /**
+     * Calculate the full path around the valid orders and back to Appleton Tower, and
+     * set each order that is delivered to delivered.
+     *
+     * @param validOrders The valid orders, in the order they should be delivered.
+     * @param maxMoves    The number of moves the drone can make on one battery.
+     * @return The directions followed to deliver the orders.
+     */
+    public List<FlightPathPoint> plan(List<Order> validOrders, int maxMoves) {
+        startTime = Instant.now(); // Using Instant.now() instead of Clock.systemDefaultZone().instant()
+        remainingMoves = maxMoves;
+        List<FlightPathPoint> allDirectionsFollowed = new ArrayList<>();
+
+        // Starting at appleton tower, deliver the orders in turn. Every position the
+        // drone reaches during the day is an exact lattice position relative to
+        // appleton tower.
+        LatticePoint currentLocation = LatticePoint.origin(appletonTower);
+
+        for (int i = 0; i < validOrders.size(); i++) {
+            Order order = validOrders.get(i);
+
+            LngLat nextLocation = (i != validOrders.size() - 1)
+                    ? new LngLat(validOrders.get(i + 1).getRestaurant().getLongitude(),
+                            validOrders.get(i + 1).getRestaurant().getLatitude())
+                    : null;
+
+            currentDirectionsFollowed = new ArrayList<>();
+
+            // If there is no route to the restaurant or back at all, leave the order as
+            // valid but not delivered and move on to the next one.
+            if (legTable.movesFromAppletonTower(order.getRestaurant()) == Integer.MAX_VALUE
+                    || legTable.movesToAppletonTower(order.getRestaurant()) == Integer.MAX_VALUE) {
+                System.err.println("No route to the restaurant and back for order " + order.getOrderNo() + ".");
+                continue;
+            }
+
+            // Remember where the order started, so it can be undone if a leg of it
+            // can't be planned.
+            LatticePoint orderStartLocation = currentLocation;
+            int orderStartMoves = remainingMoves;
+
+            // Move to the restaurant to pick up the order. The leg table has the route if
+            // the drone is still exactly at appleton tower. Otherwise the search only looks
+            // for a route that fits in the battery, and gives up early if none can.
+            CompassDirection[] route = legTable.outboundFrom(currentLocation, order.getRestaurant());
+            if (route == null) {
+                RouteResult result = currentLocation.planRouteTo(new LngLat(order.getRestaurant().getLongitude(),
+                        order.getRestaurant().getLatitude()), appletonTower, options, remainingMoves);
+                if (result.getStatus() == RouteResult.Status.BUDGET_EXHAUSTED) {
+                    System.err.println("No route to the restaurant for order " + order.getOrderNo() + ".");
+                    continue;
+                }
+                route = result.getRoute();
+            }
+
+            // If making this journey would result in the drone running out of battery, then
+            // don't make the journey.
+            if (route == null || route.length > remainingMoves)
+                break;
+            currentLocation = followRoute(currentLocation, route, order.getOrderNo());
+
+            // Move to appleton tower to deliver the order, if it fits in the battery. The
+            // leg table has the route if the drone picked the order up where the table's
+            // route to the restaurant ends, and it ends exactly at appleton tower.
+            route = legTable.inboundFrom(currentLocation, order.getRestaurant());
+            if (route == null) {
+                RouteResult result = currentLocation.planRouteTo(appletonTower, nextLocation, options,
+                        remainingMoves);
+                if (result.getStatus() == RouteResult.Status.BUDGET_EXHAUSTED) {
+                    // Undo the flight to the restaurant and move on to the next order.
+                    System.err.println("No route back to appleton tower for order " + order.getOrderNo() + ".");
+                    currentLocation = orderStartLocation;
+                    remainingMoves = orderStartMoves;
+                    continue;
+                }
+                route = result.getRoute();
+            }
+            if (route == null || route.length > remainingMoves)
+                break;
+            currentLocation = followRoute(currentLocation, route, order.getOrderNo());
+
+            // If we still have battery, add the directions followed to the list of all
+            // directions followed.
+            // And set the order as delivered.
+            allDirectionsFollowed.addAll(currentDirectionsFollowed);
+            order.setValidOrderToDelivered();
+        }
+        return allDirectionsFollowed;
+    }
+
+    /**
+     * This method follows a route and records the directions followed.
+     *
+     * @param currentLocation The current location of the drone.
+     * @param route           The route to follow.
+     * @param orderNo         The order number.
+     * @return The new location of the drone after following the route.
+     */
+    private LatticePoint followRoute(LatticePoint currentLocation, CompassDirection[] route, String orderNo) {
+        Instant currentTime;
+        remainingMoves -= route.length;
+
+        for (CompassDirection direction : route) {
+            currentTime = Instant.now(); // Using Instant.now() instead of Clock.systemDefaultZone().instant()
+            LatticePoint nextLocation = currentLocation.next(direction);
+
+            currentDirectionsFollowed.add(new FlightPathPoint(
+                    orderNo,
+                    currentLocation.getLng(),
+                    currentLocation.getLat(),
+                    direction.getAngle(),
+                    nextLocation.getLng(),
+                    nextLocation.getLat(),
+                    (int) (currentTime.toEpochMilli() - startTime.toEpochMilli())));
+
+            currentLocation = nextLocation;
+        }
+        return currentLocation;
+    }
+}
@@ -0,0 +1,185 @@
+package PizzaDronz;
+
+import OrderInformation.Restaurant;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.RouteCalculator;
+import RouteCalculation.RouteOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * An immutable table of the legs between Appleton Tower and each restaurant, planned
+ * once at the start of the day.
+ * <p>
+ * For each restaurant the table holds the route from Appleton Tower to the restaurant
+ * and the route from the restaurant back to Appleton Tower. The route back retraces the
+ * route out, so it ends exactly at Appleton Tower rather than only close to it, and the
+ * next order starts from exactly where the table's routes start. Every leg of a day is
+ * then read from the table instead of being searched for again. Retracing costs about
+ * one move more than a searched route back, which ends at the first position close
+ * enough to Appleton Tower. If the route out can't be retraced legally, the route back
+ * is searched for from where the drone picks up the order.
+ * <p>
+ * The legs do not depend on each other, so they are all planned at the same time on a
+ * ForkJoinPool.
+ */
+public final class LegTable {
+    private final LatticePoint appletonTower;
+    private final Map<Restaurant, Leg> legs;
+
+    private LegTable(LatticePoint appletonTower, Map<Restaurant, Leg> legs) {
+        this.appletonTower = appletonTower;
+        this.legs = Collections.unmodifiableMap(legs);
+    }
+
+    /**
+     * Plan the legs to and from every restaurant in parallel.
+     *
+     * @param restaurants   The restaurants to plan the legs for.
+     * @param appletonTower The location of Appleton Tower.
+     * @param options       The options to plan the legs with. They are shared by all
+     *                      the legs, so any caches they hold must be thread safe.
+     * @param pool          The pool to plan the legs on.
+     * @return The table of legs.
+     */
+    public static LegTable build(Restaurant[] restaurants, LngLat appletonTower, RouteOptions options,
+            ForkJoinPool pool) {
+        if (restaurants == null || appletonTower == null || options == null || pool == null) {
+            throw new IllegalArgumentException("LegTable called with null arguments.");
+        }
+        LatticePoint start = LatticePoint.origin(appletonTower);
+
+        // One task for each restaurant, planning both directions of its leg.
+        List<ForkJoinTask<Leg>> tasks = new ArrayList<>();
+        for (Restaurant restaurant : restaurants) {
+            LngLat location = new LngLat(restaurant.getLongitude(), restaurant.getLatitude());
+            tasks.add(ForkJoinTask.adapt(() -> planLeg(start, location, appletonTower, options)));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+        Map<Restaurant, Leg> legs = new IdentityHashMap<>();
+        for (int i = 0; i < restaurants.length; i++) {
+            legs.put(restaurants[i], tasks.get(i).join());
+        }
+        return new LegTable(start, legs);
+    }
+
+    /**
+     * Plan the routes to and from one restaurant.
+     *
+     * @param start         The position of Appleton Tower.
+     * @param location      The location of the restaurant.
+     * @param appletonTower The location of Appleton Tower.
+     * @param options       The options to plan the routes with.
+     * @return The leg, whose routes are null if there is no route.
+     */
+    private static Leg planLeg(LatticePoint start, LngLat location, LngLat appletonTower, RouteOptions options) {
+        CompassDirection[] outbound = start.routeTo(location, appletonTower, options);
+        if (outbound == null) {
+            return new Leg(null, null, null);
+        }
+        LatticePoint pickup = start;
+        for (CompassDirection direction : outbound) {
+            pickup = pickup.next(direction);
+        }
+        CompassDirection[] inbound = RouteCalculator.calculateReturnRoute(start, outbound, options);
+        if (inbound == null) {
+            inbound = pickup.routeTo(appletonTower, null, options);
+        }
+        return new Leg(outbound, pickup, inbound);
+    }
+
+    /**
+     * Get the route from Appleton Tower to the restaurant, if the drone is at
+     * Appleton Tower.
+     *
+     * @param position   The position of the drone.
+     * @param restaurant The restaurant to fly to.
+     * @return A copy of the route, or null if the drone is not exactly at Appleton
+     *         Tower or the restaurant is not in the table.
+     */
+    public CompassDirection[] outboundFrom(LatticePoint position, Restaurant restaurant) {
+        Leg leg = legs.get(restaurant);
+        if (leg == null || leg.outbound == null || !appletonTower.equals(position)) {
+            return null;
+        }
+        return leg.outbound.clone();
+    }
+
+    /**
+     * Get the route from the restaurant back to Appleton Tower, if the drone is where
+     * the route from Appleton Tower to the restaurant ends.
+     *
+     * @param position   The position of the drone.
+     * @param restaurant The restaurant the drone picked up the order from.
+     * @return A copy of the route, or null if the drone is not exactly where the route
+     *         to the restaurant ends or the restaurant is not in the table.
+     */
+    public CompassDirection[] inboundFrom(LatticePoint position, Restaurant restaurant) {
+        Leg leg = legs.get(restaurant);
+        if (leg == null || leg.inbound == null || !leg.pickup.equals(position)) {
+            return null;
+        }
+        return leg.inbound.clone();
+    }
+
+    /**
+     * Get the number of moves it takes to fly from the restaurant back to Appleton
+     * Tower.
+     *
+     * @param restaurant The restaurant to fly from.
+     * @return The number of moves, or Integer.MAX_VALUE if there is no route or the
+     *         restaurant is not in the table.
+     */
+    public int movesToAppletonTower(Restaurant restaurant) {
+        Leg leg = legs.get(restaurant);
+        if (leg == null || leg.inbound == null) {
+            return Integer.MAX_VALUE;
+        }
+        return leg.inbound.length;
+    }
+
+    /**
+     * Get the number of moves it takes to fly from Appleton Tower to the restaurant.
+     *
+     * @param restaurant The restaurant to fly to.
+     * @return The number of moves, or Integer.MAX_VALUE if there is no route or the
+     *         restaurant is not in the table.
+     */
+    public int movesFromAppletonTower(Restaurant restaurant) {
+        Leg leg = legs.get(restaurant);
+        if (leg == null || leg.outbound == null) {
+            return Integer.MAX_VALUE;
+        }
+        return leg.outbound.length;
+    }
+
+    // Accessors
+    public int size() {
+        return legs.size();
+    }
+
+    /**
+     * The routes to and from one restaurant, and the position the order is picked up
+     * from. Either route may be null if there is no route.
+     */
+    private static final class Leg {
+        private final CompassDirection[] outbound;
+        private final LatticePoint pickup;
+        private final CompassDirection[] inbound;
+
+        Leg(CompassDirection[] outbound, LatticePoint pickup, CompassDirection[] inbound) {
+            this.outbound = outbound;
+            this.pickup = pickup;
+            this.inbound = inbound;
+        }
+    }
+}
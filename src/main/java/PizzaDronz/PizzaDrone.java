@@ -6,13 +6,15 @@ import OrderInformation.Restaurant;
 import Output.FileWriter;
 import Output.FlightPathPoint;
 import RouteCalculation.AreaSingleton;
-import RouteCalculation.CompassDirection;
+import RouteCalculation.DistanceField;
 import RouteCalculation.LngLat;
+import RouteCalculation.MoveLegalityCache;
+import RouteCalculation.RouteCache;
+import RouteCalculation.RouteOptions;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -20,17 +22,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The main class for the PizzaDrone program.
  */
 public class PizzaDrone {
     private static List<FlightPathPoint> allDirectionsFollowed;
-    private static List<FlightPathPoint> currentDirectionsFollowed;
-    private static int remainingMoves;
     private static Order[] orders;
-
-    private static Instant startTime;
+    // The legs of the day share a cache of which moves are legal, so the moves around
+    // appleton tower and the restaurants are only checked once, and a cache of routes,
+    // so each distinct leg is only planned once.
+    private static RouteOptions routeOptions;
+    private static LegTable legTable;
 
     /**
      * This is the main method of the program which will be called when the program
@@ -39,8 +43,12 @@ public class PizzaDrone {
      * @param args The command line arguments.
      */
     public static void main(String[] args) {
-        allDirectionsFollowed = new ArrayList<>();
-        remainingMoves = Constants.MAX_MOVES;
+        routeOptions = new RouteOptions();
+        routeOptions.setLegalityCache(new MoveLegalityCache(Constants.APPLETON_TOWER));
+        routeOptions.setRouteCache(new RouteCache(Constants.ROUTE_CACHE_CAPACITY));
+        // No one leg may hold up the rest of the day.
+        routeOptions.setExpansionBudget(Constants.LEG_EXPANSION_BUDGET);
+        routeOptions.setTimeBudgetMillis(Constants.LEG_TIME_BUDGET_MILLIS);
 
         // Validate and parse the command line arguments.
         String date, restAPIUrl;
@@ -76,13 +84,24 @@ public class PizzaDrone {
             return;
         }
 
+        // Every leg back to appleton tower follows the same field of distances to it.
+        LngLat[] restaurantLocations = new LngLat[restaurants.length];
+        for (int i = 0; i < restaurants.length; i++) {
+            restaurantLocations[i] = new LngLat(restaurants[i].getLongitude(), restaurants[i].getLatitude());
+        }
+        routeOptions.setDistanceField(new DistanceField(Constants.APPLETON_TOWER, restaurantLocations));
+
+        // Plan the legs between appleton tower and every restaurant at the same time.
+        legTable = LegTable.build(restaurants, Constants.APPLETON_TOWER, routeOptions, ForkJoinPool.commonPool());
+
         // Determine the outcome for invalid orders and sort the valid orders by the
         // distance from Appleton Tower.
         ArrayList<Order> validOrders = validateAndSortOrders(restaurants, date);
 
         // Calculate the full path around all the valid orders and back to Appleton
         // Tower.
-        calculatePath(validOrders);
+        allDirectionsFollowed = new DayPlanner(Constants.APPLETON_TOWER, routeOptions, legTable)
+                .plan(validOrders, Constants.MAX_MOVES);
 
         // Write the output to the required files.
         writeToOutputFiles(date);
@@ -175,105 +194,15 @@ public class PizzaDrone {
             order.validateOrder(restaurants, date);
             if (order.isValid()) {
                 validOrders.add(order);
-
-                // If we haven't yet calculated the number of moves to appleton tower for this
-                // restaurant, calculate it.
-                if (order.getRestaurant().getNumberOfMovesFromAppletonTower() == 0) {
-                    LngLat rLocation = new LngLat(order.getRestaurant().getLongitude(),
-                            order.getRestaurant().getLatitude());
-                    order.getRestaurant()
-                            .setNumberOfMovesFromAppleton(rLocation.numberOfMovesTo(Constants.APPLETON_TOWER));
-                }
             }
         }
 
-        // Sort the orders by the number of moves from appleton tower so that the
-        // closest restaurant is first.
-        validOrders.sort(Comparator.comparingDouble(o -> o.getRestaurant().getNumberOfMovesFromAppletonTower()));
+        // Sort the orders by the number of moves from appleton tower, as planned in the
+        // leg table, so that the closest restaurant is first.
+        validOrders.sort(Comparator.comparingInt(o -> legTable.movesToAppletonTower(o.getRestaurant())));
         return validOrders;
     }
 
-    /**
-     * Calculate the full path around all the valid orders and back to Appleton
-     * Tower.
-     * Record this path in the allDirectionsFollowed list.
-     *
-     * @param validOrders The sorted list of valid orders.
-     */
-    private static void calculatePath(ArrayList<Order> validOrders) {
-        startTime = Instant.now(); // Using Instant.now() instead of Clock.systemDefaultZone().instant()
-
-        // Starting at appleton tower, deliver the orders starting with those with the
-        // fewest moves from appleton tower.
-        LngLat currentLocation = Constants.APPLETON_TOWER;
-
-        for (int i = 0; i < validOrders.size(); i++) {
-            Order order = validOrders.get(i);
-
-            LngLat nextLocation = (i != validOrders.size() - 1)
-                    ? new LngLat(validOrders.get(i + 1).getRestaurant().getLongitude(),
-                            validOrders.get(i + 1).getRestaurant().getLatitude())
-                    : null;
-
-            currentDirectionsFollowed = new ArrayList<>();
-
-            // Move to the restaurant to pick up the order.
-            CompassDirection[] route = currentLocation.routeTo(new LngLat(order.getRestaurant().getLongitude(),
-                    order.getRestaurant().getLatitude()), Constants.APPLETON_TOWER);
-            currentLocation = followRoute(currentLocation, route, order.getOrderNo());
-
-            // If making this journey would result in the drone running out of battery, then
-            // don't make the journey.
-            if (remainingMoves < 0)
-                break;
-
-            // Move to appleton tower to deliver the order.
-            route = currentLocation.routeTo(Constants.APPLETON_TOWER, nextLocation);
-            currentLocation = followRoute(currentLocation, route, order.getOrderNo());
-
-            // If making this journey would result in the drone running out of battery, then
-            // don't make the journey.
-            if (remainingMoves < 0)
-                break;
-
-            // If we still have battery, add the directions followed to the list of all
-            // directions followed.
-            // And set the order as delivered.
-            allDirectionsFollowed.addAll(currentDirectionsFollowed);
-            order.setValidOrderToDelivered();
-        }
-    }
-
-    /**
-     * This method follows a route and records the directions followed.
-     *
-     * @param currentLocation The current location of the drone.
-     * @param route           The route to follow.
-     * @param orderNo         The order number.
-     * @return The new location of the drone after following the route.
-     */
-    private static LngLat followRoute(LngLat currentLocation, CompassDirection[] route, String orderNo) {
-        Instant currentTime;
-        remainingMoves -= route.length;
-
-        for (CompassDirection direction : route) {
-            currentTime = Instant.now(); // Using Instant.now() instead of Clock.systemDefaultZone().instant()
-            LngLat nextLocation = currentLocation.nextPosition(direction);
-
-            currentDirectionsFollowed.add(new FlightPathPoint(
-                    orderNo,
-                    currentLocation.getLng(),
-                    currentLocation.getLat(),
-                    direction.getAngle(),
-                    nextLocation.getLng(),
-                    nextLocation.getLat(),
-                    (int) (currentTime.toEpochMilli() - startTime.toEpochMilli())));
-
-            currentLocation = nextLocation;
-        }
-        return currentLocation;
-    }
-
     /**
      * This method uses the FileWriter class to write to all the required files.
      *
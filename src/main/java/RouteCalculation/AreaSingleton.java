@@ -11,11 +11,19 @@ import java.util.List;
  * Singleton used to access and store the no-fly zones and central area border.
  * This is stored as a singleton to avoid having to deserialize the JSON file
  * multiple times.
+ * <p>
+ * The geometry is published as an immutable AreaSnapshot through a volatile
+ * reference. Changing the geometry publishes a new snapshot, so reading it never
+ * takes a lock, and a search that took the snapshot at the start keeps seeing the
+ * same geometry.
  */
 public class AreaSingleton {
-    private static AreaSingleton instance;
-    private LngLat[] centralAreaBorder;
-    private LngLat[][] noFlyZones;
+    private static volatile AreaSingleton instance;
+    // The last snapshot made for an instance which does not publish its own, such as a
+    // mock in a test.
+    private static volatile AreaSnapshot borrowedSnapshot;
+
+    private volatile AreaSnapshot snapshot = new AreaSnapshot(0, null, null, null);
 
     public static void setInstance(AreaSingleton instance) {
 
@@ -25,21 +33,57 @@ public class AreaSingleton {
 
     /**
      * Public method for getting the instance of the singleton.
-     * Synchronised to ensure that only one instance is created.
+     * Only synchronised while the instance is first created, so that only one
+     * instance is created and later calls do not take a lock.
      *
      * @return The instance of the singleton.
      */
-    public static synchronized AreaSingleton getInstance() {
-        if (instance == null) {
-            instance = new AreaSingleton();
+    public static AreaSingleton getInstance() {
+        AreaSingleton area = instance;
+        if (area == null) {
+            synchronized (AreaSingleton.class) {
+                area = instance;
+                if (area == null) {
+                    area = new AreaSingleton();
+                    instance = area;
+                }
+            }
         }
-        return instance;
+        return area;
     }
 
     public static synchronized void resetInstance() {
         instance = null;
     }
 
+    /**
+     * Accessor for the current geometry of the singleton instance. Searches take the
+     * snapshot once at the start of each leg rather than reading the singleton for
+     * every move.
+     *
+     * @return The snapshot of the current geometry.
+     */
+    public static AreaSnapshot currentSnapshot() {
+        AreaSingleton area = getInstance();
+        AreaSnapshot current = area.getSnapshot();
+        if (current != null) {
+            return current;
+        }
+        // The instance does not publish snapshots, so make one from its accessors,
+        // reusing the last one made while they return the same geometry.
+        LngLat[] border = area.getCentralAreaBorder();
+        PreparedPolygon preparedCentralArea = area.getPreparedCentralArea();
+        LngLat[][] zones = area.getNoFlyZones();
+        AreaSnapshot borrowed = borrowedSnapshot;
+        if (borrowed == null || borrowed.getCentralAreaBorder() != border
+                || borrowed.getPreparedCentralArea() != preparedCentralArea || borrowed.getNoFlyZones() != zones) {
+            borrowed = new AreaSnapshot(borrowed == null ? 1 : borrowed.getVersion() + 1, border,
+                    preparedCentralArea, zones);
+            borrowedSnapshot = borrowed;
+        }
+        return borrowed;
+    }
+
     /**
      * Pass in the URLs of the central area border and the no-fly zones.
      * Once URLs are passed in the data is retrieved from the REST API.
@@ -52,9 +96,41 @@ public class AreaSingleton {
      * @param noFlyZonesUrl  The URL of the JSON file containing the list of no-fly
      *                       zones.
      */
-    public void setURLs(URL centralAreaUrl, URL noFlyZonesUrl) {
-        centralAreaBorder = deserializeCentralArea(centralAreaUrl);
-        noFlyZones = deserializeNoFlyZone(noFlyZonesUrl);
+    public synchronized void setURLs(URL centralAreaUrl, URL noFlyZonesUrl) {
+        LngLat[] centralAreaBorder = deserializeCentralArea(centralAreaUrl);
+        LngLat[][] noFlyZones = deserializeNoFlyZone(noFlyZonesUrl);
+
+        // Prepare the polygons and build the spatial index and visibility graph over the
+        // no-fly zones now rather than during the first search.
+        publish(centralAreaBorder, new PreparedPolygon(centralAreaBorder), noFlyZones);
+    }
+
+    /**
+     * Replace the no-fly zones, such as when a temporary zone is added or removed
+     * partway through the day. Everything built from the zones is keyed on the zone
+     * array, so it is built again for the new zones the next time it is needed.
+     *
+     * @param noFlyZones The new no-fly zones, where each no-fly zone is an array of
+     *                   LngLat points.
+     */
+    public synchronized void setNoFlyZones(LngLat[][] noFlyZones) {
+        if (noFlyZones == null) {
+            throw new IllegalArgumentException("setNoFlyZones called with null zones.");
+        }
+        publish(snapshot.getCentralAreaBorder(), snapshot.getPreparedCentralArea(), noFlyZones);
+    }
+
+    /**
+     * Build the snapshot of the new geometry, with the next version, and make it the
+     * current one. The snapshot is only published once its indexes are built, so
+     * searches never see a half-built geometry.
+     */
+    private void publish(LngLat[] centralAreaBorder, PreparedPolygon preparedCentralArea,
+            LngLat[][] noFlyZones) {
+        AreaSnapshot next = new AreaSnapshot(snapshot.getVersion() + 1, centralAreaBorder, preparedCentralArea,
+                noFlyZones);
+        next.getVisibilityGraph();
+        snapshot = next;
     }
 
     /**
@@ -121,7 +197,7 @@ public class AreaSingleton {
      * @return The central area border represented by an array of LngLat points.
      */
     public LngLat[] getCentralAreaBorder() {
-        return centralAreaBorder;
+        return snapshot.getCentralAreaBorder();
     }
 
     /**
@@ -131,7 +207,36 @@ public class AreaSingleton {
      *         array of LngLat points.
      */
     public LngLat[][] getNoFlyZones() {
-        return noFlyZones;
+        return snapshot.getNoFlyZones();
+    }
+
+    /**
+     * Accessor method for the central area border prepared for fast point-in-polygon
+     * tests.
+     *
+     * @return The prepared central area, or null if setURLs has not been called.
+     */
+    public PreparedPolygon getPreparedCentralArea() {
+        return snapshot.getPreparedCentralArea();
+    }
+
+    /**
+     * Accessor method for the no-fly zones prepared for fast point-in-polygon tests.
+     *
+     * @return The prepared no-fly zones, or null if setURLs has not been called.
+     */
+    public PreparedPolygon[] getPreparedNoFlyZones() {
+        AreaSnapshot current = snapshot;
+        return current.getNoFlyZones() == null ? null : current.getNoFlyZoneIndex().getPolygons();
+    }
+
+    /**
+     * Accessor method for the snapshot of the current geometry.
+     *
+     * @return The snapshot of the central area and no-fly zones.
+     */
+    public AreaSnapshot getSnapshot() {
+        return snapshot;
     }
 
 }
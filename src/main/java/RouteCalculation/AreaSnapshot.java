@@ -0,0 +1,119 @@
+package RouteCalculation;
+
+/**
+ * One version of the geometry the drone flies in: the central area border, the no-fly
+ * zones, and the indexes built from them.
+ * <p>
+ * A snapshot never changes once it is made. When the zones change, AreaSingleton
+ * publishes a new snapshot with the next version instead, so a search that took the
+ * snapshot at the start of a leg sees the same geometry for the whole leg, and
+ * searches on different threads read the geometry without taking any lock.
+ */
+public final class AreaSnapshot {
+    private final long version;
+    private final LngLat[] centralAreaBorder;
+    private final PreparedPolygon preparedCentralArea;
+    private final LngLat[][] noFlyZones;
+    private final NoFlyZoneIndex noFlyZoneIndex;
+    // Built the first time it is needed. Any two threads build the same graph, so it
+    // does not matter which one is kept.
+    private volatile VisibilityGraph visibilityGraph;
+
+    /**
+     * Create a snapshot of the given geometry.
+     *
+     * @param version             The version of the geometry, which is higher for
+     *                            newer snapshots.
+     * @param centralAreaBorder   The central area border, or null if it has not been
+     *                            loaded.
+     * @param preparedCentralArea The central area border prepared for fast
+     *                            point-in-polygon tests, or null to test against the
+     *                            border itself.
+     * @param noFlyZones          The no-fly zones, or null if they have not been
+     *                            loaded.
+     */
+    AreaSnapshot(long version, LngLat[] centralAreaBorder, PreparedPolygon preparedCentralArea,
+            LngLat[][] noFlyZones) {
+        this.version = version;
+        this.centralAreaBorder = centralAreaBorder;
+        this.preparedCentralArea = preparedCentralArea;
+        this.noFlyZones = noFlyZones;
+        this.noFlyZoneIndex = NoFlyZoneIndex.forZones(noFlyZones);
+    }
+
+    /**
+     * Checks if the coordinate pair is in the central area.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return True if the point is inside the central area, false otherwise.
+     */
+    public boolean inCentralArea(double lng, double lat) {
+        if (preparedCentralArea == null) {
+            // The border has not been prepared, so check against the raw coordinates.
+            return LngLat.inZone(lng, lat, centralAreaBorder);
+        }
+        return preparedCentralArea.contains(lng, lat);
+    }
+
+    /**
+     * Checks if the move from the previous coordinate pair to the current coordinate
+     * pair ends in or crosses a no-fly zone.
+     *
+     * @param lng         The longitude of the current point.
+     * @param lat         The latitude of the current point.
+     * @param previousLng The longitude of the previous point.
+     * @param previousLat The latitude of the previous point.
+     * @return True if the move ends in or crosses a no-fly zone, false otherwise.
+     */
+    public boolean inNoFlyZone(double lng, double lat, double previousLng, double previousLat) {
+        return noFlyZoneIndex.moveEntersZone(lng, lat, previousLng, previousLat);
+    }
+
+    /**
+     * Checks if this snapshot has the same geometry as another, so that anything
+     * worked out for one holds for the other.
+     *
+     * @param other The other snapshot, or null.
+     * @return True if both snapshots have the same border and zone arrays.
+     */
+    public boolean sameGeometry(AreaSnapshot other) {
+        return other != null && other.centralAreaBorder == centralAreaBorder && other.noFlyZones == noFlyZones;
+    }
+
+    // Accessors
+    public long getVersion() {
+        return version;
+    }
+
+    public LngLat[] getCentralAreaBorder() {
+        return centralAreaBorder;
+    }
+
+    public PreparedPolygon getPreparedCentralArea() {
+        return preparedCentralArea;
+    }
+
+    public LngLat[][] getNoFlyZones() {
+        return noFlyZones;
+    }
+
+    public NoFlyZoneIndex getNoFlyZoneIndex() {
+        return noFlyZoneIndex;
+    }
+
+    /**
+     * Accessor for the visibility graph of the no-fly zones, which is built the first
+     * time it is needed.
+     *
+     * @return The visibility graph of the zones in this snapshot.
+     */
+    public VisibilityGraph getVisibilityGraph() {
+        VisibilityGraph graph = visibilityGraph;
+        if (graph == null) {
+            graph = VisibilityGraph.forZones(noFlyZones);
+            visibilityGraph = graph;
+        }
+        return graph;
+    }
+}
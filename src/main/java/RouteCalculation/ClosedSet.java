@@ -0,0 +1,168 @@
+package RouteCalculation;
+
+import java.util.Arrays;
+
+/**
+ * The set of points which have already been visited by the A* search.
+ * Points are stored in a spatial hash where each cell is a square with sides
+ * the length of the distance tolerance. Since a point can only be close to
+ * points which are in its own cell or one of the eight surrounding cells, checking
+ * whether a point has already been visited takes constant time rather than
+ * requiring a scan of every visited point.
+ * <p>
+ * The hash table and the points are stored in primitive arrays so that the set can
+ * be cleared and reused by later searches without allocating anything.
+ */
+public class ClosedSet {
+    private static final int INITIAL_CAPACITY = 256;
+
+    // Open addressing table of cells. A slot is only in use if its stamp matches the
+    // current generation, which lets the table be cleared in constant time.
+    private long[] cellKeys = new long[INITIAL_CAPACITY];
+    private int[] cellHeads = new int[INITIAL_CAPACITY];
+    private int[] cellStamps = new int[INITIAL_CAPACITY];
+    private int generation = 1;
+    private int cellCount;
+
+    // The visited points, with each cell's points linked together through next.
+    private double[] lngs = new double[INITIAL_CAPACITY];
+    private double[] lats = new double[INITIAL_CAPACITY];
+    private int[] next = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Add a visited point to the set.
+     *
+     * @param point The LngLat point which has been visited.
+     */
+    public void add(LngLat point) {
+        add(point.getLng(), point.getLat());
+    }
+
+    /**
+     * Add a visited coordinate pair to the set.
+     *
+     * @param lng The longitude of the visited point.
+     * @param lat The latitude of the visited point.
+     */
+    public void add(double lng, double lat) {
+        if (size == lngs.length) {
+            lngs = Arrays.copyOf(lngs, 2 * size);
+            lats = Arrays.copyOf(lats, 2 * size);
+            next = Arrays.copyOf(next, 2 * size);
+        }
+        if (2 * (cellCount + 1) > cellKeys.length) {
+            growTable();
+        }
+        lngs[size] = lng;
+        lats[size] = lat;
+        insert(cellKey(cellIndex(lng), cellIndex(lat)), size);
+        size++;
+    }
+
+    /**
+     * Checks if any point in the set is close to the given point.
+     * Uses exactly the same definition of "close" as LngLat.closeTo.
+     *
+     * @param point The LngLat point we are checking.
+     * @return True if a visited point is close to the given point, false otherwise.
+     */
+    public boolean containsCloseTo(LngLat point) {
+        return containsCloseTo(point.getLng(), point.getLat());
+    }
+
+    /**
+     * Checks if any point in the set is close to the given coordinate pair.
+     *
+     * @param lng The longitude of the point we are checking.
+     * @param lat The latitude of the point we are checking.
+     * @return True if a visited point is close to the given point, false otherwise.
+     */
+    public boolean containsCloseTo(double lng, double lat) {
+        long lngIndex = cellIndex(lng);
+        long latIndex = cellIndex(lat);
+
+        // Only the 3x3 block of cells around the point can contain a close point.
+        for (long i = lngIndex - 1; i <= lngIndex + 1; i++) {
+            for (long j = latIndex - 1; j <= latIndex + 1; j++) {
+                int slot = findSlot(cellKey(i, j));
+                if (cellStamps[slot] != generation) {
+                    continue;
+                }
+                for (int k = cellHeads[slot]; k >= 0; k = next[k]) {
+                    if (LngLat.distance(lngs[k], lats[k], lng, lat) < LngLat.DISTANCE_TOLERANCE) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove all points from the set, keeping the storage for reuse.
+     */
+    public void clear() {
+        generation++;
+        cellCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Accessor for the number of points added to the set. Mainly used for testing.
+     *
+     * @return The number of points which have been added.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Link the point to the front of its cell's list, using a new slot if the cell is
+     * empty.
+     */
+    private void insert(long key, int point) {
+        int slot = findSlot(key);
+        if (cellStamps[slot] != generation) {
+            cellStamps[slot] = generation;
+            cellKeys[slot] = key;
+            cellHeads[slot] = -1;
+            cellCount++;
+        }
+        next[point] = cellHeads[slot];
+        cellHeads[slot] = point;
+    }
+
+    /**
+     * Find the slot holding the key, or the empty slot where it would be inserted.
+     */
+    private int findSlot(long key) {
+        int mask = cellKeys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (cellStamps[slot] == generation && cellKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void growTable() {
+        int capacity = 2 * cellKeys.length;
+        cellKeys = new long[capacity];
+        cellHeads = new int[capacity];
+        cellStamps = new int[capacity];
+        generation = 1;
+        cellCount = 0;
+        for (int k = 0; k < size; k++) {
+            insert(cellKey(cellIndex(lngs[k]), cellIndex(lats[k])), k);
+        }
+    }
+
+    private static long cellIndex(double coordinate) {
+        return (long) Math.floor(coordinate / LngLat.DISTANCE_TOLERANCE);
+    }
+
+    private static long cellKey(long lngIndex, long latIndex) {
+        // Cell indices for valid coordinates fit comfortably within 32 bits.
+        return (lngIndex << 32) ^ (latIndex & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,519 @@
+package RouteCalculation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A hierarchical (HPA*) planner, which searches for long routes over clusters of the
+ * area rather than over every position.
+ * <p>
+ * The area is split into square clusters a few moves across. Where the border between
+ * two clusters is not blocked by a no-fly zone, there are entrances: one in the middle
+ * of each open stretch of the border, or one near each end if the stretch is long. The
+ * number of moves between every two entrances of a cluster is worked out once, with a
+ * search that stays inside the cluster, and these make up the abstract graph.
+ * <p>
+ * A route is planned by joining the start and end to the entrances of their clusters,
+ * finding the shortest path through the abstract graph, and then searching from each
+ * entrance on the path to the next inside the cluster between them. Each of these
+ * searches only covers one cluster, so the work grows with the number of clusters the
+ * route passes through rather than with the area.
+ * <p>
+ * The route only has to pass close to the entrances, so it can take a few more moves
+ * than the shortest route. Every route is checked against the lower bound on the
+ * length of any route, and is only used if it takes at most the largest stretch times
+ * as many moves, so it is never more than that many times longer than the shortest
+ * route. Otherwise the RouteCalculator searches for the route as normal. The graph is
+ * worked out again if the central area or no-fly zones change.
+ */
+public class ClusterHierarchy {
+    // The number of moves across each cluster, if not given.
+    private static final int DEFAULT_CLUSTER_MOVES = 12;
+    // The most times longer than the lower bound a route may be, if not given.
+    private static final double DEFAULT_MAX_STRETCH = 1.1;
+    // How far the clusters reach past the area, in clusters.
+    private static final int MARGIN_CLUSTERS = 1;
+    // Open stretches of border longer than this many moves have an entrance near each
+    // end rather than one in the middle.
+    private static final int LONG_ENTRANCE_MOVES = 6;
+
+    private final LngLat[] coveredPoints;
+    private final int clusterMoves;
+    private final double maxStretch;
+    private volatile Graph graph;
+    private int builds;
+
+    /**
+     * Create the hierarchy over the central area, the no-fly zones and the given
+     * points, with the default cluster size and largest stretch. The abstract graph is
+     * built the first time it is needed.
+     *
+     * @param coveredPoints Other points the clusters must cover, such as the
+     *                      restaurants.
+     */
+    public ClusterHierarchy(LngLat[] coveredPoints) {
+        this(coveredPoints, DEFAULT_CLUSTER_MOVES, DEFAULT_MAX_STRETCH);
+    }
+
+    /**
+     * Create the hierarchy over the central area, the no-fly zones and the given
+     * points. The abstract graph is built the first time it is needed.
+     *
+     * @param coveredPoints Other points the clusters must cover, such as the
+     *                      restaurants.
+     * @param clusterMoves  The number of moves across each cluster, at least two.
+     * @param maxStretch    The most times longer than the lower bound on its length a
+     *                      route may be and still be used, at least one.
+     */
+    public ClusterHierarchy(LngLat[] coveredPoints, int clusterMoves, double maxStretch) {
+        if (clusterMoves < 2) {
+            throw new IllegalArgumentException("Clusters must be at least 2 moves across, got " + clusterMoves);
+        }
+        if (!(maxStretch >= 1) || Double.isInfinite(maxStretch)) {
+            throw new IllegalArgumentException("Largest stretch must be a finite number of at least 1, got "
+                    + maxStretch);
+        }
+        this.coveredPoints = coveredPoints == null ? new LngLat[0] : coveredPoints.clone();
+        this.clusterMoves = clusterMoves;
+        this.maxStretch = maxStretch;
+    }
+
+    /**
+     * Plan the route from the start to the end through the clusters.
+     *
+     * @param area       The geometry the leg is planned in.
+     * @param start      The lattice position which is the starting position.
+     * @param end        The LngLat point which is where we want to be close to.
+     * @param nextTarget After the drone has arrived close to the end position, this
+     *                   is its next destination.
+     * @param options    The options controlling the searches inside the clusters.
+     * @return The route, or null if the start and end are in the same cluster or
+     *         outside the clusters, there is no path through the clusters, or the
+     *         route found is too long.
+     */
+    CompassDirection[] route(AreaSnapshot area, LatticePoint start, LngLat end, LngLat nextTarget,
+            RouteOptions options) {
+        Graph current = currentGraph(area);
+        int startCluster = current.clusterOf(start.getLng(), start.getLat());
+        int endCluster = current.clusterOf(end.getLng(), end.getLat());
+        if (startCluster < 0 || endCluster < 0 || startCluster == endCluster) {
+            return null;
+        }
+        boolean endInCentralArea = area.inCentralArea(end.getLng(), end.getLat());
+
+        // Join the start and end to the entrances of their clusters. Searching for each
+        // of these would cost more than the rest of the plan, so they are joined by the
+        // lower bound on the moves between them, and only the entrances the path goes
+        // through are searched for.
+        int[] startEntrances = current.clusterEntrances[startCluster];
+        int[] startCosts = new int[startEntrances.length];
+        for (int i = 0; i < startEntrances.length; i++) {
+            LngLat entrance = current.entrances[startEntrances[i]];
+            startCosts[i] = fewestMoves(area, start.getLng(), start.getLat(), entrance, options);
+        }
+        int[] endEntrances = current.clusterEntrances[endCluster];
+        int[] endCosts = new int[endEntrances.length];
+        for (int i = 0; i < endEntrances.length; i++) {
+            LngLat entrance = current.entrances[endEntrances[i]];
+            endCosts[i] = fewestMoves(area, entrance.getLng(), entrance.getLat(), end, options);
+        }
+
+        int[] path = current.abstractPath(startEntrances, startCosts, endEntrances, endCosts, end);
+        if (path == null) {
+            return null;
+        }
+
+        // Search from each entrance on the path to the next, inside the cluster the
+        // abstract edge between them was worked out in.
+        List<CompassDirection> moves = new ArrayList<>();
+        LatticePoint position = start;
+        int cluster = startCluster;
+        for (int i = 0; i < path.length; i++) {
+            LngLat entrance = current.entrances[path[i]];
+            Node goal = current.searchWithin(cluster, position, entrance, endInCentralArea, options);
+            if (goal == null) {
+                return null;
+            }
+            CompassDirection[] leg = RouteCalculator.reconstructPath(goal);
+            moves.addAll(Arrays.asList(leg).subList(0, leg.length - 1));
+            position = goal.getPosition();
+            cluster = i + 1 < path.length ? current.edgeCluster(path[i], path[i + 1]) : endCluster;
+        }
+        Node goal = current.searchWithin(endCluster, position, end, endInCentralArea, options);
+        if (goal == null) {
+            return null;
+        }
+        moves.addAll(Arrays.asList(RouteCalculator.finishSearchedRoute(goal, end, nextTarget, options,
+                area)));
+
+        // Only use the route if it is not too much longer than any route could be.
+        int lowerBound = lowerBoundLength(area, start, end, options);
+        if (moves.size() > maxStretch * lowerBound) {
+            return null;
+        }
+        SearchStatistics statistics = options.getStatistics();
+        if (statistics != null) {
+            statistics.recordHierarchicalRoute(moves.size(), lowerBound);
+        }
+        return moves.toArray(new CompassDirection[0]);
+    }
+
+    /**
+     * Work out the fewest moves any route from the position to the end could take.
+     */
+    private static int fewestMoves(AreaSnapshot area, double lng, double lat, LngLat end, RouteOptions options) {
+        double distance = Node.calculateHeuristic(area, lng, lat, end, options.getLandmarks());
+        return distance == Double.POSITIVE_INFINITY ? -1 : Math.max(RouteCalculator.fewestMoves(distance), 0);
+    }
+
+    /**
+     * Work out the fewest directions any route from the start to the end could have,
+     * including the hover at the end.
+     */
+    private static int lowerBoundLength(AreaSnapshot area, LatticePoint start, LngLat end, RouteOptions options) {
+        return fewestMoves(area, start.getLng(), start.getLat(), end, options) + 1;
+    }
+
+    /**
+     * Get the graph for the given geometry, building it again if the central area or
+     * no-fly zones have changed since it was built.
+     */
+    private Graph currentGraph(AreaSnapshot area) {
+        Graph current = graph;
+        if (current == null || !area.sameGeometry(current.area)) {
+            synchronized (this) {
+                current = graph;
+                if (current == null || !area.sameGeometry(current.area)) {
+                    current = new Graph(area);
+                    graph = current;
+                    builds++;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Accessor for the number of entrances in the abstract graph, building it if it has
+     * not been built for the current geometry.
+     *
+     * @return The number of entrances.
+     */
+    public int getEntranceCount() {
+        return currentGraph(AreaSingleton.currentSnapshot()).entrances.length;
+    }
+
+    // Accessors
+    public int getClusterMoves() {
+        return clusterMoves;
+    }
+
+    public double getMaxStretch() {
+        return maxStretch;
+    }
+
+    /**
+     * Accessor for the number of times the abstract graph has been built.
+     *
+     * @return The number of builds.
+     */
+    public synchronized int getBuilds() {
+        return builds;
+    }
+
+    /**
+     * The clusters, their entrances and the moves between the entrances, worked out for
+     * one central area and set of no-fly zones.
+     */
+    private class Graph {
+        private final AreaSnapshot area;
+
+        private final double clusterSize;
+        private final double minLng;
+        private final double minLat;
+        private final int columns;
+        private final int rows;
+
+        private final LngLat[] entrances;
+        // The entrances on the border of each cluster.
+        private final int[][] clusterEntrances;
+        // For each entrance, the entrances it has an edge to, the moves along each edge
+        // and the cluster each edge was worked out in.
+        private final int[][] neighbours;
+        private final int[][] costs;
+        private final int[][] edgeClusters;
+
+        Graph(AreaSnapshot area) {
+            this.area = area;
+            this.clusterSize = clusterMoves * LngLat.LENGTH_OF_MOVE;
+
+            double minLng = Double.POSITIVE_INFINITY;
+            double minLat = Double.POSITIVE_INFINITY;
+            double maxLng = Double.NEGATIVE_INFINITY;
+            double maxLat = Double.NEGATIVE_INFINITY;
+            List<LngLat> points = new ArrayList<>(Arrays.asList(coveredPoints));
+            LngLat[] centralAreaBorder = area.getCentralAreaBorder();
+            LngLat[][] noFlyZones = area.getNoFlyZones();
+            if (centralAreaBorder != null) {
+                points.addAll(Arrays.asList(centralAreaBorder));
+            }
+            if (noFlyZones != null) {
+                for (LngLat[] zone : noFlyZones) {
+                    points.addAll(Arrays.asList(zone));
+                }
+            }
+            for (LngLat point : points) {
+                minLng = Math.min(minLng, point.getLng());
+                minLat = Math.min(minLat, point.getLat());
+                maxLng = Math.max(maxLng, point.getLng());
+                maxLat = Math.max(maxLat, point.getLat());
+            }
+            if (points.isEmpty()) {
+                minLng = minLat = maxLng = maxLat = 0;
+            }
+            this.minLng = minLng - MARGIN_CLUSTERS * clusterSize;
+            this.minLat = minLat - MARGIN_CLUSTERS * clusterSize;
+            columns = (int) Math.ceil((maxLng - minLng) / clusterSize) + 2 * MARGIN_CLUSTERS;
+            rows = (int) Math.ceil((maxLat - minLat) / clusterSize) + 2 * MARGIN_CLUSTERS;
+
+            // Find the entrances on the border between each pair of neighbouring clusters.
+            NoFlyZoneIndex index = area.getNoFlyZoneIndex();
+            List<LngLat> entranceList = new ArrayList<>();
+            List<List<Integer>> clusterEntranceLists = new ArrayList<>();
+            for (int cluster = 0; cluster < columns * rows; cluster++) {
+                clusterEntranceLists.add(new ArrayList<>());
+            }
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    if (c > 0) {
+                        addEntrances(index, this.minLng + c * clusterSize, this.minLat + r * clusterSize, false,
+                                r * columns + c - 1, r * columns + c, entranceList, clusterEntranceLists);
+                    }
+                    if (r > 0) {
+                        addEntrances(index, this.minLng + c * clusterSize, this.minLat + r * clusterSize, true,
+                                (r - 1) * columns + c, r * columns + c, entranceList, clusterEntranceLists);
+                    }
+                }
+            }
+            entrances = entranceList.toArray(new LngLat[0]);
+            clusterEntrances = new int[columns * rows][];
+            for (int cluster = 0; cluster < clusterEntrances.length; cluster++) {
+                clusterEntrances[cluster] = clusterEntranceLists.get(cluster).stream().mapToInt(i -> i).toArray();
+            }
+
+            // Work out the moves between every two entrances of each cluster. The
+            // geometry is the same either way, so each pair is only searched once.
+            List<List<int[]>> edges = new ArrayList<>();
+            for (int e = 0; e < entrances.length; e++) {
+                edges.add(new ArrayList<>());
+            }
+            RouteOptions buildOptions = new RouteOptions();
+            for (int cluster = 0; cluster < clusterEntrances.length; cluster++) {
+                int[] inCluster = clusterEntrances[cluster];
+                for (int i = 0; i < inCluster.length; i++) {
+                    for (int j = i + 1; j < inCluster.length; j++) {
+                        int moves = movesWithin(cluster, LatticePoint.origin(entrances[inCluster[i]]),
+                                entrances[inCluster[j]], false, buildOptions);
+                        if (moves >= 0) {
+                            edges.get(inCluster[i]).add(new int[] { inCluster[j], moves, cluster });
+                            edges.get(inCluster[j]).add(new int[] { inCluster[i], moves, cluster });
+                        }
+                    }
+                }
+            }
+            neighbours = new int[entrances.length][];
+            costs = new int[entrances.length][];
+            edgeClusters = new int[entrances.length][];
+            for (int e = 0; e < entrances.length; e++) {
+                List<int[]> entranceEdges = edges.get(e);
+                neighbours[e] = new int[entranceEdges.size()];
+                costs[e] = new int[entranceEdges.size()];
+                edgeClusters[e] = new int[entranceEdges.size()];
+                for (int k = 0; k < entranceEdges.size(); k++) {
+                    neighbours[e][k] = entranceEdges.get(k)[0];
+                    costs[e][k] = entranceEdges.get(k)[1];
+                    edgeClusters[e][k] = entranceEdges.get(k)[2];
+                }
+            }
+        }
+
+        /**
+         * Add the entrances on one border between two clusters, which runs along the
+         * latitude or longitude from the given corner for the size of a cluster.
+         */
+        private void addEntrances(NoFlyZoneIndex index, double cornerLng, double cornerLat, boolean alongLng,
+                int clusterA, int clusterB, List<LngLat> entranceList, List<List<Integer>> clusterEntranceLists) {
+            int runStart = -1;
+            for (int i = 0; i <= clusterMoves; i++) {
+                boolean open = false;
+                if (i < clusterMoves) {
+                    double offset = (i + 0.5) * LngLat.LENGTH_OF_MOVE;
+                    open = alongLng ? !index.inAnyZone(cornerLng + offset, cornerLat)
+                            : !index.inAnyZone(cornerLng, cornerLat + offset);
+                }
+                if (open && runStart < 0) {
+                    runStart = i;
+                } else if (!open && runStart >= 0) {
+                    int runEnd = i - 1;
+                    if (runEnd - runStart + 1 > LONG_ENTRANCE_MOVES) {
+                        addEntrance(cornerLng, cornerLat, alongLng, runStart + 1, clusterA, clusterB, entranceList,
+                                clusterEntranceLists);
+                        addEntrance(cornerLng, cornerLat, alongLng, runEnd - 1, clusterA, clusterB, entranceList,
+                                clusterEntranceLists);
+                    } else {
+                        addEntrance(cornerLng, cornerLat, alongLng, (runStart + runEnd) / 2, clusterA, clusterB,
+                                entranceList, clusterEntranceLists);
+                    }
+                    runStart = -1;
+                }
+            }
+        }
+
+        private void addEntrance(double cornerLng, double cornerLat, boolean alongLng, int step, int clusterA,
+                int clusterB, List<LngLat> entranceList, List<List<Integer>> clusterEntranceLists) {
+            double offset = (step + 0.5) * LngLat.LENGTH_OF_MOVE;
+            entranceList.add(alongLng ? new LngLat(cornerLng + offset, cornerLat)
+                    : new LngLat(cornerLng, cornerLat + offset));
+            clusterEntranceLists.get(clusterA).add(entranceList.size() - 1);
+            clusterEntranceLists.get(clusterB).add(entranceList.size() - 1);
+        }
+
+        /**
+         * Find the cluster a position is in.
+         *
+         * @return The index of the cluster, or -1 if the position is outside them.
+         */
+        int clusterOf(double lng, double lat) {
+            int c = (int) Math.floor((lng - minLng) / clusterSize);
+            int r = (int) Math.floor((lat - minLat) / clusterSize);
+            if (c < 0 || c >= columns || r < 0 || r >= rows) {
+                return -1;
+            }
+            return r * columns + c;
+        }
+
+        /**
+         * Find the cluster the edge between two entrances was worked out in.
+         */
+        int edgeCluster(int from, int to) {
+            for (int k = 0; k < neighbours[from].length; k++) {
+                if (neighbours[from][k] == to) {
+                    return edgeClusters[from][k];
+                }
+            }
+            throw new IllegalStateException("No edge between entrances " + from + " and " + to + ".");
+        }
+
+        /**
+         * Search from the start to a node close to the end, only exploring the cluster
+         * and the distance tolerance around it, so that entrances on its border can be
+         * reached.
+         */
+        Node searchWithin(int cluster, LatticePoint start, LngLat end, boolean endInCentralArea,
+                RouteOptions options) {
+            double lng = minLng + (cluster % columns) * clusterSize;
+            double lat = minLat + (cluster / columns) * clusterSize;
+            double margin = LngLat.DISTANCE_TOLERANCE;
+            SearchBudget budget = SearchBudget.forRegion(lng - margin, lat - margin, lng + clusterSize + margin,
+                    lat + clusterSize + margin, options, area);
+            return RouteCalculator.searchForGoal(start, end, endInCentralArea, options, 1,
+                    RouteCalculator.NO_MOVE_LIMIT, RouteCalculator.NO_DEADLINE, budget);
+        }
+
+        /**
+         * Count the moves from the start to the end inside the cluster.
+         *
+         * @return The number of moves, or -1 if the end cannot be reached inside the
+         *         cluster.
+         */
+        int movesWithin(int cluster, LatticePoint start, LngLat end, boolean endInCentralArea,
+                RouteOptions options) {
+            Node goal = searchWithin(cluster, start, end, endInCentralArea, options);
+            return goal == null ? -1 : RouteCalculator.movesTo(goal);
+        }
+
+        /**
+         * Find the path through the abstract graph from the start to the end, with
+         * Dijkstra's algorithm guided by the lattice distance to the end.
+         *
+         * @param startEntrances The entrances the start is joined to.
+         * @param startCosts     The moves from the start to each of them, or -1.
+         * @param endEntrances   The entrances joined to the end.
+         * @param endCosts       The moves from each of them to the end, or -1.
+         * @param end            The end of the route.
+         * @return The entrances on the path in order, or null if there is no path.
+         */
+        int[] abstractPath(int[] startEntrances, int[] startCosts, int[] endEntrances, int[] endCosts, LngLat end) {
+            int goalIndex = entrances.length;
+            int[] endCostOf = new int[entrances.length];
+            Arrays.fill(endCostOf, -1);
+            for (int i = 0; i < endEntrances.length; i++) {
+                endCostOf[endEntrances[i]] = endCosts[i];
+            }
+
+            double[] moves = new double[entrances.length + 1];
+            Arrays.fill(moves, Double.POSITIVE_INFINITY);
+            int[] previous = new int[entrances.length + 1];
+            Arrays.fill(previous, -1);
+            PriorityQueue<double[]> openList = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+            for (int i = 0; i < startEntrances.length; i++) {
+                if (startCosts[i] >= 0 && startCosts[i] < moves[startEntrances[i]]) {
+                    moves[startEntrances[i]] = startCosts[i];
+                    openList.add(new double[] { startCosts[i] + estimate(startEntrances[i], end),
+                            startEntrances[i] });
+                }
+            }
+
+            while (!openList.isEmpty()) {
+                double[] entry = openList.poll();
+                int current = (int) entry[1];
+                if (current == goalIndex) {
+                    break;
+                }
+                if (entry[0] > moves[current] + estimate(current, end)) {
+                    // A shorter path to this entrance was found after this entry was added.
+                    continue;
+                }
+                if (endCostOf[current] >= 0 && moves[current] + endCostOf[current] < moves[goalIndex]) {
+                    moves[goalIndex] = moves[current] + endCostOf[current];
+                    previous[goalIndex] = current;
+                    openList.add(new double[] { moves[goalIndex], goalIndex });
+                }
+                for (int k = 0; k < neighbours[current].length; k++) {
+                    int next = neighbours[current][k];
+                    double nextMoves = moves[current] + costs[current][k];
+                    if (nextMoves < moves[next]) {
+                        moves[next] = nextMoves;
+                        previous[next] = current;
+                        openList.add(new double[] { nextMoves + estimate(next, end), next });
+                    }
+                }
+            }
+            if (previous[goalIndex] < 0) {
+                return null;
+            }
+
+            List<Integer> path = new ArrayList<>();
+            for (int e = previous[goalIndex]; e >= 0; e = previous[e]) {
+                path.add(e);
+            }
+            int[] ordered = new int[path.size()];
+            for (int i = 0; i < ordered.length; i++) {
+                ordered[i] = path.get(ordered.length - 1 - i);
+            }
+            return ordered;
+        }
+
+        /**
+         * A lower bound on the moves from an entrance to the end, ignoring the zones.
+         */
+        private double estimate(int entrance, LngLat end) {
+            double distance = LngLat.latticeDistance(entrances[entrance].getLng(), entrances[entrance].getLat(),
+                    end.getLng(), end.getLat());
+            return Math.max(RouteCalculator.fewestMoves(distance), 0);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package RouteCalculation;
+
+/**
+ * A field of the distances to one target, such as Appleton Tower, over the whole
+ * area the drone flies in.
+ * <p>
+ * Every leg of a delivery ends at Appleton Tower, so rather than searching for each
+ * leg, the distance from every point to the tower is worked out once. The shortest
+ * path to the target that goes around the no-fly zones either goes straight to the
+ * target or first goes straight to a corner of a zone, so the field stores, for each
+ * cell of a grid, where the shortest path from the centre of the cell heads first.
+ * The distance from any point is then the lattice distance to that waypoint plus the
+ * waypoint's distance to the target, which the visibility graph flooded backwards
+ * from the target once.
+ * <p>
+ * The moves on the lattice do not land on a grid, so the field holds distances rather
+ * than move counts. Following the field downhill gives a route to the target which
+ * the RouteCalculator checks and uses in place of a search. The field is worked out
+ * again if the central area or no-fly zones change.
+ */
+public class DistanceField {
+    // The size of the cells of the grid.
+    private static final double CELL_SIZE = LngLat.LENGTH_OF_MOVE / 2;
+    // How far the grid reaches past the area, in cells.
+    private static final int MARGIN_CELLS = 20;
+
+    private final LngLat target;
+    private final LngLat[] coveredPoints;
+    private volatile Grid grid;
+    private int builds;
+
+    /**
+     * Create the field of distances to the target. The grid covers the central area,
+     * the no-fly zones, the target and the given points, and is built the first time
+     * it is needed.
+     *
+     * @param target        The target the distances are to.
+     * @param coveredPoints Other points the grid must cover, such as the restaurants.
+     */
+    public DistanceField(LngLat target, LngLat[] coveredPoints) {
+        if (target == null) {
+            throw new IllegalArgumentException("DistanceField called with a null target.");
+        }
+        this.target = target;
+        this.coveredPoints = coveredPoints == null ? new LngLat[0] : coveredPoints.clone();
+    }
+
+    /**
+     * Checks if the field holds the distances to the given point.
+     *
+     * @param end The end of a route.
+     * @return True if the end is the target of the field.
+     */
+    public boolean isFor(LngLat end) {
+        return end != null && end.getLng() == target.getLng() && end.getLat() == target.getLat();
+    }
+
+    /**
+     * Calculate the length of the shortest path from the point to the target which
+     * goes around the no-fly zones, in the lattice distance.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return The distance, or infinity if the point is outside the grid or the
+     *         target cannot be reached from it.
+     */
+    public double distanceFrom(double lng, double lat) {
+        return distanceFrom(AreaSingleton.currentSnapshot(), lng, lat);
+    }
+
+    /**
+     * Calculate the length of the shortest path from the point to the target which
+     * goes around the no-fly zones of the given geometry, in the lattice distance.
+     *
+     * @param area The geometry the leg is planned in.
+     * @param lng  The longitude of the point.
+     * @param lat  The latitude of the point.
+     * @return The distance, or infinity if the point is outside the grid or the
+     *         target cannot be reached from it.
+     */
+    double distanceFrom(AreaSnapshot area, double lng, double lat) {
+        return gridFor(area).distanceFrom(lng, lat);
+    }
+
+    /**
+     * Get the grid for the given geometry, building it again if the central area or
+     * no-fly zones are not the ones it was built for.
+     */
+    private Grid gridFor(AreaSnapshot area) {
+        LngLat[] border = area.getCentralAreaBorder();
+        LngLat[][] zones = area.getNoFlyZones();
+        Grid current = grid;
+        if (current == null || current.centralAreaBorder != border || current.noFlyZones != zones) {
+            synchronized (this) {
+                current = grid;
+                if (current == null || current.centralAreaBorder != border || current.noFlyZones != zones) {
+                    current = new Grid(border, zones);
+                    grid = current;
+                    builds++;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Accessors
+    public LngLat getTarget() {
+        return target;
+    }
+
+    /**
+     * Accessor for the number of times the grid has been built.
+     *
+     * @return The number of builds.
+     */
+    public synchronized int getBuilds() {
+        return builds;
+    }
+
+    /**
+     * The waypoints of the cells, worked out for one central area and set of no-fly
+     * zones.
+     */
+    private class Grid {
+        private final LngLat[] centralAreaBorder;
+        private final LngLat[][] noFlyZones;
+
+        private final double minLng;
+        private final double minLat;
+        private final int columns;
+        private final int rows;
+        // Where the shortest path from the centre of each cell heads first: the index
+        // of a vertex, or VisibilityGraph.TARGET or VisibilityGraph.UNREACHABLE.
+        private final int[] waypoints;
+
+        // The vertices of the visibility graph and their distances to the target.
+        private final double[] vertexLngs;
+        private final double[] vertexLats;
+        private final double[] vertexDistances;
+
+        Grid(LngLat[] centralAreaBorder, LngLat[][] noFlyZones) {
+            this.centralAreaBorder = centralAreaBorder;
+            this.noFlyZones = noFlyZones;
+            NoFlyZoneIndex index = NoFlyZoneIndex.forZones(noFlyZones);
+            VisibilityGraph graph = VisibilityGraph.forZones(index.getZones());
+
+            int vertexCount = graph.getVertexCount();
+            vertexLngs = new double[vertexCount];
+            vertexLats = new double[vertexCount];
+            for (int v = 0; v < vertexCount; v++) {
+                vertexLngs[v] = graph.getLng(v);
+                vertexLats[v] = graph.getLat(v);
+            }
+            vertexDistances = graph.distancesTo(target).clone();
+
+            double minLng = target.getLng();
+            double minLat = target.getLat();
+            double maxLng = target.getLng();
+            double maxLat = target.getLat();
+            for (LngLat point : coveredPoints) {
+                minLng = Math.min(minLng, point.getLng());
+                minLat = Math.min(minLat, point.getLat());
+                maxLng = Math.max(maxLng, point.getLng());
+                maxLat = Math.max(maxLat, point.getLat());
+            }
+            if (centralAreaBorder != null) {
+                for (LngLat point : centralAreaBorder) {
+                    minLng = Math.min(minLng, point.getLng());
+                    minLat = Math.min(minLat, point.getLat());
+                    maxLng = Math.max(maxLng, point.getLng());
+                    maxLat = Math.max(maxLat, point.getLat());
+                }
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                minLng = Math.min(minLng, vertexLngs[v]);
+                minLat = Math.min(minLat, vertexLats[v]);
+                maxLng = Math.max(maxLng, vertexLngs[v]);
+                maxLat = Math.max(maxLat, vertexLats[v]);
+            }
+            this.minLng = minLng - MARGIN_CELLS * CELL_SIZE;
+            this.minLat = minLat - MARGIN_CELLS * CELL_SIZE;
+            columns = (int) Math.ceil((maxLng - minLng) / CELL_SIZE) + 2 * MARGIN_CELLS + 1;
+            rows = (int) Math.ceil((maxLat - minLat) / CELL_SIZE) + 2 * MARGIN_CELLS + 1;
+
+            waypoints = new int[columns * rows];
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    double lng = this.minLng + (c + 0.5) * CELL_SIZE;
+                    double lat = this.minLat + (r + 0.5) * CELL_SIZE;
+                    waypoints[r * columns + c] = index.inAnyZone(lng, lat) ? VisibilityGraph.UNREACHABLE
+                            : graph.nextWaypoint(lng, lat, target);
+                }
+            }
+        }
+
+        double distanceFrom(double lng, double lat) {
+            int c = (int) Math.floor((lng - minLng) / CELL_SIZE);
+            int r = (int) Math.floor((lat - minLat) / CELL_SIZE);
+            if (c < 0 || c >= columns || r < 0 || r >= rows) {
+                return Double.POSITIVE_INFINITY;
+            }
+            int waypoint = waypoints[r * columns + c];
+            if (waypoint == VisibilityGraph.TARGET) {
+                return LngLat.latticeDistance(lng, lat, target.getLng(), target.getLat());
+            }
+            if (waypoint == VisibilityGraph.UNREACHABLE) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return LngLat.latticeDistance(lng, lat, vertexLngs[waypoint], vertexLats[waypoint])
+                    + vertexDistances[waypoint];
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package RouteCalculation;
+
+/**
+ * A landmark (ALT) lower bound on the length of a route, to be used alongside the
+ * geometric heuristic.
+ * <p>
+ * A few landmarks are chosen, and for each of them the length of the shortest path
+ * around the no-fly zones to every cell of a grid is stored in a table. By the
+ * triangle inequality, the length of any route from a point to a target is at least
+ * the difference between their distances from a landmark. Once the tables are built
+ * this only needs a few table lookups, so the tables pay for themselves when they are
+ * reused for many legs.
+ * <p>
+ * The distance to a point is only known to within the size of its cell, so the
+ * bound is reduced by that much. Cells that an edge of a zone passes through are not
+ * used, as two points in such a cell can be far apart once the zone is gone around.
+ */
+public class LandmarkHeuristic {
+    // The size of the cells of the tables.
+    private static final double CELL_SIZE = LngLat.LENGTH_OF_MOVE;
+    // How far the tables reach past the landmarks, in cells.
+    private static final int MARGIN_CELLS = 20;
+
+    private static volatile LandmarkHeuristic cached;
+
+    private final LngLat[][] zones;
+    // The landmarks that were given come first, followed by the corners of the zones.
+    private final int givenLandmarkCount;
+    private final double[] landmarkLngs;
+    private final double[] landmarkLats;
+
+    private final double minLng;
+    private final double minLat;
+    private final int columns;
+    private final int rows;
+    // The distance from each landmark to the centre of each cell, or infinity if the
+    // cell is not used.
+    private final float[][] tables;
+
+    // How far a point can be from the centre of its cell.
+    private final double cellRadius;
+
+    /**
+     * Accessor for the landmark heuristic of the given zones and landmarks. The tables
+     * are built the first time they are needed, and reused for as long as the same zone
+     * array and landmark positions are passed in.
+     *
+     * @param zones     The no-fly zones, each an array of LngLat points.
+     * @param landmarks The landmarks to use as well as the corners of the zones.
+     * @return The landmark heuristic for the zones and landmarks.
+     */
+    public static LandmarkHeuristic forLandmarks(LngLat[][] zones, LngLat[] landmarks) {
+        LandmarkHeuristic heuristic = cached;
+        if (heuristic == null || !heuristic.isFor(zones, landmarks)) {
+            heuristic = new LandmarkHeuristic(zones, landmarks);
+            cached = heuristic;
+        }
+        return heuristic;
+    }
+
+    /**
+     * Build the tables for the given landmarks and the corners of the zones. The
+     * tables cover the area around the landmarks.
+     *
+     * @param zones     The no-fly zones, each an array of LngLat points.
+     * @param landmarks The landmarks to use as well as the corners of the zones, such
+     *                  as Appleton Tower and the restaurants.
+     */
+    public LandmarkHeuristic(LngLat[][] zones, LngLat[] landmarks) {
+        if (landmarks == null) {
+            throw new IllegalArgumentException("LandmarkHeuristic called with null landmarks.");
+        }
+        this.zones = zones;
+        NoFlyZoneIndex index = NoFlyZoneIndex.forZones(zones);
+        VisibilityGraph graph = VisibilityGraph.forZones(index.getZones());
+
+        givenLandmarkCount = landmarks.length;
+        int count = landmarks.length + graph.getVertexCount();
+        landmarkLngs = new double[count];
+        landmarkLats = new double[count];
+        for (int i = 0; i < landmarks.length; i++) {
+            landmarkLngs[i] = landmarks[i].getLng();
+            landmarkLats[i] = landmarks[i].getLat();
+        }
+        for (int v = 0; v < graph.getVertexCount(); v++) {
+            landmarkLngs[landmarks.length + v] = graph.getLng(v);
+            landmarkLats[landmarks.length + v] = graph.getLat(v);
+        }
+
+        double minLng = Double.POSITIVE_INFINITY;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minLng = Math.min(minLng, landmarkLngs[i]);
+            minLat = Math.min(minLat, landmarkLats[i]);
+            maxLng = Math.max(maxLng, landmarkLngs[i]);
+            maxLat = Math.max(maxLat, landmarkLats[i]);
+        }
+        if (count == 0) {
+            minLng = minLat = maxLng = maxLat = 0;
+        }
+        this.minLng = minLng - MARGIN_CELLS * CELL_SIZE;
+        this.minLat = minLat - MARGIN_CELLS * CELL_SIZE;
+        columns = (int) Math.ceil((maxLng - minLng) / CELL_SIZE) + 2 * MARGIN_CELLS + 1;
+        rows = (int) Math.ceil((maxLat - minLat) / CELL_SIZE) + 2 * MARGIN_CELLS + 1;
+        // Distances are stored as floats, so allow for the rounding as well.
+        cellRadius = CELL_SIZE * Math.sqrt(0.5) + 1e-7;
+
+        boolean[] usable = usableCells(index);
+        tables = new float[count][];
+        for (int l = 0; l < count; l++) {
+            tables[l] = buildTable(graph, usable, new LngLat(landmarkLngs[l], landmarkLats[l]));
+        }
+    }
+
+    /**
+     * Find the cells which no edge of a zone passes through and which are not inside a
+     * zone. An edge passing through a cell must cross one of its diagonals or have an
+     * end inside it.
+     */
+    private boolean[] usableCells(NoFlyZoneIndex index) {
+        boolean[] usable = new boolean[columns * rows];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                double cellMinLng = minLng + c * CELL_SIZE;
+                double cellMinLat = minLat + r * CELL_SIZE;
+                double cellMaxLng = cellMinLng + CELL_SIZE;
+                double cellMaxLat = cellMinLat + CELL_SIZE;
+                usable[r * columns + c] = index.firstZoneCrossed(cellMinLng, cellMinLat, cellMaxLng, cellMaxLat) < 0
+                        && index.firstZoneCrossed(cellMinLng, cellMaxLat, cellMaxLng, cellMinLat) < 0
+                        && !index.inAnyZone(cellMinLng + CELL_SIZE / 2, cellMinLat + CELL_SIZE / 2);
+            }
+        }
+        for (PreparedPolygon polygon : index.getPolygons()) {
+            for (int i = 0; i < polygon.getVertexCount(); i++) {
+                int c = (int) Math.floor((polygon.getLng(i) - minLng) / CELL_SIZE);
+                int r = (int) Math.floor((polygon.getLat(i) - minLat) / CELL_SIZE);
+                if (c >= 0 && c < columns && r >= 0 && r < rows) {
+                    usable[r * columns + c] = false;
+                }
+            }
+        }
+        return usable;
+    }
+
+    private float[] buildTable(VisibilityGraph graph, boolean[] usable, LngLat landmark) {
+        float[] table = new float[columns * rows];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                int cell = r * columns + c;
+                table[cell] = usable[cell]
+                        ? (float) graph.lowerBound(minLng + (c + 0.5) * CELL_SIZE, minLat + (r + 0.5) * CELL_SIZE,
+                                landmark)
+                        : Float.POSITIVE_INFINITY;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Checks if the tables were built for the given zones and landmarks.
+     *
+     * @param zones     The no-fly zones.
+     * @param landmarks The landmarks other than the corners of the zones.
+     * @return True if the tables can be used for the zones and landmarks.
+     */
+    public boolean isFor(LngLat[][] zones, LngLat[] landmarks) {
+        if (zones != this.zones || landmarks == null || landmarks.length != givenLandmarkCount) {
+            return false;
+        }
+        for (int i = 0; i < landmarks.length; i++) {
+            if (landmarks[i].getLng() != landmarkLngs[i] || landmarks[i].getLat() != landmarkLats[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculate a lower bound on the length of a route from the point to the target
+     * from the landmark tables.
+     *
+     * @param lng    The longitude of the point.
+     * @param lat    The latitude of the point.
+     * @param target The target of the route.
+     * @return The largest difference between the distances of the point and target
+     *         from a landmark, less the size of the cells. 0 if the point or target is
+     *         outside the tables or in a cell that is not used.
+     */
+    public double lowerBound(double lng, double lat, LngLat target) {
+        int cell = cellOf(lng, lat);
+        int targetCell = cellOf(target.getLng(), target.getLat());
+        if (cell < 0 || targetCell < 0) {
+            return 0;
+        }
+        double bound = 0;
+        for (float[] table : tables) {
+            double difference = Math.abs(table[cell] - table[targetCell]);
+            if (difference != Double.POSITIVE_INFINITY && !Double.isNaN(difference)) {
+                bound = Math.max(bound, difference);
+            }
+        }
+        return Math.max(0, bound - 2 * cellRadius);
+    }
+
+    private int cellOf(double lng, double lat) {
+        int c = (int) Math.floor((lng - minLng) / CELL_SIZE);
+        int r = (int) Math.floor((lat - minLat) / CELL_SIZE);
+        if (c < 0 || c >= columns || r < 0 || r >= rows) {
+            return -1;
+        }
+        return r * columns + c;
+    }
+
+    /**
+     * Accessor for the number of landmarks, including the corners of the zones.
+     *
+     * @return The number of landmarks.
+     */
+    public int getLandmarkCount() {
+        return tables.length;
+    }
+}
@@ -0,0 +1,265 @@
+package RouteCalculation;
+
+/**
+ * Class to represent a position the drone reaches by making moves from an origin.
+ * <p>
+ * Each of the 16 compass directions is a power of ζ, the 16th root of unity, scaled by
+ * the length of a move. Since ζ^8 = -1, every position reachable from the origin can be
+ * written exactly as c0 + c1ζ + ... + c7ζ^7 moves, where the coefficients are integers.
+ * (Two integer coordinates are not enough, as the 22.5 degree directions are not
+ * multiples of each other.) Storing the coefficients instead of accumulating floating
+ * point coordinates means that positions never drift, can be compared and hashed exactly,
+ * and the same moves from the same origin always give the same position.
+ * <p>
+ * The coefficients are packed into two longs, four 16-bit lanes each, so a position can
+ * be up to 32767 moves from the origin along any one direction.
+ */
+public class LatticePoint {
+    private static final int LANE_BITS = 16;
+    private static final long LANE_BIAS = 1L << (LANE_BITS - 1);
+    private static final long ZERO = LANE_BIAS | LANE_BIAS << 16 | LANE_BIAS << 32 | LANE_BIAS << 48;
+
+    // The longitude and latitude displacement of one move along each of ζ^0 ... ζ^7.
+    private static final double[] LNG_OF_MOVE = new double[8];
+    private static final double[] LAT_OF_MOVE = new double[8];
+
+    // The change to the packed coefficients made by a move, indexed by direction ordinal.
+    private static final long[] LOW_STEP = new long[CompassDirection.values().length];
+    private static final long[] HIGH_STEP = new long[CompassDirection.values().length];
+
+    static {
+        for (int k = 0; k < 8; k++) {
+            double radian = Math.toRadians(k * 22.5);
+            LNG_OF_MOVE[k] = LngLat.LENGTH_OF_MOVE * Math.cos(radian);
+            LAT_OF_MOVE[k] = LngLat.LENGTH_OF_MOVE * Math.sin(radian);
+        }
+        // E is ζ^0, ENE is ζ^1 and so on, with the directions from W onwards being the
+        // negations of those from E to WNW. Hovering does not change the coefficients.
+        for (CompassDirection direction : CompassDirection.valuesNoHover()) {
+            int power = direction.ordinal() - CompassDirection.E.ordinal();
+            long step = power < 8 ? 1 : -1;
+            int k = power % 8;
+            if (k < 4) {
+                LOW_STEP[direction.ordinal()] = step << (LANE_BITS * k);
+            } else {
+                HIGH_STEP[direction.ordinal()] = step << (LANE_BITS * (k - 4));
+            }
+        }
+    }
+
+    private final LngLat origin;
+    private final long low; // Coefficients of ζ^0 to ζ^3.
+    private final long high; // Coefficients of ζ^4 to ζ^7.
+    private final double lng;
+    private final double lat;
+
+    private LatticePoint(LngLat origin, long low, long high) {
+        this.origin = origin;
+        this.low = low;
+        this.high = high;
+        this.lng = lngOf(origin, low, high);
+        this.lat = latOf(origin, low, high);
+    }
+
+    /**
+     * Create the position of the origin itself, from which all other positions in the same
+     * frame are reached.
+     *
+     * @param origin The LngLat point at the origin.
+     * @return The lattice point with all coefficients zero.
+     */
+    public static LatticePoint origin(LngLat origin) {
+        if (origin == null) {
+            throw new IllegalArgumentException("Origin cannot be null.");
+        }
+        return new LatticePoint(origin, ZERO, ZERO);
+    }
+
+    /**
+     * Calculates the position after making one move in the given direction.
+     *
+     * @param direction The direction the drone is moving in.
+     * @return The new position. The same position is returned if the drone hovers.
+     */
+    public LatticePoint next(CompassDirection direction) {
+        if (direction == null || direction == CompassDirection.HOVER) {
+            return this;
+        }
+        return new LatticePoint(origin, low + LOW_STEP[direction.ordinal()], high + HIGH_STEP[direction.ordinal()]);
+    }
+
+    /**
+     * Accessor for the integer coefficient of ζ^k. Mainly used for testing.
+     *
+     * @param k The power of ζ, between 0 and 7.
+     * @return The number of moves made along ζ^k, less those along -ζ^k.
+     */
+    public int getCoefficient(int k) {
+        if (k < 0 || k > 7) {
+            throw new IllegalArgumentException("Coefficient index must be between 0 and 7.");
+        }
+        return coefficient(low, high, k);
+    }
+
+    private static int coefficient(long low, long high, int k) {
+        long lanes = k < 4 ? low : high;
+        return (int) (((lanes >>> (LANE_BITS * (k % 4))) & 0xFFFF) - LANE_BIAS);
+    }
+
+    // The following package-private helpers let the search arena work directly with the
+    // packed coefficients, without creating a LatticePoint for every node.
+
+    static LatticePoint of(LngLat origin, long low, long high) {
+        return new LatticePoint(origin, low, high);
+    }
+
+    static long lowStep(CompassDirection direction) {
+        return LOW_STEP[direction.ordinal()];
+    }
+
+    static long highStep(CompassDirection direction) {
+        return HIGH_STEP[direction.ordinal()];
+    }
+
+    static double lngOf(LngLat origin, long low, long high) {
+        double lng = origin.getLng();
+        for (int k = 0; k < 8; k++) {
+            lng += coefficient(low, high, k) * LNG_OF_MOVE[k];
+        }
+        return lng;
+    }
+
+    static double latOf(LngLat origin, long low, long high) {
+        double lat = origin.getLat();
+        for (int k = 0; k < 8; k++) {
+            lat += coefficient(low, high, k) * LAT_OF_MOVE[k];
+        }
+        return lat;
+    }
+
+    long getLow() {
+        return low;
+    }
+
+    long getHigh() {
+        return high;
+    }
+
+    // Getters
+    public double getLng() {
+        return lng;
+    }
+
+    public double getLat() {
+        return lat;
+    }
+
+    public LngLat getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Checks if this position is within the distance tolerance of the given point. Uses the
+     * same definition of "close" as LngLat.closeTo.
+     *
+     * @param source The LngLat point we are measuring to.
+     * @return True if the distance is less than 0.00015, false otherwise.
+     */
+    public boolean closeTo(LngLat source) {
+        return LngLat.distance(lng, lat, source.getLng(), source.getLat()) < LngLat.DISTANCE_TOLERANCE;
+    }
+
+    /**
+     * Converts this position to a LngLat point. This should only be needed at the edges of
+     * route calculation, such as for output.
+     *
+     * @return The LngLat point at this position.
+     */
+    public LngLat toLngLat() {
+        return new LngLat(lng, lat);
+    }
+
+    /**
+     * Uses the RouteCalculator to calculate the shortest route from this position to the
+     * destination. The positions along the route are in the same frame as this one.
+     *
+     * @param destination The LngLat point we are trying to reach.
+     * @param nextTarget  The point the drone will go to after the destination, or null.
+     * @return An array of CompassDirections representing the shortest path from this
+     *         position to the destination.
+     */
+    public CompassDirection[] routeTo(LngLat destination, LngLat nextTarget) {
+        return RouteCalculator.calculateRouteFrom(this, destination, nextTarget);
+    }
+
+    /**
+     * Uses the RouteCalculator to calculate the shortest route from this position to the
+     * destination, with the given options.
+     *
+     * @param destination The LngLat point we are trying to reach.
+     * @param nextTarget  The point the drone will go to after the destination, or null.
+     * @param options     The options controlling how the search is carried out.
+     * @return An array of CompassDirections representing the shortest path from this
+     *         position to the destination.
+     */
+    public CompassDirection[] routeTo(LngLat destination, LngLat nextTarget, RouteOptions options) {
+        return RouteCalculator.calculateRouteFrom(this, destination, nextTarget, options);
+    }
+
+    /**
+     * Uses the RouteCalculator to calculate the shortest route from this position to the
+     * destination which fits in the move budget, with the given options.
+     *
+     * @param destination    The LngLat point we are trying to reach.
+     * @param nextTarget     The point the drone will go to after the destination, or null.
+     * @param options        The options controlling how the search is carried out.
+     * @param maxRouteLength The most directions the route may have, including the hover.
+     * @return An array of CompassDirections representing the shortest path from this
+     *         position to the destination, or null if it does not fit in the budget.
+     */
+    public CompassDirection[] routeTo(LngLat destination, LngLat nextTarget, RouteOptions options,
+            int maxRouteLength) {
+        return RouteCalculator.calculateRouteFrom(this, destination, nextTarget, options, maxRouteLength);
+    }
+
+    /**
+     * Uses the RouteCalculator to plan the shortest route from this position to the
+     * destination which fits in the move budget, with the given options.
+     *
+     * @param destination    The LngLat point we are trying to reach.
+     * @param nextTarget     The point the drone will go to after the destination, or null.
+     * @param options        The options controlling how the search is carried out.
+     * @param maxRouteLength The most directions the route may have, including the hover.
+     * @return The route if one was found, otherwise whether there is no route that fits
+     *         in the budget or the search ran out of its budget.
+     */
+    public RouteResult planRouteTo(LngLat destination, LngLat nextTarget, RouteOptions options, int maxRouteLength) {
+        return RouteCalculator.planRoute(this, destination, nextTarget, options, maxRouteLength);
+    }
+
+    /**
+     * Two lattice points are equal if they have the same origin and the same coefficients,
+     * which means they are exactly the same position.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof LatticePoint)) {
+            return false;
+        }
+        LatticePoint point = (LatticePoint) other;
+        return low == point.low && high == point.high
+                && Double.compare(origin.getLng(), point.origin.getLng()) == 0
+                && Double.compare(origin.getLat(), point.origin.getLat()) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = low * 31 + high;
+        hash = hash * 31 + Double.doubleToLongBits(origin.getLng());
+        hash = hash * 31 + Double.doubleToLongBits(origin.getLat());
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
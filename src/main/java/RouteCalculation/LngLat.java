@@ -2,8 +2,6 @@ package RouteCalculation;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import java.awt.geom.Line2D;
-
 /**
  * Class to represent a (Lng, Lat) coordinate pair.
  */
@@ -14,6 +12,14 @@ public class LngLat {
     final static double DISTANCE_TOLERANCE = 0.00015;
     final static double LENGTH_OF_MOVE = 0.00015;
 
+    // The angle between neighbouring compass directions, and values used to find the
+    // shortest path made of moves in those directions.
+    private static final double ANGLE_BETWEEN_DIRECTIONS = Math.toRadians(22.5);
+    private static final double TAN_BETWEEN_DIRECTIONS = Math.tan(ANGLE_BETWEEN_DIRECTIONS);
+    private static final double TAN_HALF_BETWEEN_DIRECTIONS = Math.tan(ANGLE_BETWEEN_DIRECTIONS / 2);
+    private static final double SIN_BETWEEN_DIRECTIONS = Math.sin(ANGLE_BETWEEN_DIRECTIONS);
+    private static final double COS_BETWEEN_DIRECTIONS = Math.cos(ANGLE_BETWEEN_DIRECTIONS);
+
     /**
      * Constructor to create a LngLat object.
      *
@@ -52,6 +58,19 @@ public class LngLat {
      * @return True if the point is inside the zone, false otherwise.
      */
     public boolean inZone(LngLat[] zoneCoordinates) {
+        return inZone(this.lng, this.lat, zoneCoordinates);
+    }
+
+    /**
+     * Uses the ray-casting algorithm to determine if the coordinate pair is inside
+     * the zone. See inZone(LngLat[]).
+     *
+     * @param lng             The longitude of the point.
+     * @param lat             The latitude of the point.
+     * @param zoneCoordinates The border of the zone.
+     * @return True if the point is inside the zone, false otherwise.
+     */
+    public static boolean inZone(double lng, double lat, LngLat[] zoneCoordinates) {
         if (zoneCoordinates == null || zoneCoordinates.length < 3) {
             System.err.println("inZone called with invalid zone coordinates.");
             return false;
@@ -62,13 +81,13 @@ public class LngLat {
             LngLat p1 = zoneCoordinates[i];
             LngLat p2 = zoneCoordinates[(i + 1) % zoneCoordinates.length];
             double gradient = (p2.getLng() - p1.getLng()) / (p2.getLat() - p1.getLat());
-            double latDiff = this.lat - p1.getLat();
+            double latDiff = lat - p1.getLat();
             // Determine if the line intersects with the border.
             // If it's above the lower point and below the upper point and lies to the left
             // of the line between
             // border points then it will intersect.
-            if (this.lat > Math.min(p1.getLat(), p2.getLat()) && this.lat < Math.max(p1.getLat(), p2.getLat())
-                    && this.lng < (latDiff * gradient) + p1.getLng()) {
+            if (lat > Math.min(p1.getLat(), p2.getLat()) && lat < Math.max(p1.getLat(), p2.getLat())
+                    && lng < (latDiff * gradient) + p1.getLng()) {
                 inside = !inside;
             }
         }
@@ -83,7 +102,18 @@ public class LngLat {
      * @return True if the point is inside the central area, false otherwise.
      */
     public boolean inCentralArea() {
-        return inZone(AreaSingleton.getInstance().getCentralAreaBorder());
+        return inCentralArea(this.lng, this.lat);
+    }
+
+    /**
+     * Checks if the coordinate pair is in the central area.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return True if the point is inside the central area, false otherwise.
+     */
+    public static boolean inCentralArea(double lng, double lat) {
+        return AreaSingleton.currentSnapshot().inCentralArea(lng, lat);
     }
 
     /**
@@ -99,29 +129,22 @@ public class LngLat {
             System.err.println("inNoFlyZone called with null previousPoint.");
             return false;
         }
-        Line2D.Double l = new Line2D.Double(this.lng, this.lat, previousPoint.getLng(), previousPoint.getLat());
-        for (LngLat[] noFlyZone : AreaSingleton.getInstance().getNoFlyZones()) {
-
-            // If the current point is in the no-fly zone, return true.
-            if (inZone(noFlyZone)) {
-                return true;
-            }
+        return inNoFlyZone(this.lng, this.lat, previousPoint.getLng(), previousPoint.getLat());
+    }
 
-            // If the line between the current point and the previous point intersects with
-            // the no-fly zone, return true.
-            for (int i = 0; i < noFlyZone.length; i++) {
-                LngLat p1 = noFlyZone[i];
-                LngLat p2 = noFlyZone[(i + 1) % noFlyZone.length];
-
-                // If the line between the two points intersects with the line between the
-                // border points, then the line
-                // enters the no-fly zone.
-                if (l.intersectsLine(p1.getLng(), p1.getLat(), p2.getLng(), p2.getLat())) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    /**
+     * Checks if the move from the previous coordinate pair to the current coordinate
+     * pair is in a no-fly zone. See inNoFlyZone(LngLat).
+     *
+     * @param lng         The longitude of the current point.
+     * @param lat         The latitude of the current point.
+     * @param previousLng The longitude of the previous point.
+     * @param previousLat The latitude of the previous point.
+     * @return True if the move ends in or crosses a no-fly zone, false otherwise.
+     */
+    public static boolean inNoFlyZone(double lng, double lat, double previousLng, double previousLat) {
+        // Only the zones and edges near the move are checked, using the index over the zones.
+        return AreaSingleton.currentSnapshot().inNoFlyZone(lng, lat, previousLng, previousLat);
     }
 
     /**
@@ -136,8 +159,57 @@ public class LngLat {
             System.err.println("distanceTo called with null source.");
             return Double.POSITIVE_INFINITY;
         }
-        // Calculates the Pythagorean distance between two points.
-        return Math.sqrt(Math.pow(source.getLat() - this.lat, 2) + Math.pow(source.getLng() - this.lng, 2));
+        return distance(this.lng, this.lat, source.getLng(), source.getLat());
+    }
+
+    /**
+     * Calculates the Pythagorean distance between two coordinate pairs.
+     *
+     * @param lng       The longitude of the first point.
+     * @param lat       The latitude of the first point.
+     * @param sourceLng The longitude of the point we are measuring to.
+     * @param sourceLat The latitude of the point we are measuring to.
+     * @return the pythagorean distance between the two points.
+     */
+    public static double distance(double lng, double lat, double sourceLng, double sourceLat) {
+        return Math.sqrt(Math.pow(sourceLat - lat, 2) + Math.pow(sourceLng - lng, 2));
+    }
+
+    /**
+     * Calculates the length of the shortest path between two coordinate pairs which
+     * only moves in the 16 compass directions, with no obstacles. This is like the
+     * octile distance on a grid, but for 16 directions.
+     * <p>
+     * The shortest such path uses the two directions either side of the straight line,
+     * so its length is found in closed form. It is never shorter than the Pythagorean
+     * distance and at most 2% longer, and the drone can only fly along such paths, so
+     * it is a tighter lower bound on the length of a route.
+     *
+     * @param lng       The longitude of the first point.
+     * @param lat       The latitude of the first point.
+     * @param sourceLng The longitude of the point we are measuring to.
+     * @param sourceLat The latitude of the point we are measuring to.
+     * @return the length of the shortest path between the two points using only the
+     *         compass directions.
+     */
+    public static double latticeDistance(double lng, double lat, double sourceLng, double sourceLat) {
+        // The directions are symmetric about both axes and the diagonals, so only
+        // displacements between east and north-east need to be handled.
+        double x = Math.abs(sourceLng - lng);
+        double y = Math.abs(sourceLat - lat);
+        if (y > x) {
+            double swap = x;
+            x = y;
+            y = swap;
+        }
+        if (y <= x * TAN_BETWEEN_DIRECTIONS) {
+            // Between E and ENE.
+            return x + y * TAN_HALF_BETWEEN_DIRECTIONS;
+        }
+        // Between ENE and NE.
+        double alongEastNorthEast = Math.sqrt(0.5) * (x - y) / SIN_BETWEEN_DIRECTIONS;
+        double alongNorthEast = (y * COS_BETWEEN_DIRECTIONS - x * SIN_BETWEEN_DIRECTIONS) / SIN_BETWEEN_DIRECTIONS;
+        return alongNorthEast + alongEastNorthEast;
     }
 
     /**
@@ -186,8 +258,23 @@ public class LngLat {
      */
     public CompassDirection[] routeTo(LngLat destination, LngLat nextTarget) {
         // Calculate the route to the destination.
-        return RouteCalculator.calculateRoute(this, destination, nextTarget);
+        return RouteCalculator.calculateRouteFrom(LatticePoint.origin(this), destination, nextTarget);
+
+    }
 
+    /**
+     * Uses the RouteCalculator to calculate the route from this point to the
+     * destination, with the given options, such as a ClusterHierarchy to plan long
+     * routes with.
+     *
+     * @param destination The LngLat point we are trying to reach.
+     * @param nextTarget  The point the drone heads for after the destination, or null.
+     * @param options     The options controlling how the route is found.
+     * @return An array of CompassDirections representing the path from this point to
+     *         the destination.
+     */
+    public CompassDirection[] routeTo(LngLat destination, LngLat nextTarget, RouteOptions options) {
+        return RouteCalculator.calculateRouteFrom(LatticePoint.origin(this), destination, nextTarget, options);
     }
 
     /**
@@ -0,0 +1,283 @@
+package RouteCalculation;
+
+/**
+ * A cache of which moves are legal from each lattice position, shared by all the
+ * route searches made in one day.
+ * <p>
+ * A day of deliveries plans many legs through the same streets, and every leg checks
+ * the same moves against the no-fly zones and the central area. Since the positions
+ * of a day are exact lattice positions in the frame of one origin, a move is the same
+ * move every time it is made, and the checks only need to be done once.
+ * <p>
+ * For each position three 16-bit masks are kept, with one bit per direction: which
+ * directions have been checked, which of them avoid the no-fly zones, and which of
+ * them leave the central area. The masks are filled in lazily as moves are checked.
+ * The positions are split over several segments, each with its own lock, so the
+ * cache can be shared by searches on different threads. Each segment also keeps the
+ * geometry its masks were worked out for, and checks it under the same lock as it
+ * stores a mask, so a search still in the old geometry never stores its masks after
+ * the cache has moved on to a new one.
+ */
+public class MoveLegalityCache {
+    private static final int SEGMENT_COUNT = 16;
+
+    // Layout of the bits in each entry.
+    private static final int CLEAR_SHIFT = 16;
+    private static final int LEAVES_CENTRAL_AREA_SHIFT = 32;
+    private static final long OCCUPIED = 1L << 63;
+
+    private final LngLat origin;
+    private final Segment[] segments;
+
+    // The geometry that the masks were worked out for.
+    private AreaSnapshot area;
+
+    /**
+     * Create an empty cache for the positions in the frame of the given origin.
+     *
+     * @param origin The origin of the lattice positions which the cache is used for.
+     */
+    public MoveLegalityCache(LngLat origin) {
+        if (origin == null) {
+            throw new IllegalArgumentException("MoveLegalityCache called with null origin.");
+        }
+        this.origin = origin;
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Checks if the cache can be used for positions in the frame of the given origin.
+     *
+     * @param origin The origin of the positions.
+     * @return True if the positions are in the same frame as the cache.
+     */
+    public boolean isFor(LngLat origin) {
+        return origin != null && origin.getLng() == this.origin.getLng() && origin.getLat() == this.origin.getLat();
+    }
+
+    /**
+     * Empty the cache if the central area or no-fly zones have changed since the
+     * masks were worked out. Called at the start of each search rather than for each
+     * move.
+     */
+    public void checkGeometry() {
+        checkGeometry(AreaSingleton.currentSnapshot());
+    }
+
+    /**
+     * Empty the cache if its masks were worked out for a different geometry from the
+     * one a search is made in.
+     *
+     * @param area The geometry the search is made in.
+     */
+    public synchronized void checkGeometry(AreaSnapshot area) {
+        if (!area.sameGeometry(this.area)) {
+            for (Segment segment : segments) {
+                segment.reset(area);
+            }
+            this.area = area;
+        }
+    }
+
+    /**
+     * Checks if the drone is allowed to make a move, using the cached masks if the
+     * move has been checked before.
+     *
+     * @param area             The geometry the search is made in.
+     * @param fromLow          The low coefficients of the position moved from.
+     * @param fromHigh         The high coefficients of the position moved from.
+     * @param fromLng          The longitude of the position moved from.
+     * @param fromLat          The latitude of the position moved from.
+     * @param direction        The direction of the move.
+     * @param toLng            The longitude of the position moved to.
+     * @param toLat            The latitude of the position moved to.
+     * @param endInCentralArea Whether the end of the route is in the central area.
+     * @return False if the move goes through a no-fly zone, or leaves the central
+     *         area when the end is inside it. True otherwise.
+     */
+    boolean isLegalMove(AreaSnapshot area, long fromLow, long fromHigh, double fromLng, double fromLat,
+            CompassDirection direction, double toLng, double toLat, boolean endInCentralArea) {
+        long bit = 1L << (direction.ordinal() - 1);
+        long mask = segments[segmentOf(fromLow, fromHigh)].masks(area, fromLow, fromHigh, bit, fromLng, fromLat,
+                toLng, toLat);
+        return (mask & bit << CLEAR_SHIFT) != 0
+                && !(endInCentralArea && (mask & bit << LEAVES_CENTRAL_AREA_SHIFT) != 0);
+    }
+
+    /**
+     * Remove all the positions from the cache. The geometry they were worked out for
+     * is kept.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private static int segmentOf(long low, long high) {
+        long hash = (low * 0x9E3779B97F4A7C15L) ^ (high * 0xC2B2AE3D27D4EB4FL);
+        return (int) (hash >>> 60) & (SEGMENT_COUNT - 1);
+    }
+
+    // Accessors
+    public LngLat getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Accessor for the number of positions with at least one move checked.
+     *
+     * @return The number of positions in the cache.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Accessor for the number of moves that were answered from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHits() {
+        long hits = 0;
+        for (Segment segment : segments) {
+            hits += segment.hits();
+        }
+        return hits;
+    }
+
+    /**
+     * Accessor for the number of moves that had to be checked against the geometry.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMisses() {
+        long misses = 0;
+        for (Segment segment : segments) {
+            misses += segment.misses();
+        }
+        return misses;
+    }
+
+    /**
+     * An open addressing hash table from a lattice position to its masks. The key and
+     * masks of each slot are stored next to each other, so a lookup usually only
+     * touches one cache line.
+     */
+    private static class Segment {
+        private static final int INITIAL_CAPACITY = 1 << 10;
+        // The low coefficients, high coefficients and masks of each slot.
+        private static final int STRIDE = 3;
+
+        private long[] table = new long[INITIAL_CAPACITY * STRIDE];
+        private int capacity = INITIAL_CAPACITY;
+        private int size;
+        private long hits;
+        private long misses;
+        // The geometry that the masks in the table were worked out for.
+        private AreaSnapshot area;
+
+        /**
+         * Get the masks for a position, first checking the move against the geometry
+         * if it has not been checked before. If the segment holds masks for a
+         * different geometry, because another search has moved the cache on, the move
+         * is checked without the table and nothing is stored.
+         */
+        synchronized long masks(AreaSnapshot area, long low, long high, long bit, double fromLng, double fromLat,
+                double toLng, double toLat) {
+            if (area != this.area && !area.sameGeometry(this.area)) {
+                return checkMove(area, bit, fromLng, fromLat, toLng, toLat);
+            }
+            int index = find(low, high);
+            long entry = table[index + 2];
+            if ((entry & bit) != 0) {
+                hits++;
+                return entry;
+            }
+            misses++;
+            entry |= checkMove(area, bit, fromLng, fromLat, toLng, toLat);
+            if (table[index + 2] == 0) {
+                table[index] = low;
+                table[index + 1] = high;
+                size++;
+            }
+            table[index + 2] = entry;
+            if (size * 2 > capacity) {
+                grow();
+            }
+            return entry;
+        }
+
+        /**
+         * Check a move against the geometry, giving the bits of its masks.
+         */
+        private static long checkMove(AreaSnapshot area, long bit, double fromLng, double fromLat, double toLng,
+                double toLat) {
+            boolean clear = !area.inNoFlyZone(toLng, toLat, fromLng, fromLat);
+            boolean leavesCentralArea = area.inCentralArea(fromLng, fromLat) && !area.inCentralArea(toLng, toLat);
+            return OCCUPIED | bit | (clear ? bit << CLEAR_SHIFT : 0)
+                    | (leavesCentralArea ? bit << LEAVES_CENTRAL_AREA_SHIFT : 0);
+        }
+
+        synchronized void reset(AreaSnapshot area) {
+            clear();
+            this.area = area;
+        }
+
+        synchronized void clear() {
+            table = new long[INITIAL_CAPACITY * STRIDE];
+            capacity = INITIAL_CAPACITY;
+            size = 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long hits() {
+            return hits;
+        }
+
+        synchronized long misses() {
+            return misses;
+        }
+
+        /**
+         * Find the index in the table of the slot holding the position, or of the empty
+         * slot where it should go.
+         */
+        private int find(long low, long high) {
+            int mask = capacity - 1;
+            long hash = (low * 0x9E3779B97F4A7C15L) ^ (high * 0xC2B2AE3D27D4EB4FL);
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while (true) {
+                int index = slot * STRIDE;
+                if (table[index + 2] == 0 || (table[index] == low && table[index + 1] == high)) {
+                    return index;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void grow() {
+            long[] oldTable = table;
+            table = new long[oldTable.length * 2];
+            capacity *= 2;
+            for (int i = 0; i < oldTable.length; i += STRIDE) {
+                if (oldTable[i + 2] != 0) {
+                    int index = find(oldTable[i], oldTable[i + 1]);
+                    table[index] = oldTable[i];
+                    table[index + 1] = oldTable[i + 1];
+                    table[index + 2] = oldTable[i + 2];
+                }
+            }
+        }
+    }
+}
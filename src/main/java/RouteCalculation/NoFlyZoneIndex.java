@@ -0,0 +1,381 @@
+package RouteCalculation;
+
+import java.awt.geom.Line2D;
+import java.util.Arrays;
+
+/**
+ * A spatial index over the edges of all the no-fly zones.
+ * <p>
+ * The bounding box of the zones is split into a uniform grid of square cells, and
+ * each edge is stored in every cell its bounding box overlaps. A segment query walks
+ * only the cells the segment passes through, so checking a move only looks at the
+ * edges near the move. The cost of a query does not grow as more zones are added
+ * elsewhere or as zones get larger.
+ * <p>
+ * The index is immutable, so it can be shared between threads. The index for the
+ * current zones is built when AreaSingleton loads them, and is cached against the
+ * zone array so it is only rebuilt if the zones change.
+ */
+public class NoFlyZoneIndex {
+    // The maximum number of cells along each side of the grid.
+    private static final int MAX_CELLS_PER_SIDE = 512;
+    // Edges are stored in cells slightly beyond their bounding box so that a crossing
+    // exactly on a cell boundary is found from either side.
+    private static final double CELL_EPSILON = 1e-9;
+
+    private static volatile NoFlyZoneIndex cached;
+
+    private final LngLat[][] zones;
+
+    // The edges, with their end points and the zone they belong to.
+    private final double[] x1;
+    private final double[] y1;
+    private final double[] x2;
+    private final double[] y2;
+    private final int[] edgeZone;
+    // The first zone with an edge of zero length, or MAX_VALUE if there are none.
+    private final int firstZoneWithPointEdge;
+
+    // Each zone prepared for point-in-polygon tests.
+    private final PreparedPolygon[] polygons;
+
+    // The grid, with the edges and zones in each cell stored in compressed rows.
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellEdgeStart;
+    private final int[] cellEdges;
+    private final int[] cellZoneStart;
+    private final int[] cellZones;
+
+    /**
+     * Accessor for the index of the given zones. The index is built the first time
+     * it is needed for a zone array and reused for as long as the same array is
+     * passed in.
+     *
+     * @param zones The no-fly zones, each an array of LngLat points.
+     * @return The index over the edges of the zones.
+     */
+    public static NoFlyZoneIndex forZones(LngLat[][] zones) {
+        NoFlyZoneIndex index = cached;
+        if (index == null || index.zones != zones) {
+            index = new NoFlyZoneIndex(zones);
+            cached = index;
+        }
+        return index;
+    }
+
+    /**
+     * Build the index over the edges of the given zones.
+     *
+     * @param zones The no-fly zones, each an array of LngLat points.
+     */
+    public NoFlyZoneIndex(LngLat[][] zones) {
+        this.zones = zones;
+        LngLat[][] zoneArray = zones == null ? new LngLat[0][] : zones;
+
+        // Collect the edges and the bounding boxes.
+        int edgeCount = 0;
+        for (LngLat[] zone : zoneArray) {
+            edgeCount += zone.length;
+        }
+        x1 = new double[edgeCount];
+        y1 = new double[edgeCount];
+        x2 = new double[edgeCount];
+        y2 = new double[edgeCount];
+        edgeZone = new int[edgeCount];
+        polygons = new PreparedPolygon[zoneArray.length];
+
+        int firstZoneWithPointEdge = Integer.MAX_VALUE;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int edge = 0;
+        for (int z = 0; z < zoneArray.length; z++) {
+            LngLat[] zone = zoneArray[z];
+            polygons[z] = new PreparedPolygon(zone);
+            for (int i = 0; i < zone.length; i++) {
+                LngLat p1 = zone[i];
+                LngLat p2 = zone[(i + 1) % zone.length];
+                x1[edge] = p1.getLng();
+                y1[edge] = p1.getLat();
+                x2[edge] = p2.getLng();
+                y2[edge] = p2.getLat();
+                edgeZone[edge] = z;
+                edge++;
+                if (p1.getLng() == p2.getLng() && p1.getLat() == p2.getLat()) {
+                    firstZoneWithPointEdge = Math.min(firstZoneWithPointEdge, z);
+                }
+            }
+            minX = Math.min(minX, polygons[z].getMinLng());
+            minY = Math.min(minY, polygons[z].getMinLat());
+            maxX = Math.max(maxX, polygons[z].getMaxLng());
+            maxY = Math.max(maxY, polygons[z].getMaxLat());
+        }
+
+        this.firstZoneWithPointEdge = firstZoneWithPointEdge;
+        if (edgeCount == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+
+        // Cells a couple of moves wide, unless that would make the grid too large.
+        double extent = Math.max(maxX - minX, maxY - minY);
+        this.cellSize = Math.max(2 * LngLat.LENGTH_OF_MOVE, extent / MAX_CELLS_PER_SIDE);
+        this.columns = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize) + 1);
+        this.rows = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize) + 1);
+
+        // Count then fill the edges in each cell.
+        int[] edgeCounts = new int[columns * rows + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            forEachCellOfBox(Math.min(x1[e], x2[e]), Math.min(y1[e], y2[e]), Math.max(x1[e], x2[e]),
+                    Math.max(y1[e], y2[e]), edgeCounts, null, e);
+        }
+        cellEdgeStart = prefixSums(edgeCounts);
+        cellEdges = new int[cellEdgeStart[columns * rows]];
+        int[] edgeFill = Arrays.copyOf(cellEdgeStart, cellEdgeStart.length);
+        for (int e = 0; e < edgeCount; e++) {
+            forEachCellOfBox(Math.min(x1[e], x2[e]), Math.min(y1[e], y2[e]), Math.max(x1[e], x2[e]),
+                    Math.max(y1[e], y2[e]), edgeFill, cellEdges, e);
+        }
+
+        // Count then fill the zones whose bounding box overlaps each cell.
+        int[] zoneCounts = new int[columns * rows + 1];
+        for (int z = 0; z < zoneArray.length; z++) {
+            if (zoneArray[z].length > 0) {
+                forEachCellOfBox(polygons[z].getMinLng(), polygons[z].getMinLat(), polygons[z].getMaxLng(),
+                        polygons[z].getMaxLat(), zoneCounts, null, z);
+            }
+        }
+        cellZoneStart = prefixSums(zoneCounts);
+        cellZones = new int[cellZoneStart[columns * rows]];
+        int[] zoneFill = Arrays.copyOf(cellZoneStart, cellZoneStart.length);
+        for (int z = 0; z < zoneArray.length; z++) {
+            if (zoneArray[z].length > 0) {
+                forEachCellOfBox(polygons[z].getMinLng(), polygons[z].getMinLat(), polygons[z].getMaxLng(),
+                        polygons[z].getMaxLat(), zoneFill, cellZones, z);
+            }
+        }
+    }
+
+    /**
+     * For every cell overlapping the box, either count the item (if items is null)
+     * or store it at the next free place for that cell.
+     */
+    private void forEachCellOfBox(double boxMinX, double boxMinY, double boxMaxX, double boxMaxY, int[] counts,
+            int[] items, int item) {
+        int firstColumn = column(boxMinX - CELL_EPSILON);
+        int lastColumn = column(boxMaxX + CELL_EPSILON);
+        int firstRow = row(boxMinY - CELL_EPSILON);
+        int lastRow = row(boxMaxY + CELL_EPSILON);
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int cell = r * columns + c;
+                if (items == null) {
+                    counts[cell]++;
+                } else {
+                    items[counts[cell]++] = item;
+                }
+            }
+        }
+    }
+
+    private static int[] prefixSums(int[] counts) {
+        int[] starts = new int[counts.length];
+        int total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            starts[i] = total;
+            total += counts[i];
+        }
+        return starts;
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - minX) / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / cellSize)));
+    }
+
+    /**
+     * Checks if the move from the previous point to the current point is in a no-fly
+     * zone. Gives the same answer as checking every zone and every edge in turn.
+     *
+     * @param lng         The longitude of the current point.
+     * @param lat         The latitude of the current point.
+     * @param previousLng The longitude of the previous point.
+     * @param previousLat The latitude of the previous point.
+     * @return True if the current point is inside a zone or the move crosses an edge.
+     */
+    public boolean moveEntersZone(double lng, double lat, double previousLng, double previousLat) {
+        return inAnyZone(lng, lat) || firstZoneCrossed(lng, lat, previousLng, previousLat) >= 0;
+    }
+
+    /**
+     * Checks if the point is inside any of the zones. Only the zones whose bounding
+     * box contains the point are tested, using their prepared polygons.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return True if the point is inside a zone, false otherwise.
+     */
+    public boolean inAnyZone(double lng, double lat) {
+        if (lng < minX - CELL_EPSILON || lng > maxX + CELL_EPSILON || lat < minY - CELL_EPSILON
+                || lat > maxY + CELL_EPSILON) {
+            return false;
+        }
+        int cell = row(lat) * columns + column(lng);
+        for (int i = cellZoneStart[cell]; i < cellZoneStart[cell + 1]; i++) {
+            int z = cellZones[i];
+            if (polygons[z].contains(lng, lat)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the first zone, in the order the zones were given, with an edge that the
+     * segment intersects. Only the edges in the cells that the segment passes
+     * through are tested.
+     *
+     * @param fromLng The longitude of the start of the segment.
+     * @param fromLat The latitude of the start of the segment.
+     * @param toLng   The longitude of the end of the segment.
+     * @param toLat   The latitude of the end of the segment.
+     * @return The index of the first zone crossed, or -1 if no zone is crossed.
+     */
+    public int firstZoneCrossed(double fromLng, double fromLat, double toLng, double toLat) {
+        if (x1.length == 0) {
+            return -1;
+        }
+
+        // Line2D treats any two segments of zero length as intersecting, wherever they
+        // are. Zones which repeat their first point have such an edge, so a segment of
+        // zero length always crosses them.
+        int firstZone = Integer.MAX_VALUE;
+        if (fromLng == toLng && fromLat == toLat) {
+            firstZone = firstZoneWithPointEdge;
+        }
+
+        // Clip the segment to the grid. If it misses the grid it can't cross an edge.
+        double dx = toLng - fromLng;
+        double dy = toLat - fromLat;
+        double[] clip = { 0, 1 };
+        if (!clipAxis(-dx, fromLng - (minX - CELL_EPSILON), clip) || !clipAxis(dx, (maxX + CELL_EPSILON) - fromLng, clip)
+                || !clipAxis(-dy, fromLat - (minY - CELL_EPSILON), clip)
+                || !clipAxis(dy, (maxY + CELL_EPSILON) - fromLat, clip)) {
+            return firstZone == Integer.MAX_VALUE ? -1 : firstZone;
+        }
+
+        // Walk the cells the clipped segment passes through.
+        double gx = (fromLng + clip[0] * dx - minX) / cellSize;
+        double gy = (fromLat + clip[0] * dy - minY) / cellSize;
+        double endGx = (fromLng + clip[1] * dx - minX) / cellSize;
+        double endGy = (fromLat + clip[1] * dy - minY) / cellSize;
+        int c = clampColumn((int) Math.floor(gx));
+        int r = clampRow((int) Math.floor(gy));
+        int endC = clampColumn((int) Math.floor(endGx));
+        int endR = clampRow((int) Math.floor(endGy));
+        int stepC = Integer.signum(endC - c);
+        int stepR = Integer.signum(endR - r);
+        double gdx = endGx - gx;
+        double gdy = endGy - gy;
+        double tDeltaC = stepC == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / gdx);
+        double tDeltaR = stepR == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / gdy);
+        double tMaxC = stepC == 0 ? Double.POSITIVE_INFINITY
+                : ((stepC > 0 ? c + 1 : c) - gx) / gdx;
+        double tMaxR = stepR == 0 ? Double.POSITIVE_INFINITY
+                : ((stepR > 0 ? r + 1 : r) - gy) / gdy;
+
+        int steps = Math.abs(endC - c) + Math.abs(endR - r);
+        for (int step = 0; step <= steps; step++) {
+            int cell = r * columns + c;
+            for (int i = cellEdgeStart[cell]; i < cellEdgeStart[cell + 1]; i++) {
+                int e = cellEdges[i];
+                if (edgeZone[e] < firstZone && Line2D.linesIntersect(fromLng, fromLat, toLng, toLat, x1[e], y1[e],
+                        x2[e], y2[e])) {
+                    firstZone = edgeZone[e];
+                }
+            }
+            if (c == endC && r == endR) {
+                break;
+            }
+            if ((tMaxC < tMaxR && c != endC) || r == endR) {
+                c += stepC;
+                tMaxC += tDeltaC;
+            } else {
+                r += stepR;
+                tMaxR += tDeltaR;
+            }
+        }
+        return firstZone == Integer.MAX_VALUE ? -1 : firstZone;
+    }
+
+    /**
+     * One step of Liang-Barsky clipping, narrowing the range of the segment parameter
+     * that lies on the inside of one side of the grid.
+     */
+    private static boolean clipAxis(double p, double q, double[] clip) {
+        if (p == 0) {
+            return q >= 0;
+        }
+        double t = q / p;
+        if (p < 0) {
+            if (t > clip[1]) {
+                return false;
+            }
+            clip[0] = Math.max(clip[0], t);
+        } else {
+            if (t < clip[0]) {
+                return false;
+            }
+            clip[1] = Math.min(clip[1], t);
+        }
+        return true;
+    }
+
+    private int clampColumn(int c) {
+        return Math.max(0, Math.min(columns - 1, c));
+    }
+
+    private int clampRow(int r) {
+        return Math.max(0, Math.min(rows - 1, r));
+    }
+
+    /**
+     * Accessor for the zones the index was built over.
+     *
+     * @return The no-fly zones.
+     */
+    public LngLat[][] getZones() {
+        return zones;
+    }
+
+    /**
+     * Accessor for the prepared polygon of each zone, in the order the zones were given.
+     *
+     * @return The prepared no-fly zones.
+     */
+    public PreparedPolygon[] getPolygons() {
+        return polygons;
+    }
+
+    /**
+     * Accessor for the number of edges in the index. Mainly used for testing.
+     *
+     * @return The total number of edges over all zones.
+     */
+    public int getEdgeCount() {
+        return x1.length;
+    }
+}
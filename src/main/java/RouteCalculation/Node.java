@@ -1,14 +1,11 @@
 package RouteCalculation;
 
-import java.awt.geom.Line2D;
-import java.util.Arrays;
-import java.util.OptionalDouble;
-
 /**
  * A class to represent a node in the A* search algorithm.
  */
 public class Node {
-    private final LngLat point; // The LngLat point represented by the node.
+    private final LatticePoint position; // The exact position of the node, or null if it was created from a LngLat.
+    private LngLat point; // The LngLat point represented by the node. Only created when needed for lattice nodes.
     private final double g; // The cost of the path from the start node to this node.
     private final double h; // The heuristic cost of the path from this node to the goal node.
     private final Node parent; // The parent node of this node.
@@ -22,10 +19,39 @@ public class Node {
      * @param end   The LngLat coordinates of the destination.
      */
     public Node(LngLat point, LngLat end) {
+        this.position = null;
         this.point = point;
         this.parent = null;
         this.directionFromParent = null;
-        this.h = calculateHeuristic(end);
+        this.h = calculateHeuristic(point.getLng(), point.getLat(), end);
+        this.g = 0;
+    }
+
+    /**
+     * Create a new start node at an exact lattice position.
+     *
+     * @param position The lattice position of the node.
+     * @param end      The LngLat coordinates of the destination.
+     */
+    public Node(LatticePoint position, LngLat end) {
+        this(position, end, null, AreaSingleton.currentSnapshot());
+    }
+
+    /**
+     * Create a new start node at an exact lattice position, with the heuristic
+     * strengthened by landmark tables.
+     *
+     * @param position  The lattice position of the node.
+     * @param end       The LngLat coordinates of the destination.
+     * @param landmarks The landmark tables, or null to only use the geometric
+     *                  heuristic.
+     * @param area      The geometry the search is made in.
+     */
+    Node(LatticePoint position, LngLat end, LandmarkHeuristic landmarks, AreaSnapshot area) {
+        this.position = position;
+        this.parent = null;
+        this.directionFromParent = null;
+        this.h = calculateHeuristic(area, position.getLng(), position.getLat(), end, landmarks);
         this.g = 0;
     }
 
@@ -40,51 +66,116 @@ public class Node {
      *                            node. Used to reconstruct the path.
      */
     public Node(LngLat point, LngLat end, Node parent, CompassDirection directionFromParent) {
+        this.position = null;
         this.point = point;
         this.parent = parent;
         this.directionFromParent = directionFromParent;
-        this.h = calculateHeuristic(end);
+        this.h = calculateHeuristic(point.getLng(), point.getLat(), end);
+        this.g = parent.g + LngLat.LENGTH_OF_MOVE;
+    }
+
+    /**
+     * Create a new node at an exact lattice position, reached by moving from the parent.
+     *
+     * @param position            The lattice position of the node.
+     * @param end                 The LngLat coordinates of the destination.
+     * @param parent              The parent node.
+     * @param directionFromParent The compass direction from the parent node to this
+     *                            node. Used to reconstruct the path.
+     */
+    public Node(LatticePoint position, LngLat end, Node parent, CompassDirection directionFromParent) {
+        this(position, end, parent, directionFromParent, null, AreaSingleton.currentSnapshot());
+    }
+
+    /**
+     * Create a new node at an exact lattice position, reached by moving from the parent,
+     * with the heuristic strengthened by landmark tables.
+     *
+     * @param position            The lattice position of the node.
+     * @param end                 The LngLat coordinates of the destination.
+     * @param parent              The parent node.
+     * @param directionFromParent The compass direction from the parent node to this
+     *                            node. Used to reconstruct the path.
+     * @param landmarks           The landmark tables, or null to only use the geometric
+     *                            heuristic.
+     * @param area                The geometry the search is made in.
+     */
+    Node(LatticePoint position, LngLat end, Node parent, CompassDirection directionFromParent,
+            LandmarkHeuristic landmarks, AreaSnapshot area) {
+        this.position = position;
+        this.parent = parent;
+        this.directionFromParent = directionFromParent;
+        this.h = calculateHeuristic(area, position.getLng(), position.getLat(), end, landmarks);
         this.g = parent.g + LngLat.LENGTH_OF_MOVE;
     }
 
     /**
      * Calculate the heuristic cost of the path from this node to the goal node.
      *
+     * @param lng The longitude of the node.
+     * @param lat The latitude of the node.
      * @param end The LngLat coordinates of the destination.
      * @return The heuristic cost of the path from this node to the goal node.
      */
-    private double calculateHeuristic(LngLat end) {
-        Line2D.Double line = new Line2D.Double(this.point.getLng(), this.point.getLat(), end.getLng(), end.getLat());
+    static double calculateHeuristic(double lng, double lat, LngLat end) {
+        return calculateHeuristic(AreaSingleton.currentSnapshot(), lng, lat, end);
+    }
 
+    /**
+     * Calculate the heuristic cost of the path from this node to the goal node in the
+     * given geometry.
+     *
+     * @param area The geometry the search is made in.
+     * @param lng  The longitude of the node.
+     * @param lat  The latitude of the node.
+     * @param end  The LngLat coordinates of the destination.
+     * @return The heuristic cost of the path from this node to the goal node.
+     */
+    static double calculateHeuristic(AreaSnapshot area, double lng, double lat, LngLat end) {
         // If the straight line goes through a no-fly zone, calculate the closest point
         // on the border of the
         // no-fly zone and then calculate the distance to that point and then the
         // distance from that point to
         // the end.
-        for (LngLat[] zone : AreaSingleton.getInstance().getNoFlyZones()) {
-            for (int i = 0; i < zone.length; i++) {
-                LngLat p1 = zone[i];
-                LngLat p2 = zone[(i + 1) % zone.length];
-
-                // If the line between the two points intersects with the line between the
-                // border points, then the line
-                // intersects with the no-fly zone.
-                if (line.intersectsLine(p1.getLng(), p1.getLat(), p2.getLng(), p2.getLat())) {
-                    // Calculate the border point p which minimizes the distance from start to p and
-                    // then from p to end.
-                    OptionalDouble minDistance = Arrays.stream(zone)
-                            .mapToDouble(p -> this.point.distanceTo(p) + p.distanceTo(end))
-                            .min();
-                    if (minDistance.isPresent()) {
-                        return minDistance.getAsDouble();
-                    }
-                }
+        NoFlyZoneIndex index = area.getNoFlyZoneIndex();
+        int crossed = index.firstZoneCrossed(lng, lat, end.getLng(), end.getLat());
+        if (crossed >= 0) {
+            // Calculate the border point p which minimizes the distance from start to p and
+            // then from p to end. The visibility graph gives the length of the shortest
+            // way around all the zones, which is larger when the way around one zone runs
+            // into another.
+            double detour = index.getPolygons()[crossed].shortestDetour(lng, lat, end);
+            double bound = area.getVisibilityGraph().lowerBound(lng, lat, end);
+            if (bound != Double.POSITIVE_INFINITY) {
+                return Math.max(detour, bound);
             }
+            return detour;
         }
 
-        // If the straight line does not go through a no-fly zone, then use the
-        // straight-line distance.
-        return this.point.distanceTo(end);
+        // If the straight line does not go through a no-fly zone, then use the length of
+        // the shortest path made of moves in the compass directions.
+        return LngLat.latticeDistance(lng, lat, end.getLng(), end.getLat());
+    }
+
+    /**
+     * Calculate the heuristic cost of the path from this node to the goal node, taking
+     * the larger of the geometric heuristic and the bound from the landmark tables.
+     *
+     * @param area      The geometry the search is made in.
+     * @param lng       The longitude of the node.
+     * @param lat       The latitude of the node.
+     * @param end       The LngLat coordinates of the destination.
+     * @param landmarks The landmark tables, or null to only use the geometric
+     *                  heuristic.
+     * @return The heuristic cost of the path from this node to the goal node.
+     */
+    static double calculateHeuristic(AreaSnapshot area, double lng, double lat, LngLat end,
+            LandmarkHeuristic landmarks) {
+        double h = calculateHeuristic(area, lng, lat, end);
+        if (landmarks != null) {
+            h = Math.max(h, landmarks.lowerBound(lng, lat, end));
+        }
+        return h;
     }
 
     /**
@@ -94,9 +185,18 @@ public class Node {
      */
     public double getFScore() {
         return this.g + this.h;
+    }
 
-        // Weighted for higher performance - USE THIS ON LOW PERFORMANCE DEVICES.
-        // return this.g + 1.5 * this.h;
+    /**
+     * Calculate the f value of the node with the heuristic inflated by a weight. A
+     * weight above one makes the search head for the goal more greedily, expanding
+     * fewer nodes, at the cost of a route up to that many times longer.
+     *
+     * @param weight The weight of the heuristic, at least one.
+     * @return The weighted f value of the node.
+     */
+    public double getFScore(double weight) {
+        return this.g + weight * this.h;
     }
 
     /**
@@ -126,7 +226,25 @@ public class Node {
         return this.directionFromParent;
     }
 
+    /**
+     * Accessor for the LngLat point represented by the node. For nodes created at a
+     * lattice position the point is only created the first time it is needed.
+     *
+     * @return The LngLat point represented by the node.
+     */
     public LngLat getPoint() {
+        if (this.point == null) {
+            this.point = this.position.toLngLat();
+        }
         return this.point;
     }
+
+    /**
+     * Accessor for the exact lattice position of the node.
+     *
+     * @return The lattice position, or null if the node was created from a LngLat.
+     */
+    public LatticePoint getPosition() {
+        return this.position;
+    }
 }
@@ -0,0 +1,382 @@
+package RouteCalculation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hash distributed parallel A* search (HDA*) for one route.
+ * <p>
+ * The plane is split into square blocks, and each block belongs to one of the workers,
+ * chosen by hashing the block. Every worker has its own open list and closed set, and
+ * a node is only expanded by the worker that owns the block it is in. When a worker
+ * makes a child in another worker's block, it sends the child to that worker through
+ * a lock-free queue.
+ * <p>
+ * The workers do not expand the nodes in order of f value overall, so a position can
+ * be expanded before the cheapest path to it is found. The closed sets therefore keep
+ * the f value of each position, and a node is only skipped if a node close to it has
+ * been expanded with an f value no higher, which is a node the standard search would
+ * have expanded before it. Once a route is found, nodes whose f value shows they
+ * cannot lead to a route with fewer moves are dropped. The search ends when no nodes
+ * are left in any open list or on their way between workers, which is counted as the
+ * nodes are sent and processed. A worker with nothing to do parks until another
+ * worker sends it a node or the search ends, rather than spinning on its core.
+ * <p>
+ * Positions are only told apart to within the distance tolerance, as in the standard
+ * search, and which of two close positions is kept depends on the order they are
+ * expanded in. Keeping only exactly equal positions is not an option, as the lattice
+ * has far too many distinct positions close together, and merging the positions in
+ * fixed cells instead keeps different positions from the standard search and finds
+ * longer routes. So the route gets close to the end with only legal moves and fits in
+ * the move budget, but it is not always as short as the standard search's route: it
+ * can be a few moves longer or shorter, and can differ between runs and numbers of
+ * workers. It is therefore only used through RouteCalculator.calculateRouteParallel,
+ * and never in place of the standard search.
+ * <p>
+ * A close position with a lower f value that arrives after one has been expanded is
+ * expanded again, so the workers expand many more nodes in all than the standard
+ * search: on the restaurant legs, about seventy times as many with two workers and
+ * more with each worker added. So it is slower than the standard search unless the
+ * expansions are spread over many free cores.
+ */
+final class ParallelSearch {
+    private static final CompassDirection[] DIRECTIONS_NO_HOVER = CompassDirection.valuesNoHover();
+    // The number of cells along each side of the blocks that are given to the workers.
+    // Positions close to each other are checked against the same closed set unless they
+    // are either side of the edge of a block.
+    private static final int BLOCK_CELLS = 4;
+
+    // The threads the workers run on. The threads are kept for later searches, and do
+    // not stop the program from exiting.
+    private static final ExecutorService WORKER_THREADS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "route-search-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LngLat end;
+    private final RouteOptions options;
+    private final SearchBudget budget;
+    private final int maxMoves;
+    private final AreaSnapshot area;
+    private final boolean endInCentralArea;
+    private final MoveLegalityCache legalityCache;
+    private final Worker[] workers;
+
+    // The number of nodes in an open list or on their way to one.
+    private final AtomicLong work = new AtomicLong();
+    private final AtomicReference<Node> bestGoal = new AtomicReference<>();
+    private volatile boolean stopped;
+
+    private ParallelSearch(LatticePoint start, LngLat end, RouteOptions options, int threads, int maxMoves,
+            SearchBudget budget) {
+        this.end = end;
+        this.options = options;
+        this.budget = budget;
+        this.maxMoves = maxMoves;
+        this.area = budget.getArea();
+        this.endInCentralArea = area.inCentralArea(end.getLng(), end.getLat());
+        this.legalityCache = RouteCalculator.legalityCacheFor(options, start.getOrigin(), area);
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker();
+        }
+    }
+
+    /**
+     * Search for a node close to the end with the given number of workers.
+     *
+     * @param start    The lattice position which is the starting position.
+     * @param end      The LngLat point which is where we want to be close to.
+     * @param options  The options controlling how the search is carried out.
+     * @param threads  The number of workers, at least one.
+     * @param maxMoves Only routes with fewer moves than this are looked for.
+     * @param budget   The budget of the search, shared by the workers.
+     * @return The node close to the end with the fewest moves, or null if there is no
+     *         route or the budget ran out before one was found.
+     */
+    static Node search(LatticePoint start, LngLat end, RouteOptions options, int threads, int maxMoves,
+            SearchBudget budget) {
+        ParallelSearch search = new ParallelSearch(start, end, options, threads, maxMoves, budget);
+        Node startNode = new Node(start, end, options.getLandmarks(), search.area);
+        search.work.incrementAndGet();
+        search.ownerOf(start.getLng(), start.getLat()).inbox.add(startNode);
+        return search.run();
+    }
+
+    /**
+     * Run the workers, using the calling thread for the first, and wait for them all to
+     * finish.
+     */
+    private Node run() {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < workers.length; i++) {
+            futures.add(WORKER_THREADS.submit(workers[i]));
+        }
+        try {
+            workers[0].run();
+        } finally {
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                stop();
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A route search worker failed.", e.getCause());
+            }
+        }
+
+        SearchStatistics statistics = options.getStatistics();
+        if (statistics != null) {
+            for (Worker worker : workers) {
+                statistics.recordWork(worker.polls, worker.expansions, worker.pushes);
+            }
+        }
+        return bestGoal.get();
+    }
+
+    /**
+     * Find the worker that owns the block the position is in.
+     */
+    private Worker ownerOf(double lng, double lat) {
+        long column = Math.floorDiv(cellIndex(lng), BLOCK_CELLS);
+        long row = Math.floorDiv(cellIndex(lat), BLOCK_CELLS);
+        long hash = (column * 0x9E3779B97F4A7C15L) ^ (row * 0xC2B2AE3D27D4EB4FL);
+        return workers[(int) Math.floorMod(hash ^ (hash >>> 32), (long) workers.length)];
+    }
+
+    /**
+     * Make the node the best route found so far, if it has fewer moves than the best.
+     */
+    private void offerGoal(Node goal) {
+        Node best = bestGoal.get();
+        while (best == null || RouteCalculator.movesTo(goal) < RouteCalculator.movesTo(best)) {
+            if (bestGoal.compareAndSet(best, goal)) {
+                return;
+            }
+            best = bestGoal.get();
+        }
+    }
+
+    /**
+     * Mark a node as done with, waking every worker if it was the last one so that
+     * they see the search has ended.
+     */
+    private void finishWork() {
+        if (work.decrementAndGet() == 0) {
+            wakeAll();
+        }
+    }
+
+    /**
+     * Stop the search, such as when the budget runs out, and wake every worker so that
+     * they see it.
+     */
+    private void stop() {
+        stopped = true;
+        wakeAll();
+    }
+
+    private void wakeAll() {
+        for (Worker worker : workers) {
+            worker.wake();
+        }
+    }
+
+    private static long cellIndex(double coordinate) {
+        return (long) Math.floor(coordinate / LngLat.DISTANCE_TOLERANCE);
+    }
+
+    /**
+     * One worker of the search, with its own open list and closed set.
+     */
+    private final class Worker implements Runnable {
+        private final ConcurrentLinkedQueue<Node> inbox = new ConcurrentLinkedQueue<>();
+        private final PriorityQueue<Node> openList = new PriorityQueue<>(
+                Comparator.comparingDouble(Node::getFScore));
+        private final CostedClosedSet closedSet = new CostedClosedSet();
+        private long polls;
+        private long expansions;
+        private long pushes;
+        // The thread running the worker, and whether it is parked or about to park.
+        private volatile Thread thread;
+        private volatile boolean idle;
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                while (!stopped) {
+                    // As in the standard search, a node is checked against the closed set
+                    // when it is added to the open list, which for a node from another
+                    // worker is when it arrives.
+                    for (Node node = inbox.poll(); node != null; node = inbox.poll()) {
+                        LatticePoint position = node.getPosition();
+                        if (closedSet.containsCloseTo(position.getLng(), position.getLat(), node.getFScore())) {
+                            finishWork();
+                        } else {
+                            openList.add(node);
+                        }
+                    }
+                    Node currentNode = openList.poll();
+                    if (currentNode == null) {
+                        // Only stop once no other worker can send this one any more nodes.
+                        if (work.get() == 0) {
+                            return;
+                        }
+                        park();
+                        continue;
+                    }
+                    polls++;
+                    process(currentNode);
+                    finishWork();
+                }
+            } catch (RuntimeException e) {
+                stop();
+                throw e;
+            }
+        }
+
+        /**
+         * Wait until another worker sends a node or the search ends. The flag is set
+         * before the inbox is checked again, and a sender adds to the inbox before it
+         * checks the flag, so either this worker sees the node or the sender wakes it.
+         */
+        private void park() {
+            idle = true;
+            if (inbox.isEmpty() && work.get() != 0 && !stopped) {
+                LockSupport.park(this);
+            }
+            idle = false;
+        }
+
+        /**
+         * Wake the worker if it is parked or about to park.
+         */
+        void wake() {
+            if (idle) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * Send a node to this worker from another one.
+         */
+        void send(Node node) {
+            inbox.add(node);
+            wake();
+        }
+
+        /**
+         * Expand the node, sending each child to the worker that owns it, unless it can
+         * be skipped.
+         */
+        private void process(Node currentNode) {
+            Node best = bestGoal.get();
+            int bound = best == null ? maxMoves : Math.min(maxMoves, RouteCalculator.movesTo(best));
+            double maxFScore = RouteCalculator.maxFScore(bound);
+            if (currentNode.getFScore() > maxFScore) {
+                return;
+            }
+            LatticePoint position = currentNode.getPosition();
+            Node parent = currentNode.getParent();
+            if (parent != null && !RouteCalculator.isLegalMove(area, legalityCache, parent.getPosition(),
+                    currentNode.getDirectionFromParent(), position, endInCentralArea)) {
+                return;
+            }
+            if (position.closeTo(end)) {
+                if (RouteCalculator.movesTo(currentNode) < bound) {
+                    offerGoal(currentNode);
+                }
+                return;
+            }
+            if (!budget.spendExpansion()) {
+                stop();
+                return;
+            }
+            expansions++;
+
+            for (CompassDirection direction : DIRECTIONS_NO_HOVER) {
+                LatticePoint newPoint = position.next(direction);
+                if (!budget.inRegion(newPoint.getLng(), newPoint.getLat())) {
+                    continue;
+                }
+                Node newNode = new Node(newPoint, end, currentNode, direction, options.getLandmarks(), area);
+                if (newNode.getFScore() > maxFScore) {
+                    continue;
+                }
+                Worker owner = ownerOf(newPoint.getLng(), newPoint.getLat());
+                if (owner == this) {
+                    if (closedSet.containsCloseTo(newPoint.getLng(), newPoint.getLat(), newNode.getFScore())) {
+                        continue;
+                    }
+                    work.incrementAndGet();
+                    openList.add(newNode);
+                } else {
+                    work.incrementAndGet();
+                    owner.send(newNode);
+                }
+                pushes++;
+            }
+
+            // The node is only closed after its children are made, so that they are not
+            // checked against it.
+            closedSet.add(position.getLng(), position.getLat(), currentNode.getFScore());
+        }
+    }
+
+    /**
+     * The positions a worker has expanded with their f values, in a spatial hash with
+     * cells the size of the distance tolerance.
+     */
+    private static final class CostedClosedSet {
+        private final Map<Long, List<double[]>> cells = new HashMap<>();
+
+        void add(double lng, double lat, double f) {
+            cells.computeIfAbsent(cellKey(cellIndex(lng), cellIndex(lat)), key -> new ArrayList<>())
+                    .add(new double[] { lng, lat, f });
+        }
+
+        /**
+         * Checks if a position close to the given one has been expanded with an f value
+         * no more than f.
+         */
+        boolean containsCloseTo(double lng, double lat, double f) {
+            long lngIndex = cellIndex(lng);
+            long latIndex = cellIndex(lat);
+            for (long i = lngIndex - 1; i <= lngIndex + 1; i++) {
+                for (long j = latIndex - 1; j <= latIndex + 1; j++) {
+                    List<double[]> cell = cells.get(cellKey(i, j));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (double[] point : cell) {
+                        if (point[2] <= f
+                                && LngLat.distance(point[0], point[1], lng, lat) < LngLat.DISTANCE_TOLERANCE) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static long cellKey(long lngIndex, long latIndex) {
+            return (lngIndex << 32) ^ (latIndex & 0xFFFFFFFFL);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package RouteCalculation;
+
+/**
+ * A polygon prepared for fast point-in-polygon tests.
+ * <p>
+ * The vertices are stored in flat arrays, and the gradient and latitude range of each
+ * edge are worked out once when the polygon is created. A point outside the bounding
+ * box of the polygon is rejected straight away.
+ * <p>
+ * The bounding box is also rasterised into cells one move wide. Each cell is marked as
+ * inside, outside or on the boundary of the polygon, so most points are answered by
+ * looking up their cell. Only points in boundary cells fall back to the same ray
+ * casting as LngLat.inZone.
+ */
+public class PreparedPolygon {
+    // The states of a cell in the raster.
+    private static final byte OUTSIDE = 0;
+    private static final byte INSIDE = 1;
+    private static final byte BOUNDARY = 2;
+
+    private static final double RASTER_CELL_SIZE = LngLat.LENGTH_OF_MOVE;
+    // Larger polygons use larger cells so that the raster stays this size.
+    private static final int MAX_RASTER_CELLS = 1 << 20;
+    // Cells this close to an edge are treated as boundary cells, so that rounding can
+    // never put a point on the wrong side.
+    private static final double RASTER_EPSILON = 1e-9;
+
+    private final double[] lngs;
+    private final double[] lats;
+
+    // For each edge from vertex i to vertex i + 1.
+    private final double[] gradients;
+    private final double[] edgeMinLats;
+    private final double[] edgeMaxLats;
+
+    private final double minLng;
+    private final double minLat;
+    private final double maxLng;
+    private final double maxLat;
+
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final byte[] raster;
+
+    /**
+     * Prepare the polygon with the given vertices.
+     *
+     * @param vertices The vertices of the polygon, in order.
+     */
+    public PreparedPolygon(LngLat[] vertices) {
+        if (vertices == null) {
+            throw new IllegalArgumentException("PreparedPolygon called with null vertices.");
+        }
+        int n = vertices.length;
+        lngs = new double[n];
+        lats = new double[n];
+        gradients = new double[n];
+        edgeMinLats = new double[n];
+        edgeMaxLats = new double[n];
+
+        double minLng = Double.POSITIVE_INFINITY;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            lngs[i] = vertices[i].getLng();
+            lats[i] = vertices[i].getLat();
+            minLng = Math.min(minLng, lngs[i]);
+            minLat = Math.min(minLat, lats[i]);
+            maxLng = Math.max(maxLng, lngs[i]);
+            maxLat = Math.max(maxLat, lats[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            gradients[i] = (lngs[j] - lngs[i]) / (lats[j] - lats[i]);
+            edgeMinLats[i] = Math.min(lats[i], lats[j]);
+            edgeMaxLats[i] = Math.max(lats[i], lats[j]);
+        }
+        this.minLng = minLng;
+        this.minLat = minLat;
+        this.maxLng = maxLng;
+        this.maxLat = maxLat;
+
+        if (n < 3) {
+            cellSize = RASTER_CELL_SIZE;
+            columns = 0;
+            rows = 0;
+            raster = new byte[0];
+            return;
+        }
+        double area = Math.max(maxLng - minLng, RASTER_CELL_SIZE) * Math.max(maxLat - minLat, RASTER_CELL_SIZE);
+        cellSize = Math.max(RASTER_CELL_SIZE, Math.sqrt(area / MAX_RASTER_CELLS));
+        columns = (int) Math.floor((maxLng - minLng) / cellSize) + 1;
+        rows = (int) Math.floor((maxLat - minLat) / cellSize) + 1;
+        raster = new byte[columns * rows];
+        rasterise();
+    }
+
+    /**
+     * Mark the cells of the raster. Cells touched by an edge are boundary cells. The
+     * ray casting miscounts along the latitude of a vertex, so cells on that latitude
+     * to the left of the vertex are boundary cells too. Every other cell is wholly on
+     * one side of the border, and neighbouring cells in a row which are not boundary
+     * cells are on the same side, so the exact test is only needed once per run.
+     */
+    private void rasterise() {
+        for (int i = 0; i < lngs.length; i++) {
+            int j = (i + 1) % lngs.length;
+            for (int r = row(edgeMinLats[i] - RASTER_EPSILON); r <= row(edgeMaxLats[i] + RASTER_EPSILON); r++) {
+                for (int c = column(Math.min(lngs[i], lngs[j]) - RASTER_EPSILON); c <= column(
+                        Math.max(lngs[i], lngs[j]) + RASTER_EPSILON); c++) {
+                    if (segmentTouchesCell(lngs[i], lats[i], lngs[j], lats[j], c, r)) {
+                        raster[r * columns + c] = BOUNDARY;
+                    }
+                }
+            }
+            for (int r = row(lats[i] - RASTER_EPSILON); r <= row(lats[i] + RASTER_EPSILON); r++) {
+                for (int c = 0; c <= column(lngs[i] + RASTER_EPSILON); c++) {
+                    raster[r * columns + c] = BOUNDARY;
+                }
+            }
+        }
+
+        for (int r = 0; r < rows; r++) {
+            byte state = BOUNDARY;
+            for (int c = 0; c < columns; c++) {
+                int cell = r * columns + c;
+                if (raster[cell] == BOUNDARY) {
+                    state = BOUNDARY;
+                    continue;
+                }
+                if (state == BOUNDARY) {
+                    double centreLng = minLng + (c + 0.5) * cellSize;
+                    double centreLat = minLat + (r + 0.5) * cellSize;
+                    state = containsExact(centreLng, centreLat) ? INSIDE : OUTSIDE;
+                }
+                raster[cell] = state;
+            }
+        }
+    }
+
+    /**
+     * Checks if the segment touches the cell, grown by a small margin on each side,
+     * by clipping the segment to the cell.
+     */
+    private boolean segmentTouchesCell(double fromLng, double fromLat, double toLng, double toLat, int c, int r) {
+        double cellMinLng = minLng + c * cellSize - RASTER_EPSILON;
+        double cellMinLat = minLat + r * cellSize - RASTER_EPSILON;
+        double cellMaxLng = minLng + (c + 1) * cellSize + RASTER_EPSILON;
+        double cellMaxLat = minLat + (r + 1) * cellSize + RASTER_EPSILON;
+        double dLng = toLng - fromLng;
+        double dLat = toLat - fromLat;
+        double[] p = { -dLng, dLng, -dLat, dLat };
+        double[] q = { fromLng - cellMinLng, cellMaxLng - fromLng, fromLat - cellMinLat, cellMaxLat - fromLat };
+        double tMin = 0;
+        double tMax = 1;
+        for (int k = 0; k < 4; k++) {
+            if (p[k] == 0) {
+                if (q[k] < 0) {
+                    return false;
+                }
+            } else if (p[k] < 0) {
+                tMin = Math.max(tMin, q[k] / p[k]);
+            } else {
+                tMax = Math.min(tMax, q[k] / p[k]);
+            }
+        }
+        return tMin <= tMax;
+    }
+
+    private int column(double lng) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((lng - minLng) / cellSize)));
+    }
+
+    private int row(double lat) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((lat - minLat) / cellSize)));
+    }
+
+    /**
+     * Checks if the point is inside the polygon. Points on the border are not inside,
+     * matching LngLat.inZone.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return True if the point is inside the polygon, false otherwise.
+     */
+    public boolean contains(double lng, double lat) {
+        if (lngs.length < 3 || !boundingBoxContains(lng, lat)) {
+            return false;
+        }
+        byte state = raster[row(lat) * columns + column(lng)];
+        if (state == BOUNDARY) {
+            return containsExact(lng, lat);
+        }
+        return state == INSIDE;
+    }
+
+    /**
+     * Checks if the point is inside the polygon by ray casting, without using the
+     * raster. Gives the same answer as contains.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return True if the point is inside the polygon, false otherwise.
+     */
+    public boolean containsExact(double lng, double lat) {
+        if (lngs.length < 3 || !boundingBoxContains(lng, lat)) {
+            return false;
+        }
+        boolean inside = false;
+        for (int i = 0; i < lngs.length; i++) {
+            if (lat > edgeMinLats[i] && lat < edgeMaxLats[i] && lng < ((lat - lats[i]) * gradients[i]) + lngs[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Checks if the point is inside or on the bounding box of the polygon.
+     *
+     * @param lng The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return True if the point is within the bounding box, false otherwise.
+     */
+    public boolean boundingBoxContains(double lng, double lat) {
+        return lng >= minLng && lng <= maxLng && lat >= minLat && lat <= maxLat;
+    }
+
+    /**
+     * Calculate the length of the shortest path from the start to the end which goes
+     * via a single vertex of the polygon.
+     *
+     * @param lng The longitude of the start.
+     * @param lat The latitude of the start.
+     * @param end The end of the path.
+     * @return The length of the shortest path via a vertex, or infinity if the
+     *         polygon has no vertices.
+     */
+    public double shortestDetour(double lng, double lat, LngLat end) {
+        double minDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < lngs.length; i++) {
+            double distance = LngLat.distance(lng, lat, lngs[i], lats[i])
+                    + LngLat.distance(lngs[i], lats[i], end.getLng(), end.getLat());
+            minDistance = Math.min(minDistance, distance);
+        }
+        return minDistance;
+    }
+
+    // Accessors
+    public int getVertexCount() {
+        return lngs.length;
+    }
+
+    public double getLng(int vertex) {
+        return lngs[vertex];
+    }
+
+    public double getLat(int vertex) {
+        return lats[vertex];
+    }
+
+    public double getMinLng() {
+        return minLng;
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMaxLng() {
+        return maxLng;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    /**
+     * Accessor for the fraction of the raster cells that are boundary cells, where
+     * points fall back to ray casting. Mainly used for testing.
+     *
+     * @return The fraction of boundary cells, or 0 if there is no raster.
+     */
+    public double getBoundaryFraction() {
+        int boundary = 0;
+        for (byte state : raster) {
+            if (state == BOUNDARY) {
+                boundary++;
+            }
+        }
+        return raster.length == 0 ? 0 : (double) boundary / raster.length;
+    }
+}
@@ -0,0 +1,217 @@
+package RouteCalculation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the routes found by the RouteCalculator, shared by all the legs planned
+ * in one day.
+ * <p>
+ * Orders from the same restaurant fly the same legs between the restaurant and
+ * Appleton Tower over and over, and since a route only depends on where it starts,
+ * where it ends and where the drone goes next, each distinct leg only needs to be
+ * planned once. The start of a route is keyed by its exact lattice position, so
+ * routes are only reused from exactly the same position.
+ * <p>
+ * The cache holds at most a fixed number of routes, and evicts the least recently
+ * used route when it is full. It is emptied when a leg is planned in a different
+ * central area or set of no-fly zones, and a route is only stored if the leg it was
+ * planned for saw the same geometry as the cache holds, so a route planned against
+ * old zones is never kept once the cache has moved on to new ones. All methods are
+ * synchronized so the cache can be shared between threads.
+ */
+public class RouteCache {
+    private final int capacity;
+    private final LinkedHashMap<Key, CompassDirection[]> routes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // The geometry that the routes were found for.
+    private AreaSnapshot area;
+
+    /**
+     * Create an empty cache which holds at most the given number of routes.
+     *
+     * @param capacity The most routes that the cache holds.
+     */
+    public RouteCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("RouteCache called with a capacity less than 1.");
+        }
+        this.capacity = capacity;
+        this.routes = new LinkedHashMap<Key, CompassDirection[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompassDirection[]> eldest) {
+                if (size() > RouteCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the route from the start to the end if it has been found before. The cache
+     * is emptied first if the routes were found in a different geometry from the leg.
+     *
+     * @param area       The geometry the leg is planned in.
+     * @param start      The lattice position which is the starting position.
+     * @param end        The LngLat point which is where the route ends.
+     * @param nextTarget The next destination after the end, or null.
+     * @return A copy of the cached route, or null if there is none.
+     */
+    synchronized CompassDirection[] get(AreaSnapshot area, LatticePoint start, LngLat end, LngLat nextTarget) {
+        checkGeometry(area);
+        CompassDirection[] route = routes.get(new Key(start, end, nextTarget));
+        if (route == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return route.clone();
+    }
+
+    /**
+     * Store the route from the start to the end, evicting the least recently used
+     * route if the cache is full. The route is not stored if the cache has moved on to
+     * a different geometry since the leg was planned.
+     *
+     * @param area       The geometry the route was planned in.
+     * @param start      The lattice position which is the starting position.
+     * @param end        The LngLat point which is where the route ends.
+     * @param nextTarget The next destination after the end, or null.
+     * @param route      The route that was found.
+     */
+    synchronized void put(AreaSnapshot area, LatticePoint start, LngLat end, LngLat nextTarget,
+            CompassDirection[] route) {
+        if (!area.sameGeometry(this.area)) {
+            return;
+        }
+        routes.put(new Key(start, end, nextTarget), route.clone());
+    }
+
+    /**
+     * Empty the cache if the central area or no-fly zones have changed since the
+     * routes were found.
+     */
+    public void checkGeometry() {
+        checkGeometry(AreaSingleton.currentSnapshot());
+    }
+
+    /**
+     * Empty the cache if its routes were found in a different geometry from the one a
+     * leg is planned in.
+     *
+     * @param area The geometry the leg is planned in.
+     */
+    synchronized void checkGeometry(AreaSnapshot area) {
+        if (!area.sameGeometry(this.area)) {
+            routes.clear();
+            this.area = area;
+        }
+    }
+
+    /**
+     * Remove all the routes from the cache. The counters are kept.
+     */
+    public synchronized void clear() {
+        routes.clear();
+    }
+
+    // Accessors
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Accessor for the number of routes in the cache.
+     *
+     * @return The number of routes in the cache.
+     */
+    public synchronized int size() {
+        return routes.size();
+    }
+
+    /**
+     * Accessor for the number of routes that were answered from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Accessor for the number of routes that had to be found by the RouteCalculator.
+     *
+     * @return The number of cache misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Accessor for the number of routes that were removed to make room for others.
+     *
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * The start, end and next target of a route. The start is stored as the origin of
+     * its frame and its lattice coefficients, so two keys are only equal when they
+     * start from exactly the same position.
+     */
+    private static final class Key {
+        private final double originLng;
+        private final double originLat;
+        private final long low;
+        private final long high;
+        private final double endLng;
+        private final double endLat;
+        private final boolean hasNextTarget;
+        private final double nextLng;
+        private final double nextLat;
+
+        Key(LatticePoint start, LngLat end, LngLat nextTarget) {
+            originLng = start.getOrigin().getLng();
+            originLat = start.getOrigin().getLat();
+            low = start.getLow();
+            high = start.getHigh();
+            endLng = end.getLng();
+            endLat = end.getLat();
+            hasNextTarget = nextTarget != null;
+            nextLng = hasNextTarget ? nextTarget.getLng() : 0;
+            nextLat = hasNextTarget ? nextTarget.getLat() : 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return low == other.low && high == other.high && hasNextTarget == other.hasNextTarget
+                    && Double.compare(originLng, other.originLng) == 0
+                    && Double.compare(originLat, other.originLat) == 0 && Double.compare(endLng, other.endLng) == 0
+                    && Double.compare(endLat, other.endLat) == 0 && Double.compare(nextLng, other.nextLng) == 0
+                    && Double.compare(nextLat, other.nextLat) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            long hash = low * 0x9E3779B97F4A7C15L ^ high * 0xC2B2AE3D27D4EB4FL;
+            hash = 31 * hash + Double.hashCode(endLng);
+            hash = 31 * hash + Double.hashCode(endLat);
+            hash = 31 * hash + Double.hashCode(nextLng);
+            hash = 31 * hash + Double.hashCode(nextLat);
+            hash = 31 * hash + Double.hashCode(originLng);
+            hash = 31 * hash + Double.hashCode(originLat);
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
@@ -1,12 +1,30 @@
 package RouteCalculation;
 
 import java.util.*;
+import java.util.function.DoubleBinaryOperator;
 
 /**
  * This class is used for calculating the shortest route between two points.
  * It uses the A* search algorithm.
  */
 public class RouteCalculator {
+    private static final CompassDirection[] DIRECTIONS_NO_HOVER = CompassDirection.valuesNoHover();
+    // The most that the shortest path made of moves can be longer than the straight
+    // line, which is halfway between two compass directions.
+    private static final double MAX_LATTICE_STRETCH = 1 / Math.cos(Math.toRadians(11.25));
+    // The length of a route to the next target which has not been worked out yet.
+    private static final int UNKNOWN_LENGTH = -1;
+    // The deadline of a search that can take as long as it needs.
+    static final long NO_DEADLINE = Long.MIN_VALUE;
+    // How much the weight of the heuristic is lowered by each time the repeated
+    // weighted search looks for a better route.
+    private static final double REPEAT_WEIGHT_STEP = 0.5;
+
+    /**
+     * The move budget of a route that may be as long as it needs to be.
+     */
+    public static final int NO_MOVE_LIMIT = Integer.MAX_VALUE;
+
     /**
      * Use the A* algorithm to find the shortest route from the start to the end.
      *
@@ -19,70 +37,1249 @@ public class RouteCalculator {
      * @return The shortest route from the start to the end.
      */
     public static CompassDirection[] calculateRoute(LngLat start, LngLat end, LngLat nextTarget) {
+        if (start == null) {
+            System.err.println("calculateRoute was called with a null start or end point.");
+            return null;
+        }
+        return calculateRouteFrom(LatticePoint.origin(start), end, nextTarget);
+    }
+
+    /**
+     * Use the A* algorithm to find the shortest route from the start to the end,
+     * with the default options.
+     *
+     * @param start      The lattice position which is the starting position.
+     * @param end        The LngLat point which is where we want to be close to.
+     * @param nextTarget After the drone has arrived close to the end position, this
+     *                   is its next destination.
+     * @return The shortest route from the start to the end.
+     */
+    public static CompassDirection[] calculateRouteFrom(LatticePoint start, LngLat end, LngLat nextTarget) {
+        return calculateRouteFrom(start, end, nextTarget, new RouteOptions());
+    }
+
+    /**
+     * Use the A* algorithm to find the shortest route from the start to the end.
+     * All positions explored by the search are exact lattice positions in the same
+     * frame as the start, so they only need converting to coordinates for the
+     * geometry checks.
+     *
+     * @param start      The lattice position which is the starting position.
+     * @param end        The LngLat point which is where we want to be close to.
+     * @param nextTarget After the drone has arrived close to the end position, this
+     *                   is its next destination. Used to
+     *                   find the best move to make when the drone is near the end
+     *                   node.
+     * @param options    The options controlling how the search is carried out.
+     * @return The shortest route from the start to the end.
+     */
+    public static CompassDirection[] calculateRouteFrom(LatticePoint start, LngLat end, LngLat nextTarget,
+            RouteOptions options) {
+        return calculateRouteFrom(start, end, nextTarget, options, NO_MOVE_LIMIT);
+    }
+
+    /**
+     * Use the A* algorithm to find the shortest route from the start to the end which
+     * fits in the move budget, such as the moves left in the drone's battery.
+     * <p>
+     * If the lower bound on the length of the route from the start is already over the
+     * budget, no search is made at all. Otherwise the search leaves out every node whose
+     * f value shows that a route through it could not fit, so a leg which does not fit
+     * is given up on without searching the whole area.
+     *
+     * @param start          The lattice position which is the starting position.
+     * @param end            The LngLat point which is where we want to be close to.
+     * @param nextTarget     After the drone has arrived close to the end position, this
+     *                       is its next destination.
+     * @param options        The options controlling how the search is carried out.
+     * @param maxRouteLength The most directions the route may have, including the
+     *                       hover at the end, or NO_MOVE_LIMIT.
+     * @return The shortest route from the start to the end, or null if there is no
+     *         route that fits in the budget.
+     */
+    public static CompassDirection[] calculateRouteFrom(LatticePoint start, LngLat end, LngLat nextTarget,
+            RouteOptions options, int maxRouteLength) {
+        return planRoute(start, end, nextTarget, options, maxRouteLength).getRoute();
+    }
+
+    /**
+     * Find the shortest route from the start to the end which fits in the move budget,
+     * in the same way as calculateRouteFrom, and say why there is no route if none is
+     * found.
+     *
+     * @param start          The lattice position which is the starting position.
+     * @param end            The LngLat point which is where we want to be close to.
+     * @param nextTarget     After the drone has arrived close to the end position, this
+     *                       is its next destination.
+     * @param options        The options controlling how the search is carried out.
+     * @param maxRouteLength The most directions the route may have, including the
+     *                       hover at the end, or NO_MOVE_LIMIT.
+     * @return The route if one was found, otherwise whether there is no route that fits
+     *         or the search ran out of its budget.
+     */
+    public static RouteResult planRoute(LatticePoint start, LngLat end, LngLat nextTarget, RouteOptions options,
+            int maxRouteLength) {
         if (start == null || end == null) {
             System.err.println("calculateRoute was called with a null start or end point.");
+            return RouteResult.infeasible();
+        }
+        SearchStatistics statistics = options.getStatistics();
+        // The whole leg is planned in the geometry as it is now.
+        AreaSnapshot area = AreaSingleton.currentSnapshot();
+        if (maxRouteLength != NO_MOVE_LIMIT) {
+            // Every route takes at least this many moves, followed by a hover.
+            double lowerBound = Node.calculateHeuristic(area, start.getLng(), start.getLat(), end,
+                    options.getLandmarks());
+            if (Math.max(fewestMoves(lowerBound), 0) + 1 > maxRouteLength) {
+                if (statistics != null) {
+                    statistics.recordInfeasibleRoute();
+                }
+                return RouteResult.infeasible();
+            }
+        }
+        RouteCache routeCache = options.getRouteCache();
+        CompassDirection[] route = routeCache == null ? null : routeCache.get(area, start, end, nextTarget);
+        if (route == null) {
+            RouteResult result = findRoute(start, end, nextTarget, options, maxRouteLength, area);
+            if (result.getStatus() != RouteResult.Status.FOUND) {
+                return result;
+            }
+            route = result.getRoute();
+            if (routeCache != null) {
+                routeCache.put(area, start, end, nextTarget, route);
+            }
+        }
+        // The routes not made by the search are only used when they are the shortest,
+        // so if they do not fit then no route does.
+        if (route.length > maxRouteLength) {
+            if (statistics != null) {
+                statistics.recordInfeasibleRoute();
+            }
+            return RouteResult.infeasible();
+        }
+        return RouteResult.found(route);
+    }
+
+    /**
+     * Build the route back along a route, making its moves in reverse in the opposite
+     * directions. Every position is an exact lattice position, so the route ends at
+     * exactly the position the route it reverses started from, rather than only close
+     * to it. It takes as many moves as the route it reverses, and is checked with the
+     * central area rule for a route ending at the start.
+     *
+     * @param start   The position the route to reverse starts from.
+     * @param route   The route to reverse, ending in a hover.
+     * @param options The options giving the legality cache to check the moves with.
+     * @return The route back to the start, ending in a hover, or null if one of its
+     *         moves is not legal.
+     */
+    public static CompassDirection[] calculateReturnRoute(LatticePoint start, CompassDirection[] route,
+            RouteOptions options) {
+        if (start == null || route == null) {
+            System.err.println("calculateReturnRoute was called with a null start or route.");
             return null;
         }
+        AreaSnapshot area = AreaSingleton.currentSnapshot();
+        MoveLegalityCache legalityCache = legalityCacheFor(options, start.getOrigin(), area);
+        boolean endInCentralArea = area.inCentralArea(start.getLng(), start.getLat());
+
+        LatticePoint position = start;
+        for (CompassDirection direction : route) {
+            position = position.next(direction);
+        }
+        List<CompassDirection> returnRoute = new ArrayList<>();
+        for (int i = route.length - 1; i >= 0; i--) {
+            if (route[i] == CompassDirection.HOVER) {
+                continue;
+            }
+            CompassDirection direction = opposite(route[i]);
+            LatticePoint next = position.next(direction);
+            if (!isLegalMove(area, legalityCache, position, direction, next, endInCentralArea)) {
+                return null;
+            }
+            returnRoute.add(direction);
+            position = next;
+        }
+        returnRoute.add(CompassDirection.HOVER);
+        return returnRoute.toArray(new CompassDirection[0]);
+    }
+
+    /**
+     * Search for a route from the start to the end with a hash distributed parallel A*
+     * search, in which each thread owns the positions in part of the plane.
+     * <p>
+     * This is not a replacement for calculateRouteFrom. The threads expand positions in
+     * a different order to the standard search, and close positions are merged in the
+     * order they are expanded, so the route only makes legal moves and gets close to
+     * the end: it can be a few moves longer or shorter than the standard route, and can
+     * differ between runs. The length of a leg decides which orders fit in the battery,
+     * so the legs of a day are never planned with it. The threads also expand many more
+     * nodes in all than the standard search, so it is only faster with many free cores.
+     * The straight line, caches, distance field and hierarchy in the options are not
+     * used, and the other search options are ignored.
+     *
+     * @param start      The lattice position which is the starting position.
+     * @param end        The LngLat point which is where we want to be close to.
+     * @param nextTarget After the drone has arrived close to the end position, this
+     *                   is its next destination.
+     * @param options    The options giving the budget, landmarks, legality cache and
+     *                   statistics of the search.
+     * @param threads    The number of threads to split the search over, at least one.
+     * @return A route from the start to the end, or null if there is none or the
+     *         search ran out of its budget.
+     */
+    public static CompassDirection[] calculateRouteParallel(LatticePoint start, LngLat end, LngLat nextTarget,
+            RouteOptions options, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, got " + threads);
+        }
+        if (start == null || end == null) {
+            System.err.println("calculateRouteParallel was called with a null start or end point.");
+            return null;
+        }
+        SearchStatistics statistics = options.getStatistics();
+        if (statistics != null) {
+            statistics.recordSearch();
+        }
+        AreaSnapshot area = AreaSingleton.currentSnapshot();
+        SearchBudget budget = SearchBudget.forSearch(start, end, options, area);
+        Node goal = ParallelSearch.search(start, end, options, threads, NO_MOVE_LIMIT, budget);
+        if (goal == null && budget.isExhausted()) {
+            if (statistics != null) {
+                statistics.recordBudgetExhausted();
+            }
+            System.err.println("The parallel route search to " + end.getLng() + ", " + end.getLat()
+                    + " ran out of its budget.");
+        }
+        if (goal == null) {
+            return null;
+        }
+        return finishSearchedRoute(goal, end, nextTarget, options, area);
+    }
+
+    /**
+     * Find the route from the start to the end, first trying the straight line and
+     * then searching with the search given by the options.
+     */
+    private static RouteResult findRoute(LatticePoint start, LngLat end, LngLat nextTarget,
+            RouteOptions options, int maxRouteLength, AreaSnapshot area) {
+        SearchStatistics statistics = options.getStatistics();
+        if (statistics != null) {
+            statistics.recordSearch();
+        }
+        if (options.usesStraightLine()) {
+            CompassDirection[] route = straightLineRoute(start, end, nextTarget, options, area);
+            if (route != null) {
+                if (statistics != null) {
+                    statistics.recordStraightLineRoute();
+                }
+                return RouteResult.found(route);
+            }
+        }
+        DistanceField distanceField = options.getDistanceField();
+        if (distanceField != null && distanceField.isFor(end)) {
+            CompassDirection[] route = downhillRoute(start, end, nextTarget, options, area,
+                    (lng, lat) -> distanceField.distanceFrom(area, lng, lat));
+            if (route != null) {
+                if (statistics != null) {
+                    statistics.recordDistanceFieldRoute();
+                }
+                return RouteResult.found(route);
+            }
+        }
+        ClusterHierarchy hierarchy = options.getHierarchy();
+        if (hierarchy != null) {
+            CompassDirection[] route = hierarchy.route(area, start, end, nextTarget, options);
+            // The route may not be the shortest, so if it does not fit the search may
+            // still find one that does.
+            if (route != null && route.length <= maxRouteLength) {
+                return RouteResult.found(route);
+            }
+        }
+        SearchBudget budget = SearchBudget.forSearch(start, end, options, area);
+        CompassDirection[] route;
+        LngLat[] skeleton = options.getCorridorMoves() > 0
+                ? area.getVisibilityGraph().shortestPath(start.getLng(), start.getLat(), end)
+                : null;
+        if (skeleton == null) {
+            route = searchRoute(start, end, nextTarget, options, maxRouteLength, budget);
+        } else {
+            // Search inside the corridor around the shortest path around the zones,
+            // doubling its width each time no route is found inside it.
+            double halfWidth = options.getCorridorMoves() * LngLat.LENGTH_OF_MOVE;
+            while (true) {
+                budget.limitToCorridor(skeleton, halfWidth);
+                if (statistics != null) {
+                    statistics.recordCorridorSearch();
+                }
+                route = searchRoute(start, end, nextTarget, options, maxRouteLength, budget);
+                if (route != null || budget.isExhausted() || budget.corridorCoversRegion()) {
+                    break;
+                }
+                halfWidth *= 2;
+            }
+        }
+        if (route != null) {
+            return RouteResult.found(route);
+        }
+        if (budget.isExhausted()) {
+            if (statistics != null) {
+                statistics.recordBudgetExhausted();
+            }
+            System.err.println("The route search to " + end.getLng() + ", " + end.getLat()
+                    + " ran out of its budget.");
+            return RouteResult.budgetExhausted();
+        }
+        return RouteResult.infeasible();
+    }
+
+    /**
+     * Search for the route with the search given by the options, inside the region of
+     * the budget.
+     */
+    private static CompassDirection[] searchRoute(LatticePoint start, LngLat end, LngLat nextTarget,
+            RouteOptions options, int maxRouteLength, SearchBudget budget) {
+        if (options.getWeight() > 1) {
+            return calculateRouteWeighted(start, end, nextTarget, options, maxRouteLength, budget);
+        } else if (options.usesBidirectional()) {
+            return calculateRouteBidirectional(start, end, nextTarget, options, maxRouteLength, budget);
+        } else if (options.usesIndexedHeap()) {
+            return calculateRouteWithIndexedHeap(start, end, nextTarget, options, maxRouteLength, budget);
+        } else if (options.usesArena()) {
+            return calculateRouteInArena(start, end, nextTarget, options, maxRouteLength, budget);
+        }
+        Node goal = searchForGoal(start, end, options, 1, maxRouteLength, NO_DEADLINE, budget);
+        return goal == null ? null : finishSearchedRoute(goal, end, nextTarget, options, budget.getArea());
+    }
+
+    /**
+     * The A* search from the start to a node close to the end.
+     *
+     * @param start    The lattice position which is the starting position.
+     * @param end      The LngLat point which is where we want to be close to.
+     * @param options  The options controlling how the search is carried out.
+     * @param weight   The weight of the heuristic, which is one for the standard search.
+     * @param maxMoves Only routes with fewer moves than this are looked for.
+     * @param deadline The System.nanoTime after which the search gives up, or
+     *                 NO_DEADLINE.
+     * @param budget   The budget of the search.
+     * @return The node close to the end, or null if there is no route with fewer moves
+     *         or the search ran out of time or budget.
+     */
+    private static Node searchForGoal(LatticePoint start, LngLat end, RouteOptions options, double weight,
+            int maxMoves, long deadline, SearchBudget budget) {
+        return searchForGoal(start, end, budget.getArea().inCentralArea(end.getLng(), end.getLat()), options, weight,
+                maxMoves, deadline, budget);
+    }
+
+    /**
+     * The A* search from the start to a node close to the end, keeping to the central
+     * area as if the route ended inside it or not. This lets a route be searched for in
+     * parts, with the moves of every part checked as they would be for the whole route.
+     *
+     * @param start            The lattice position which is the starting position.
+     * @param end              The LngLat point which is where we want to be close to.
+     * @param endInCentralArea Whether the end of the whole route is in the central area.
+     * @param options          The options controlling how the search is carried out.
+     * @param weight           The weight of the heuristic, which is one for the standard
+     *                         search.
+     * @param maxMoves         Only routes with fewer moves than this are looked for.
+     * @param deadline         The System.nanoTime after which the search gives up, or
+     *                         NO_DEADLINE.
+     * @param budget           The budget of the search.
+     * @return The node close to the end, or null if there is no route with fewer moves
+     *         or the search ran out of time or budget.
+     */
+    static Node searchForGoal(LatticePoint start, LngLat end, boolean endInCentralArea, RouteOptions options,
+            double weight, int maxMoves, long deadline, SearchBudget budget) {
+        SearchStatistics statistics = options.getStatistics();
+        AreaSnapshot area = budget.getArea();
+        MoveLegalityCache legalityCache = legalityCacheFor(options, start.getOrigin(), area);
+        double maxFScore = maxFScore(maxMoves);
 
         // Create the priority queue and add the start node
-        PriorityQueue<Node> openList = new PriorityQueue<>(Comparator.comparingDouble(Node::getFScore));
-        openList.add(new Node(start, end));
+        PriorityQueue<Node> openList = weight == 1
+                ? new PriorityQueue<>(Comparator.comparingDouble(Node::getFScore))
+                : new PriorityQueue<>(Comparator.comparingDouble(node -> node.getFScore(weight)));
+        openList.add(new Node(start, end, options.getLandmarks(), area));
 
-        // Create a list of the nodes that have already been visited.
-        List<Node> closedList = new ArrayList<>();
+        // Create a spatial hash of the points that have already been visited.
+        ClosedSet closedSet = new ClosedSet();
 
         // While the open list is not empty
         while (!openList.isEmpty()) {
+            if (deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0) {
+                return null;
+            }
 
             // Get the node with the lowest f value
             Node currentNode = openList.poll();
+            if (statistics != null) {
+                statistics.recordPoll();
+            }
 
             // If the next point is in a no-fly zone, or takes us out of the central area
             // then ignore point.
-            if (currentNode.getParent() != null
-                    && (currentNode.getPoint().inNoFlyZone(currentNode.getParent().getPoint()) // Path from parent to
-                                                                                               // current node goes
-                                                                                               // through a no-fly zone.
-                            || (end.inCentralArea() && currentNode.getParent().getPoint().inCentralArea()
-                                    && !currentNode.getPoint().inCentralArea()) // Path from parent to current node
-                                                                                // takes us out of the central area.
-                    )) {
+            if (currentNode.getParent() != null && !isLegalMove(area, legalityCache,
+                    currentNode.getParent().getPosition(), currentNode.getDirectionFromParent(),
+                    currentNode.getPosition(), endInCentralArea)) {
                 continue;
             }
 
             // If we've found a point that is close to the endpoint.
-            if (currentNode.getPoint().closeTo(end)) {
-                // If we don't care about the next target then just reconstuct the path.
-                if (nextTarget == null) {
-                    return reconstructPath(currentNode);
+            if (currentNode.getPosition().closeTo(end)) {
+                if (movesTo(currentNode) < maxMoves) {
+                    return currentNode;
                 }
-
-                // If we do care about the next target, then check all the nodes which are close
-                // to the current
-                // target and get the one that is closest to the next target as well.
-                Node newNode = findBestMoveInCloseRadius(currentNode.getParent(), end, nextTarget);
-                return reconstructPath(newNode);
+                continue;
+            }
+            if (!budget.spendExpansion()) {
+                return null;
+            }
+            if (statistics != null) {
+                statistics.recordExpansion();
             }
 
-            for (CompassDirection direction : CompassDirection.valuesNoHover()) {
+            for (CompassDirection direction : DIRECTIONS_NO_HOVER) {
                 // Get the next node in the direction and add to list.
-                LngLat newPoint = currentNode.getPoint().nextPosition(direction);
+                LatticePoint newPoint = currentNode.getPosition().next(direction);
 
-                // If the new point is already in the closed list, ignore it.
-                if (closedList.stream().anyMatch(node -> node.getPoint().closeTo(newPoint)))
+                // If the new point is close to a point in the closed set, or outside the
+                // region, ignore it.
+                if (closedSet.containsCloseTo(newPoint.getLng(), newPoint.getLat())
+                        || !budget.inRegion(newPoint.getLng(), newPoint.getLat()))
                     continue;
 
-                // Add the new node to the open list.
-                Node newNode = new Node(newPoint, end, currentNode, direction);
+                // Add the new node to the open list, unless it cannot beat maxMoves.
+                Node newNode = new Node(newPoint, end, currentNode, direction, options.getLandmarks(), area);
+                if (newNode.getFScore() > maxFScore) {
+                    continue;
+                }
                 openList.add(newNode);
+                if (statistics != null) {
+                    statistics.recordPush();
+                }
+            }
+
+            // Add the current node to the closed set.
+            LatticePoint currentPosition = currentNode.getPosition();
+            closedSet.add(currentPosition.getLng(), currentPosition.getLat());
+        }
+        return null; // In the case that there is no route.
+    }
+
+    /**
+     * Finish the route to a node found by the search. If there is a next target, the
+     * last move is replaced by the one which is best for the next target.
+     *
+     * @param goal       The node close to the end.
+     * @param end        The LngLat point which the route gets close to.
+     * @param nextTarget The next destination after the end, or null.
+     * @param options    The options to use for the searches to the next target.
+     * @param area       The geometry the route was searched for in.
+     * @return The route to the node, ending in a hover.
+     */
+    static CompassDirection[] finishSearchedRoute(Node goal, LngLat end, LngLat nextTarget,
+            RouteOptions options, AreaSnapshot area) {
+        // If we don't care about the next target then just reconstuct the path.
+        if (nextTarget == null || goal.getParent() == null) {
+            return reconstructPath(goal);
+        }
+
+        // If we do care about the next target, then check all the nodes which are close
+        // to the current target and get the one that is closest to the next target as
+        // well.
+        Node parent = goal.getParent();
+        CompassDirection bestMove = findBestMoveInCloseRadius(parent.getPosition(), parent.getDirectionFromParent(),
+                end, nextTarget, options, area);
+        if (bestMove == null) {
+            return reconstructPath(goal);
+        }
+        return reconstructPath(new Node(parent.getPosition().next(bestMove), end, parent, bestMove,
+                options.getLandmarks(), area));
+    }
+
+    /**
+     * A weighted A* search, which inflates the heuristic by the weight in the options
+     * so that it expands fewer nodes. The heuristic is a lower bound on the length of
+     * a route to the end itself, so the route found takes at most the weight times as
+     * many moves as the shortest route to the end itself. A route only has to get
+     * close to the end, so compared with the shortest route that does, it can take up
+     * to the weight times about one move more.
+     * <p>
+     * If the options give a time limit, this is a repeated weighted A* search: after
+     * the first route a new search is run from the start with the weight lowered by
+     * REPEAT_WEIGHT_STEP each time, down to one, only keeping nodes that could lead to
+     * a route with fewer moves than the best so far. Nothing is carried over from one
+     * search to the next except that bound. This stops when the time runs out, the
+     * weight reaches one, or the route takes the fewest moves that any route could.
+     *
+     * @param start      The lattice position which is the starting position.
+     * @param end        The LngLat point which is where we want to be close to.
+     * @param nextTarget After the drone has arrived close to the end position, this
+     *                   is its next destination.
+     * @param options    The options controlling how the search is carried out.
+     * @param maxMoves   Only routes with fewer moves than this are looked for.
+     * @param budget     The budget of the search. If it runs out while looking for a
+     *                   better route, the best route so far is used.
+     * @return The route, or null if there is no route.
+     */
+    private static CompassDirection[] calculateRouteWeighted(LatticePoint start, LngLat end, LngLat nextTarget,
+            RouteOptions options, int maxMoves, SearchBudget budget) {
+        SearchStatistics statistics = options.getStatistics();
+        double weight = options.getWeight();
+        long deadline = System.nanoTime() + options.getRepeatTimeLimitMillis() * 1_000_000L;
+        int fewestMoves = fewestMoves(
+                LngLat.latticeDistance(start.getLng(), start.getLat(), end.getLng(), end.getLat()));
+
+        if (statistics != null) {
+            statistics.recordWeightedSearch();
+        }
+        Node best = searchForGoal(start, end, options, weight, maxMoves, NO_DEADLINE, budget);
+        if (best == null) {
+            return null;
+        }
+        while (options.getRepeatTimeLimitMillis() > 0 && weight > 1 && movesTo(best) > Math.max(fewestMoves, 1)
+                && System.nanoTime() - deadline < 0 && !budget.isExhausted()) {
+            weight = Math.max(1, weight - REPEAT_WEIGHT_STEP);
+            if (statistics != null) {
+                statistics.recordWeightedSearch();
+            }
+            Node better = searchForGoal(start, end, options, weight, movesTo(best), deadline, budget);
+            if (better != null) {
+                best = better;
+            }
+        }
+        return finishSearchedRoute(best, end, nextTarget, options, budget.getArea());
+    }
+
+    /**
+     * Work out the fewest moves a route can take, given a lower bound on its length.
+     * The route only has to get within the distance tolerance of the end, which at
+     * most saves that distance stretched by the lattice.
+     *
+     * @param distance A lower bound on the length of the route to the end itself.
+     * @return The fewest moves, which may be zero or less if the start is close.
+     */
+    static int fewestMoves(double distance) {
+        return (int) Math.ceil(distance / LngLat.LENGTH_OF_MOVE - MAX_LATTICE_STRETCH - 1e-9);
+    }
+
+    /**
+     * Work out the highest f value a node can have and still be on a route with fewer
+     * moves than maxMoves. A route can end up to the distance tolerance, stretched by
+     * the lattice, short of the end.
+     *
+     * @param maxMoves The number of moves the route must take fewer than.
+     * @return The highest f value, or infinity if there is no limit.
+     */
+    static double maxFScore(int maxMoves) {
+        if (maxMoves == NO_MOVE_LIMIT) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return (maxMoves - 1 + MAX_LATTICE_STRETCH) * LngLat.LENGTH_OF_MOVE + 1e-12;
+    }
+
+    /**
+     * Count the moves from the start of the search to the node.
+     */
+    static int movesTo(Node node) {
+        return (int) Math.round(node.getGScore() / LngLat.LENGTH_OF_MOVE);
+    }
+
+    /**
+     * Try to build the route without a search, by walking straight towards the end.
+     * Each move is in one of the two compass directions either side of the straight
+     * line, whichever ends closer to the end. Every such move gets one move length
+     * closer to the end in the lattice distance, so if the walk reaches the end in the
+     * fewest moves that any route could, it is a shortest route.
+     *
+     * @param start      The lattice position which is the starting position.
+     * @param end        The LngLat point which is where we want to be close to.
+     * @param nextTarget After the drone has arrived close to the end position, this
+     *                   is its next destination.
+     * @param options    The options to use for the searches to the next target.
+     * @param area       The geometry to walk in.
+     * @return The route, or null if the straight line is blocked or the walk might
+     *         not be a shortest route.
+     */
+    private static CompassDirection[] straightLineRoute(LatticePoint start, LngLat end, LngLat nextTarget,
+            RouteOptions options, AreaSnapshot area) {
+        double dLng = end.getLng() - start.getLng();
+        double dLat = end.getLat() - start.getLat();
+        if (area.getNoFlyZoneIndex().firstZoneCrossed(start.getLng(), start.getLat(), end.getLng(),
+                end.getLat()) >= 0) {
+            return null;
+        }
+
+        // Any route has to get within the distance tolerance of the end, which at most
+        // saves that distance stretched by the lattice.
+        int fewestMoves = fewestMoves(
+                LngLat.latticeDistance(start.getLng(), start.getLat(), end.getLng(), end.getLat()));
+
+        double angle = Math.toDegrees(Math.atan2(dLat, dLng));
+        if (angle < 0) {
+            angle += 360;
+        }
+        int lower = (int) Math.floor(angle / 22.5) % DIRECTIONS_NO_HOVER.length;
+        CompassDirection lowerDirection = DIRECTIONS_NO_HOVER[lower];
+        CompassDirection upperDirection = DIRECTIONS_NO_HOVER[(lower + 1) % DIRECTIONS_NO_HOVER.length];
+
+        boolean endInCentralArea = area.inCentralArea(end.getLng(), end.getLat());
+        MoveLegalityCache legalityCache = legalityCacheFor(options, start.getOrigin(), area);
+        List<CompassDirection> path = new ArrayList<>();
+        LatticePoint position = start;
+        LatticePoint previous = null;
+        while (!position.closeTo(end)) {
+            if (path.size() >= Math.max(fewestMoves, 1)) {
+                // The walk has not got there in the fewest moves, so a search might do better.
+                return null;
+            }
+            LatticePoint viaLower = position.next(lowerDirection);
+            LatticePoint viaUpper = position.next(upperDirection);
+            boolean useLower = LngLat.distance(viaLower.getLng(), viaLower.getLat(), end.getLng(),
+                    end.getLat()) <= LngLat.distance(viaUpper.getLng(), viaUpper.getLat(), end.getLng(), end.getLat());
+            CompassDirection direction = useLower ? lowerDirection : upperDirection;
+            LatticePoint next = useLower ? viaLower : viaUpper;
+            if (!isLegalMove(area, legalityCache, position, direction, next, endInCentralArea)) {
+                return null;
+            }
+            path.add(direction);
+            previous = position;
+            position = next;
+        }
+
+        return finishWalkedRoute(path, previous, end, nextTarget, options, area);
+    }
+
+    /**
+     * Finish a route that was built without a search. As in the search, the last move
+     * is replaced by the one which is best for the next target, and a hover is added.
+     *
+     * @param path       The moves of the route.
+     * @param previous   The position before the last move, or null if there are no moves.
+     * @param end        The LngLat point which the route gets close to.
+     * @param nextTarget The next destination after the end, or null.
+     * @param options    The options to use for the searches to the next target.
+     * @param area       The geometry the route was built in.
+     * @return The finished route.
+     */
+    private static CompassDirection[] finishWalkedRoute(List<CompassDirection> path, LatticePoint previous,
+            LngLat end, LngLat nextTarget, RouteOptions options, AreaSnapshot area) {
+        if (nextTarget != null && previous != null) {
+            CompassDirection lastDirection = path.size() > 1 ? path.get(path.size() - 2) : null;
+            CompassDirection bestMove = findBestMoveInCloseRadius(previous, lastDirection, end, nextTarget, options,
+                    area);
+            if (bestMove != null) {
+                path.set(path.size() - 1, bestMove);
+            }
+        }
+        path.add(CompassDirection.HOVER);
+        return path.toArray(new CompassDirection[0]);
+    }
+
+    /**
+     * Try to build the route without a search, by following the distances to the end
+     * downhill. Each move is the legal move which ends where the distance is lowest,
+     * and the distance must go down with every move.
+     *
+     * @param start      The lattice position which is the starting position.
+     * @param end        The LngLat point which the distances are to.
+     * @param nextTarget After the drone has arrived close to the end position, this
+     *                   is its next destination.
+     * @param options    The options to use for the searches to the next target.
+     * @param area       The geometry to walk in.
+     * @param distanceTo The length of the shortest path around the zones from a
+     *                   longitude and latitude to the end.
+     * @return The route, or null if the distances lead nowhere or the route might not
+     *         be a shortest route.
+     */
+    private static CompassDirection[] downhillRoute(LatticePoint start, LngLat end, LngLat nextTarget,
+            RouteOptions options, AreaSnapshot area, DoubleBinaryOperator distanceTo) {
+        double distance = distanceTo.applyAsDouble(start.getLng(), start.getLat());
+        if (distance == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        // No route around the zones can be shorter than the distance, so as for the
+        // straight line, the route is only used if it takes the fewest moves possible.
+        int fewestMoves = fewestMoves(distance);
+
+        boolean endInCentralArea = area.inCentralArea(end.getLng(), end.getLat());
+        MoveLegalityCache legalityCache = legalityCacheFor(options, start.getOrigin(), area);
+        double[] distances = new double[DIRECTIONS_NO_HOVER.length];
+        LatticePoint[] nextPositions = new LatticePoint[DIRECTIONS_NO_HOVER.length];
+        List<CompassDirection> path = new ArrayList<>();
+        LatticePoint position = start;
+        LatticePoint previous = null;
+        while (!position.closeTo(end)) {
+            if (path.size() >= Math.max(fewestMoves, 1)) {
+                return null;
+            }
+            for (int d = 0; d < DIRECTIONS_NO_HOVER.length; d++) {
+                nextPositions[d] = position.next(DIRECTIONS_NO_HOVER[d]);
+                distances[d] = distanceTo.applyAsDouble(nextPositions[d].getLng(), nextPositions[d].getLat());
+            }
+
+            // Try the moves from the lowest up, as checking if a move is legal is the slow part.
+            int chosen = -1;
+            for (int i = 0; i < DIRECTIONS_NO_HOVER.length && chosen < 0; i++) {
+                int lowest = 0;
+                for (int d = 1; d < DIRECTIONS_NO_HOVER.length; d++) {
+                    if (distances[d] < distances[lowest]) {
+                        lowest = d;
+                    }
+                }
+                if (distances[lowest] >= distance) {
+                    return null;
+                }
+                if (isLegalMove(area, legalityCache, position, DIRECTIONS_NO_HOVER[lowest], nextPositions[lowest],
+                        endInCentralArea)) {
+                    chosen = lowest;
+                } else {
+                    distances[lowest] = Double.POSITIVE_INFINITY;
+                }
+            }
+            if (chosen < 0) {
+                return null;
+            }
+            path.add(DIRECTIONS_NO_HOVER[chosen]);
+            distance = distances[chosen];
+            previous = position;
+            position = nextPositions[chosen];
+        }
+        return finishWalkedRoute(path, previous, end, nextTarget, options, area);
+    }
+
+    /**
+     * A bidirectional A* search, which searches forwards from the start and backwards
+     * from the end at the same time. The backward search is in the frame of the end,
+     * so its positions never match the forward positions exactly. Instead the searches
+     * meet when a forward position is within the distance tolerance of a backward one:
+     * following the backward path in reverse from the forward position then ends
+     * within the tolerance of the end, as it is the same moves shifted by less than
+     * the tolerance. The shifted moves are checked again before the route is used.
+     * <p>
+     * The backward side is not a complete search: it can't leave an end inside or
+     * enclosed by a no-fly zone, and a position it has closed can stop a nearby one on
+     * the other side from meeting it. So the forward side also checks for the end
+     * itself, as the standard search does, and keeps going on its own if the backward
+     * side runs out. The end only has to be got close to, so a route through a node
+     * can be up to the tolerance stretched by the lattice shorter than its f value.
+     * The search stops once the lowest forward f value, less that much, is more than a
+     * move below the shortest route found, which is never later than the standard
+     * search stops, so the route is never longer than the standard one.
+     *
+     * @param start      The lattice position which is the starting position.
+     * @param end        The LngLat point which is where we want to be close to.
+     * @param nextTarget After the drone has arrived close to the end position, this
+     *                   is its next destination.
+     * @param options    The options controlling how the search is carried out.
+     * @param maxMoves   Only routes with fewer moves than this are looked for.
+     * @param budget     The budget of the search. If it runs out after the two sides
+     *                   have met, the shortest route found so far is used.
+     * @return The shortest route from the start to the end.
+     */
+    private static CompassDirection[] calculateRouteBidirectional(LatticePoint start, LngLat end, LngLat nextTarget,
+            RouteOptions options, int maxMoves, SearchBudget budget) {
+        SearchStatistics statistics = options.getStatistics();
+        AreaSnapshot area = budget.getArea();
+        boolean endInCentralArea = area.inCentralArea(end.getLng(), end.getLat());
+        LngLat startPoint = start.toLngLat();
+        LatticePoint endPosition = LatticePoint.origin(end);
+        MoveLegalityCache forwardCache = legalityCacheFor(options, start.getOrigin(), area);
+        MoveLegalityCache backwardCache = legalityCacheFor(options, end, area);
+
+        PriorityQueue<Node> forwardOpen = new PriorityQueue<>(Comparator.comparingDouble(Node::getFScore));
+        PriorityQueue<Node> backwardOpen = new PriorityQueue<>(Comparator.comparingDouble(Node::getFScore));
+        forwardOpen.add(new Node(start, end, options.getLandmarks(), area));
+        backwardOpen.add(new Node(endPosition, startPoint, options.getLandmarks(), area));
+        ClosedSet forwardClosed = new ClosedSet();
+        ClosedSet backwardClosed = new ClosedSet();
+        MeetingIndex forwardExpanded = new MeetingIndex();
+        MeetingIndex backwardExpanded = new MeetingIndex();
+
+        double maxFScore = maxFScore(maxMoves);
+        int bestMoves = maxMoves;
+        List<CompassDirection> bestPath = null;
+        while (!forwardOpen.isEmpty()) {
+            if (bestPath != null && forwardOpen.peek().getFScore() > maxFScore(bestMoves)) {
+                break;
+            }
+
+            // Expand the side with the smaller frontier, or the forward side alone once
+            // the backward side has run out.
+            boolean forward = backwardOpen.isEmpty() || forwardOpen.size() <= backwardOpen.size();
+            Node currentNode = forward ? forwardOpen.poll() : backwardOpen.poll();
+            if (statistics != null) {
+                statistics.recordPoll();
+            }
+            Node parent = currentNode.getParent();
+            if (parent != null) {
+                boolean legal = forward
+                        ? isLegalMove(area, forwardCache, parent.getPosition(), currentNode.getDirectionFromParent(),
+                                currentNode.getPosition(), endInCentralArea)
+                        : isLegalMove(area, backwardCache, currentNode.getPosition(),
+                                opposite(currentNode.getDirectionFromParent()), parent.getPosition(),
+                                endInCentralArea);
+                if (!legal) {
+                    continue;
+                }
+            }
+
+            // A forward node close to the end is a route on its own.
+            if (forward && currentNode.getPosition().closeTo(end)) {
+                if (movesTo(currentNode) < bestMoves) {
+                    bestMoves = movesTo(currentNode);
+                    bestPath = pathTo(currentNode);
+                }
+                continue;
+            }
+            if (!budget.spendExpansion()) {
+                break;
+            }
+            if (statistics != null) {
+                statistics.recordExpansion();
+            }
+
+            // Join this node to every node the other side has expanded close to it.
+            LatticePoint position = currentNode.getPosition();
+            for (Node other : (forward ? backwardExpanded : forwardExpanded).closeTo(position.getLng(),
+                    position.getLat())) {
+                Node forwardNode = forward ? currentNode : other;
+                Node backwardNode = forward ? other : currentNode;
+                int moves = (int) Math.round((forwardNode.getGScore() + backwardNode.getGScore())
+                        / LngLat.LENGTH_OF_MOVE);
+                if (moves < bestMoves) {
+                    List<CompassDirection> path = joinPaths(forwardNode, backwardNode, end, area, forwardCache,
+                            endInCentralArea);
+                    if (path != null) {
+                        bestMoves = moves;
+                        bestPath = path;
+                    }
+                }
+            }
+            (forward ? forwardExpanded : backwardExpanded).add(currentNode);
+
+            ClosedSet closedSet = forward ? forwardClosed : backwardClosed;
+            for (CompassDirection direction : DIRECTIONS_NO_HOVER) {
+                LatticePoint newPoint = position.next(direction);
+                if (closedSet.containsCloseTo(newPoint.getLng(), newPoint.getLat())
+                        || !budget.inRegion(newPoint.getLng(), newPoint.getLat()))
+                    continue;
+                Node newNode = forward ? new Node(newPoint, end, currentNode, direction, options.getLandmarks(), area)
+                        : new Node(newPoint, startPoint, currentNode, direction, options.getLandmarks(), area);
+                if (newNode.getFScore() > maxFScore) {
+                    continue;
+                }
+                (forward ? forwardOpen : backwardOpen).add(newNode);
+                if (statistics != null) {
+                    statistics.recordPush();
+                }
+            }
+            closedSet.add(position.getLng(), position.getLat());
+        }
+        if (bestPath == null) {
+            return null; // In the case that there is no route.
+        }
+
+        LatticePoint previous = null;
+        LatticePoint current = start;
+        for (CompassDirection direction : bestPath) {
+            previous = current;
+            current = current.next(direction);
+        }
+        return finishWalkedRoute(bestPath, previous, end, nextTarget, options, area);
+    }
+
+    /**
+     * Join a forward path to the reverse of a backward path which ends close to it,
+     * checking the moves of the backward path again as they are made from the forward
+     * position rather than the backward one.
+     *
+     * @return The moves from the start to close to the end, or null if a joined move
+     *         is not legal or the joined path does not end close to the end.
+     */
+    private static List<CompassDirection> joinPaths(Node forwardNode, Node backwardNode, LngLat end,
+            AreaSnapshot area, MoveLegalityCache legalityCache, boolean endInCentralArea) {
+        List<CompassDirection> path = pathTo(forwardNode);
+        LatticePoint position = forwardNode.getPosition();
+        for (Node node = backwardNode; node.getParent() != null; node = node.getParent()) {
+            CompassDirection direction = opposite(node.getDirectionFromParent());
+            LatticePoint next = position.next(direction);
+            if (!isLegalMove(area, legalityCache, position, direction, next, endInCentralArea)) {
+                return null;
+            }
+            path.add(direction);
+            position = next;
+        }
+        return position.closeTo(end) ? path : null;
+    }
+
+    /**
+     * The moves from the start of the search to the node.
+     */
+    private static List<CompassDirection> pathTo(Node node) {
+        List<CompassDirection> path = new ArrayList<>();
+        for (; node.getParent() != null; node = node.getParent()) {
+            path.add(node.getDirectionFromParent());
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private static CompassDirection opposite(CompassDirection direction) {
+        return DIRECTIONS_NO_HOVER[(direction.ordinal() - 1 + DIRECTIONS_NO_HOVER.length / 2)
+                % DIRECTIONS_NO_HOVER.length];
+    }
+
+    /**
+     * A spatial hash of the nodes one side of the bidirectional search has expanded,
+     * with cells the size of the distance tolerance, for finding the nodes close to a
+     * position on the other side.
+     */
+    private static final class MeetingIndex {
+        private final Map<Long, List<Node>> cells = new HashMap<>();
+
+        void add(Node node) {
+            LatticePoint position = node.getPosition();
+            cells.computeIfAbsent(cellOf(position.getLng(), position.getLat()), k -> new ArrayList<>()).add(node);
+        }
+
+        List<Node> closeTo(double lng, double lat) {
+            List<Node> close = new ArrayList<>();
+            long column = (long) Math.floor(lng / LngLat.DISTANCE_TOLERANCE);
+            long row = (long) Math.floor(lat / LngLat.DISTANCE_TOLERANCE);
+            for (long c = column - 1; c <= column + 1; c++) {
+                for (long r = row - 1; r <= row + 1; r++) {
+                    List<Node> nodes = cells.get((c << 32) ^ (r & 0xFFFFFFFFL));
+                    if (nodes == null) {
+                        continue;
+                    }
+                    for (Node node : nodes) {
+                        LatticePoint position = node.getPosition();
+                        if (LngLat.distance(lng, lat, position.getLng(),
+                                position.getLat()) < LngLat.DISTANCE_TOLERANCE) {
+                            close.add(node);
+                        }
+                    }
+                }
+            }
+            return close;
+        }
+
+        private static long cellOf(double lng, double lat) {
+            long column = (long) Math.floor(lng / LngLat.DISTANCE_TOLERANCE);
+            long row = (long) Math.floor(lat / LngLat.DISTANCE_TOLERANCE);
+            return (column << 32) ^ (row & 0xFFFFFFFFL);
+        }
+    }
+
+    /**
+     * The same A* search as calculateRouteFrom, but with the nodes stored in the
+     * current thread's SearchArena instead of as Node objects. The open list and
+     * closed set are also kept in the arena, so the only objects created are for
+     * the winning path.
+     */
+    private static CompassDirection[] calculateRouteInArena(LatticePoint start, LngLat end, LngLat nextTarget,
+            RouteOptions options, int maxMoves, SearchBudget budget) {
+        AreaSnapshot area = budget.getArea();
+        boolean endInCentralArea = area.inCentralArea(end.getLng(), end.getLat());
+        LngLat origin = start.getOrigin();
+        SearchStatistics statistics = options.getStatistics();
+        MoveLegalityCache legalityCache = legalityCacheFor(options, origin, area);
+
+        double maxFScore = maxFScore(maxMoves);
+        SearchArena arena = SearchArena.forCurrentThread();
+        arena.reset(origin);
+        ClosedSet closedSet = arena.getClosedSet();
+
+        // Add the start node to the open list.
+        arena.push(arena.addNode(start.getLow(), start.getHigh(), start.getLng(), start.getLat(), 0,
+                Node.calculateHeuristic(area, start.getLng(), start.getLat(), end, options.getLandmarks()), -1, null));
+
+        while (!arena.isOpenListEmpty()) {
+            int current = arena.poll();
+            if (statistics != null) {
+                statistics.recordPoll();
+            }
+            int parent = arena.getParent(current);
+            double currentLng = arena.getLng(current);
+            double currentLat = arena.getLat(current);
+
+            // If the move from the parent is not allowed then ignore the node.
+            if (parent >= 0 && !isLegalInArena(area, legalityCache, arena, parent, arena.getDirection(current),
+                    currentLng, currentLat, endInCentralArea)) {
+                continue;
+            }
+
+            // If we've found a point that is close to the endpoint.
+            if (LngLat.distance(currentLng, currentLat, end.getLng(), end.getLat()) < LngLat.DISTANCE_TOLERANCE) {
+                if (arena.getG(current) < maxMoves * LngLat.LENGTH_OF_MOVE - 1e-12) {
+                    return finishArenaRoute(arena, current, end, nextTarget, options, area);
+                }
+                continue;
+            }
+            if (!budget.spendExpansion()) {
+                return null;
+            }
+            if (statistics != null) {
+                statistics.recordExpansion();
+            }
+
+            long low = arena.getLow(current);
+            long high = arena.getHigh(current);
+            double g = arena.getG(current) + LngLat.LENGTH_OF_MOVE;
+            for (CompassDirection direction : DIRECTIONS_NO_HOVER) {
+                long newLow = low + LatticePoint.lowStep(direction);
+                long newHigh = high + LatticePoint.highStep(direction);
+                double newLng = LatticePoint.lngOf(origin, newLow, newHigh);
+                double newLat = LatticePoint.latOf(origin, newLow, newHigh);
+
+                // If the new point is close to a point in the closed set, or outside the
+                // region, ignore it.
+                if (closedSet.containsCloseTo(newLng, newLat) || !budget.inRegion(newLng, newLat))
+                    continue;
+
+                double h = Node.calculateHeuristic(area, newLng, newLat, end, options.getLandmarks());
+                if (g + h > maxFScore) {
+                    continue;
+                }
+                arena.push(arena.addNode(newLow, newHigh, newLng, newLat, g, h, current, direction));
+                if (statistics != null) {
+                    statistics.recordPush();
+                }
+            }
+
+            // Add the current node to the closed set.
+            closedSet.add(currentLng, currentLat);
+        }
+        return null; // In the case that there is no route.
+    }
+
+    /**
+     * The arena search, but with an indexed heap as the open list. Each position is
+     * held in the heap at most once, and when a cheaper path to a position in the
+     * heap is found its key is decreased instead of adding a duplicate.
+     * <p>
+     * As in the standard search, moves are only checked against the no-fly zones and
+     * central area when a node is polled. The exception is when a new path to a
+     * position in the heap is found, as both paths must be checked to know which one
+     * to keep.
+     */
+    private static CompassDirection[] calculateRouteWithIndexedHeap(LatticePoint start, LngLat end,
+            LngLat nextTarget, RouteOptions options, int maxMoves, SearchBudget budget) {
+        AreaSnapshot area = budget.getArea();
+        boolean endInCentralArea = area.inCentralArea(end.getLng(), end.getLat());
+        LngLat origin = start.getOrigin();
+        SearchStatistics statistics = options.getStatistics();
+        MoveLegalityCache legalityCache = legalityCacheFor(options, origin, area);
+
+        double maxFScore = maxFScore(maxMoves);
+        SearchArena arena = SearchArena.forCurrentThread();
+        arena.reset(origin);
+        ClosedSet closedSet = arena.getClosedSet();
+
+        // Add the start node to the open list.
+        int startNode = arena.addNode(start.getLow(), start.getHigh(), start.getLng(), start.getLat(), 0,
+                Node.calculateHeuristic(area, start.getLng(), start.getLat(), end, options.getLandmarks()), -1, null);
+        arena.setStatus(startNode, SearchArena.OPEN_LEGAL);
+        arena.putNode(startNode);
+        arena.pushIndexed(startNode);
+
+        while (!arena.isOpenListEmpty()) {
+            int current = arena.pollIndexed();
+            if (statistics != null) {
+                statistics.recordPoll();
+            }
+            double currentLng = arena.getLng(current);
+            double currentLat = arena.getLat(current);
+
+            // If the move from the parent is not allowed then ignore the node.
+            if (!isLegalInArena(area, legalityCache, arena, current, endInCentralArea)) {
+                arena.setStatus(current, SearchArena.DISCARDED);
+                continue;
+            }
+
+            // If we've found a point that is close to the endpoint.
+            if (LngLat.distance(currentLng, currentLat, end.getLng(), end.getLat()) < LngLat.DISTANCE_TOLERANCE) {
+                if (arena.getG(current) < maxMoves * LngLat.LENGTH_OF_MOVE - 1e-12) {
+                    return finishArenaRoute(arena, current, end, nextTarget, options, area);
+                }
+                continue;
+            }
+            if (!budget.spendExpansion()) {
+                return null;
+            }
+            arena.setStatus(current, SearchArena.EXPANDED);
+            if (statistics != null) {
+                statistics.recordExpansion();
             }
 
-            // Add the current node to the closed list.
-            closedList.add(currentNode);
+            long low = arena.getLow(current);
+            long high = arena.getHigh(current);
+            double g = arena.getG(current) + LngLat.LENGTH_OF_MOVE;
+            for (CompassDirection direction : DIRECTIONS_NO_HOVER) {
+                long newLow = low + LatticePoint.lowStep(direction);
+                long newHigh = high + LatticePoint.highStep(direction);
+                double newLng = LatticePoint.lngOf(origin, newLow, newHigh);
+                double newLat = LatticePoint.latOf(origin, newLow, newHigh);
+
+                // If the new point is close to a point in the closed set, or outside the
+                // region, ignore it.
+                if (closedSet.containsCloseTo(newLng, newLat) || !budget.inRegion(newLng, newLat))
+                    continue;
+
+                int existing = arena.findNode(newLow, newHigh);
+                if (existing < 0) {
+                    // A new position, so add it to the open list unless no route through it
+                    // could fit in the move budget.
+                    double h = Node.calculateHeuristic(area, newLng, newLat, end, options.getLandmarks());
+                    if (g + h > maxFScore) {
+                        continue;
+                    }
+                    int newNode = arena.addNode(newLow, newHigh, newLng, newLat, g, h, current, direction);
+                    arena.putNode(newNode);
+                    arena.pushIndexed(newNode);
+                    if (statistics != null) {
+                        statistics.recordPush();
+                    }
+                } else if (arena.getStatus(existing) == SearchArena.DISCARDED) {
+                    // The position was only reached by an illegal move before, so try again
+                    // from the current node.
+                    arena.updateNode(existing, g, current, direction, SearchArena.OPEN);
+                    arena.pushIndexed(existing);
+                    if (statistics != null) {
+                        statistics.recordPush();
+                    }
+                } else if (arena.inHeap(existing)) {
+                    if (!isLegalInArena(area, legalityCache, arena, existing, endInCentralArea)) {
+                        // The path already in the heap is illegal, so replace it.
+                        arena.updateNode(existing, g, current, direction, SearchArena.OPEN);
+                        arena.updateKey(existing);
+                        if (statistics != null) {
+                            statistics.recordDecreaseKey();
+                        }
+                    } else if (g < arena.getG(existing)
+                            && isLegalInArena(area, legalityCache, arena, current, direction, newLng, newLat,
+                                    endInCentralArea)) {
+                        // The new path is cheaper, so decrease the key.
+                        arena.updateNode(existing, g, current, direction, SearchArena.OPEN_LEGAL);
+                        arena.updateKey(existing);
+                        if (statistics != null) {
+                            statistics.recordDecreaseKey();
+                        }
+                    }
+                }
+            }
+
+            // Add the current node to the closed set.
+            closedSet.add(currentLng, currentLat);
         }
         return null; // In the case that there is no route.
     }
 
+    /**
+     * Checks the move from a node's parent to the node, remembering the result so
+     * it is only calculated once.
+     */
+    private static boolean isLegalInArena(AreaSnapshot area, MoveLegalityCache legalityCache, SearchArena arena,
+            int node, boolean endInCentralArea) {
+        if (arena.getStatus(node) == SearchArena.OPEN_LEGAL) {
+            return true;
+        }
+        int parent = arena.getParent(node);
+        boolean legal = parent < 0 || isLegalInArena(area, legalityCache, arena, parent, arena.getDirection(node),
+                arena.getLng(node), arena.getLat(node), endInCentralArea);
+        if (legal) {
+            arena.setStatus(node, SearchArena.OPEN_LEGAL);
+        }
+        return legal;
+    }
+
+    /**
+     * Checks the move in the given direction from a node in the arena.
+     */
+    private static boolean isLegalInArena(AreaSnapshot area, MoveLegalityCache legalityCache, SearchArena arena,
+            int from, CompassDirection direction, double toLng, double toLat, boolean endInCentralArea) {
+        if (legalityCache != null) {
+            return legalityCache.isLegalMove(area, arena.getLow(from), arena.getHigh(from), arena.getLng(from),
+                    arena.getLat(from), direction, toLng, toLat, endInCentralArea);
+        }
+        return isLegalMove(area, arena.getLng(from), arena.getLat(from), toLng, toLat, endInCentralArea);
+    }
+
+    /**
+     * Build the route to a node in the arena which is close to the end. If there is
+     * a next target, the last move is replaced with the one which is closest to it.
+     */
+    private static CompassDirection[] finishArenaRoute(SearchArena arena, int current, LngLat end,
+            LngLat nextTarget, RouteOptions options, AreaSnapshot area) {
+        CompassDirection[] path = arena.pathTo(current);
+        int parent = arena.getParent(current);
+        if (nextTarget == null || parent < 0) {
+            return withHover(path);
+        }
+
+        // The searches to the next target reuse this thread's arena, so copy out
+        // the parent before starting them.
+        CompassDirection bestMove = findBestMoveInCloseRadius(arena.getPosition(parent), arena.getDirection(parent),
+                end, nextTarget, options, area);
+        if (bestMove != null) {
+            path[path.length - 1] = bestMove;
+        }
+        return withHover(path);
+    }
+
+    /**
+     * Get the cache of legal moves to use for a search, making sure it is up to date
+     * with the geometry of the search.
+     *
+     * @param options The options for the search.
+     * @param origin  The origin of the frame the search is in.
+     * @param area    The geometry the search is made in.
+     * @return The cache, or null if there is no cache for the frame of the search.
+     */
+    static MoveLegalityCache legalityCacheFor(RouteOptions options, LngLat origin, AreaSnapshot area) {
+        MoveLegalityCache legalityCache = options.getLegalityCache();
+        if (legalityCache == null || !legalityCache.isFor(origin)) {
+            return null;
+        }
+        legalityCache.checkGeometry(area);
+        return legalityCache;
+    }
+
+    /**
+     * Checks if the drone is allowed to move from one position to the next.
+     *
+     * @param area             The geometry the move is made in.
+     * @param legalityCache    The cache of legal moves, or null to check the geometry.
+     * @param from             The position the drone is moving from.
+     * @param direction        The direction of the move.
+     * @param to               The position the drone is moving to.
+     * @param endInCentralArea Whether the end of the route is in the central area.
+     * @return False if the move goes through a no-fly zone, or takes the drone out of
+     *         the central area when the end is inside it. True otherwise.
+     */
+    static boolean isLegalMove(AreaSnapshot area, MoveLegalityCache legalityCache, LatticePoint from,
+            CompassDirection direction, LatticePoint to, boolean endInCentralArea) {
+        if (legalityCache != null) {
+            return legalityCache.isLegalMove(area, from.getLow(), from.getHigh(), from.getLng(), from.getLat(),
+                    direction, to.getLng(), to.getLat(), endInCentralArea);
+        }
+        return isLegalMove(area, from.getLng(), from.getLat(), to.getLng(), to.getLat(), endInCentralArea);
+    }
+
+    private static boolean isLegalMove(AreaSnapshot area, double fromLng, double fromLat, double toLng,
+            double toLat, boolean endInCentralArea) {
+        // Path from parent to current node goes through a no-fly zone.
+        if (area.inNoFlyZone(toLng, toLat, fromLng, fromLat)) {
+            return false;
+        }
+        // Path from parent to current node takes us out of the central area.
+        return !(endInCentralArea && area.inCentralArea(fromLng, fromLat)
+                && !area.inCentralArea(toLng, toLat));
+    }
+
     /**
      * Checks if there is multiple possible moves which result in being close to the
      * destination
@@ -90,50 +1287,228 @@ public class RouteCalculator {
      * the next target
      * and return the one with the least number of moves.
      *
-     * @param currentNode A node which has at least one child which is close to the
-     *                    destination.
-     * @param end         The LngLat point which is where we want to be close to.
-     * @param nextTarget  The point which we want to be closest to after we have
-     *                    reached the end point.
-     * @return The node which is close to the end point and has the least number of
+     * @param position      The position of a node which has at least one child which
+     *                      is close to the destination.
+     * @param lastDirection The direction that was taken to reach that node.
+     * @param end           The LngLat point which is where we want to be close to.
+     * @param nextTarget    The point which we want to be closest to after we have
+     *                      reached the end point.
+     * @param options       The options to use for the searches to the next target.
+     * @param area          The geometry to route to the next target in.
+     * @return The move which ends close to the end point and has the least number of
      *         moves to the next target.
      */
-    private static Node findBestMoveInCloseRadius(Node currentNode, LngLat end, LngLat nextTarget) {
+    private static CompassDirection findBestMoveInCloseRadius(LatticePoint position, CompassDirection lastDirection,
+            LngLat end, LngLat nextTarget, RouteOptions options, AreaSnapshot area) {
 
-        // Find all the points that are close to the end and the drone can get to from
-        // the current point in one
-        // move.
-        List<Node> validNodes = new ArrayList<>();
-        for (CompassDirection direction : CompassDirection.valuesNoHover()) {
-            LngLat newPoint = currentNode.getPoint().nextPosition(direction);
-            if (newPoint.closeTo(end)) {
-                validNodes.add(new Node(newPoint, end, currentNode, direction));
+        // Find all the moves that end close to the end and the drone can make from the
+        // current point.
+        List<CompassDirection> validMoves = new ArrayList<>();
+        for (CompassDirection direction : DIRECTIONS_NO_HOVER) {
+            if (position.next(direction).closeTo(end)) {
+                validMoves.add(direction);
             }
         }
 
-        // Find the node that is closest to the next target.
-        Node closestNode = null;
+        // Find the move that is closest to the next target.
+        int[] routeLengths = routeLengthsToNextTarget(position, validMoves, nextTarget, options, area);
+        CompassDirection closestMove = null;
         double minDist = Double.MAX_VALUE;
 
-        for (Node node : validNodes) {
-            double dist = node.getPoint().numberOfMovesTo(nextTarget);
+        for (int i = 0; i < validMoves.size(); i++) {
+            CompassDirection move = validMoves.get(i);
+            double dist = routeLengths[i];
             if (dist < minDist) {
                 minDist = dist;
-                closestNode = node;
+                closestMove = move;
             }
 
-            // If the distance is the same, then choose the node that is in the same
-            // direction as the parent.
+            // If the distance is the same, then choose the move that is in the same
+            // direction as the previous one.
             // This is just a cosmetic preference for looking at the geojson and doesn't
             // affect the algorithm.
-            if (dist == minDist && node.getDirectionFromParent() == node.getParent().getDirectionFromParent()) {
-                closestNode = node;
+            if (dist == minDist && move == lastDirection) {
+                closestMove = move;
             }
         }
 
-        // Return the node that is close to the current end and is closest to the next
+        // Return the move that is close to the current end and is closest to the next
         // target.
-        return closestNode;
+        return closestMove;
+    }
+
+    /**
+     * Work out the length of the route to the next target after each of the moves.
+     * Moves from which the drone can walk straight to the target or follow the
+     * distances to it downhill are done without a search, and the rest are searched
+     * for together in one A* search.
+     *
+     * @param position   The position the moves are made from.
+     * @param moves      The moves to work out the routes after.
+     * @param nextTarget The target of the routes.
+     * @param options    The options to use for the routes.
+     * @param area       The geometry to route in.
+     * @return The length of the route after each move, or Integer.MAX_VALUE if there
+     *         is no route or it is longer than the shortest of the others.
+     */
+    private static int[] routeLengthsToNextTarget(LatticePoint position, List<CompassDirection> moves,
+            LngLat nextTarget, RouteOptions options, AreaSnapshot area) {
+        SearchStatistics statistics = options.getStatistics();
+        // Without a distance field for the target, the distances come straight from the
+        // visibility graph.
+        DistanceField distanceField = options.getDistanceField();
+        DoubleBinaryOperator distanceTo;
+        if (distanceField != null && distanceField.isFor(nextTarget)) {
+            distanceTo = (lng, lat) -> distanceField.distanceFrom(area, lng, lat);
+        } else {
+            VisibilityGraph graph = area.getVisibilityGraph();
+            distanceTo = (lng, lat) -> graph.lowerBound(lng, lat, nextTarget);
+        }
+
+        int[] lengths = new int[moves.size()];
+        LatticePoint[] starts = new LatticePoint[moves.size()];
+        int shortest = Integer.MAX_VALUE;
+        boolean searchNeeded = false;
+        for (int i = 0; i < moves.size(); i++) {
+            starts[i] = position.next(moves.get(i));
+            CompassDirection[] route = null;
+            if (options.usesStraightLine()) {
+                route = straightLineRoute(starts[i], nextTarget, null, options, area);
+                if (route != null && statistics != null) {
+                    statistics.recordStraightLineRoute();
+                }
+            }
+            if (route == null) {
+                route = downhillRoute(starts[i], nextTarget, null, options, area, distanceTo);
+                if (route != null && statistics != null) {
+                    statistics.recordDistanceFieldRoute();
+                }
+            }
+            if (route == null) {
+                lengths[i] = UNKNOWN_LENGTH;
+                searchNeeded = true;
+            } else {
+                lengths[i] = route.length;
+                shortest = Math.min(shortest, route.length);
+            }
+        }
+        if (searchNeeded) {
+            searchFromEachStart(starts, lengths, shortest, nextTarget, options, area);
+        }
+        for (int i = 0; i < lengths.length; i++) {
+            if (lengths[i] == UNKNOWN_LENGTH) {
+                lengths[i] = Integer.MAX_VALUE;
+            }
+        }
+        return lengths;
+    }
+
+    /**
+     * Find the length of the routes to the end from all the starts whose length is
+     * unknown, in one A* search. Each node remembers which start it came from, and
+     * each start has its own closed set, so the route found from each start is the
+     * one a search from it alone would find. The search stops once no start can have
+     * a route as short as the shortest route found. The starts whose routes tie with
+     * the shortest are still found, so the tie can be broken the same way as when
+     * each start is searched from alone.
+     *
+     * @param starts   The starting positions, all in the same frame.
+     * @param lengths  The length of the route from each start, or UNKNOWN_LENGTH. The
+     *                 lengths found by the search are filled in.
+     * @param shortest The length of the shortest route already known, or
+     *                 Integer.MAX_VALUE.
+     * @param end      The LngLat point which is where we want to be close to.
+     * @param options  The options controlling how the search is carried out.
+     * @param area     The geometry to search in.
+     */
+    private static void searchFromEachStart(LatticePoint[] starts, int[] lengths, int shortest, LngLat end,
+            RouteOptions options, AreaSnapshot area) {
+        SearchStatistics statistics = options.getStatistics();
+        if (statistics != null) {
+            statistics.recordSearch();
+        }
+        boolean endInCentralArea = area.inCentralArea(end.getLng(), end.getLat());
+        MoveLegalityCache legalityCache = legalityCacheFor(options, starts[0].getOrigin(), area);
+        SearchBudget budget = SearchBudget.forSearch(starts[0], end, options, area);
+
+        PriorityQueue<StartNode> openList = new PriorityQueue<>(Comparator.comparingDouble(Node::getFScore));
+        ClosedSet[] closedSets = new ClosedSet[starts.length];
+        for (int i = 0; i < starts.length; i++) {
+            if (lengths[i] == UNKNOWN_LENGTH) {
+                openList.add(new StartNode(starts[i], end, options.getLandmarks(), area, i));
+                closedSets[i] = new ClosedSet();
+            }
+        }
+
+        while (!openList.isEmpty()) {
+            StartNode currentNode = openList.poll();
+            if (statistics != null) {
+                statistics.recordPoll();
+            }
+
+            // A route through this node would end with f at most the stretched move
+            // length past its moves, so once f is above the bound for a route of the
+            // shortest length, every remaining start is strictly longer.
+            if (shortest != Integer.MAX_VALUE && currentNode.getFScore() > maxFScore(shortest)) {
+                break;
+            }
+            int start = currentNode.start;
+            if (lengths[start] != UNKNOWN_LENGTH) {
+                continue;
+            }
+            if (currentNode.getParent() != null && !isLegalMove(area, legalityCache,
+                    currentNode.getParent().getPosition(), currentNode.getDirectionFromParent(),
+                    currentNode.getPosition(), endInCentralArea)) {
+                continue;
+            }
+
+            // The route is the moves to this node followed by a hover.
+            if (currentNode.getPosition().closeTo(end)) {
+                lengths[start] = (int) Math.round(currentNode.getGScore() / LngLat.LENGTH_OF_MOVE) + 1;
+                shortest = Math.min(shortest, lengths[start]);
+                continue;
+            }
+            // The starts whose routes were not found before the budget ran out are
+            // left unknown, so they are not chosen.
+            if (!budget.spendExpansion()) {
+                break;
+            }
+            if (statistics != null) {
+                statistics.recordExpansion();
+            }
+
+            for (CompassDirection direction : DIRECTIONS_NO_HOVER) {
+                LatticePoint newPoint = currentNode.getPosition().next(direction);
+                if (closedSets[start].containsCloseTo(newPoint.getLng(), newPoint.getLat())
+                        || !budget.inRegion(newPoint.getLng(), newPoint.getLat()))
+                    continue;
+                openList.add(new StartNode(newPoint, end, currentNode, direction, options.getLandmarks(), area,
+                        start));
+                if (statistics != null) {
+                    statistics.recordPush();
+                }
+            }
+            LatticePoint currentPosition = currentNode.getPosition();
+            closedSets[start].add(currentPosition.getLng(), currentPosition.getLat());
+        }
+    }
+
+    /**
+     * A node of the search from several starts, which remembers the start it came from.
+     */
+    private static final class StartNode extends Node {
+        private final int start;
+
+        StartNode(LatticePoint position, LngLat end, LandmarkHeuristic landmarks, AreaSnapshot area, int start) {
+            super(position, end, landmarks, area);
+            this.start = start;
+        }
+
+        StartNode(LatticePoint position, LngLat end, StartNode parent, CompassDirection directionFromParent,
+                LandmarkHeuristic landmarks, AreaSnapshot area, int start) {
+            super(position, end, parent, directionFromParent, landmarks, area);
+            this.start = start;
+        }
     }
 
     /**
@@ -146,7 +1521,7 @@ public class RouteCalculator {
      * @return An array of CompassDirections that were taken to get from the start
      *         to this end node.
      */
-    private static CompassDirection[] reconstructPath(Node currentNode) {
+    static CompassDirection[] reconstructPath(Node currentNode) {
         List<CompassDirection> route = new ArrayList<>();
 
         // Go from child to parent until we reach the start node.
@@ -164,4 +1539,16 @@ public class RouteCalculator {
         route.add(CompassDirection.HOVER);
         return route.toArray(new CompassDirection[0]);
     }
-}
\ No newline at end of file
+
+    /**
+     * Add the hover that all routes must end in.
+     *
+     * @param path The directions taken from the start to the end node.
+     * @return A copy of the path with a hover added at the end.
+     */
+    private static CompassDirection[] withHover(CompassDirection[] path) {
+        CompassDirection[] route = Arrays.copyOf(path, path.length + 1);
+        route[path.length] = CompassDirection.HOVER;
+        return route;
+    }
+}
@@ -0,0 +1,367 @@
+package RouteCalculation;
+
+/**
+ * Options which control how the RouteCalculator searches for a route.
+ * The default options give the standard A* search, which is skipped when the route
+ * can be built by walking straight to the end.
+ */
+public class RouteOptions {
+    private boolean useStraightLine = true;
+    private boolean useArena;
+    private boolean useIndexedHeap;
+    private boolean useBidirectional;
+    private double weight = 1;
+    private long repeatTimeLimitMillis;
+    private long expansionBudget;
+    private long timeBudgetMillis;
+    private int corridorMoves;
+    private SearchStatistics statistics;
+    private MoveLegalityCache legalityCache;
+    private RouteCache routeCache;
+    private DistanceField distanceField;
+    private LandmarkHeuristic landmarks;
+    private ClusterHierarchy hierarchy;
+
+    /**
+     * Accessor for whether a route is first tried by walking straight to the end.
+     *
+     * @return True if the straight line is tried first, false otherwise.
+     */
+    public boolean usesStraightLine() {
+        return useStraightLine;
+    }
+
+    /**
+     * Mutator for whether a route is first tried by walking straight to the end in the
+     * two compass directions either side of it. The walk is only used when every move
+     * is legal and it takes the fewest moves possible, so the route is never longer
+     * than the one the search would find. The search is used otherwise.
+     *
+     * @param useStraightLine True if the straight line should be tried first, false
+     *                        to always search.
+     */
+    public void setUseStraightLine(boolean useStraightLine) {
+        this.useStraightLine = useStraightLine;
+    }
+
+    /**
+     * Accessor for whether the search keeps its nodes in a reusable per-thread
+     * arena of primitive arrays instead of creating a Node object for each one.
+     *
+     * @return True if the arena is used, false otherwise.
+     */
+    public boolean usesArena() {
+        return useArena || useIndexedHeap;
+    }
+
+    /**
+     * Mutator for whether the search keeps its nodes in a reusable per-thread
+     * arena of primitive arrays. This produces the same routes as the standard
+     * search but with far less memory and garbage collection per node.
+     *
+     * @param useArena True if the arena should be used, false otherwise.
+     */
+    public void setUseArena(boolean useArena) {
+        this.useArena = useArena;
+    }
+
+    /**
+     * Accessor for whether the search runs forwards from the start and backwards from
+     * the end at the same time.
+     *
+     * @return True if the bidirectional search is used, false otherwise.
+     */
+    public boolean usesBidirectional() {
+        return useBidirectional;
+    }
+
+    /**
+     * Mutator for whether the search runs forwards from the start and backwards from
+     * the end at the same time, joining the two sides where they meet. The route is
+     * never longer than the standard search's. It takes precedence over the arena and
+     * indexed heap.
+     *
+     * @param useBidirectional True if the bidirectional search should be used, false
+     *                         otherwise.
+     */
+    public void setUseBidirectional(boolean useBidirectional) {
+        this.useBidirectional = useBidirectional;
+    }
+
+    /**
+     * Accessor for the weight the heuristic is inflated by in the search.
+     *
+     * @return The weight, which is one for the standard search.
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * Mutator for the weight the heuristic is inflated by in the search. With a weight
+     * of epsilon the search expands fewer nodes, and the route found takes at most
+     * epsilon times as many moves as the shortest route to the end itself, which the
+     * heuristic is a lower bound for. A route only has to get close to the end, so
+     * this can be up to epsilon times about one move more than the shortest route
+     * that gets close. A weight above one takes
+     * precedence over the bidirectional search, arena and indexed heap. Routes in a
+     * route cache are not told apart by weight, so options with different weights
+     * should not share one.
+     *
+     * @param weight The weight of the heuristic, at least one.
+     */
+    public void setWeight(double weight) {
+        if (!(weight >= 1) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Heuristic weight must be a finite number of at least 1, got "
+                    + weight);
+        }
+        this.weight = weight;
+    }
+
+    /**
+     * Accessor for how long a weighted search may be repeated to improve its route.
+     *
+     * @return The time limit in milliseconds, or zero if the first route found is used.
+     */
+    public long getRepeatTimeLimitMillis() {
+        return repeatTimeLimitMillis;
+    }
+
+    /**
+     * Mutator for how long a weighted search may be repeated to improve its route. The
+     * first route is found with the full weight, which is quick, and then a new search
+     * is run from the start with lower and lower weights down to one while there is
+     * time left, each time only looking for a route with fewer moves than the best so
+     * far. The best route found when time runs out is used, so the bound given by the
+     * weight still holds, and the route often takes fewer moves.
+     *
+     * @param repeatTimeLimitMillis The time limit in milliseconds, or zero to use the
+     *                              first route found.
+     */
+    public void setRepeatTimeLimitMillis(long repeatTimeLimitMillis) {
+        if (repeatTimeLimitMillis < 0) {
+            throw new IllegalArgumentException("Repeat time limit must not be negative, got "
+                    + repeatTimeLimitMillis);
+        }
+        this.repeatTimeLimitMillis = repeatTimeLimitMillis;
+    }
+
+    /**
+     * Accessor for the most nodes the search for one route may expand.
+     *
+     * @return The number of expansions, or zero if there is no limit.
+     */
+    public long getExpansionBudget() {
+        return expansionBudget;
+    }
+
+    /**
+     * Mutator for the most nodes the search for one route may expand. If the search
+     * runs out, no route is returned, in the same way as when there is no route.
+     *
+     * @param expansionBudget The number of expansions, or zero for no limit.
+     */
+    public void setExpansionBudget(long expansionBudget) {
+        if (expansionBudget < 0) {
+            throw new IllegalArgumentException("Expansion budget must not be negative, got " + expansionBudget);
+        }
+        this.expansionBudget = expansionBudget;
+    }
+
+    /**
+     * Accessor for the longest the search for one route may take.
+     *
+     * @return The time in milliseconds, or zero if there is no limit.
+     */
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    /**
+     * Mutator for the longest the search for one route may take. If the search runs
+     * out of time, no route is returned, in the same way as when there is no route.
+     *
+     * @param timeBudgetMillis The time in milliseconds, or zero for no limit.
+     */
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("Time budget must not be negative, got " + timeBudgetMillis);
+        }
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    /**
+     * Accessor for how far either side of the shortest path around the zones the
+     * search is first kept to.
+     *
+     * @return The half width of the corridor in moves, or zero if the search is not
+     *         kept to a corridor.
+     */
+    public int getCorridorMoves() {
+        return corridorMoves;
+    }
+
+    /**
+     * Mutator for how far either side of the shortest path around the zones the
+     * search is first kept to. The shortest path on the visibility graph of the zones
+     * is found first, and the search only makes nodes inside the corridor around it,
+     * which saves expansions and memory on long legs. If no route is found inside the
+     * corridor, it is widened to twice the width and the search is run again. The
+     * shortest route made of moves stays close to the shortest path around the zones,
+     * so a corridor a few moves wide seldom makes the route longer, but it can.
+     *
+     * @param corridorMoves The half width of the corridor in moves, or zero to search
+     *                      the whole region.
+     */
+    public void setCorridorMoves(int corridorMoves) {
+        if (corridorMoves < 0) {
+            throw new IllegalArgumentException("Corridor width must not be negative, got " + corridorMoves);
+        }
+        this.corridorMoves = corridorMoves;
+    }
+
+    /**
+     * Accessor for whether the open list is an indexed heap keyed on position.
+     *
+     * @return True if the indexed heap is used, false otherwise.
+     */
+    public boolean usesIndexedHeap() {
+        return useIndexedHeap;
+    }
+
+    /**
+     * Mutator for whether the open list is an indexed heap keyed on position, which
+     * holds each position at most once and lowers its key when a cheaper path to it
+     * is found. Ties are broken by the lower heuristic and then by direction, so the
+     * route found can differ from the standard search but is never longer. The
+     * indexed heap is always kept in the arena.
+     *
+     * @param useIndexedHeap True if the indexed heap should be used, false otherwise.
+     */
+    public void setUseIndexedHeap(boolean useIndexedHeap) {
+        this.useIndexedHeap = useIndexedHeap;
+    }
+
+    /**
+     * Accessor for the statistics that searches record their work in.
+     *
+     * @return The statistics, or null if no statistics are recorded.
+     */
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Mutator for the statistics that searches record their work in.
+     *
+     * @param statistics The statistics to add to, or null to not record any.
+     */
+    public void setStatistics(SearchStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Accessor for the cache of legal moves shared by the searches using these
+     * options.
+     *
+     * @return The cache, or null if moves are always checked against the geometry.
+     */
+    public MoveLegalityCache getLegalityCache() {
+        return legalityCache;
+    }
+
+    /**
+     * Mutator for the cache of legal moves shared by the searches using these options.
+     * The cache is only used by searches that start in the same frame as the cache,
+     * and gives the same answers as checking the geometry.
+     *
+     * @param legalityCache The cache to use, or null to always check the geometry.
+     */
+    public void setLegalityCache(MoveLegalityCache legalityCache) {
+        this.legalityCache = legalityCache;
+    }
+
+    /**
+     * Accessor for the cache of routes shared by the searches using these options.
+     *
+     * @return The cache, or null if every route is searched for.
+     */
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * Mutator for the cache of routes shared by the searches using these options. A
+     * route is only taken from the cache if it was found from exactly the same
+     * position to the same end and next target.
+     *
+     * @param routeCache The cache to use, or null to search for every route.
+     */
+    public void setRouteCache(RouteCache routeCache) {
+        this.routeCache = routeCache;
+    }
+
+    /**
+     * Accessor for the field of distances used in place of a search for routes to its
+     * target.
+     *
+     * @return The field, or null if every route is searched for.
+     */
+    public DistanceField getDistanceField() {
+        return distanceField;
+    }
+
+    /**
+     * Mutator for the field of distances used in place of a search for routes to its
+     * target. A route to the target follows the field downhill, and is only used if
+     * every move is legal and it is no longer than the search could find.
+     *
+     * @param distanceField The field to use, or null to search for every route.
+     */
+    public void setDistanceField(DistanceField distanceField) {
+        this.distanceField = distanceField;
+    }
+
+    /**
+     * Accessor for the landmark tables used to strengthen the heuristic.
+     *
+     * @return The landmark heuristic, or null if only the geometric heuristic is used.
+     */
+    public LandmarkHeuristic getLandmarks() {
+        return landmarks;
+    }
+
+    /**
+     * Mutator for the landmark tables used to strengthen the heuristic. The heuristic
+     * of each node is the larger of the geometric heuristic and the landmark bound, so
+     * the routes found are no longer but fewer nodes may be expanded.
+     *
+     * @param landmarks The landmark heuristic to use, or null to only use the
+     *                  geometric heuristic.
+     */
+    public void setLandmarks(LandmarkHeuristic landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Accessor for the clusters used to plan long routes hierarchically.
+     *
+     * @return The hierarchy, or null if every route is searched for over the lattice.
+     */
+    public ClusterHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * Mutator for the clusters used to plan long routes hierarchically. A route
+     * between different clusters is planned through the entrances between the
+     * clusters, and is only used if it is within the hierarchy's largest stretch of
+     * the lower bound on its length. It can be a few moves longer than the route the
+     * search would find, so the straight line and distance field are tried first.
+     *
+     * @param hierarchy The hierarchy to use, or null to search over the lattice.
+     */
+    public void setHierarchy(ClusterHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+}
@@ -0,0 +1,375 @@
+package RouteCalculation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the routes of the legs planned for a day, and repairs them when a no-fly zone
+ * is added or removed partway through the day, rather than planning every leg again.
+ * <p>
+ * When a zone is added, only the legs with a move that is no longer legal are changed.
+ * The part of the route around the blocked moves is searched for again, from a few
+ * moves before the first blocked move to a few moves after the last, and the rest of
+ * the route is kept. When a zone is removed, every route is still legal, and a route
+ * can only get shorter if a route with fewer moves could pass through the zone, so
+ * only those legs are searched for again. If a repaired leg ends in a different place,
+ * the leg after it starts from there, and is checked and repaired in the same way.
+ * <p>
+ * The searches use a fuzzy closed set rather than a fixed graph, so there is no search
+ * state that an incremental search such as D* Lite could update. The state kept is the
+ * routes and the positions along them, which is enough to only search again where the
+ * geometry changed. A repaired route is legal but can be a few moves longer than the
+ * route a search from the start of the leg would find. If the options have landmark
+ * tables, they should be built again for the new zones.
+ */
+public class RouteReplanner {
+    // How many moves either side of the blocked moves are searched for again.
+    private static final int REPAIR_MARGIN_MOVES = 3;
+
+    private final RouteOptions options;
+    private final List<Leg> legs = new ArrayList<>();
+    private long repairs;
+
+    /**
+     * Create a replanner which plans and repairs legs with the given options.
+     *
+     * @param options The options used for every search.
+     */
+    public RouteReplanner(RouteOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("RouteReplanner called with null options.");
+        }
+        this.options = options;
+    }
+
+    /**
+     * Plan the route for the next leg of the day and keep it. A leg which starts where
+     * the last leg ended follows it, and is moved along with it if the last leg is
+     * repaired.
+     *
+     * @param start      The lattice position the leg starts from.
+     * @param end        The LngLat point the leg ends close to.
+     * @param nextTarget The point the drone heads for after the end, or null.
+     * @return The route of the leg, or null if there is no route, in which case the
+     *         leg is not kept.
+     */
+    public CompassDirection[] planLeg(LatticePoint start, LngLat end, LngLat nextTarget) {
+        CompassDirection[] route = RouteCalculator.calculateRouteFrom(start, end, nextTarget, options);
+        if (route == null) {
+            return null;
+        }
+        boolean followsLast = !legs.isEmpty() && start.equals(legs.get(legs.size() - 1).endPosition());
+        legs.add(new Leg(start, end, nextTarget, route, followsLast));
+        return route;
+    }
+
+    /**
+     * Add a no-fly zone and repair the legs it blocks.
+     *
+     * @param zone The new no-fly zone, as an array of LngLat points.
+     * @return The number of legs whose routes changed.
+     */
+    public int addNoFlyZone(LngLat[] zone) {
+        if (zone == null) {
+            throw new IllegalArgumentException("addNoFlyZone called with a null zone.");
+        }
+        AreaSingleton area = AreaSingleton.getInstance();
+        LngLat[][] zones = area.getNoFlyZones() == null ? new LngLat[0][] : area.getNoFlyZones();
+        LngLat[][] newZones = Arrays.copyOf(zones, zones.length + 1);
+        newZones[zones.length] = zone;
+        area.setNoFlyZones(newZones);
+        return repairLegs(null);
+    }
+
+    /**
+     * Remove a no-fly zone and search again for the legs which could now be shorter.
+     *
+     * @param zone The no-fly zone to remove, either the same array or one with the
+     *             same points.
+     * @return The number of legs whose routes changed, or -1 if there is no such zone.
+     */
+    public int removeNoFlyZone(LngLat[] zone) {
+        AreaSingleton area = AreaSingleton.getInstance();
+        LngLat[][] zones = area.getNoFlyZones();
+        int index = -1;
+        for (int i = 0; zones != null && i < zones.length && index < 0; i++) {
+            if (sameZone(zones[i], zone)) {
+                index = i;
+            }
+        }
+        if (index < 0) {
+            return -1;
+        }
+        LngLat[][] newZones = new LngLat[zones.length - 1][];
+        System.arraycopy(zones, 0, newZones, 0, index);
+        System.arraycopy(zones, index + 1, newZones, index, zones.length - index - 1);
+        area.setNoFlyZones(newZones);
+        return repairLegs(zones[index]);
+    }
+
+    /**
+     * Check every leg against the new zones, repairing those which need it.
+     *
+     * @param removedZone The zone that was removed, or null if a zone was added.
+     * @return The number of legs whose routes changed.
+     */
+    private int repairLegs(LngLat[] removedZone) {
+        int changed = 0;
+        LatticePoint previousEnd = null;
+        boolean previousMoved = false;
+        for (Leg leg : legs) {
+            CompassDirection[] oldRoute = leg.route;
+            LatticePoint oldEnd = leg.endPosition();
+            boolean moved = leg.followsLast && previousMoved;
+            if (moved) {
+                leg.start = previousEnd;
+            }
+            if (leg.start == null) {
+                // The leg before can no longer be flown, so neither can this one.
+                leg.route = null;
+            } else if (leg.route == null) {
+                leg.route = RouteCalculator.calculateRouteFrom(leg.start, leg.end, leg.nextTarget, options);
+            } else {
+                if (removedZone == null || moved) {
+                    leg.route = repairBlocked(leg);
+                }
+                if (removedZone != null && leg.route != null) {
+                    leg.route = repairShortened(leg, removedZone);
+                }
+            }
+            if (leg.route != oldRoute) {
+                changed++;
+                repairs++;
+            }
+            previousEnd = leg.endPosition();
+            previousMoved = previousEnd == null ? oldEnd != null : !previousEnd.equals(oldEnd);
+        }
+        return changed;
+    }
+
+    /**
+     * Repair a leg some of whose moves may have been blocked, by searching again around
+     * the blocked moves.
+     *
+     * @return The route, the same array if it did not need repairing, or null if there
+     *         is no route.
+     */
+    private CompassDirection[] repairBlocked(Leg leg) {
+        AreaSnapshot area = AreaSingleton.currentSnapshot();
+        boolean endInCentralArea = area.inCentralArea(leg.end.getLng(), leg.end.getLat());
+        MoveLegalityCache legalityCache = RouteCalculator.legalityCacheFor(options, leg.start.getOrigin(), area);
+        int moveCount = leg.route.length - 1;
+        LatticePoint[] positions = new LatticePoint[moveCount + 1];
+        positions[0] = leg.start;
+        int firstBlocked = -1;
+        int lastBlocked = -1;
+        for (int k = 0; k < moveCount; k++) {
+            positions[k + 1] = positions[k].next(leg.route[k]);
+            if (!RouteCalculator.isLegalMove(area, legalityCache, positions[k], leg.route[k], positions[k + 1],
+                    endInCentralArea)) {
+                if (firstBlocked < 0) {
+                    firstBlocked = k;
+                }
+                lastBlocked = k;
+            }
+        }
+        if (firstBlocked < 0 && positions[moveCount].closeTo(leg.end)) {
+            return leg.route;
+        }
+        if (firstBlocked < 0) {
+            // The leg starts somewhere else and the route no longer reaches the end.
+            return replan(leg, leg.start, new CompassDirection[0]);
+        }
+
+        int from = Math.max(0, firstBlocked - REPAIR_MARGIN_MOVES);
+        int to = lastBlocked + 1 + REPAIR_MARGIN_MOVES;
+        CompassDirection[] prefix = Arrays.copyOfRange(leg.route, 0, from);
+        if (to >= moveCount) {
+            return replan(leg, positions[from], prefix);
+        }
+
+        // Search from before the blocked moves back to the route after them, and keep
+        // the rest of the route if it is still legal from where the search ends.
+        LngLat rejoin = positions[to].toLngLat();
+        Node bridge = RouteCalculator.searchForGoal(positions[from], rejoin, endInCentralArea, options, 1,
+                RouteCalculator.NO_MOVE_LIMIT, RouteCalculator.NO_DEADLINE,
+                SearchBudget.forSearch(positions[from], rejoin, options, area));
+        if (bridge != null) {
+            CompassDirection[] bridgeMoves = RouteCalculator.reconstructPath(bridge);
+            List<CompassDirection> route = new ArrayList<>(Arrays.asList(prefix));
+            route.addAll(Arrays.asList(bridgeMoves).subList(0, bridgeMoves.length - 1));
+            route.addAll(Arrays.asList(leg.route).subList(to, leg.route.length));
+            CompassDirection[] repaired = route.toArray(new CompassDirection[0]);
+            if (isLegalRoute(leg.start, repaired, leg.end, area, legalityCache, endInCentralArea)) {
+                return repaired;
+            }
+        }
+        return replan(leg, leg.start, new CompassDirection[0]);
+    }
+
+    /**
+     * Search again for a leg if removing the zone could let it take fewer moves.
+     *
+     * @return The route, the same array if no shorter route was found.
+     */
+    private CompassDirection[] repairShortened(Leg leg, LngLat[] removedZone) {
+        int moveCount = leg.route.length - 1;
+        double bound = Node.calculateHeuristic(AreaSingleton.currentSnapshot(), leg.start.getLng(),
+                leg.start.getLat(), leg.end, options.getLandmarks());
+        if (moveCount <= Math.max(RouteCalculator.fewestMoves(bound), 0)) {
+            // The route already takes the fewest moves any route could.
+            return leg.route;
+        }
+        // A route with fewer moves that passes through the zone must pass a point of it
+        // whose distance from the start plus distance to the end is less than this.
+        double reach = moveCount * LngLat.LENGTH_OF_MOVE + LngLat.DISTANCE_TOLERANCE;
+        if (shortestDetourThrough(removedZone, leg.start.getLng(), leg.start.getLat(), leg.end) > reach) {
+            return leg.route;
+        }
+        CompassDirection[] route = RouteCalculator.calculateRouteFrom(leg.start, leg.end, leg.nextTarget, options,
+                leg.route.length - 1);
+        return route == null ? leg.route : route;
+    }
+
+    /**
+     * Search for the rest of the leg from the position, after the moves that are kept.
+     *
+     * @return The route, or null if there is no route.
+     */
+    private CompassDirection[] replan(Leg leg, LatticePoint from, CompassDirection[] prefix) {
+        CompassDirection[] rest = RouteCalculator.calculateRouteFrom(from, leg.end, leg.nextTarget, options);
+        if (rest == null) {
+            return null;
+        }
+        CompassDirection[] route = Arrays.copyOf(prefix, prefix.length + rest.length);
+        System.arraycopy(rest, 0, route, prefix.length, rest.length);
+        return route;
+    }
+
+    /**
+     * Checks if every move of the route is legal and it ends close to the end.
+     */
+    private static boolean isLegalRoute(LatticePoint start, CompassDirection[] route, LngLat end,
+            AreaSnapshot area, MoveLegalityCache legalityCache, boolean endInCentralArea) {
+        LatticePoint position = start;
+        for (int k = 0; k < route.length - 1; k++) {
+            LatticePoint next = position.next(route[k]);
+            if (!RouteCalculator.isLegalMove(area, legalityCache, position, route[k], next, endInCentralArea)) {
+                return false;
+            }
+            position = next;
+        }
+        return position.closeTo(end);
+    }
+
+    /**
+     * Find the smallest distance from the start to a point of the zone plus from that
+     * point to the end, over the points on the edges of the zone. The sum is convex
+     * along each edge, so the smallest on an edge is found by ternary search.
+     */
+    private static double shortestDetourThrough(LngLat[] zone, double lng, double lat, LngLat end) {
+        double shortest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < zone.length; i++) {
+            LngLat a = zone[i];
+            LngLat b = zone[(i + 1) % zone.length];
+            double low = 0;
+            double high = 1;
+            for (int step = 0; step < 60; step++) {
+                double third = (high - low) / 3;
+                if (detourVia(a, b, low + third, lng, lat, end) < detourVia(a, b, high - third, lng, lat, end)) {
+                    high -= third;
+                } else {
+                    low += third;
+                }
+            }
+            shortest = Math.min(shortest, detourVia(a, b, (low + high) / 2, lng, lat, end));
+        }
+        return shortest;
+    }
+
+    private static double detourVia(LngLat a, LngLat b, double t, double lng, double lat, LngLat end) {
+        double pointLng = a.getLng() + t * (b.getLng() - a.getLng());
+        double pointLat = a.getLat() + t * (b.getLat() - a.getLat());
+        return LngLat.distance(lng, lat, pointLng, pointLat)
+                + LngLat.distance(pointLng, pointLat, end.getLng(), end.getLat());
+    }
+
+    private static boolean sameZone(LngLat[] zone, LngLat[] other) {
+        if (zone == other) {
+            return true;
+        }
+        if (zone == null || other == null || zone.length != other.length) {
+            return false;
+        }
+        for (int i = 0; i < zone.length; i++) {
+            if (zone[i].getLng() != other[i].getLng() || zone[i].getLat() != other[i].getLat()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Accessor for the number of legs kept.
+     *
+     * @return The number of legs.
+     */
+    public int getLegCount() {
+        return legs.size();
+    }
+
+    /**
+     * Accessor for the route of a leg, as it is after any repairs.
+     *
+     * @param leg The index of the leg, in the order they were planned.
+     * @return The route, or null if the leg can no longer be flown.
+     */
+    public CompassDirection[] getRoute(int leg) {
+        return legs.get(leg).route;
+    }
+
+    /**
+     * Accessor for the number of times a leg's route has been changed by a repair.
+     *
+     * @return The number of repairs.
+     */
+    public long getRepairs() {
+        return repairs;
+    }
+
+    /**
+     * One planned leg and its current route.
+     */
+    private static final class Leg {
+        private LatticePoint start;
+        private final LngLat end;
+        private final LngLat nextTarget;
+        private CompassDirection[] route;
+        private final boolean followsLast;
+
+        Leg(LatticePoint start, LngLat end, LngLat nextTarget, CompassDirection[] route, boolean followsLast) {
+            this.start = start;
+            this.end = end;
+            this.nextTarget = nextTarget;
+            this.route = route;
+            this.followsLast = followsLast;
+        }
+
+        /**
+         * Work out where the route of the leg ends.
+         *
+         * @return The position, or null if the leg cannot be flown.
+         */
+        LatticePoint endPosition() {
+            if (start == null || route == null) {
+                return null;
+            }
+            LatticePoint position = start;
+            for (CompassDirection direction : route) {
+                position = position.next(direction);
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package RouteCalculation;
+
+/**
+ * The outcome of planning one route: the route if one was found, and whether a
+ * missing route means there is none that fits or only that the search ran out of
+ * its budget.
+ */
+public final class RouteResult {
+    /**
+     * Why the route is or is not there.
+     */
+    public enum Status {
+        FOUND, // The route was found.
+        INFEASIBLE, // There is no route, or none which fits in the moves allowed.
+        BUDGET_EXHAUSTED // The search gave up before it could tell if there is a route.
+    }
+
+    private static final RouteResult INFEASIBLE = new RouteResult(null, Status.INFEASIBLE);
+    private static final RouteResult BUDGET_EXHAUSTED = new RouteResult(null, Status.BUDGET_EXHAUSTED);
+
+    private final CompassDirection[] route;
+    private final Status status;
+
+    private RouteResult(CompassDirection[] route, Status status) {
+        this.route = route;
+        this.status = status;
+    }
+
+    static RouteResult found(CompassDirection[] route) {
+        return new RouteResult(route, Status.FOUND);
+    }
+
+    static RouteResult infeasible() {
+        return INFEASIBLE;
+    }
+
+    static RouteResult budgetExhausted() {
+        return BUDGET_EXHAUSTED;
+    }
+
+    // Accessors
+    /**
+     * @return The route, or null if no route was found.
+     */
+    public CompassDirection[] getRoute() {
+        return route;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+}
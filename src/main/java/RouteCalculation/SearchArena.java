@@ -0,0 +1,434 @@
+package RouteCalculation;
+
+import java.util.Arrays;
+
+/**
+ * Reusable storage for the nodes of an A* search, kept as a struct of primitive
+ * arrays rather than as Node objects. A node is just an index into the arrays,
+ * which hold its g and h scores, the index of its parent, the direction it was
+ * reached from and its exact lattice position.
+ * <p>
+ * Each thread has its own arena which is cleared, not reallocated, at the start of
+ * every search. Once the arrays have grown to the size of the largest search, a
+ * search allocates nothing until the winning path is converted to directions.
+ */
+public class SearchArena {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final ThreadLocal<SearchArena> ARENAS = ThreadLocal.withInitial(SearchArena::new);
+
+    // Node storage.
+    private double[] g = new double[INITIAL_CAPACITY];
+    private double[] h = new double[INITIAL_CAPACITY];
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private byte[] direction = new byte[INITIAL_CAPACITY];
+    private long[] low = new long[INITIAL_CAPACITY];
+    private long[] high = new long[INITIAL_CAPACITY];
+    private double[] lng = new double[INITIAL_CAPACITY];
+    private double[] lat = new double[INITIAL_CAPACITY];
+    private int nodeCount;
+
+    // Open list, as a binary min-heap of node indices ordered by f score.
+    private int[] heap = new int[INITIAL_CAPACITY];
+    private int heapSize;
+
+    // Extra node storage for the indexed heap: where each node is in the heap and
+    // what state it is in.
+    static final byte OPEN = 0; // In the heap, the move from the parent not yet checked.
+    static final byte OPEN_LEGAL = 1; // In the heap, the move from the parent is legal.
+    static final byte EXPANDED = 2;
+    static final byte DISCARDED = 3; // The move from the parent was illegal.
+    private int[] heapSlot = new int[INITIAL_CAPACITY];
+    private byte[] status = new byte[INITIAL_CAPACITY];
+
+    // Open addressing table from exact positions to node indices, cleared in
+    // constant time by moving to a new generation.
+    private long[] tableLow = new long[2 * INITIAL_CAPACITY];
+    private long[] tableHigh = new long[2 * INITIAL_CAPACITY];
+    private int[] tableNode = new int[2 * INITIAL_CAPACITY];
+    private int[] tableStamp = new int[2 * INITIAL_CAPACITY];
+    private int tableGeneration = 1;
+    private int tableCount;
+
+    // Closed set of visited points.
+    private final ClosedSet closedSet = new ClosedSet();
+
+    private LngLat origin;
+
+    private static final CompassDirection[] DIRECTIONS = CompassDirection.values();
+
+    /**
+     * Accessor for the arena belonging to the current thread.
+     *
+     * @return The current thread's arena.
+     */
+    public static SearchArena forCurrentThread() {
+        return ARENAS.get();
+    }
+
+    /**
+     * Clear the arena for a new search, keeping the storage for reuse.
+     *
+     * @param origin The origin of the lattice frame the search is in.
+     */
+    public void reset(LngLat origin) {
+        this.origin = origin;
+        nodeCount = 0;
+        heapSize = 0;
+        tableGeneration++;
+        tableCount = 0;
+        closedSet.clear();
+    }
+
+    /**
+     * Add a node to the arena.
+     *
+     * @param low       The packed coefficients of ζ^0 to ζ^3 of the node's position.
+     * @param high      The packed coefficients of ζ^4 to ζ^7 of the node's position.
+     * @param lng       The longitude of the node's position.
+     * @param lat       The latitude of the node's position.
+     * @param g         The cost of the path from the start node to this node.
+     * @param h         The heuristic cost of the path from this node to the goal.
+     * @param parent    The index of the parent node, or -1 for the start node.
+     * @param direction The direction from the parent to this node, or null for the
+     *                  start node.
+     * @return The index of the new node.
+     */
+    int addNode(long low, long high, double lng, double lat, double g, double h, int parent,
+            CompassDirection direction) {
+        if (nodeCount == this.g.length) {
+            grow();
+        }
+        int node = nodeCount++;
+        this.low[node] = low;
+        this.high[node] = high;
+        this.lng[node] = lng;
+        this.lat[node] = lat;
+        this.g[node] = g;
+        this.h[node] = h;
+        this.parent[node] = parent;
+        this.direction[node] = (byte) (direction == null ? -1 : direction.ordinal());
+        this.heapSlot[node] = -1;
+        this.status[node] = OPEN;
+        return node;
+    }
+
+    /**
+     * Replace how a node is reached, keeping its position and heuristic.
+     *
+     * @param node      The index of the node.
+     * @param g         The cost of the new path from the start node to this node.
+     * @param parent    The index of the new parent node.
+     * @param direction The direction from the new parent to this node.
+     * @param status    The new status of the node.
+     */
+    void updateNode(int node, double g, int parent, CompassDirection direction, byte status) {
+        this.g[node] = g;
+        this.parent[node] = parent;
+        this.direction[node] = (byte) direction.ordinal();
+        this.status[node] = status;
+    }
+
+    private void grow() {
+        int capacity = 2 * g.length;
+        g = Arrays.copyOf(g, capacity);
+        h = Arrays.copyOf(h, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        direction = Arrays.copyOf(direction, capacity);
+        low = Arrays.copyOf(low, capacity);
+        high = Arrays.copyOf(high, capacity);
+        lng = Arrays.copyOf(lng, capacity);
+        lat = Arrays.copyOf(lat, capacity);
+        heapSlot = Arrays.copyOf(heapSlot, capacity);
+        status = Arrays.copyOf(status, capacity);
+    }
+
+    // Node accessors.
+    double getG(int node) {
+        return g[node];
+    }
+
+    double getH(int node) {
+        return h[node];
+    }
+
+    double getFScore(int node) {
+        return g[node] + h[node];
+    }
+
+    int getParent(int node) {
+        return parent[node];
+    }
+
+    CompassDirection getDirection(int node) {
+        return direction[node] < 0 ? null : DIRECTIONS[direction[node]];
+    }
+
+    long getLow(int node) {
+        return low[node];
+    }
+
+    long getHigh(int node) {
+        return high[node];
+    }
+
+    double getLng(int node) {
+        return lng[node];
+    }
+
+    double getLat(int node) {
+        return lat[node];
+    }
+
+    byte getStatus(int node) {
+        return status[node];
+    }
+
+    void setStatus(int node, byte status) {
+        this.status[node] = status;
+    }
+
+    LatticePoint getPosition(int node) {
+        return LatticePoint.of(origin, low[node], high[node]);
+    }
+
+    ClosedSet getClosedSet() {
+        return closedSet;
+    }
+
+    /**
+     * Accessor for the number of nodes created by the current search. Mainly used
+     * for testing and benchmarking.
+     *
+     * @return The number of nodes in the arena.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Accessor for the number of nodes the arena can hold before it has to grow.
+     *
+     * @return The capacity of the arena.
+     */
+    public int getCapacity() {
+        return g.length;
+    }
+
+    /**
+     * The directions taken from the start node to the given node, in order.
+     *
+     * @param node The final node of the path.
+     * @return The directions taken to reach the node.
+     */
+    CompassDirection[] pathTo(int node) {
+        int length = 0;
+        for (int n = node; parent[n] >= 0; n = parent[n]) {
+            length++;
+        }
+        CompassDirection[] path = new CompassDirection[length];
+        for (int n = node; parent[n] >= 0; n = parent[n]) {
+            path[--length] = DIRECTIONS[direction[n]];
+        }
+        return path;
+    }
+
+    // The open list. The heap is sifted in exactly the same way as
+    // java.util.PriorityQueue so that ties are broken in the same order as the
+    // standard search.
+
+    boolean isOpenListEmpty() {
+        return heapSize == 0;
+    }
+
+    void push(int node) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * heapSize);
+        }
+        int k = heapSize++;
+        double f = getFScore(node);
+        while (k > 0) {
+            int parentSlot = (k - 1) >>> 1;
+            int e = heap[parentSlot];
+            if (Double.compare(f, getFScore(e)) >= 0) {
+                break;
+            }
+            heap[k] = e;
+            k = parentSlot;
+        }
+        heap[k] = node;
+    }
+
+    int poll() {
+        int result = heap[0];
+        int n = --heapSize;
+        if (n > 0) {
+            int x = heap[n];
+            double f = getFScore(x);
+            int k = 0;
+            int half = n >>> 1;
+            while (k < half) {
+                int child = 2 * k + 1;
+                int c = heap[child];
+                int right = child + 1;
+                if (right < n && Double.compare(getFScore(c), getFScore(heap[right])) > 0) {
+                    c = heap[child = right];
+                }
+                if (Double.compare(f, getFScore(c)) <= 0) {
+                    break;
+                }
+                heap[k] = c;
+                k = child;
+            }
+            heap[k] = x;
+        }
+        return result;
+    }
+
+    // The position table, used by the indexed heap to find the node at a position.
+
+    /**
+     * Find the node at an exact position.
+     *
+     * @param low  The packed coefficients of ζ^0 to ζ^3 of the position.
+     * @param high The packed coefficients of ζ^4 to ζ^7 of the position.
+     * @return The index of the node at the position, or -1 if there is none.
+     */
+    int findNode(long low, long high) {
+        int slot = findTableSlot(low, high);
+        return tableStamp[slot] == tableGeneration ? tableNode[slot] : -1;
+    }
+
+    /**
+     * Record the position of a node so it can be found with findNode.
+     *
+     * @param node The index of the node.
+     */
+    void putNode(int node) {
+        if (2 * (tableCount + 1) > tableNode.length) {
+            growTable();
+        }
+        int slot = findTableSlot(low[node], high[node]);
+        if (tableStamp[slot] != tableGeneration) {
+            tableStamp[slot] = tableGeneration;
+            tableLow[slot] = low[node];
+            tableHigh[slot] = high[node];
+            tableCount++;
+        }
+        tableNode[slot] = node;
+    }
+
+    private int findTableSlot(long low, long high) {
+        int mask = tableNode.length - 1;
+        long hash = (low * 0x9E3779B97F4A7C15L) ^ (high * 0xC2B2AE3D27D4EB4FL);
+        int slot = (int) (hash >>> 40) & mask;
+        while (tableStamp[slot] == tableGeneration && (tableLow[slot] != low || tableHigh[slot] != high)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void growTable() {
+        int capacity = 2 * tableNode.length;
+        tableLow = new long[capacity];
+        tableHigh = new long[capacity];
+        tableNode = new int[capacity];
+        tableStamp = new int[capacity];
+        tableGeneration = 1;
+        tableCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            putNode(node);
+        }
+    }
+
+    // The indexed heap. Nodes are ordered by f score, then by the lower h score,
+    // then by the direction they were reached from and finally by index, so the order
+    // is total and does not depend on the order of heap operations.
+
+    private int compareNodes(int a, int b) {
+        int result = Double.compare(g[a] + h[a], g[b] + h[b]);
+        if (result != 0) {
+            return result;
+        }
+        result = Double.compare(h[a], h[b]);
+        if (result != 0) {
+            return result;
+        }
+        result = Integer.compare(direction[a], direction[b]);
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(a, b);
+    }
+
+    void pushIndexed(int node) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * heapSize);
+        }
+        heapSlot[node] = heapSize;
+        heap[heapSize++] = node;
+        siftUp(node);
+    }
+
+    int pollIndexed() {
+        int result = heap[0];
+        heapSlot[result] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapSlot[last] = 0;
+            siftDown(last);
+        }
+        return result;
+    }
+
+    boolean inHeap(int node) {
+        return heapSlot[node] >= 0;
+    }
+
+    /**
+     * Restore the heap order after the key of a node in the heap has changed.
+     *
+     * @param node The index of the node whose key has changed.
+     */
+    void updateKey(int node) {
+        siftUp(node);
+        siftDown(node);
+    }
+
+    private void siftUp(int node) {
+        int k = heapSlot[node];
+        while (k > 0) {
+            int parentSlot = (k - 1) >>> 1;
+            int e = heap[parentSlot];
+            if (compareNodes(node, e) >= 0) {
+                break;
+            }
+            heap[k] = e;
+            heapSlot[e] = k;
+            k = parentSlot;
+        }
+        heap[k] = node;
+        heapSlot[node] = k;
+    }
+
+    private void siftDown(int node) {
+        int k = heapSlot[node];
+        int half = heapSize >>> 1;
+        while (k < half) {
+            int child = 2 * k + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < heapSize && compareNodes(c, heap[right]) > 0) {
+                c = heap[child = right];
+            }
+            if (compareNodes(node, c) <= 0) {
+                break;
+            }
+            heap[k] = c;
+            heapSlot[c] = k;
+            k = child;
+        }
+        heap[k] = node;
+        heapSlot[node] = k;
+    }
+}
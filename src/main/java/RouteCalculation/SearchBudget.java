@@ -0,0 +1,219 @@
+package RouteCalculation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The limits on one search: how many nodes it may expand, how long it may take, and
+ * the region it may search in. The budget also holds the snapshot of the geometry
+ * taken when it was made, which the search uses for every move.
+ * <p>
+ * The plane is infinite, so without a limit a search for an end it cannot reach, such
+ * as a restaurant inside a no-fly zone, would never stop. The region is the box around
+ * the central area, the no-fly zones, the start and the end, with a margin of a few
+ * moves. The shortest way around the zones never goes further out than their corners,
+ * so the region never cuts off the route a search would find, and a search for an end
+ * it cannot reach stops once it has filled the region.
+ * <p>
+ * The region can be narrowed further to a corridor around a path, such as the shortest
+ * path around the zones, so that the search never makes nodes far from the path.
+ * <p>
+ * The budget can be spent by the workers of a parallel search at the same time.
+ */
+final class SearchBudget {
+    // How far the region reaches past the box around the geometry, in moves.
+    private static final int REGION_MARGIN_MOVES = 10;
+
+    private final long maxExpansions;
+    private final long deadline;
+    private final boolean hasDeadline;
+    private final double minLng;
+    private final double minLat;
+    private final double maxLng;
+    private final double maxLat;
+    private final AreaSnapshot area;
+    private final AtomicLong expansions = new AtomicLong();
+    private volatile boolean exhausted;
+
+    // The corridor the search is kept inside, as the points of its path and how far
+    // either side of the path it reaches, or null if there is no corridor.
+    private double[] corridorLngs;
+    private double[] corridorLats;
+    private double corridorHalfWidth;
+
+    private SearchBudget(long maxExpansions, long timeLimitMillis, double minLng, double minLat, double maxLng,
+            double maxLat, AreaSnapshot area) {
+        this.maxExpansions = maxExpansions;
+        this.hasDeadline = timeLimitMillis > 0;
+        this.deadline = System.nanoTime() + timeLimitMillis * 1_000_000L;
+        this.minLng = minLng;
+        this.minLat = minLat;
+        this.maxLng = maxLng;
+        this.maxLat = maxLat;
+        this.area = area;
+    }
+
+    /**
+     * Create the budget for a search from the start to the end, with the limits given
+     * by the options. The time starts now.
+     *
+     * @param start   The starting position of the search.
+     * @param end     The end of the search.
+     * @param options The options giving the expansion and time budgets.
+     * @return The budget for the search.
+     */
+    static SearchBudget forSearch(LatticePoint start, LngLat end, RouteOptions options) {
+        return forSearch(start, end, options, AreaSingleton.currentSnapshot());
+    }
+
+    /**
+     * Create the budget for a search from the start to the end in the given geometry,
+     * with the limits given by the options. The time starts now.
+     *
+     * @param start   The starting position of the search.
+     * @param end     The end of the search.
+     * @param options The options giving the expansion and time budgets.
+     * @param area    The geometry the search is made in.
+     * @return The budget for the search.
+     */
+    static SearchBudget forSearch(LatticePoint start, LngLat end, RouteOptions options, AreaSnapshot area) {
+        double minLng = Math.min(start.getLng(), end.getLng());
+        double minLat = Math.min(start.getLat(), end.getLat());
+        double maxLng = Math.max(start.getLng(), end.getLng());
+        double maxLat = Math.max(start.getLat(), end.getLat());
+
+        LngLat[] border = area.getCentralAreaBorder();
+        if (border != null) {
+            for (LngLat point : border) {
+                minLng = Math.min(minLng, point.getLng());
+                minLat = Math.min(minLat, point.getLat());
+                maxLng = Math.max(maxLng, point.getLng());
+                maxLat = Math.max(maxLat, point.getLat());
+            }
+        }
+        LngLat[][] zones = area.getNoFlyZones();
+        if (zones != null) {
+            for (LngLat[] zone : zones) {
+                for (LngLat point : zone) {
+                    minLng = Math.min(minLng, point.getLng());
+                    minLat = Math.min(minLat, point.getLat());
+                    maxLng = Math.max(maxLng, point.getLng());
+                    maxLat = Math.max(maxLat, point.getLat());
+                }
+            }
+        }
+
+        double margin = REGION_MARGIN_MOVES * LngLat.LENGTH_OF_MOVE;
+        return new SearchBudget(options.getExpansionBudget(), options.getTimeBudgetMillis(), minLng - margin,
+                minLat - margin, maxLng + margin, maxLat + margin, area);
+    }
+
+    /**
+     * Create the budget for a search that may only explore the given box, such as one
+     * cluster of a ClusterHierarchy, with the limits given by the options. The time
+     * starts now.
+     *
+     * @param minLng  The lowest longitude of the box.
+     * @param minLat  The lowest latitude of the box.
+     * @param maxLng  The highest longitude of the box.
+     * @param maxLat  The highest latitude of the box.
+     * @param options The options giving the expansion and time budgets.
+     * @param area    The geometry the search is made in.
+     * @return The budget for the search.
+     */
+    static SearchBudget forRegion(double minLng, double minLat, double maxLng, double maxLat,
+            RouteOptions options, AreaSnapshot area) {
+        return new SearchBudget(options.getExpansionBudget(), options.getTimeBudgetMillis(), minLng, minLat, maxLng,
+                maxLat, area);
+    }
+
+    /**
+     * Checks if a position is inside the region the search may explore.
+     *
+     * @param lng The longitude of the position.
+     * @param lat The latitude of the position.
+     * @return True if the position is inside the region.
+     */
+    boolean inRegion(double lng, double lat) {
+        if (!(lng >= minLng && lng <= maxLng && lat >= minLat && lat <= maxLat)) {
+            return false;
+        }
+        if (corridorLngs == null) {
+            return true;
+        }
+        for (int i = 0; i + 1 < corridorLngs.length; i++) {
+            double dLng = corridorLngs[i + 1] - corridorLngs[i];
+            double dLat = corridorLats[i + 1] - corridorLats[i];
+            double lengthSquared = dLng * dLng + dLat * dLat;
+            double t = lengthSquared == 0 ? 0
+                    : Math.max(0, Math.min(1,
+                            ((lng - corridorLngs[i]) * dLng + (lat - corridorLats[i]) * dLat) / lengthSquared));
+            if (LngLat.distance(lng, lat, corridorLngs[i] + t * dLng, corridorLats[i] + t * dLat)
+                    <= corridorHalfWidth) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Keep the search inside the corridor around the path as well as the region. This
+     * replaces any corridor set before, and must be set before the search starts.
+     *
+     * @param path      The points of the path, at least one.
+     * @param halfWidth How far either side of the path the corridor reaches.
+     */
+    void limitToCorridor(LngLat[] path, double halfWidth) {
+        corridorLngs = new double[path.length];
+        corridorLats = new double[path.length];
+        for (int i = 0; i < path.length; i++) {
+            corridorLngs[i] = path[i].getLng();
+            corridorLats[i] = path[i].getLat();
+        }
+        corridorHalfWidth = halfWidth;
+    }
+
+    /**
+     * Checks if the corridor is so wide that it covers the whole region, so that
+     * widening it further would not let the search reach any more positions.
+     *
+     * @return True if there is no corridor or it covers the region.
+     */
+    boolean corridorCoversRegion() {
+        return corridorLngs == null || corridorHalfWidth >= LngLat.distance(minLng, minLat, maxLng, maxLat);
+    }
+
+    /**
+     * Spend one expansion of the budget.
+     *
+     * @return True if the search may expand the node, false if the budget has run out.
+     */
+    boolean spendExpansion() {
+        if (exhausted) {
+            return false;
+        }
+        if ((maxExpansions > 0 && expansions.incrementAndGet() > maxExpansions)
+                || (hasDeadline && System.nanoTime() - deadline >= 0)) {
+            exhausted = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Accessor for whether the search ran out of expansions or time.
+     *
+     * @return True if the budget ran out.
+     */
+    boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Accessor for the geometry the search is made in, taken when the budget was made.
+     *
+     * @return The snapshot of the geometry.
+     */
+    AreaSnapshot getArea() {
+        return area;
+    }
+}
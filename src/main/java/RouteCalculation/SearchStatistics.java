@@ -0,0 +1,215 @@
+package RouteCalculation;
+
+/**
+ * Counters recording the work done by route searches. Pass an instance in the
+ * RouteOptions to have every search using those options add to the counts.
+ */
+public class SearchStatistics {
+    private long searches;
+    private long expansions;
+    private long queuePushes;
+    private long queuePolls;
+    private long decreaseKeys;
+    private long straightLineRoutes;
+    private long distanceFieldRoutes;
+    private long weightedSearches;
+    private long budgetsExhausted;
+    private long infeasibleRoutes;
+    private long hierarchicalRoutes;
+    private long corridorSearches;
+    private long hierarchicalRouteLength;
+    private long hierarchicalLowerBound;
+
+    void recordSearch() {
+        searches++;
+    }
+
+    void recordExpansion() {
+        expansions++;
+    }
+
+    void recordPush() {
+        queuePushes++;
+    }
+
+    void recordPoll() {
+        queuePolls++;
+    }
+
+    void recordWork(long polls, long expansions, long pushes) {
+        queuePolls += polls;
+        this.expansions += expansions;
+        queuePushes += pushes;
+    }
+
+    void recordDecreaseKey() {
+        decreaseKeys++;
+    }
+
+    void recordStraightLineRoute() {
+        straightLineRoutes++;
+    }
+
+    void recordDistanceFieldRoute() {
+        distanceFieldRoutes++;
+    }
+
+    void recordWeightedSearch() {
+        weightedSearches++;
+    }
+
+    void recordBudgetExhausted() {
+        budgetsExhausted++;
+    }
+
+    void recordInfeasibleRoute() {
+        infeasibleRoutes++;
+    }
+
+    void recordCorridorSearch() {
+        corridorSearches++;
+    }
+
+    void recordHierarchicalRoute(int length, int lowerBound) {
+        hierarchicalRoutes++;
+        hierarchicalRouteLength += length;
+        hierarchicalLowerBound += lowerBound;
+    }
+
+    /**
+     * Set all the counters back to zero.
+     */
+    public void reset() {
+        searches = 0;
+        expansions = 0;
+        queuePushes = 0;
+        queuePolls = 0;
+        decreaseKeys = 0;
+        straightLineRoutes = 0;
+        distanceFieldRoutes = 0;
+        weightedSearches = 0;
+        budgetsExhausted = 0;
+        infeasibleRoutes = 0;
+        hierarchicalRoutes = 0;
+        hierarchicalRouteLength = 0;
+        hierarchicalLowerBound = 0;
+        corridorSearches = 0;
+    }
+
+    // Accessors
+    public long getSearches() {
+        return searches;
+    }
+
+    public long getExpansions() {
+        return expansions;
+    }
+
+    public long getQueuePushes() {
+        return queuePushes;
+    }
+
+    public long getQueuePolls() {
+        return queuePolls;
+    }
+
+    public long getDecreaseKeys() {
+        return decreaseKeys;
+    }
+
+    /**
+     * Accessor for the number of routes that were built by walking straight to the
+     * end, without a search.
+     *
+     * @return The number of straight line routes.
+     */
+    public long getStraightLineRoutes() {
+        return straightLineRoutes;
+    }
+
+    /**
+     * Accessor for the number of routes that were built by following the distances to
+     * the end downhill, from a distance field or the visibility graph, without a search.
+     *
+     * @return The number of distance field routes.
+     */
+    public long getDistanceFieldRoutes() {
+        return distanceFieldRoutes;
+    }
+
+    /**
+     * Accessor for the number of weighted searches that were run. A repeated weighted
+     * search runs one for each weight it tries.
+     *
+     * @return The number of weighted searches.
+     */
+    public long getWeightedSearches() {
+        return weightedSearches;
+    }
+
+    /**
+     * Accessor for the number of routes that were not found because the search ran out
+     * of expansions or time.
+     *
+     * @return The number of searches that ran out of budget.
+     */
+    public long getBudgetsExhausted() {
+        return budgetsExhausted;
+    }
+
+    /**
+     * Accessor for the number of routes that were shown not to fit in their move
+     * budget without a search, from the lower bound on their length or because the
+     * shortest route was already known.
+     *
+     * @return The number of infeasible routes.
+     */
+    public long getInfeasibleRoutes() {
+        return infeasibleRoutes;
+    }
+
+    /**
+     * Accessor for the number of routes that were planned through the clusters of a
+     * ClusterHierarchy.
+     *
+     * @return The number of hierarchical routes.
+     */
+    public long getHierarchicalRoutes() {
+        return hierarchicalRoutes;
+    }
+
+    /**
+     * Accessor for how many times longer the hierarchical routes were, in total, than
+     * the lower bound on their lengths. The shortest routes are at least as long as the
+     * lower bound, so the hierarchical routes were at most this many times longer than
+     * the shortest routes. It is never more than the largest stretch of the hierarchy.
+     *
+     * @return The stretch of the hierarchical routes, or one if there were none.
+     */
+    public double getHierarchicalStretch() {
+        if (hierarchicalLowerBound == 0) {
+            return 1;
+        }
+        return (double) hierarchicalRouteLength / hierarchicalLowerBound;
+    }
+
+    /**
+     * Accessor for the number of searches that were kept to a corridor around the
+     * shortest path around the zones. A route for which the corridor had to be widened
+     * counts once for each width tried.
+     *
+     * @return The number of corridor searches.
+     */
+    public long getCorridorSearches() {
+        return corridorSearches;
+    }
+
+    @Override
+    public String toString() {
+        return "searches=" + searches + ", expansions=" + expansions + ", pushes=" + queuePushes + ", polls="
+                + queuePolls + ", decreaseKeys=" + decreaseKeys + ", straightLineRoutes=" + straightLineRoutes
+                + ", distanceFieldRoutes=" + distanceFieldRoutes + ", weightedSearches=" + weightedSearches
+                + ", budgetsExhausted=" + budgetsExhausted + ", infeasibleRoutes=" + infeasibleRoutes
+                + ", hierarchicalRoutes=" + hierarchicalRoutes + ", corridorSearches=" + corridorSearches;
+    }
+}
@@ -0,0 +1,487 @@
+package RouteCalculation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The visibility graph of the no-fly zones, used to give the A* search a lower bound
+ * on the distance around the zones.
+ * <p>
+ * The nodes of the graph are the vertices of the zones, and two vertices are joined
+ * if the straight line between them does not pass through the inside of a zone. For
+ * each target, Dijkstra's algorithm finds the length of the shortest path from every
+ * vertex to the target that avoids the zones. If the target cannot be seen from a
+ * point, the shortest path from the point to the target must first go straight to a
+ * vertex the point can see, so the length of that path is the smallest distance to
+ * such a vertex plus that vertex's distance to the target. As the drone cannot fly
+ * through the zones either, no route can be shorter than this.
+ * <p>
+ * The graph is built once for each set of zones, and is cached against the zone array
+ * like the NoFlyZoneIndex. The distances for the most recent targets are kept.
+ */
+public class VisibilityGraph {
+    // Returned by nextWaypoint when the route goes straight to the target.
+    static final int TARGET = -1;
+    // Returned by nextWaypoint when the target cannot be reached.
+    static final int UNREACHABLE = -2;
+    // The number of targets whose distances are kept.
+    private static final int MAX_TARGETS = 64;
+    // Points this close to an edge are treated as on the border of the zone.
+    private static final double BORDER_TOLERANCE = 1e-12;
+    // Vertices this close to the ends of a line, as a fraction of its length, are
+    // treated as at the ends.
+    private static final double TOUCH_TOLERANCE = 1e-12;
+
+    private static volatile VisibilityGraph cached;
+
+    private final LngLat[][] zones;
+    private final PreparedPolygon[] polygons;
+
+    // The distinct vertices of all the zones.
+    private final double[] lngs;
+    private final double[] lats;
+    // The length of the edge between each pair of vertices, or infinity if they
+    // cannot see each other.
+    private final double[][] edgeLengths;
+
+    // The edges of all the zones, for checking if a line passes through a zone.
+    private final double[] x1;
+    private final double[] y1;
+    private final double[] x2;
+    private final double[] y2;
+
+    private final Map<TargetKey, double[]> distancesByTarget = new LinkedHashMap<TargetKey, double[]>(16, 0.75f,
+            true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TargetKey, double[]> eldest) {
+            return size() > MAX_TARGETS;
+        }
+    };
+    // The distances for the last target asked for, as searches ask for the same
+    // target many times in a row.
+    private volatile TargetDistances lastTarget;
+
+    /**
+     * Accessor for the visibility graph of the given zones. The graph is built the
+     * first time it is needed for a zone array and reused for as long as the same
+     * array is passed in.
+     *
+     * @param zones The no-fly zones, each an array of LngLat points.
+     * @return The visibility graph of the zones.
+     */
+    public static VisibilityGraph forZones(LngLat[][] zones) {
+        VisibilityGraph graph = cached;
+        if (graph == null || graph.zones != zones) {
+            graph = new VisibilityGraph(zones);
+            cached = graph;
+        }
+        return graph;
+    }
+
+    /**
+     * Build the visibility graph of the given zones.
+     *
+     * @param zones The no-fly zones, each an array of LngLat points.
+     */
+    public VisibilityGraph(LngLat[][] zones) {
+        this.zones = zones;
+        this.polygons = NoFlyZoneIndex.forZones(zones).getPolygons();
+
+        // Collect the edges and the distinct vertices. Zones often repeat their first
+        // point at the end, so the same vertex can appear twice.
+        int edgeCount = 0;
+        for (PreparedPolygon polygon : polygons) {
+            edgeCount += polygon.getVertexCount();
+        }
+        x1 = new double[edgeCount];
+        y1 = new double[edgeCount];
+        x2 = new double[edgeCount];
+        y2 = new double[edgeCount];
+        double[] vertexLngs = new double[edgeCount];
+        double[] vertexLats = new double[edgeCount];
+        int edge = 0;
+        int vertexCount = 0;
+        for (PreparedPolygon polygon : polygons) {
+            int n = polygon.getVertexCount();
+            for (int i = 0; i < n; i++) {
+                x1[edge] = polygon.getLng(i);
+                y1[edge] = polygon.getLat(i);
+                x2[edge] = polygon.getLng((i + 1) % n);
+                y2[edge] = polygon.getLat((i + 1) % n);
+                edge++;
+                if (indexOf(vertexLngs, vertexLats, vertexCount, polygon.getLng(i), polygon.getLat(i)) < 0) {
+                    vertexLngs[vertexCount] = polygon.getLng(i);
+                    vertexLats[vertexCount] = polygon.getLat(i);
+                    vertexCount++;
+                }
+            }
+        }
+        lngs = Arrays.copyOf(vertexLngs, vertexCount);
+        lats = Arrays.copyOf(vertexLats, vertexCount);
+
+        edgeLengths = new double[vertexCount][vertexCount];
+        for (int u = 0; u < vertexCount; u++) {
+            edgeLengths[u][u] = 0;
+            for (int v = u + 1; v < vertexCount; v++) {
+                double length = isVisible(lngs[u], lats[u], lngs[v], lats[v])
+                        ? LngLat.latticeDistance(lngs[u], lats[u], lngs[v], lats[v])
+                        : Double.POSITIVE_INFINITY;
+                edgeLengths[u][v] = length;
+                edgeLengths[v][u] = length;
+            }
+        }
+    }
+
+    private static int indexOf(double[] lngs, double[] lats, int count, double lng, double lat) {
+        for (int i = 0; i < count; i++) {
+            if (lngs[i] == lng && lats[i] == lat) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Calculate the length of the shortest route from the point to the target which
+     * goes around the no-fly zones. No route made of moves can be shorter, so this is
+     * a lower bound on the cost of reaching the target.
+     *
+     * @param lng    The longitude of the point.
+     * @param lat    The latitude of the point.
+     * @param target The target of the route.
+     * @return The straight line distance if the point can see the target. Otherwise
+     *         the distance to a vertex the point can see plus the length of the
+     *         shortest path from that vertex to the target, for the vertex which makes
+     *         this smallest. Infinity if the target cannot be reached.
+     */
+    public double lowerBound(double lng, double lat, LngLat target) {
+        int waypoint = nextWaypoint(lng, lat, target);
+        if (waypoint == TARGET) {
+            return LngLat.latticeDistance(lng, lat, target.getLng(), target.getLat());
+        }
+        if (waypoint == UNREACHABLE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return LngLat.latticeDistance(lng, lat, lngs[waypoint], lats[waypoint]) + distancesTo(target)[waypoint];
+    }
+
+    /**
+     * Find where the shortest route from the point to the target which goes around the
+     * no-fly zones first heads for.
+     *
+     * @param lng    The longitude of the point.
+     * @param lat    The latitude of the point.
+     * @param target The target of the route.
+     * @return TARGET if the point can see the target, UNREACHABLE if the target cannot
+     *         be reached, and otherwise the index of the vertex the route goes to first.
+     */
+    int nextWaypoint(double lng, double lat, LngLat target) {
+        if (isVisible(lng, lat, target.getLng(), target.getLat())) {
+            return TARGET;
+        }
+        double[] distances = distancesTo(target);
+        double[] costs = new double[lngs.length];
+        for (int v = 0; v < lngs.length; v++) {
+            costs[v] = LngLat.latticeDistance(lng, lat, lngs[v], lats[v]) + distances[v];
+        }
+
+        // Try the vertices from the cheapest up, as the cheapest vertex can usually be
+        // seen and checking if a vertex can be seen is the slow part.
+        for (int i = 0; i < lngs.length; i++) {
+            int cheapest = 0;
+            for (int v = 1; v < lngs.length; v++) {
+                if (costs[v] < costs[cheapest]) {
+                    cheapest = v;
+                }
+            }
+            if (costs[cheapest] == Double.POSITIVE_INFINITY) {
+                break;
+            }
+            if (isVisible(lng, lat, lngs[cheapest], lats[cheapest])) {
+                return cheapest;
+            }
+            costs[cheapest] = Double.POSITIVE_INFINITY;
+        }
+        return UNREACHABLE;
+    }
+
+    /**
+     * Find the shortest path from the point to the target which goes around the no-fly
+     * zones, as the corners of the zones it passes.
+     *
+     * @param lng    The longitude of the point.
+     * @param lat    The latitude of the point.
+     * @param target The target of the path.
+     * @return The points of the path, starting with the point and ending with the
+     *         target, or null if the target cannot be reached.
+     */
+    public LngLat[] shortestPath(double lng, double lat, LngLat target) {
+        int waypoint = nextWaypoint(lng, lat, target);
+        if (waypoint == UNREACHABLE) {
+            return null;
+        }
+        double[] distances = distancesTo(target);
+        List<LngLat> path = new ArrayList<>();
+        path.add(new LngLat(lng, lat));
+        // Each vertex is closer to the target than the last, so the path can pass each
+        // vertex at most once.
+        for (int count = 0; waypoint != TARGET && count < lngs.length; count++) {
+            path.add(new LngLat(lngs[waypoint], lats[waypoint]));
+            double toTarget = LngLat.latticeDistance(lngs[waypoint], lats[waypoint], target.getLng(),
+                    target.getLat());
+            if (distances[waypoint] >= toTarget
+                    && isVisible(lngs[waypoint], lats[waypoint], target.getLng(), target.getLat())) {
+                waypoint = TARGET;
+                continue;
+            }
+            int next = UNREACHABLE;
+            for (int v = 0; v < lngs.length; v++) {
+                if (v != waypoint && (next == UNREACHABLE || edgeLengths[waypoint][v]
+                        + distances[v] < edgeLengths[waypoint][next] + distances[next])) {
+                    next = v;
+                }
+            }
+            waypoint = next;
+        }
+        if (waypoint != TARGET) {
+            return null;
+        }
+        path.add(target);
+        return path.toArray(new LngLat[0]);
+    }
+
+    /**
+     * Get the length of the shortest path from each vertex to the target which goes
+     * around the no-fly zones, working them out if the target has not been seen
+     * recently.
+     *
+     * @param target The target of the paths.
+     * @return The distance from each vertex to the target.
+     */
+    double[] distancesTo(LngLat target) {
+        TargetDistances last = lastTarget;
+        if (last != null && last.target == target) {
+            return last.distances;
+        }
+        TargetKey key = new TargetKey(target.getLng(), target.getLat());
+        double[] distances;
+        synchronized (distancesByTarget) {
+            distances = distancesByTarget.get(key);
+        }
+        if (distances == null) {
+            distances = dijkstra(target);
+            synchronized (distancesByTarget) {
+                distancesByTarget.put(key, distances);
+            }
+        }
+        lastTarget = new TargetDistances(target, distances);
+        return distances;
+    }
+
+    /**
+     * Dijkstra's algorithm from the target over the visibility graph. The graph is
+     * small and dense, so the closest unfinished vertex is found by a linear scan.
+     */
+    private double[] dijkstra(LngLat target) {
+        int n = lngs.length;
+        double[] distances = new double[n];
+        boolean[] done = new boolean[n];
+        for (int v = 0; v < n; v++) {
+            distances[v] = isVisible(target.getLng(), target.getLat(), lngs[v], lats[v])
+                    ? LngLat.latticeDistance(target.getLng(), target.getLat(), lngs[v], lats[v])
+                    : Double.POSITIVE_INFINITY;
+        }
+        for (int i = 0; i < n; i++) {
+            int closest = -1;
+            for (int v = 0; v < n; v++) {
+                if (!done[v] && (closest < 0 || distances[v] < distances[closest])) {
+                    closest = v;
+                }
+            }
+            if (distances[closest] == Double.POSITIVE_INFINITY) {
+                break;
+            }
+            done[closest] = true;
+            for (int v = 0; v < n; v++) {
+                double distance = distances[closest] + edgeLengths[closest][v];
+                if (distance < distances[v]) {
+                    distances[v] = distance;
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Checks if the straight line between two points stays out of the inside of every
+     * zone. Running along an edge or touching a vertex is allowed. When in doubt the
+     * line is treated as visible, which can only make the lower bound smaller.
+     *
+     * @param fromLng The longitude of the start of the line.
+     * @param fromLat The latitude of the start of the line.
+     * @param toLng   The longitude of the end of the line.
+     * @param toLat   The latitude of the end of the line.
+     * @return True if the line does not pass through any zone.
+     */
+    public boolean isVisible(double fromLng, double fromLat, double toLng, double toLat) {
+        // The places part way along the line where it touches a vertex, as fractions
+        // of the way along it. Only filled in if the line touches a vertex other than
+        // at its ends, which is rare.
+        double[] touches = null;
+        int touchCount = 0;
+        for (int e = 0; e < x1.length; e++) {
+            double o1 = orientation(fromLng, fromLat, toLng, toLat, x1[e], y1[e]);
+            double o2 = orientation(fromLng, fromLat, toLng, toLat, x2[e], y2[e]);
+            if (o1 * o2 > 0) {
+                continue;
+            }
+            double o3 = orientation(x1[e], y1[e], x2[e], y2[e], fromLng, fromLat);
+            double o4 = orientation(x1[e], y1[e], x2[e], y2[e], toLng, toLat);
+            if (o1 * o2 < 0 && o3 * o4 < 0) {
+                // The line properly crosses an edge.
+                return false;
+            }
+            for (int end = 0; end < 2; end++) {
+                if ((end == 0 ? o1 : o2) != 0) {
+                    continue;
+                }
+                double fraction = fractionAlong(fromLng, fromLat, toLng, toLat, end == 0 ? x1[e] : x2[e],
+                        end == 0 ? y1[e] : y2[e]);
+                if (fraction > TOUCH_TOLERANCE && fraction < 1 - TOUCH_TOLERANCE) {
+                    if (touches == null) {
+                        touches = new double[x1.length * 2 + 2];
+                    }
+                    touches[touchCount++] = fraction;
+                }
+            }
+        }
+
+        // The line can still pass through a zone between the places it touches the
+        // border, so check the middle of each piece.
+        if (touches == null) {
+            return !insideZone(fromLng + (toLng - fromLng) / 2, fromLat + (toLat - fromLat) / 2);
+        }
+        touches[touchCount++] = 0;
+        touches[touchCount++] = 1;
+        Arrays.sort(touches, 0, touchCount);
+        for (int i = 0; i + 1 < touchCount; i++) {
+            if (touches[i + 1] - touches[i] < TOUCH_TOLERANCE) {
+                continue;
+            }
+            double middle = (touches[i] + touches[i + 1]) / 2;
+            if (insideZone(fromLng + middle * (toLng - fromLng), fromLat + middle * (toLat - fromLat))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the point is inside a zone and not on its border. Ray casting can go
+     * either way for a point on an edge, and a line running along an edge is not
+     * inside the zone.
+     */
+    private boolean insideZone(double lng, double lat) {
+        for (PreparedPolygon polygon : polygons) {
+            if (polygon.containsExact(lng, lat)) {
+                return !onBorder(lng, lat);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the point is on an edge of a zone.
+     */
+    private boolean onBorder(double lng, double lat) {
+        for (int e = 0; e < x1.length; e++) {
+            double dLng = x2[e] - x1[e];
+            double dLat = y2[e] - y1[e];
+            double lengthSquared = dLng * dLng + dLat * dLat;
+            double t = lengthSquared == 0 ? 0
+                    : Math.max(0, Math.min(1, ((lng - x1[e]) * dLng + (lat - y1[e]) * dLat) / lengthSquared));
+            if (LngLat.distance(lng, lat, x1[e] + t * dLng, y1[e] + t * dLat) < BORDER_TOLERANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double orientation(double ax, double ay, double bx, double by, double cx, double cy) {
+        return Math.signum((bx - ax) * (cy - ay) - (by - ay) * (cx - ax));
+    }
+
+    private static double fractionAlong(double fromLng, double fromLat, double toLng, double toLat, double lng,
+            double lat) {
+        double dLng = toLng - fromLng;
+        double dLat = toLat - fromLat;
+        double lengthSquared = dLng * dLng + dLat * dLat;
+        if (lengthSquared == 0) {
+            return -1;
+        }
+        return ((lng - fromLng) * dLng + (lat - fromLat) * dLat) / lengthSquared;
+    }
+
+    /**
+     * Accessor for the number of distinct vertices in the graph. Mainly used for
+     * testing.
+     *
+     * @return The number of vertices.
+     */
+    public int getVertexCount() {
+        return lngs.length;
+    }
+
+    public double getLng(int vertex) {
+        return lngs[vertex];
+    }
+
+    public double getLat(int vertex) {
+        return lats[vertex];
+    }
+
+    /**
+     * The position of a target, used to look up its distances.
+     */
+    private static final class TargetKey {
+        private final double lng;
+        private final double lat;
+
+        TargetKey(double lng, double lat) {
+            this.lng = lng;
+            this.lat = lat;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof TargetKey)) {
+                return false;
+            }
+            TargetKey key = (TargetKey) other;
+            return Double.compare(lng, key.lng) == 0 && Double.compare(lat, key.lat) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Double.hashCode(lng) + Double.hashCode(lat);
+        }
+    }
+
+    /**
+     * A target and its distances, kept together so they can be swapped in one write.
+     */
+    private static final class TargetDistances {
+        private final LngLat target;
+        private final double[] distances;
+
+        TargetDistances(LngLat target, double[] distances) {
+            this.target = target;
+            this.distances = distances;
+        }
+    }
+}
@@ -276,14 +276,4 @@ public class OrderIntegrationTest {
             assertEquals("Order date should match the specified date", "2025-01-30", order.getDate());
         }
     }
-
-    @Test
-    public void testRestaurantMutators() {
-        // Test setting number of moves from Appleton Tower
-        Restaurant testRestaurant = restaurants[0];
-        testRestaurant.setNumberOfMovesFromAppleton(5);
-
-        assertEquals("Number of moves from Appleton should be set correctly", 5,
-                testRestaurant.getNumberOfMovesFromAppletonTower());
-    }
 }
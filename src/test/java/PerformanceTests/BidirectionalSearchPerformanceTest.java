@@ -0,0 +1,99 @@
+package PerformanceTests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import OrderInformation.OrderRetriever;
+import OrderInformation.Restaurant;
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.RouteOptions;
+import RouteCalculation.SearchStatistics;
+
+/**
+ * Compares the bidirectional search with the standard search on the legs between
+ * Appleton Tower and each restaurant, using the backup copy of the REST API data so
+ * that the results are repeatable. The straight line is turned off so that every leg
+ * is searched for.
+ */
+public class BidirectionalSearchPerformanceTest {
+    private static final LngLat APPLETON_TOWER = new LngLat(-3.186874, 55.944494);
+    private static final int REPEATS = 10;
+
+    private static LngLat[] restaurants;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        AreaSingleton.resetInstance();
+        AreaSingleton.getInstance().setURLs(new File("Dataset Backup/centralArea.json").toURI().toURL(),
+                new File("Dataset Backup/noFlyZones.json").toURI().toURL());
+        Restaurant[] retrieved = OrderRetriever
+                .getRestaurants(new File("Dataset Backup/restaurants.json").toURI().toURL());
+        restaurants = new LngLat[retrieved.length];
+        for (int i = 0; i < retrieved.length; i++) {
+            restaurants[i] = new LngLat(retrieved[i].getLongitude(), retrieved[i].getLatitude());
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        AreaSingleton.resetInstance();
+    }
+
+    @Test
+    public void testBidirectionalAgainstStandardSearch() {
+        int[] standardLengths = null;
+        int[] bidirectionalLengths = null;
+        SearchStatistics standardStatistics = null;
+        SearchStatistics bidirectionalStatistics = null;
+        long standardTime = Long.MAX_VALUE;
+        long bidirectionalTime = Long.MAX_VALUE;
+        for (int repeat = 0; repeat < REPEATS; repeat++) {
+            standardStatistics = new SearchStatistics();
+            long start = System.nanoTime();
+            standardLengths = routeAll(false, standardStatistics);
+            standardTime = Math.min(standardTime, System.nanoTime() - start);
+
+            bidirectionalStatistics = new SearchStatistics();
+            start = System.nanoTime();
+            bidirectionalLengths = routeAll(true, bidirectionalStatistics);
+            bidirectionalTime = Math.min(bidirectionalTime, System.nanoTime() - start);
+        }
+
+        System.out.printf("Restaurant legs: standard %.2f ms (%d expansions), bidirectional %.2f ms (%d expansions)%n",
+                standardTime / 1e6, standardStatistics.getExpansions(), bidirectionalTime / 1e6,
+                bidirectionalStatistics.getExpansions());
+        for (int i = 0; i < standardLengths.length; i++) {
+            assertEquals("Bidirectional search should find routes of the same length", standardLengths[i],
+                    bidirectionalLengths[i]);
+        }
+    }
+
+    /**
+     * Route from Appleton Tower to each restaurant and back.
+     *
+     * @return The length of each route.
+     */
+    private static int[] routeAll(boolean bidirectional, SearchStatistics statistics) {
+        RouteOptions options = new RouteOptions();
+        options.setUseStraightLine(false);
+        options.setUseBidirectional(bidirectional);
+        options.setStatistics(statistics);
+
+        int[] lengths = new int[2 * restaurants.length];
+        for (int i = 0; i < restaurants.length; i++) {
+            CompassDirection[] there = LatticePoint.origin(APPLETON_TOWER).routeTo(restaurants[i], null, options);
+            CompassDirection[] back = LatticePoint.origin(restaurants[i]).routeTo(APPLETON_TOWER, null, options);
+            lengths[2 * i] = there.length;
+            lengths[2 * i + 1] = back.length;
+        }
+        return lengths;
+    }
+}
@@ -0,0 +1,255 @@
+package PerformanceTests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.Line2D;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.AreaSnapshot;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LngLat;
+import RouteCalculation.PreparedPolygon;
+
+/**
+ * Measures the cost of the geometry checks done for each expansion of the A* search,
+ * using the backup copy of the REST API data so that the results are repeatable.
+ * Each expansion checks the central area for the node and checks the central area
+ * and no-fly zones for the move in each of the 16 directions.
+ */
+public class GeometryPerformanceTest {
+    private static final int EXPANSIONS = 200000;
+    private static final int REPEATS = 5;
+    private static final int[] THREADS = { 1, 2, 4, 8 };
+
+    private static LngLat[] centralArea;
+    private static LngLat[][] noFlyZones;
+    private static double[] lngs;
+    private static double[] lats;
+    private static double[] moveLngs;
+    private static double[] moveLats;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        AreaSingleton.resetInstance();
+        AreaSingleton.getInstance().setURLs(new File("Dataset Backup/centralArea.json").toURI().toURL(),
+                new File("Dataset Backup/noFlyZones.json").toURI().toURL());
+        centralArea = AreaSingleton.getInstance().getCentralAreaBorder();
+        noFlyZones = AreaSingleton.getInstance().getNoFlyZones();
+
+        // The change in position for a move in each direction.
+        CompassDirection[] directions = CompassDirection.valuesNoHover();
+        moveLngs = new double[directions.length];
+        moveLats = new double[directions.length];
+        for (int d = 0; d < directions.length; d++) {
+            LngLat moved = new LngLat(0, 0).nextPosition(directions[d]);
+            moveLngs[d] = moved.getLng();
+            moveLats[d] = moved.getLat();
+        }
+
+        // Nodes spread over the area the drone flies in, around the central area.
+        Random random = new Random(2023);
+        lngs = new double[EXPANSIONS];
+        lats = new double[EXPANSIONS];
+        for (int i = 0; i < EXPANSIONS; i++) {
+            lngs[i] = -3.196 + random.nextDouble() * 0.016;
+            lats[i] = 55.940 + random.nextDouble() * 0.008;
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        AreaSingleton.resetInstance();
+    }
+
+    @Test
+    public void testExpansionGeometryCost() {
+        long referenceChecks = 0;
+        long checks = 0;
+        long referenceTime = Long.MAX_VALUE;
+        long time = Long.MAX_VALUE;
+        for (int repeat = 0; repeat < REPEATS; repeat++) {
+            long start = System.nanoTime();
+            referenceChecks = expandAllReference();
+            referenceTime = Math.min(referenceTime, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            checks = expandAll();
+            time = Math.min(time, System.nanoTime() - start);
+        }
+
+        System.out.printf("Geometry per expansion: every edge %.0f ns, prepared and indexed %.0f ns%n",
+                (double) referenceTime / EXPANSIONS, (double) time / EXPANSIONS);
+        assertEquals("Prepared geometry should give the same answers as checking every edge", referenceChecks,
+                checks);
+    }
+
+    @Test
+    public void testCentralAreaMembershipCost() {
+        PreparedPolygon prepared = AreaSingleton.getInstance().getPreparedCentralArea();
+        long[] inside = new long[3];
+        long[] best = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+        for (int repeat = 0; repeat < REPEATS; repeat++) {
+            inside = new long[3];
+            long start = System.nanoTime();
+            for (int i = 0; i < EXPANSIONS; i++) {
+                inside[0] += LngLat.inZone(lngs[i], lats[i], centralArea) ? 1 : 0;
+            }
+            best[0] = Math.min(best[0], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < EXPANSIONS; i++) {
+                inside[1] += prepared.containsExact(lngs[i], lats[i]) ? 1 : 0;
+            }
+            best[1] = Math.min(best[1], System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < EXPANSIONS; i++) {
+                inside[2] += prepared.contains(lngs[i], lats[i]) ? 1 : 0;
+            }
+            best[2] = Math.min(best[2], System.nanoTime() - start);
+        }
+
+        System.out.printf("Central area check: inZone %.1f ns, ray cast %.1f ns, raster %.1f ns (%.1f%% boundary cells)%n",
+                (double) best[0] / EXPANSIONS, (double) best[1] / EXPANSIONS, (double) best[2] / EXPANSIONS,
+                100 * prepared.getBoundaryFraction());
+        assertEquals("Ray casting should agree with inZone", inside[0], inside[1]);
+        assertEquals("Raster should agree with inZone", inside[0], inside[2]);
+    }
+
+    @Test
+    public void testConcurrentExpansionGeometryCost() throws Exception {
+        System.out.printf("Geometry per expansion on %d cores:%n", Runtime.getRuntime().availableProcessors());
+        long expected = expandAll();
+        for (int threads : THREADS) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                long singletonTime = Long.MAX_VALUE;
+                long snapshotTime = Long.MAX_VALUE;
+                for (int repeat = 0; repeat < REPEATS; repeat++) {
+                    long start = System.nanoTime();
+                    for (long count : runOnEachThread(executor, threads, false)) {
+                        assertEquals("Every thread should give the same answers", expected, count);
+                    }
+                    singletonTime = Math.min(singletonTime, System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    for (long count : runOnEachThread(executor, threads, true)) {
+                        assertEquals("Snapshot should give the same answers as the singleton", expected, count);
+                    }
+                    snapshotTime = Math.min(snapshotTime, System.nanoTime() - start);
+                }
+                System.out.printf("  %d threads: singleton %.0f ns, snapshot taken once %.0f ns%n", threads,
+                        (double) singletonTime / (threads * (long) EXPANSIONS),
+                        (double) snapshotTime / (threads * (long) EXPANSIONS));
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Do the checks for every expansion on each of the threads at the same time.
+     *
+     * @return The count from each thread.
+     */
+    private static List<Long> runOnEachThread(ExecutorService executor, int threads, boolean useSnapshot)
+            throws Exception {
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(
+                    () -> useSnapshot ? expandAllInSnapshot(AreaSingleton.currentSnapshot()) : expandAll()));
+        }
+        List<Long> counts = new ArrayList<>();
+        for (Future<Long> future : futures) {
+            counts.add(future.get());
+        }
+        return counts;
+    }
+
+    /**
+     * Do the checks for every expansion in a snapshot of the geometry taken once, as
+     * the route searches do.
+     *
+     * @return A count of the checks that were true.
+     */
+    private static long expandAllInSnapshot(AreaSnapshot area) {
+        long count = 0;
+        for (int i = 0; i < EXPANSIONS; i++) {
+            count += area.inCentralArea(lngs[i], lats[i]) ? 1 : 0;
+            for (int d = 0; d < moveLngs.length; d++) {
+                double lng = lngs[i] + moveLngs[d];
+                double lat = lats[i] + moveLats[d];
+                count += area.inCentralArea(lng, lat) ? 1 : 0;
+                count += area.inNoFlyZone(lng, lat, lngs[i], lats[i]) ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Do the checks for every expansion using the prepared geometry.
+     *
+     * @return A count of the checks that were true, to compare against the reference.
+     */
+    private static long expandAll() {
+        long count = 0;
+        for (int i = 0; i < EXPANSIONS; i++) {
+            count += LngLat.inCentralArea(lngs[i], lats[i]) ? 1 : 0;
+            for (int d = 0; d < moveLngs.length; d++) {
+                double lng = lngs[i] + moveLngs[d];
+                double lat = lats[i] + moveLats[d];
+                count += LngLat.inCentralArea(lng, lat) ? 1 : 0;
+                count += LngLat.inNoFlyZone(lng, lat, lngs[i], lats[i]) ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Do the checks for every expansion by ray casting over the raw coordinates and
+     * testing every edge of every no-fly zone.
+     *
+     * @return A count of the checks that were true.
+     */
+    private static long expandAllReference() {
+        long count = 0;
+        for (int i = 0; i < EXPANSIONS; i++) {
+            count += LngLat.inZone(lngs[i], lats[i], centralArea) ? 1 : 0;
+            for (int d = 0; d < moveLngs.length; d++) {
+                double lng = lngs[i] + moveLngs[d];
+                double lat = lats[i] + moveLats[d];
+                count += LngLat.inZone(lng, lat, centralArea) ? 1 : 0;
+                count += referenceInNoFlyZone(lng, lat, lngs[i], lats[i]) ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    private static boolean referenceInNoFlyZone(double lng, double lat, double previousLng, double previousLat) {
+        for (LngLat[] zone : noFlyZones) {
+            if (LngLat.inZone(lng, lat, zone)) {
+                return true;
+            }
+            for (int i = 0; i < zone.length; i++) {
+                LngLat p1 = zone[i];
+                LngLat p2 = zone[(i + 1) % zone.length];
+                if (Line2D.linesIntersect(lng, lat, previousLng, previousLat, p1.getLng(), p1.getLat(), p2.getLng(),
+                        p2.getLat())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,116 @@
+package PerformanceTests;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import OrderInformation.OrderRetriever;
+import OrderInformation.Restaurant;
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.RouteCalculator;
+import RouteCalculation.RouteOptions;
+import RouteCalculation.SearchStatistics;
+
+/**
+ * Compares the parallel search over different numbers of threads with the standard
+ * search on the legs between Appleton Tower and each restaurant, using the backup copy
+ * of the REST API data so that the results are repeatable. The straight line is turned
+ * off so that every leg is searched for. The parallel search only runs faster when
+ * there are at least as many free cores as threads. Its routes need not be as long as
+ * the standard ones, so the number of legs whose length differs is reported too.
+ */
+public class ParallelSearchPerformanceTest {
+    private static final LngLat APPLETON_TOWER = new LngLat(-3.186874, 55.944494);
+    private static final int[] THREADS = { 2, 4, 8, 16 };
+    private static final int REPEATS = 3;
+
+    private static LngLat[] restaurants;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        AreaSingleton.resetInstance();
+        AreaSingleton.getInstance().setURLs(new File("Dataset Backup/centralArea.json").toURI().toURL(),
+                new File("Dataset Backup/noFlyZones.json").toURI().toURL());
+        Restaurant[] retrieved = OrderRetriever
+                .getRestaurants(new File("Dataset Backup/restaurants.json").toURI().toURL());
+        restaurants = new LngLat[retrieved.length];
+        for (int i = 0; i < retrieved.length; i++) {
+            restaurants[i] = new LngLat(retrieved[i].getLongitude(), retrieved[i].getLatitude());
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        AreaSingleton.resetInstance();
+    }
+
+    @Test
+    public void testParallelAgainstStandardSearch() {
+        System.out.printf("Restaurant legs on %d cores:%n", Runtime.getRuntime().availableProcessors());
+        int[] standardLengths = null;
+        SearchStatistics standardStatistics = null;
+        long standardTime = Long.MAX_VALUE;
+        for (int repeat = 0; repeat < REPEATS; repeat++) {
+            standardStatistics = new SearchStatistics();
+            long start = System.nanoTime();
+            standardLengths = routeAll(0, standardStatistics);
+            standardTime = Math.min(standardTime, System.nanoTime() - start);
+        }
+        System.out.printf("  standard search: %.2f ms (%d expansions)%n", standardTime / 1e6,
+                standardStatistics.getExpansions());
+        for (int threads : THREADS) {
+            int[] lengths = null;
+            SearchStatistics statistics = null;
+            long time = Long.MAX_VALUE;
+            for (int repeat = 0; repeat < REPEATS; repeat++) {
+                statistics = new SearchStatistics();
+                long start = System.nanoTime();
+                lengths = routeAll(threads, statistics);
+                time = Math.min(time, System.nanoTime() - start);
+            }
+
+            int differentLengths = 0;
+            for (int i = 0; i < lengths.length; i++) {
+                if (lengths[i] != standardLengths[i]) {
+                    differentLengths++;
+                }
+            }
+            System.out.printf("  %2d threads: %.2f ms (%d expansions, %d of %d legs a different length)%n",
+                    threads, time / 1e6, statistics.getExpansions(), differentLengths, lengths.length);
+        }
+    }
+
+    /**
+     * Route from Appleton Tower to each restaurant and back.
+     *
+     * @param threads The number of threads of the parallel search, or zero for the
+     *                standard search.
+     * @return The length of each route.
+     */
+    private static int[] routeAll(int threads, SearchStatistics statistics) {
+        RouteOptions options = new RouteOptions();
+        options.setUseStraightLine(false);
+        options.setStatistics(statistics);
+
+        int[] lengths = new int[2 * restaurants.length];
+        for (int i = 0; i < restaurants.length; i++) {
+            lengths[2 * i] = route(LatticePoint.origin(APPLETON_TOWER), restaurants[i], threads, options);
+            lengths[2 * i + 1] = route(LatticePoint.origin(restaurants[i]), APPLETON_TOWER, threads, options);
+        }
+        return lengths;
+    }
+
+    private static int route(LatticePoint start, LngLat end, int threads, RouteOptions options) {
+        CompassDirection[] route = threads == 0 ? RouteCalculator.calculateRouteFrom(start, end, null, options)
+                : RouteCalculator.calculateRouteParallel(start, end, null, options, threads);
+        assertNotNull("Every restaurant leg should have a route", route);
+        return route.length;
+    }
+}
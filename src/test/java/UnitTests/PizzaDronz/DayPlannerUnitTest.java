@@ -0,0 +1,141 @@
+package UnitTests.PizzaDronz;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import OrderInformation.CreditCardInformation;
+import OrderInformation.Menu;
+import OrderInformation.Order;
+import OrderInformation.OrderOutcome;
+import OrderInformation.Pizza;
+import OrderInformation.Restaurant;
+import Output.FlightPathPoint;
+import PizzaDronz.DayPlanner;
+import PizzaDronz.LegTable;
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.LngLat;
+import RouteCalculation.RouteOptions;
+
+public class DayPlannerUnitTest {
+    private static final String DATE = "2025-01-06";
+    private static final LngLat APPLETON = new LngLat(-3.186874, 55.944494);
+    private static final LngLat[][] NO_FLY_ZONES = { { new LngLat(-3.1895, 55.9446), new LngLat(-3.1895, 55.9452),
+            new LngLat(-3.1885, 55.9452), new LngLat(-3.1885, 55.9446) } };
+    private static final Restaurant NEAR = restaurant("Near", -3.1855, 55.9455);
+    private static final Restaurant BEHIND_ZONE = restaurant("Behind Zone", -3.191257, 55.945626);
+    private static final Restaurant[] RESTAURANTS = { NEAR, BEHIND_ZONE };
+
+    private LegTable legTable;
+
+    @Before
+    public void setupSingleton() {
+        AreaSingleton mockSingleton = mock(AreaSingleton.class);
+        AreaSingleton.setInstance(mockSingleton);
+        when(mockSingleton.getNoFlyZones()).thenReturn(NO_FLY_ZONES);
+        legTable = LegTable.build(RESTAURANTS, APPLETON, new RouteOptions(), ForkJoinPool.commonPool());
+    }
+
+    private static Restaurant restaurant(String name, double lng, double lat) {
+        return new Restaurant(name, new Restaurant.Location(lng, lat), new String[] { "MONDAY" },
+                new Menu[] { new Menu("Pizza " + name, 1000) });
+    }
+
+    private static Order order(String orderNo, Restaurant restaurant) {
+        Order order = new Order(orderNo, DATE, new CreditCardInformation("4111111111111111", "12/30", "123"), 1100,
+                new Pizza[] { new Pizza(restaurant.getMenu()[0].getName(), 1000) });
+        order.validateOrder(RESTAURANTS, DATE);
+        return order;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullOptions() {
+        new DayPlanner(APPLETON, null, legTable);
+    }
+
+    @Test
+    public void testAllOrdersDelivered() {
+        List<Order> orders = Arrays.asList(order("0000000A", NEAR), order("0000000B", BEHIND_ZONE));
+
+        List<FlightPathPoint> path = new DayPlanner(APPLETON, new RouteOptions(), legTable).plan(orders, 2000);
+
+        for (Order order : orders) {
+            assertEquals("Every order should be delivered", OrderOutcome.Delivered, order.getOrderOutcome());
+        }
+        assertFlightPathIsContinuous(path);
+    }
+
+    @Test
+    public void testBudgetExhausted_LaterOrdersStillDelivered() {
+        Order first = order("0000000A", NEAR);
+        Order exhausted = order("0000000B", BEHIND_ZONE);
+        Order last = order("0000000C", NEAR);
+        // The legs to the near restaurant are straight lines, but the search around the
+        // zone can't be done in so few expansions.
+        // The planner needs no statistics to tell that a search ran out of budget.
+        RouteOptions options = new RouteOptions();
+        options.setExpansionBudget(20);
+        // A table planned from a point just next to appleton tower has the lengths of the
+        // legs, but none of its routes start where the drone is, so every leg is searched.
+        LegTable offsetTable = LegTable.build(RESTAURANTS, new LngLat(APPLETON.getLng() + 1e-9, APPLETON.getLat()),
+                new RouteOptions(), ForkJoinPool.commonPool());
+
+        List<FlightPathPoint> path = new DayPlanner(APPLETON, options, offsetTable)
+                .plan(Arrays.asList(first, exhausted, last), 2000);
+
+        assertEquals("First order should be delivered", OrderOutcome.Delivered, first.getOrderOutcome());
+        assertEquals("Order whose leg ran out of budget should not be delivered", OrderOutcome.ValidButNotDelivered,
+                exhausted.getOrderOutcome());
+        assertEquals("Order after the one that ran out of budget should be delivered", OrderOutcome.Delivered,
+                last.getOrderOutcome());
+        for (FlightPathPoint point : path) {
+            assertTrue("No moves should be flown for the order that was not delivered",
+                    !point.toJson().contains(exhausted.getOrderNo()));
+        }
+        assertFlightPathIsContinuous(path);
+    }
+
+    @Test
+    public void testBatteryShortfall_EndsTheDay() {
+        Order first = order("0000000A", NEAR);
+        Order tooFar = order("0000000B", BEHIND_ZONE);
+        Order last = order("0000000C", NEAR);
+        int nearMoves = legTable.movesFromAppletonTower(NEAR) + legTable.movesToAppletonTower(NEAR);
+
+        // Enough battery for the near restaurant twice, but not for the one behind the
+        // zone.
+        new DayPlanner(APPLETON, new RouteOptions(), legTable)
+                .plan(Arrays.asList(first, tooFar, last), 2 * nearMoves + 2);
+
+        assertEquals("First order should be delivered", OrderOutcome.Delivered, first.getOrderOutcome());
+        assertEquals("Order that does not fit should not be delivered", OrderOutcome.ValidButNotDelivered,
+                tooFar.getOrderOutcome());
+        assertEquals("No order after the battery runs out should be delivered", OrderOutcome.ValidButNotDelivered,
+                last.getOrderOutcome());
+    }
+
+    /**
+     * Check that each move of the flight path starts where the one before it ended,
+     * and that the path starts and ends at appleton tower.
+     */
+    private static void assertFlightPathIsContinuous(List<FlightPathPoint> path) {
+        assertTrue("Flight path should not be empty", !path.isEmpty());
+        assertArrayEquals("Flight path should start at appleton tower",
+                new double[] { APPLETON.getLng(), APPLETON.getLat() }, path.get(0).getStartingCoordinates(), 1e-12);
+        for (int i = 1; i < path.size(); i++) {
+            assertArrayEquals("Move should start where the last one ended",
+                    path.get(i - 1).getDestinationCoordinates(), path.get(i).getStartingCoordinates(), 1e-12);
+        }
+        double[] end = path.get(path.size() - 1).getDestinationCoordinates();
+        assertTrue("Flight path should end at appleton tower", new LngLat(end[0], end[1]).closeTo(APPLETON));
+    }
+}
@@ -0,0 +1,134 @@
+package UnitTests.PizzaDronz;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import OrderInformation.Menu;
+import OrderInformation.Restaurant;
+import PizzaDronz.LegTable;
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.RouteOptions;
+
+public class LegTableUnitTest {
+    private static final LngLat APPLETON = new LngLat(-3.186874, 55.944494);
+    private static final LngLat[][] NO_FLY_ZONES = { { new LngLat(-3.1895, 55.9446), new LngLat(-3.1895, 55.9452),
+            new LngLat(-3.1885, 55.9452), new LngLat(-3.1885, 55.9446) } };
+    private static final Restaurant NEAR = restaurant("Near", -3.1855, 55.9455);
+    private static final Restaurant BEHIND_ZONE = restaurant("Behind Zone", -3.191257, 55.945626);
+
+    @Before
+    public void setupSingleton() {
+        AreaSingleton mockSingleton = mock(AreaSingleton.class);
+        AreaSingleton.setInstance(mockSingleton);
+        when(mockSingleton.getNoFlyZones()).thenReturn(NO_FLY_ZONES);
+    }
+
+    private static Restaurant restaurant(String name, double lng, double lat) {
+        return new Restaurant(name, new Restaurant.Location(lng, lat), new String[] { "MONDAY" },
+                new Menu[] { new Menu("Pizza " + name, 1000) });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullRestaurants() {
+        LegTable.build(null, APPLETON, new RouteOptions(), ForkJoinPool.commonPool());
+    }
+
+    @Test
+    public void testLegsMatchSerialRoutes() {
+        Restaurant[] restaurants = { NEAR, BEHIND_ZONE };
+        LegTable table = LegTable.build(restaurants, APPLETON, new RouteOptions(), ForkJoinPool.commonPool());
+
+        assertEquals("Table should have a leg for each restaurant", 2, table.size());
+        for (Restaurant restaurant : restaurants) {
+            LngLat location = new LngLat(restaurant.getLongitude(), restaurant.getLatitude());
+            CompassDirection[] outbound = LatticePoint.origin(APPLETON).routeTo(location, APPLETON);
+
+            assertArrayEquals("Outbound leg should be the same as planning it alone", outbound,
+                    table.outboundFrom(LatticePoint.origin(APPLETON), restaurant));
+            assertEquals("Moves from appleton tower should be the outbound leg", outbound.length,
+                    table.movesFromAppletonTower(restaurant));
+            assertEquals("Moves to appleton tower should be the inbound leg",
+                    table.inboundFrom(pickup(outbound), restaurant).length, table.movesToAppletonTower(restaurant));
+        }
+    }
+
+    @Test
+    public void testInboundEndsExactlyAtAppletonTower() {
+        Restaurant[] restaurants = { NEAR, BEHIND_ZONE };
+        LegTable table = LegTable.build(restaurants, APPLETON, new RouteOptions(), ForkJoinPool.commonPool());
+
+        for (Restaurant restaurant : restaurants) {
+            LatticePoint position = pickup(table.outboundFrom(LatticePoint.origin(APPLETON), restaurant));
+            CompassDirection[] inbound = table.inboundFrom(position, restaurant);
+            for (CompassDirection direction : inbound) {
+                position = position.next(direction);
+            }
+            assertEquals("Inbound leg should end exactly at appleton tower", LatticePoint.origin(APPLETON), position);
+            assertEquals("Inbound leg should end with a hover", CompassDirection.HOVER, inbound[inbound.length - 1]);
+        }
+    }
+
+    @Test
+    public void testInboundOnlyFromPickup() {
+        LegTable table = LegTable.build(new Restaurant[] { NEAR }, APPLETON, new RouteOptions(),
+                ForkJoinPool.commonPool());
+        LatticePoint pickup = pickup(table.outboundFrom(LatticePoint.origin(APPLETON), NEAR));
+
+        assertNull("Leg should not be used away from the pickup",
+                table.inboundFrom(pickup.next(CompassDirection.N), NEAR));
+    }
+
+    private static LatticePoint pickup(CompassDirection[] outbound) {
+        LatticePoint position = LatticePoint.origin(APPLETON);
+        for (CompassDirection direction : outbound) {
+            position = position.next(direction);
+        }
+        return position;
+    }
+
+    @Test
+    public void testSameTableForAnyNumberOfThreads() {
+        Restaurant[] restaurants = { NEAR, BEHIND_ZONE };
+        LegTable serial = LegTable.build(restaurants, APPLETON, new RouteOptions(), new ForkJoinPool(1));
+        LegTable parallel = LegTable.build(restaurants, APPLETON, new RouteOptions(), new ForkJoinPool(4));
+
+        for (Restaurant restaurant : restaurants) {
+            assertArrayEquals("Legs should not depend on the number of threads",
+                    serial.outboundFrom(LatticePoint.origin(APPLETON), restaurant),
+                    parallel.outboundFrom(LatticePoint.origin(APPLETON), restaurant));
+            assertEquals("Legs should not depend on the number of threads", serial.movesToAppletonTower(restaurant),
+                    parallel.movesToAppletonTower(restaurant));
+        }
+    }
+
+    @Test
+    public void testOutboundOnlyFromAppletonTower() {
+        LegTable table = LegTable.build(new Restaurant[] { NEAR }, APPLETON, new RouteOptions(),
+                ForkJoinPool.commonPool());
+
+        assertNull("Leg should not be used away from appleton tower",
+                table.outboundFrom(LatticePoint.origin(APPLETON).next(CompassDirection.N), NEAR));
+    }
+
+    @Test
+    public void testUnknownRestaurant() {
+        LegTable table = LegTable.build(new Restaurant[] { NEAR }, APPLETON, new RouteOptions(),
+                ForkJoinPool.commonPool());
+
+        assertNull("Unknown restaurant should have no leg", table.outboundFrom(LatticePoint.origin(APPLETON),
+                BEHIND_ZONE));
+        assertEquals("Unknown restaurant should be infinitely far away", Integer.MAX_VALUE,
+                table.movesToAppletonTower(BEHIND_ZONE));
+    }
+}
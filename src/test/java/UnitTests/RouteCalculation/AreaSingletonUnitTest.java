@@ -1,9 +1,13 @@
 package UnitTests.RouteCalculation;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.net.MalformedURLException;
 
@@ -14,6 +18,7 @@ import org.junit.Test;
 import java.net.URL;
 
 import RouteCalculation.AreaSingleton;
+import RouteCalculation.AreaSnapshot;
 import RouteCalculation.LngLat;
 
 public class AreaSingletonUnitTest {
@@ -86,10 +91,55 @@ public class AreaSingletonUnitTest {
         assertNull("No-fly zones should be null before setURLs is called", areaSingleton.getNoFlyZones());
     }
 
+    @Test
+    public void testPreparedPolygons_NullBeforeSetURLs() {
+        assertNull("Prepared central area should be null before setURLs is called",
+                areaSingleton.getPreparedCentralArea());
+        assertNull("Prepared no-fly zones should be null before setURLs is called",
+                areaSingleton.getPreparedNoFlyZones());
+    }
+
     @Test
     public void testSetInstance() {
         AreaSingleton mockInstance = new AreaSingleton();
         AreaSingleton.setInstance(mockInstance);
         assertSame("setInstance should replace the singleton instance", mockInstance, AreaSingleton.getInstance());
     }
+
+    @Test
+    public void testSetNoFlyZones_PublishesNewSnapshot() {
+        LngLat[][] zones = { { new LngLat(0, 0), new LngLat(0, 1), new LngLat(1, 1), new LngLat(1, 0) } };
+        AreaSnapshot before = areaSingleton.getSnapshot();
+
+        areaSingleton.setNoFlyZones(zones);
+        AreaSnapshot after = AreaSingleton.currentSnapshot();
+
+        assertSame("Snapshot should have the new zones", zones, after.getNoFlyZones());
+        assertEquals("Snapshot should have the next version", before.getVersion() + 1, after.getVersion());
+        assertNull("Earlier snapshot should keep its zones", before.getNoFlyZones());
+        assertTrue("Move into the new zone should be blocked", after.inNoFlyZone(0.5, 0.5, 2, 2));
+        assertFalse("Earlier snapshot should not block the move", before.inNoFlyZone(0.5, 0.5, 2, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetNoFlyZones_Null() {
+        areaSingleton.setNoFlyZones(null);
+    }
+
+    @Test
+    public void testCurrentSnapshot_MadeFromAccessorsOnlyWhenGeometryChanges() {
+        AreaSingleton mockInstance = mock(AreaSingleton.class);
+        LngLat[][] zones = { { new LngLat(0, 0), new LngLat(0, 1), new LngLat(1, 1) } };
+        when(mockInstance.getNoFlyZones()).thenReturn(zones);
+        AreaSingleton.setInstance(mockInstance);
+
+        AreaSnapshot first = AreaSingleton.currentSnapshot();
+        assertSame("Snapshot should have the zones from the accessor", zones, first.getNoFlyZones());
+        assertSame("Snapshot should be reused while the geometry is the same", first,
+                AreaSingleton.currentSnapshot());
+
+        when(mockInstance.getNoFlyZones()).thenReturn(new LngLat[0][]);
+        assertTrue("Snapshot should be made again when the geometry changes",
+                AreaSingleton.currentSnapshot().getVersion() > first.getVersion());
+    }
 }
@@ -0,0 +1,65 @@
+package UnitTests.RouteCalculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import RouteCalculation.ClosedSet;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LngLat;
+
+public class ClosedSetUnitTest {
+    private static final LngLat APPLETON = new LngLat(-3.186874, 55.944494);
+
+    @Test
+    public void testEmptySet_ContainsNothing() {
+        ClosedSet closedSet = new ClosedSet();
+
+        assertFalse("Empty set should not contain any point", closedSet.containsCloseTo(APPLETON));
+        assertEquals("Empty set should have size 0", 0, closedSet.size());
+    }
+
+    @Test
+    public void testContainsCloseTo_SamePoint() {
+        ClosedSet closedSet = new ClosedSet();
+        closedSet.add(APPLETON);
+
+        assertTrue("Set should contain the point that was added", closedSet.containsCloseTo(APPLETON));
+        assertEquals("Set should have size 1", 1, closedSet.size());
+    }
+
+    @Test
+    public void testContainsCloseTo_NeighbouringCell() {
+        ClosedSet closedSet = new ClosedSet();
+        closedSet.add(APPLETON);
+
+        // Slightly less than the tolerance away in each diagonal, so it may be in a
+        // different cell.
+        LngLat nearby = new LngLat(APPLETON.getLng() + 0.0001, APPLETON.getLat() - 0.0001);
+        assertTrue("Set should contain points close to an added point", closedSet.containsCloseTo(nearby));
+    }
+
+    @Test
+    public void testContainsCloseTo_PointExactlyThresholdAway() {
+        ClosedSet closedSet = new ClosedSet();
+        closedSet.add(APPLETON);
+
+        LngLat thresholdAway = new LngLat(APPLETON.getLng() + 0.00015, APPLETON.getLat());
+        assertFalse("Point exactly 0.00015 degrees away should not be close", closedSet.containsCloseTo(thresholdAway));
+    }
+
+    @Test
+    public void testContainsCloseTo_MatchesCloseToForAllMoves() {
+        ClosedSet closedSet = new ClosedSet();
+        closedSet.add(APPLETON);
+
+        // The set must agree with LngLat.closeTo for every possible move.
+        for (CompassDirection direction : CompassDirection.valuesNoHover()) {
+            LngLat next = APPLETON.nextPosition(direction);
+            assertEquals("Set disagrees with closeTo for direction " + direction, APPLETON.closeTo(next),
+                    closedSet.containsCloseTo(next));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package UnitTests.RouteCalculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.ClusterHierarchy;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.RouteCalculator;
+import RouteCalculation.RouteOptions;
+import RouteCalculation.SearchStatistics;
+
+public class ClusterHierarchyUnitTest {
+    private static final LngLat APPLETON = new LngLat(-3.186874, 55.944494);
+    private static final LngLat RESTAURANT = new LngLat(-3.191257, 55.945626);
+    private static final LngLat[] RESTAURANTS = { RESTAURANT };
+    private static final LngLat[][] NO_FLY_ZONES = { { new LngLat(-3.1895, 55.9446), new LngLat(-3.1895, 55.9452),
+            new LngLat(-3.1885, 55.9452), new LngLat(-3.1885, 55.9446) } };
+
+    private AreaSingleton mockSingleton;
+
+    @Before
+    public void setupSingleton() {
+        mockSingleton = mock(AreaSingleton.class);
+        AreaSingleton.setInstance(mockSingleton);
+        when(mockSingleton.getNoFlyZones()).thenReturn(NO_FLY_ZONES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClusterTooSmall() {
+        new ClusterHierarchy(RESTAURANTS, 1, 1.1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStretchBelowOne() {
+        new ClusterHierarchy(RESTAURANTS, 8, 0.9);
+    }
+
+    @Test
+    public void testRoute_WithinStretchOfSearchedRoute() {
+        ClusterHierarchy hierarchy = new ClusterHierarchy(RESTAURANTS, 8, 1.1);
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions options = new RouteOptions();
+        options.setUseStraightLine(false);
+        options.setHierarchy(hierarchy);
+        options.setStatistics(statistics);
+
+        CompassDirection[] searched = RouteCalculator.calculateRouteFrom(LatticePoint.origin(RESTAURANT), APPLETON,
+                null, new RouteOptions());
+        CompassDirection[] planned = RESTAURANT.routeTo(APPLETON, null, options);
+
+        assertEquals("Route should be planned through the clusters", 1, statistics.getHierarchicalRoutes());
+        assertTrue("Planned route should be no shorter than the searched route", planned.length >= searched.length);
+        assertTrue("Planned route should be within the stretch of the searched route",
+                planned.length <= 1.1 * searched.length);
+        assertTrue("Reported stretch should be within the largest stretch",
+                statistics.getHierarchicalStretch() <= hierarchy.getMaxStretch());
+        assertEquals("Route should end with a hover", CompassDirection.HOVER, planned[planned.length - 1]);
+        LatticePoint position = LatticePoint.origin(RESTAURANT);
+        for (CompassDirection direction : planned) {
+            assertTrue("Route should not cross the no-fly zone",
+                    !LngLat.inNoFlyZone(position.next(direction).getLng(), position.next(direction).getLat(),
+                            position.getLng(), position.getLat()));
+            position = position.next(direction);
+        }
+        assertTrue("Planned route should get close to the end", position.closeTo(APPLETON));
+    }
+
+    @Test
+    public void testRoute_SameClusterIsSearched() {
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions options = new RouteOptions();
+        options.setUseStraightLine(false);
+        options.setHierarchy(new ClusterHierarchy(RESTAURANTS, 8, 1.1));
+        options.setStatistics(statistics);
+
+        LngLat nearby = new LngLat(RESTAURANT.getLng() + 2 * LngLat.getLengthOfMove(), RESTAURANT.getLat());
+        CompassDirection[] route = RESTAURANT.routeTo(nearby, null, options);
+
+        assertEquals("Short route should be searched for", 0, statistics.getHierarchicalRoutes());
+        assertEquals("Short route should take the fewest moves", 3, route.length);
+    }
+
+    @Test
+    public void testRebuiltOnlyWhenGeometryChanges() {
+        ClusterHierarchy hierarchy = new ClusterHierarchy(RESTAURANTS, 8, 1.1);
+        hierarchy.getEntranceCount();
+        hierarchy.getEntranceCount();
+        assertEquals("Graph should only be built once for the same geometry", 1, hierarchy.getBuilds());
+
+        LngLat[][] noNoFlyZones = { {} };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noNoFlyZones);
+        hierarchy.getEntranceCount();
+        assertEquals("Graph should be built again when the zones change", 2, hierarchy.getBuilds());
+    }
+}
@@ -0,0 +1,112 @@
+package UnitTests.RouteCalculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.DistanceField;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.RouteCalculator;
+import RouteCalculation.RouteOptions;
+import RouteCalculation.SearchStatistics;
+import RouteCalculation.VisibilityGraph;
+
+public class DistanceFieldUnitTest {
+    private static final LngLat APPLETON = new LngLat(-3.186874, 55.944494);
+    private static final LngLat RESTAURANT = new LngLat(-3.191257, 55.945626);
+    private static final LngLat[] RESTAURANTS = { RESTAURANT };
+    private static final LngLat[][] NO_FLY_ZONES = { { new LngLat(-3.1895, 55.9446), new LngLat(-3.1895, 55.9452),
+            new LngLat(-3.1885, 55.9452), new LngLat(-3.1885, 55.9446) } };
+
+    private AreaSingleton mockSingleton;
+
+    @Before
+    public void setupSingleton() {
+        mockSingleton = mock(AreaSingleton.class);
+        AreaSingleton.setInstance(mockSingleton);
+        when(mockSingleton.getNoFlyZones()).thenReturn(NO_FLY_ZONES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullTarget() {
+        new DistanceField(null, RESTAURANTS);
+    }
+
+    @Test
+    public void testIsFor() {
+        DistanceField field = new DistanceField(APPLETON, RESTAURANTS);
+
+        assertTrue("Field should be for its own target", field.isFor(new LngLat(-3.186874, 55.944494)));
+        assertFalse("Field should not be for a different target", field.isFor(RESTAURANT));
+        assertFalse("Field should not be for a null target", field.isFor(null));
+    }
+
+    @Test
+    public void testDistanceFrom_MatchesVisibilityGraph() {
+        DistanceField field = new DistanceField(APPLETON, RESTAURANTS);
+        VisibilityGraph graph = VisibilityGraph.forZones(NO_FLY_ZONES);
+
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            double lng = -3.192 + random.nextDouble() * 0.007;
+            double lat = 55.943 + random.nextDouble() * 0.003;
+            double expected = graph.lowerBound(lng, lat, APPLETON);
+            double actual = field.distanceFrom(lng, lat);
+            if (expected != Double.POSITIVE_INFINITY && actual != Double.POSITIVE_INFINITY) {
+                // Points near the edge of a shadow may head for a different waypoint to
+                // the centre of their cell.
+                assertEquals("Field should be the shortest way around the zones", expected, actual, 0.0002);
+            }
+        }
+    }
+
+    @Test
+    public void testDistanceFrom_OutsideGridIsInfinite() {
+        DistanceField field = new DistanceField(APPLETON, RESTAURANTS);
+        assertEquals("Points outside the grid should have no distance", Double.POSITIVE_INFINITY,
+                field.distanceFrom(-3.0, 55.0), 0);
+    }
+
+    @Test
+    public void testRebuiltOnlyWhenGeometryChanges() {
+        DistanceField field = new DistanceField(APPLETON, RESTAURANTS);
+        field.distanceFrom(RESTAURANT.getLng(), RESTAURANT.getLat());
+        field.distanceFrom(RESTAURANT.getLng(), RESTAURANT.getLat());
+        assertEquals("Field should only be built once for the same geometry", 1, field.getBuilds());
+
+        LngLat[][] noNoFlyZones = { {} };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noNoFlyZones);
+        assertEquals("Without the zone the field should be the straight line",
+                LngLat.latticeDistance(RESTAURANT.getLng(), RESTAURANT.getLat(), APPLETON.getLng(), APPLETON.getLat()),
+                field.distanceFrom(RESTAURANT.getLng(), RESTAURANT.getLat()), 1e-12);
+        assertEquals("Field should be built again when the zones change", 2, field.getBuilds());
+    }
+
+    @Test
+    public void testRouteFollowingField_SameLengthAsSearch() {
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions options = new RouteOptions();
+        options.setUseStraightLine(false);
+        options.setDistanceField(new DistanceField(APPLETON, RESTAURANTS));
+        options.setStatistics(statistics);
+
+        CompassDirection[] expected = RouteCalculator.calculateRouteFrom(LatticePoint.origin(RESTAURANT), APPLETON,
+                null, new RouteOptions());
+        CompassDirection[] actual = RouteCalculator.calculateRouteFrom(LatticePoint.origin(RESTAURANT), APPLETON,
+                null, options);
+
+        assertEquals("Route following the field should be as short as the searched route", expected.length,
+                actual.length);
+        assertEquals("Route should be built from the field", 1, statistics.getDistanceFieldRoutes());
+    }
+}
@@ -0,0 +1,104 @@
+package UnitTests.RouteCalculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LandmarkHeuristic;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.RouteCalculator;
+import RouteCalculation.RouteOptions;
+import RouteCalculation.VisibilityGraph;
+
+public class LandmarkHeuristicUnitTest {
+    private static final LngLat APPLETON = new LngLat(-3.186874, 55.944494);
+    private static final LngLat RESTAURANT = new LngLat(-3.191257, 55.945626);
+    private static final LngLat[] LANDMARKS = { APPLETON, RESTAURANT };
+    private static final LngLat[][] NO_FLY_ZONES = { { new LngLat(-3.1895, 55.9446), new LngLat(-3.1895, 55.9452),
+            new LngLat(-3.1885, 55.9452), new LngLat(-3.1885, 55.9446) } };
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullLandmarks() {
+        new LandmarkHeuristic(NO_FLY_ZONES, null);
+    }
+
+    @Test
+    public void testLandmarkCount_IncludesZoneCorners() {
+        LandmarkHeuristic landmarks = new LandmarkHeuristic(NO_FLY_ZONES, LANDMARKS);
+        assertEquals("Landmarks should be the given landmarks and the corners of the zones", 6,
+                landmarks.getLandmarkCount());
+    }
+
+    @Test
+    public void testForLandmarks_CachedForSameGeometry() {
+        LandmarkHeuristic landmarks = LandmarkHeuristic.forLandmarks(NO_FLY_ZONES, LANDMARKS);
+
+        assertSame("The same zones and landmarks should give the same tables", landmarks,
+                LandmarkHeuristic.forLandmarks(NO_FLY_ZONES, new LngLat[] { new LngLat(-3.186874, 55.944494),
+                        new LngLat(-3.191257, 55.945626) }));
+        assertNotSame("Different landmarks should give new tables", landmarks,
+                LandmarkHeuristic.forLandmarks(NO_FLY_ZONES, new LngLat[] { APPLETON }));
+    }
+
+    @Test
+    public void testLowerBound_OutsideTablesIsZero() {
+        LandmarkHeuristic landmarks = new LandmarkHeuristic(NO_FLY_ZONES, LANDMARKS);
+        assertEquals("Points outside the tables should have no bound", 0,
+                landmarks.lowerBound(-3.0, 55.0, APPLETON), 0);
+    }
+
+    @Test
+    public void testLowerBound_NearLandmarkIsCloseToDistance() {
+        LandmarkHeuristic landmarks = new LandmarkHeuristic(NO_FLY_ZONES, LANDMARKS);
+        double distance = VisibilityGraph.forZones(NO_FLY_ZONES).lowerBound(APPLETON.getLng(), APPLETON.getLat(),
+                RESTAURANT);
+
+        double bound = landmarks.lowerBound(APPLETON.getLng(), APPLETON.getLat(), RESTAURANT);
+        assertTrue("Bound between two landmarks should be close to their distance", bound > distance - 0.0005);
+        assertTrue("Bound should not be more than the distance", bound <= distance);
+    }
+
+    @Test
+    public void testLowerBound_NeverMoreThanShortestPath() {
+        LandmarkHeuristic landmarks = new LandmarkHeuristic(NO_FLY_ZONES, LANDMARKS);
+        VisibilityGraph graph = VisibilityGraph.forZones(NO_FLY_ZONES);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            double lng = -3.193 + random.nextDouble() * 0.008;
+            double lat = 55.943 + random.nextDouble() * 0.004;
+            LngLat target = new LngLat(-3.193 + random.nextDouble() * 0.008, 55.943 + random.nextDouble() * 0.004);
+            double shortest = graph.lowerBound(lng, lat, target);
+            if (shortest != Double.POSITIVE_INFINITY) {
+                assertTrue("Bound should never be more than the shortest path around the zones",
+                        landmarks.lowerBound(lng, lat, target) <= shortest + 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testRouteWithLandmarks_SameLength() {
+        AreaSingleton mockSingleton = mock(AreaSingleton.class);
+        AreaSingleton.setInstance(mockSingleton);
+        when(mockSingleton.getNoFlyZones()).thenReturn(NO_FLY_ZONES);
+
+        RouteOptions options = new RouteOptions();
+        options.setLandmarks(LandmarkHeuristic.forLandmarks(NO_FLY_ZONES, LANDMARKS));
+        CompassDirection[] expected = RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT,
+                null, new RouteOptions());
+        CompassDirection[] actual = RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT,
+                null, options);
+
+        assertEquals("Landmarks should not change the length of the route", expected.length, actual.length);
+    }
+}
@@ -0,0 +1,106 @@
+package UnitTests.RouteCalculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+
+public class LatticePointUnitTest {
+    private static final LngLat APPLETON = new LngLat(-3.186874, 55.944494);
+    private static final double ACCEPTANCE_THRESHOLD = 0.0000000000001;
+
+    @Test
+    public void testOrigin_HasAppletonCoordinates() {
+        LatticePoint origin = LatticePoint.origin(APPLETON);
+
+        assertEquals("Origin longitude mismatch", APPLETON.getLng(), origin.getLng(), 0);
+        assertEquals("Origin latitude mismatch", APPLETON.getLat(), origin.getLat(), 0);
+        for (int k = 0; k < 8; k++) {
+            assertEquals("Origin coefficients should all be zero", 0, origin.getCoefficient(k));
+        }
+    }
+
+    @Test
+    public void testOrigin_NullThrows() {
+        assertThrows("Null origin not caught", IllegalArgumentException.class, () -> LatticePoint.origin(null));
+    }
+
+    @Test
+    public void testNext_MatchesNextPosition() {
+        LatticePoint origin = LatticePoint.origin(APPLETON);
+
+        for (CompassDirection direction : CompassDirection.valuesNoHover()) {
+            LngLat expected = APPLETON.nextPosition(direction);
+            LatticePoint actual = origin.next(direction);
+            assertEquals("Longitude mismatch for " + direction, expected.getLng(), actual.getLng(),
+                    ACCEPTANCE_THRESHOLD);
+            assertEquals("Latitude mismatch for " + direction, expected.getLat(), actual.getLat(),
+                    ACCEPTANCE_THRESHOLD);
+        }
+    }
+
+    @Test
+    public void testNext_HoverReturnsSamePosition() {
+        LatticePoint origin = LatticePoint.origin(APPLETON);
+
+        assertSame("Hovering should not move the drone", origin, origin.next(CompassDirection.HOVER));
+        assertSame("A null direction should not move the drone", origin, origin.next(null));
+    }
+
+    @Test
+    public void testNext_OppositeMovesReturnExactlyToOrigin() {
+        LatticePoint origin = LatticePoint.origin(APPLETON);
+
+        LatticePoint point = origin.next(CompassDirection.ENE).next(CompassDirection.WSW);
+        assertEquals("Opposite moves should return to the origin", origin, point);
+        assertEquals("Equal points should have equal hash codes", origin.hashCode(), point.hashCode());
+        assertEquals("Longitude should not drift", origin.getLng(), point.getLng(), 0);
+    }
+
+    @Test
+    public void testNext_OrderOfMovesDoesNotMatter() {
+        LatticePoint origin = LatticePoint.origin(APPLETON);
+
+        LatticePoint first = origin.next(CompassDirection.NNE).next(CompassDirection.SE).next(CompassDirection.W);
+        LatticePoint second = origin.next(CompassDirection.W).next(CompassDirection.NNE).next(CompassDirection.SE);
+        assertEquals("The same moves in a different order should give the same point", first, second);
+    }
+
+    @Test
+    public void testNext_LongRouteDoesNotDrift() {
+        LatticePoint point = LatticePoint.origin(APPLETON);
+
+        // Fly around a full circle of every direction 100 times.
+        for (int i = 0; i < 100; i++) {
+            for (CompassDirection direction : CompassDirection.valuesNoHover()) {
+                point = point.next(direction);
+            }
+        }
+        assertEquals("A closed loop should return exactly to the origin", LatticePoint.origin(APPLETON), point);
+    }
+
+    @Test
+    public void testEquals_DifferentOrigins() {
+        LatticePoint first = LatticePoint.origin(APPLETON).next(CompassDirection.N);
+        LatticePoint second = LatticePoint.origin(APPLETON.nextPosition(CompassDirection.E)).next(CompassDirection.N);
+
+        assertNotEquals("Points in different frames should not be equal", first, second);
+    }
+
+    @Test
+    public void testCloseTo_MatchesLngLat() {
+        LatticePoint point = LatticePoint.origin(APPLETON).next(CompassDirection.N);
+
+        assertTrue("Point should be close to itself", point.closeTo(point.toLngLat()));
+        assertFalse("Point should not be close to a point two moves away",
+                point.closeTo(APPLETON.nextPosition(CompassDirection.S)));
+    }
+}
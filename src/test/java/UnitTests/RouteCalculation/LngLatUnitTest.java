@@ -101,6 +101,61 @@ public class LngLatUnitTest {
                 ACCEPTANCE_THRESHOLD);
     }
 
+    // -----------------------------------------------------------------------------------------------
+    // LATTICE DISTANCE
+    // -----------------------------------------------------------------------------------------------
+
+    @Test
+    // Along a compass direction the lattice distance is the straight line distance
+    public void latticeDistance_alongCompassDirections() {
+        for (CompassDirection direction : CompassDirection.valuesNoHover()) {
+            LngLat moved = APPLETON.nextPosition(direction);
+            assertEquals("Lattice distance along " + direction + " should be one move", 0.00015,
+                    LngLat.latticeDistance(APPLETON.getLng(), APPLETON.getLat(), moved.getLng(), moved.getLat()),
+                    ACCEPTANCE_THRESHOLD);
+        }
+    }
+
+    @Test
+    // Moves in two neighbouring directions add up exactly
+    public void latticeDistance_twoNeighbouringDirections() {
+        LngLat point = APPLETON;
+        for (int i = 0; i < 3; i++) {
+            point = point.nextPosition(CompassDirection.NNW);
+        }
+        for (int i = 0; i < 2; i++) {
+            point = point.nextPosition(CompassDirection.NW);
+        }
+        assertEquals("Lattice distance should be the five moves made", 5 * 0.00015,
+                LngLat.latticeDistance(APPLETON.getLng(), APPLETON.getLat(), point.getLng(), point.getLat()),
+                ACCEPTANCE_THRESHOLD);
+    }
+
+    @Test
+    // Halfway between two directions is the furthest from the straight line distance
+    public void latticeDistance_betweenDirections() {
+        double angle = Math.toRadians(11.25);
+        double expected = 1 / Math.cos(angle);
+        assertEquals("Lattice distance halfway between E and ENE", expected,
+                LngLat.latticeDistance(0, 0, Math.cos(angle), Math.sin(angle)), ACCEPTANCE_THRESHOLD);
+    }
+
+    @Test
+    // The lattice distance is never shorter than the straight line, and at most 2% longer
+    public void latticeDistance_boundedByStraightLine() {
+        Random rand = new Random(11);
+        for (int i = 0; i < 10000; i++) {
+            double lng = rand.nextDouble() * 0.02 - 0.01;
+            double lat = rand.nextDouble() * 0.02 - 0.01;
+            double straight = LngLat.distance(0, 0, lng, lat);
+            double lattice = LngLat.latticeDistance(0, 0, lng, lat);
+            assertTrue("Lattice distance should not be shorter", lattice >= straight - ACCEPTANCE_THRESHOLD);
+            assertTrue("Lattice distance should be at most 2% longer", lattice <= straight * 1.0196);
+            assertEquals("Lattice distance should be symmetric", lattice, LngLat.latticeDistance(lng, lat, 0, 0),
+                    ACCEPTANCE_THRESHOLD);
+        }
+    }
+
     // -----------------------------------------------------------------------------------------------
     // CLOSE TO
     // -----------------------------------------------------------------------------------------------
@@ -0,0 +1,118 @@
+package UnitTests.RouteCalculation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.MoveLegalityCache;
+import RouteCalculation.RouteCalculator;
+import RouteCalculation.RouteOptions;
+
+public class MoveLegalityCacheUnitTest {
+    private static final LngLat APPLETON = new LngLat(-3.186874, 55.944494);
+    private static final LngLat RESTAURANT = new LngLat(-3.191257, 55.945626);
+    private static final LngLat[] CENTRAL_AREA = { new LngLat(-3.192473, 55.946233), new LngLat(-3.192473, 55.942617),
+            new LngLat(-3.184319, 55.942617), new LngLat(-3.184319, 55.946233) };
+    private static final LngLat[][] NO_FLY_ZONES = { { new LngLat(-3.1895, 55.9446), new LngLat(-3.1895, 55.9452),
+            new LngLat(-3.1885, 55.9452), new LngLat(-3.1885, 55.9446) } };
+
+    private AreaSingleton mockSingleton;
+
+    @Before
+    public void setupSingleton() {
+        mockSingleton = mock(AreaSingleton.class);
+        AreaSingleton.setInstance(mockSingleton);
+        when(mockSingleton.getNoFlyZones()).thenReturn(NO_FLY_ZONES);
+        when(mockSingleton.getCentralAreaBorder()).thenReturn(CENTRAL_AREA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullOrigin() {
+        new MoveLegalityCache(null);
+    }
+
+    @Test
+    public void testIsFor() {
+        MoveLegalityCache cache = new MoveLegalityCache(APPLETON);
+
+        assertTrue("Cache should be for its own origin", cache.isFor(new LngLat(-3.186874, 55.944494)));
+        assertFalse("Cache should not be for a different origin", cache.isFor(RESTAURANT));
+        assertFalse("Cache should not be for a null origin", cache.isFor(null));
+    }
+
+    @Test
+    public void testCachedRoutesMatchUncachedRoutes() {
+        for (int mode = 0; mode < 3; mode++) {
+            RouteOptions uncached = optionsForMode(mode);
+            RouteOptions cached = optionsForMode(mode);
+            cached.setLegalityCache(new MoveLegalityCache(APPLETON));
+
+            CompassDirection[] expected = RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT,
+                    APPLETON, uncached);
+            CompassDirection[] actual = RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT,
+                    APPLETON, cached);
+
+            assertArrayEquals("Cached route should be the same as the uncached route", expected, actual);
+            assertTrue("Cache should have been filled by the search", cached.getLegalityCache().size() > 0);
+        }
+    }
+
+    @Test
+    public void testSecondSearchUsesCache() {
+        RouteOptions options = new RouteOptions();
+        MoveLegalityCache cache = new MoveLegalityCache(APPLETON);
+        options.setLegalityCache(cache);
+
+        LatticePoint start = LatticePoint.origin(APPLETON);
+        CompassDirection[] first = RouteCalculator.calculateRouteFrom(start, RESTAURANT, null, options);
+        long misses = cache.getMisses();
+        CompassDirection[] second = RouteCalculator.calculateRouteFrom(start, RESTAURANT, null, options);
+
+        assertArrayEquals("Repeated search should give the same route", first, second);
+        assertEquals("Repeated search should not check any new moves", misses, cache.getMisses());
+        assertTrue("Repeated search should be answered from the cache", cache.getHits() > 0);
+    }
+
+    @Test
+    public void testDifferentFrameIsNotCached() {
+        RouteOptions options = new RouteOptions();
+        MoveLegalityCache cache = new MoveLegalityCache(APPLETON);
+        options.setLegalityCache(cache);
+
+        RouteCalculator.calculateRouteFrom(LatticePoint.origin(RESTAURANT), APPLETON, null, options);
+
+        assertEquals("Search in a different frame should not use the cache", 0, cache.size());
+    }
+
+    @Test
+    public void testGeometryChangeClearsCache() {
+        RouteOptions options = new RouteOptions();
+        MoveLegalityCache cache = new MoveLegalityCache(APPLETON);
+        options.setLegalityCache(cache);
+        RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT, null, options);
+        assertTrue("Cache should have been filled by the search", cache.size() > 0);
+
+        LngLat[][] noNoFlyZones = { {} };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noNoFlyZones);
+        cache.checkGeometry();
+
+        assertEquals("Cache should be emptied when the no-fly zones change", 0, cache.size());
+    }
+
+    private static RouteOptions optionsForMode(int mode) {
+        RouteOptions options = new RouteOptions();
+        options.setUseArena(mode == 1);
+        options.setUseIndexedHeap(mode == 2);
+        return options;
+    }
+}
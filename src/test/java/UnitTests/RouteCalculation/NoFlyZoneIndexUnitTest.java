@@ -0,0 +1,140 @@
+package UnitTests.RouteCalculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Line2D;
+import java.util.Random;
+
+import org.junit.Test;
+
+import RouteCalculation.LngLat;
+import RouteCalculation.NoFlyZoneIndex;
+
+public class NoFlyZoneIndexUnitTest {
+    private static final LngLat[][] ZONES = {
+            { new LngLat(-3.190578, 55.943611), new LngLat(-3.190578, 55.944301),
+                    new LngLat(-3.191065, 55.944301), new LngLat(-3.191065, 55.943611) },
+            { new LngLat(-3.187980, 55.944430), new LngLat(-3.186870, 55.944430),
+                    new LngLat(-3.186870, 55.945120), new LngLat(-3.187980, 55.945120) },
+            { new LngLat(-3.189543, 55.945360), new LngLat(-3.188760, 55.946020),
+                    new LngLat(-3.189980, 55.946310) } };
+
+    @Test
+    public void testEdgeCount() {
+        NoFlyZoneIndex index = new NoFlyZoneIndex(ZONES);
+        assertEquals("Index should hold every edge of every zone", 11, index.getEdgeCount());
+    }
+
+    @Test
+    public void testNoZones_NothingCrossed() {
+        NoFlyZoneIndex index = new NoFlyZoneIndex(new LngLat[][] {});
+
+        assertFalse("Nothing should be in an empty set of zones", index.inAnyZone(-3.19, 55.944));
+        assertEquals("No zone should be crossed with no zones", -1, index.firstZoneCrossed(-3.2, 55.9, -3.1, 56.0));
+    }
+
+    @Test
+    public void testForZones_CachedForSameArray() {
+        assertSame("The same zone array should give the same index", NoFlyZoneIndex.forZones(ZONES),
+                NoFlyZoneIndex.forZones(ZONES));
+    }
+
+    @Test
+    public void testInAnyZone() {
+        NoFlyZoneIndex index = new NoFlyZoneIndex(ZONES);
+
+        assertTrue("Centre of the first zone should be inside", index.inAnyZone(-3.190800, 55.943900));
+        assertFalse("Point between the zones should be outside", index.inAnyZone(-3.188500, 55.943900));
+        assertFalse("Point far away should be outside", index.inAnyZone(-3.0, 55.0));
+    }
+
+    @Test
+    public void testFirstZoneCrossed_LongSegmentFindsFirstZone() {
+        NoFlyZoneIndex index = new NoFlyZoneIndex(ZONES);
+
+        // A horizontal line through both the first and second zones.
+        assertEquals("Lowest crossed zone should be returned", 0,
+                index.firstZoneCrossed(-3.186, 55.944100, -3.192, 55.944100));
+        // A segment which starts far outside the grid and ends inside the second zone.
+        assertEquals("Second zone should be crossed", 1, index.firstZoneCrossed(-3.1, 55.9447, -3.187, 55.9447));
+    }
+
+    @Test
+    public void testFirstZoneCrossed_ZeroLengthSegmentMatchesLine2D() {
+        // A zone which repeats its first point, as the REST API returns them.
+        LngLat[][] zones = { { new LngLat(-3.190, 55.943), new LngLat(-3.189, 55.943), new LngLat(-3.189, 55.944),
+                new LngLat(-3.190, 55.943) } };
+        NoFlyZoneIndex index = new NoFlyZoneIndex(zones);
+
+        // Line2D treats two points as intersecting, so checking every edge finds the zone.
+        assertEquals("Zero length segment should cross the repeated point like Line2D does", 0,
+                index.firstZoneCrossed(-3.186874, 55.944494, -3.186874, 55.944494));
+    }
+
+    @Test
+    public void testMatchesBruteForce_RandomSegments() {
+        NoFlyZoneIndex index = new NoFlyZoneIndex(ZONES);
+        Random random = new Random(42);
+
+        // Short moves and long segments over and around the zones.
+        for (int i = 0; i < 20000; i++) {
+            double fromLng = -3.1925 + random.nextDouble() * 0.0075;
+            double fromLat = 55.9430 + random.nextDouble() * 0.0040;
+            double length = i % 2 == 0 ? 0.00015 : random.nextDouble() * 0.01;
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double toLng = fromLng + length * Math.cos(angle);
+            double toLat = fromLat + length * Math.sin(angle);
+
+            assertEquals("Index should find the same zone as checking every edge", bruteForceFirstZone(fromLng,
+                    fromLat, toLng, toLat), index.firstZoneCrossed(fromLng, fromLat, toLng, toLat));
+            assertEquals("Index should agree with checking every zone", bruteForceInAnyZone(toLng, toLat),
+                    index.inAnyZone(toLng, toLat));
+        }
+    }
+
+    @Test
+    public void testMatchesBruteForce_SegmentsThroughVertices() {
+        NoFlyZoneIndex index = new NoFlyZoneIndex(ZONES);
+
+        // Axis aligned segments which run exactly along edges and through vertices.
+        for (LngLat[] zone : ZONES) {
+            for (LngLat vertex : zone) {
+                double[][] segments = { { vertex.getLng() - 0.001, vertex.getLat(), vertex.getLng() + 0.001,
+                        vertex.getLat() },
+                        { vertex.getLng(), vertex.getLat() - 0.001, vertex.getLng(), vertex.getLat() + 0.001 },
+                        { vertex.getLng() - 0.001, vertex.getLat() - 0.001, vertex.getLng(), vertex.getLat() } };
+                for (double[] s : segments) {
+                    assertEquals("Index should find the same zone as checking every edge",
+                            bruteForceFirstZone(s[0], s[1], s[2], s[3]), index.firstZoneCrossed(s[0], s[1], s[2], s[3]));
+                }
+            }
+        }
+    }
+
+    private static int bruteForceFirstZone(double fromLng, double fromLat, double toLng, double toLat) {
+        for (int z = 0; z < ZONES.length; z++) {
+            LngLat[] zone = ZONES[z];
+            for (int i = 0; i < zone.length; i++) {
+                LngLat p1 = zone[i];
+                LngLat p2 = zone[(i + 1) % zone.length];
+                if (Line2D.linesIntersect(fromLng, fromLat, toLng, toLat, p1.getLng(), p1.getLat(), p2.getLng(),
+                        p2.getLat())) {
+                    return z;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean bruteForceInAnyZone(double lng, double lat) {
+        for (LngLat[] zone : ZONES) {
+            if (LngLat.inZone(lng, lat, zone)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,6 +3,7 @@ package UnitTests.RouteCalculation;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -21,6 +22,10 @@ public class NodeUnitTest {
         private static final LngLat START = new LngLat(-3.186874, 55.944494);
         private static final LngLat GOAL = new LngLat(-3.190000, 55.950000);
         private static final LngLat INTERMEDIATE = new LngLat(-3.188874, 55.947494);
+        // The length of the shortest path from START to GOAL using only the compass
+        // directions.
+        private static final double STRAIGHT_LINE_HEURISTIC = LngLat.latticeDistance(START.getLng(), START.getLat(),
+                        GOAL.getLng(), GOAL.getLat());
         private AreaSingleton mockSingleton;
 
         @Before
@@ -40,7 +45,7 @@ public class NodeUnitTest {
 
                 assertNotNull("Start node should not be null", startNode);
                 assertEquals("Start node point mismatch", START, startNode.getPoint());
-                assertEquals("Start node heuristic cost mismatch", START.distanceTo(GOAL), startNode.getHScore(),
+                assertEquals("Start node heuristic cost mismatch", STRAIGHT_LINE_HEURISTIC, startNode.getHScore(),
                                 0.0001);
         }
 
@@ -61,7 +66,7 @@ public class NodeUnitTest {
                 Node startNode = new Node(START, GOAL);
 
                 assertEquals("Heuristic should be straight-line distance when no no-fly zones intersect",
-                                START.distanceTo(GOAL), startNode.getHScore(), 0.0001);
+                                STRAIGHT_LINE_HEURISTIC, startNode.getHScore(), 0.0001);
         }
 
         @Test
@@ -85,10 +90,17 @@ public class NodeUnitTest {
                                                 + new LngLat(-3.18, 55.946).distanceTo(GOAL),
                                 start.distanceTo(new LngLat(-3.18, 55.945)) + new LngLat(-3.18, 55.945).distanceTo(GOAL)
                 };
-                double expectedHeuristic = Arrays.stream(distances).min().orElse(Double.POSITIVE_INFINITY);
+                double singleVertexDetour = Arrays.stream(distances).min().orElse(Double.POSITIVE_INFINITY);
+
+                // The start is on the bottom edge of the zone, so the shortest way round
+                // runs along the edge to the corner and then up the side to the goal.
+                double expectedHeuristic = start.distanceTo(new LngLat(-3.19, 55.945))
+                                + new LngLat(-3.19, 55.945).distanceTo(GOAL);
 
                 assertEquals("Heuristic should consider the shortest detour around the no-fly zone",
                                 expectedHeuristic, startNode.getHScore(), 0.0001);
+                assertTrue("Heuristic should be at least the detour via a single vertex",
+                                startNode.getHScore() >= singleVertexDetour);
         }
 
         @Test
@@ -100,12 +112,24 @@ public class NodeUnitTest {
                 assertEquals("F score calculation mismatch", expectedFScore, childNode.getFScore(), 0.0001);
         }
 
+        @Test
+        public void testWeightedFScoreCalculation() {
+                Node startNode = new Node(START, GOAL);
+                Node childNode = new Node(INTERMEDIATE, GOAL, startNode, CompassDirection.N);
+
+                double expectedFScore = childNode.getGScore() + 1.5 * childNode.getHScore();
+                assertEquals("Weighted F score calculation mismatch", expectedFScore, childNode.getFScore(1.5),
+                                0.0001);
+                assertEquals("Weight of one should be the F score", childNode.getFScore(), childNode.getFScore(1),
+                                0);
+        }
+
         @Test
         public void testSingletonIsolationBetweenTests() {
                 // First test case with no no-fly zones
                 Node startNode = new Node(START, GOAL);
                 assertEquals("Heuristic should be straight-line distance with no no-fly zones",
-                                START.distanceTo(GOAL), startNode.getHScore(), 0.0001);
+                                STRAIGHT_LINE_HEURISTIC, startNode.getHScore(), 0.0001);
 
                 // Update singleton for a new test
                 LngLat[][] noFlyZones = {
@@ -128,10 +152,17 @@ public class NodeUnitTest {
                                 updatedStart.distanceTo(new LngLat(-3.18, 55.945))
                                                 + new LngLat(-3.18, 55.945).distanceTo(GOAL)
                 };
-                double expectedHeuristic = Arrays.stream(distances).min().orElse(Double.POSITIVE_INFINITY);
+                double singleVertexDetour = Arrays.stream(distances).min().orElse(Double.POSITIVE_INFINITY);
+
+                // The start is on the bottom edge of the zone, so the shortest way round
+                // runs along the edge to the corner and then up the side to the goal.
+                double expectedHeuristic = updatedStart.distanceTo(new LngLat(-3.19, 55.945))
+                                + new LngLat(-3.19, 55.945).distanceTo(GOAL);
 
                 assertEquals("Heuristic should consider updated no-fly zones",
                                 expectedHeuristic, nodeWithNoFlyZone.getHScore(), 0.0001);
+                assertTrue("Heuristic should be at least the detour via a single vertex",
+                                nodeWithNoFlyZone.getHScore() >= singleVertexDetour);
         }
 
         @Test
@@ -150,7 +181,7 @@ public class NodeUnitTest {
                 // Verify initial singleton behavior
                 Node startNode = new Node(START, GOAL);
                 assertEquals("Initial heuristic should be straight-line distance",
-                                START.distanceTo(GOAL), startNode.getHScore(), 0.0001);
+                                STRAIGHT_LINE_HEURISTIC, startNode.getHScore(), 0.0001);
 
                 // Modify singleton for new test
                 LngLat[][] noFlyZones = {
@@ -161,7 +192,7 @@ public class NodeUnitTest {
 
                 Node updatedNode = new Node(START, GOAL);
                 assertNotEquals("Singleton should reset properly between tests",
-                                START.distanceTo(GOAL), updatedNode.getHScore(), 0.0001);
+                                STRAIGHT_LINE_HEURISTIC, updatedNode.getHScore(), 0.0001);
         }
 
 }
@@ -0,0 +1,118 @@
+package UnitTests.RouteCalculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import RouteCalculation.LngLat;
+import RouteCalculation.PreparedPolygon;
+
+public class PreparedPolygonUnitTest {
+    private static final LngLat[] CENTRAL_AREA = { new LngLat(-3.192473, 55.946233), new LngLat(-3.192473, 55.942617),
+            new LngLat(-3.184319, 55.942617), new LngLat(-3.184319, 55.946233) };
+
+    // A concave zone which repeats its first point, as the REST API returns them.
+    private static final LngLat[] CONCAVE_ZONE = { new LngLat(-3.190578, 55.944024), new LngLat(-3.189988, 55.942846),
+            new LngLat(-3.188500, 55.943800), new LngLat(-3.187097, 55.943288), new LngLat(-3.187682, 55.944477),
+            new LngLat(-3.190578, 55.944024) };
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullVertices() {
+        new PreparedPolygon(null);
+    }
+
+    @Test
+    public void testTooFewVertices_ContainsNothing() {
+        PreparedPolygon polygon = new PreparedPolygon(new LngLat[] { new LngLat(0, 0), new LngLat(1, 1) });
+        assertFalse("A polygon with fewer than 3 vertices should not contain any point", polygon.contains(0.5, 0.5));
+    }
+
+    @Test
+    public void testContains() {
+        PreparedPolygon polygon = new PreparedPolygon(CENTRAL_AREA);
+
+        assertTrue("Appleton Tower should be in the central area", polygon.contains(-3.186874, 55.944494));
+        assertFalse("Point outside the bounding box should not be inside", polygon.contains(-3.2, 55.944494));
+        assertFalse("Point on the border should not be inside", polygon.contains(-3.188, 55.942617));
+    }
+
+    @Test
+    public void testBoundingBox() {
+        PreparedPolygon polygon = new PreparedPolygon(CONCAVE_ZONE);
+
+        assertEquals(-3.190578, polygon.getMinLng(), 0);
+        assertEquals(-3.187097, polygon.getMaxLng(), 0);
+        assertEquals(55.942846, polygon.getMinLat(), 0);
+        assertEquals(55.944477, polygon.getMaxLat(), 0);
+        assertEquals(6, polygon.getVertexCount());
+    }
+
+    @Test
+    public void testMatchesInZone_RandomPoints() {
+        PreparedPolygon centralArea = new PreparedPolygon(CENTRAL_AREA);
+        PreparedPolygon concaveZone = new PreparedPolygon(CONCAVE_ZONE);
+        Random random = new Random(7);
+
+        for (int i = 0; i < 20000; i++) {
+            double lng = -3.194 + random.nextDouble() * 0.011;
+            double lat = 55.941 + random.nextDouble() * 0.006;
+
+            assertEquals("Prepared polygon should agree with inZone", LngLat.inZone(lng, lat, CENTRAL_AREA),
+                    centralArea.contains(lng, lat));
+            assertEquals("Prepared polygon should agree with inZone", LngLat.inZone(lng, lat, CONCAVE_ZONE),
+                    concaveZone.contains(lng, lat));
+        }
+    }
+
+    @Test
+    public void testMatchesInZone_LatitudeOfVertices() {
+        PreparedPolygon concaveZone = new PreparedPolygon(CONCAVE_ZONE);
+
+        // Ray casting miscounts along the latitude of a vertex, and the raster must give
+        // the same answer there as well. Outside the bounding box the point is rejected.
+        for (LngLat vertex : CONCAVE_ZONE) {
+            for (double lng = concaveZone.getMinLng(); lng <= concaveZone.getMaxLng(); lng += 0.00001) {
+                assertEquals("Prepared polygon should agree with inZone on the latitude of a vertex",
+                        LngLat.inZone(lng, vertex.getLat(), CONCAVE_ZONE), concaveZone.contains(lng, vertex.getLat()));
+            }
+        }
+    }
+
+    @Test
+    public void testRaster_MostCellsAnsweredWithoutRayCasting() {
+        PreparedPolygon centralArea = new PreparedPolygon(CENTRAL_AREA);
+        assertTrue("Most of the central area raster should not need ray casting",
+                centralArea.getBoundaryFraction() < 0.25);
+    }
+
+    @Test
+    public void testContainsExact_MatchesContains() {
+        PreparedPolygon concaveZone = new PreparedPolygon(CONCAVE_ZONE);
+        Random random = new Random(11);
+
+        for (int i = 0; i < 20000; i++) {
+            double lng = -3.191 + random.nextDouble() * 0.0045;
+            double lat = 55.9425 + random.nextDouble() * 0.0025;
+            assertEquals("Raster lookup should agree with ray casting", concaveZone.containsExact(lng, lat),
+                    concaveZone.contains(lng, lat));
+        }
+    }
+
+    @Test
+    public void testShortestDetour() {
+        PreparedPolygon polygon = new PreparedPolygon(CONCAVE_ZONE);
+        LngLat start = new LngLat(-3.191, 55.9435);
+        LngLat end = new LngLat(-3.186, 55.9435);
+
+        double expected = Double.POSITIVE_INFINITY;
+        for (LngLat vertex : CONCAVE_ZONE) {
+            expected = Math.min(expected, start.distanceTo(vertex) + vertex.distanceTo(end));
+        }
+        assertEquals("Detour should be via the best single vertex", expected,
+                polygon.shortestDetour(start.getLng(), start.getLat(), end), 0);
+    }
+}
@@ -0,0 +1,106 @@
+package UnitTests.RouteCalculation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.RouteCache;
+import RouteCalculation.RouteCalculator;
+import RouteCalculation.RouteOptions;
+import RouteCalculation.SearchStatistics;
+
+public class RouteCacheUnitTest {
+    private static final LngLat APPLETON = new LngLat(-3.186874, 55.944494);
+    private static final LngLat RESTAURANT = new LngLat(-3.191257, 55.945626);
+    private static final LngLat OTHER_RESTAURANT = new LngLat(-3.185, 55.9455);
+    private static final LngLat[][] NO_FLY_ZONES = { { new LngLat(-3.1895, 55.9446), new LngLat(-3.1895, 55.9452),
+            new LngLat(-3.1885, 55.9452), new LngLat(-3.1885, 55.9446) } };
+
+    private AreaSingleton mockSingleton;
+
+    @Before
+    public void setupSingleton() {
+        mockSingleton = mock(AreaSingleton.class);
+        AreaSingleton.setInstance(mockSingleton);
+        when(mockSingleton.getNoFlyZones()).thenReturn(NO_FLY_ZONES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacity() {
+        new RouteCache(0);
+    }
+
+    @Test
+    public void testRepeatedRouteIsCached() {
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions options = new RouteOptions();
+        options.setStatistics(statistics);
+        RouteCache cache = new RouteCache(16);
+        options.setRouteCache(cache);
+
+        CompassDirection[] first = RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT,
+                APPLETON, options);
+        long searches = statistics.getSearches();
+        CompassDirection[] second = RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT,
+                APPLETON, options);
+
+        assertArrayEquals("Cached route should be the same as the searched route", first, second);
+        assertEquals("Cached route should not be searched for again", searches, statistics.getSearches());
+        assertEquals("Second route should be a hit", 1, cache.getHits());
+    }
+
+    @Test
+    public void testDifferentNextTargetIsNotCached() {
+        RouteOptions options = new RouteOptions();
+        RouteCache cache = new RouteCache(16);
+        options.setRouteCache(cache);
+
+        RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT, null, options);
+        long misses = cache.getMisses();
+        RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT, OTHER_RESTAURANT, options);
+
+        // Choosing the last move for the next target also searches from the close positions.
+        assertTrue("Route with a different next target should be a miss", cache.getMisses() > misses);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedRouteIsEvicted() {
+        RouteOptions options = new RouteOptions();
+        RouteCache cache = new RouteCache(1);
+        options.setRouteCache(cache);
+
+        RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT, null, options);
+        RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), OTHER_RESTAURANT, null, options);
+
+        assertEquals("Cache should not hold more than its capacity", 1, cache.size());
+        assertEquals("First route should have been evicted", 1, cache.getEvictions());
+
+        long misses = cache.getMisses();
+        RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT, null, options);
+        assertEquals("Evicted route should be searched for again", misses + 1, cache.getMisses());
+    }
+
+    @Test
+    public void testGeometryChangeClearsCache() {
+        RouteOptions options = new RouteOptions();
+        RouteCache cache = new RouteCache(16);
+        options.setRouteCache(cache);
+        RouteCalculator.calculateRouteFrom(LatticePoint.origin(APPLETON), RESTAURANT, null, options);
+        assertEquals("Route should be in the cache", 1, cache.size());
+
+        LngLat[][] noNoFlyZones = { {} };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noNoFlyZones);
+        cache.checkGeometry();
+
+        assertEquals("Cache should be emptied when the no-fly zones change", 0, cache.size());
+    }
+}
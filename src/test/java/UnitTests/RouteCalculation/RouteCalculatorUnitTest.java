@@ -1,19 +1,28 @@
 package UnitTests.RouteCalculation;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.Random;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import RouteCalculation.AreaSingleton;
 import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
 import RouteCalculation.LngLat;
 import RouteCalculation.RouteCalculator;
+import RouteCalculation.RouteOptions;
+import RouteCalculation.RouteResult;
+import RouteCalculation.SearchArena;
+import RouteCalculation.SearchStatistics;
 
 public class RouteCalculatorUnitTest {
     private static final LngLat START = new LngLat(-3.186874, 55.944494);
@@ -91,4 +100,600 @@ public class RouteCalculatorUnitTest {
         assertTrue("Route should contain multiple steps", route.length > 1);
     }
 
+    @Test
+    public void testCalculateRoute_ArenaMatchesStandardSearch() {
+        LngLat[][] noFlyZones = {
+                { new LngLat(-3.19, 55.945), new LngLat(-3.19, 55.946), new LngLat(-3.18, 55.946),
+                        new LngLat(-3.18, 55.945) }
+        };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        RouteOptions arenaOptions = new RouteOptions();
+        arenaOptions.setUseArena(true);
+
+        CompassDirection[] standardRoute = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                NEXT_TARGET, new RouteOptions());
+        CompassDirection[] arenaRoute = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                NEXT_TARGET, arenaOptions);
+
+        assertArrayEquals("Arena search should find exactly the same route", standardRoute, arenaRoute);
+    }
+
+    @Test
+    public void testCalculateRoute_ArenaIsReused() {
+        RouteOptions arenaOptions = new RouteOptions();
+        arenaOptions.setUseArena(true);
+
+        RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, null, arenaOptions);
+        SearchArena arena = SearchArena.forCurrentThread();
+        int capacity = arena.getCapacity();
+
+        CompassDirection[] route = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, null,
+                arenaOptions);
+        assertNotNull("Route should not be null when the arena is reused", route);
+        assertSame("The same arena should be used by every search on a thread", arena,
+                SearchArena.forCurrentThread());
+        assertEquals("Repeating a search should not grow the arena", capacity, arena.getCapacity());
+    }
+
+    @Test
+    public void testCalculateRoute_IndexedHeapFindsRouteOfSameLength() {
+        LngLat[][] noFlyZones = {
+                { new LngLat(-3.19, 55.945), new LngLat(-3.19, 55.946), new LngLat(-3.18, 55.946),
+                        new LngLat(-3.18, 55.945) }
+        };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        RouteOptions indexedOptions = new RouteOptions();
+        indexedOptions.setUseIndexedHeap(true);
+
+        CompassDirection[] standardRoute = RouteCalculator.calculateRoute(START, GOAL, null);
+        CompassDirection[] indexedRoute = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, null,
+                indexedOptions);
+
+        assertNotNull("Route should not be null with the indexed heap", indexedRoute);
+        assertEquals("Route should end with a hover", CompassDirection.HOVER, indexedRoute[indexedRoute.length - 1]);
+        assertEquals("Indexed heap should find a route of the same length", standardRoute.length,
+                indexedRoute.length);
+    }
+
+    @Test
+    public void testCalculateRoute_IndexedHeapIsDeterministic() {
+        RouteOptions indexedOptions = new RouteOptions();
+        indexedOptions.setUseIndexedHeap(true);
+
+        CompassDirection[] first = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, NEXT_TARGET,
+                indexedOptions);
+        CompassDirection[] second = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                NEXT_TARGET, indexedOptions);
+
+        assertArrayEquals("The same inputs should always give the same route", first, second);
+    }
+
+    @Test
+    public void testCalculateRoute_RecordsStatistics() {
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions options = new RouteOptions();
+        options.setUseStraightLine(false);
+        options.setStatistics(statistics);
+
+        CompassDirection[] route = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, null,
+                options);
+
+        assertEquals("One search should be recorded", 1, statistics.getSearches());
+        assertTrue("Every move in the route should need at least one expansion",
+                statistics.getExpansions() >= route.length - 1);
+        assertTrue("Every poll must have been pushed first",
+                statistics.getQueuePolls() <= statistics.getQueuePushes() + 1);
+    }
+
+    @Test
+    public void testCalculateRoute_StraightLineMatchesSearch() {
+        RouteOptions searchOptions = new RouteOptions();
+        searchOptions.setUseStraightLine(false);
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions straightOptions = new RouteOptions();
+        straightOptions.setStatistics(statistics);
+
+        for (LngLat nextTarget : new LngLat[] { null, NEXT_TARGET }) {
+            CompassDirection[] expected = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                    nextTarget, searchOptions);
+            CompassDirection[] actual = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                    nextTarget, straightOptions);
+
+            assertEquals("Straight line route should be as short as the searched route", expected.length,
+                    actual.length);
+            LatticePoint position = LatticePoint.origin(START);
+            for (CompassDirection direction : actual) {
+                position = position.next(direction);
+            }
+            assertTrue("Straight line route should get close to the goal", position.closeTo(GOAL));
+        }
+        assertTrue("Both routes should be built without a search", statistics.getStraightLineRoutes() >= 2);
+        assertEquals("No nodes should be expanded", 0, statistics.getExpansions());
+    }
+
+    @Test
+    public void testCalculateRoute_BlockedStraightLineSearches() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions options = new RouteOptions();
+        options.setStatistics(statistics);
+
+        CompassDirection[] route = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, null,
+                options);
+
+        assertNotNull("Route should be found around the zone", route);
+        assertEquals("Blocked straight line should not be used", 0, statistics.getStraightLineRoutes());
+        assertTrue("Blocked straight line should fall back to the search", statistics.getExpansions() > 0);
+    }
+
+    @Test
+    public void testCalculateRoute_NextTargetNeedsAtMostOneMoreSearch() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1840, 55.9440), new LngLat(-3.1840, 55.9460),
+                new LngLat(-3.1830, 55.9460), new LngLat(-3.1830, 55.9440) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        LngLat nextTarget = new LngLat(-3.1815, 55.9450);
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions options = new RouteOptions();
+        options.setStatistics(statistics);
+
+        CompassDirection[] route = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, nextTarget,
+                options);
+
+        LatticePoint position = LatticePoint.origin(START);
+        for (CompassDirection direction : route) {
+            position = position.next(direction);
+        }
+        assertTrue("Route should still get close to the goal", position.closeTo(GOAL));
+        assertTrue("Moves to the next target should be scored together", statistics.getSearches() <= 2);
+    }
+
+    @Test
+    public void testCalculateRoute_NextTargetTiesBrokenAsWhenSearchedAlone() {
+        // The next targets are behind the zone, so the routes to them are searched for.
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        RouteOptions options = new RouteOptions();
+        options.setUseStraightLine(false);
+
+        Random random = new Random(1);
+        int ties = 0;
+        for (int leg = 0; leg < 20; leg++) {
+            LngLat end = new LngLat(-3.1895 + random.nextDouble() * 0.0025, 55.9452 + random.nextDouble() * 0.0006);
+            LngLat nextTarget = new LngLat(-3.1895 + random.nextDouble() * 0.0025,
+                    55.9474 + random.nextDouble() * 0.0010);
+            CompassDirection[] route = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), end,
+                    nextTarget, options);
+            LatticePoint position = LatticePoint.origin(START);
+            for (int i = 0; i < route.length - 2; i++) {
+                position = position.next(route[i]);
+            }
+            CompassDirection previousMove = route[route.length - 3];
+            CompassDirection lastMove = route[route.length - 2];
+
+            // Search from each move that ends close to the end on its own.
+            int shortest = Integer.MAX_VALUE;
+            int previousMoveLength = Integer.MAX_VALUE;
+            int tied = 0;
+            int[] lengths = new int[CompassDirection.valuesNoHover().length];
+            for (CompassDirection direction : CompassDirection.valuesNoHover()) {
+                int length = Integer.MAX_VALUE;
+                if (position.next(direction).closeTo(end)) {
+                    length = RouteCalculator.calculateRouteFrom(position.next(direction), nextTarget, null,
+                            options).length;
+                }
+                lengths[direction.ordinal() - 1] = length;
+                if (direction == previousMove) {
+                    previousMoveLength = length;
+                }
+                shortest = Math.min(shortest, length);
+            }
+            for (int length : lengths) {
+                tied += length == shortest ? 1 : 0;
+            }
+
+            assertEquals("Last move should have the shortest route to the next target", shortest,
+                    lengths[lastMove.ordinal() - 1]);
+            if (tied > 1 && previousMoveLength == shortest) {
+                ties++;
+                assertEquals("A tie should be broken towards the previous move", previousMove, lastMove);
+            }
+        }
+        assertTrue("Some legs should have moves that tie on length", ties > 0);
+    }
+
+    @Test
+    public void testCalculateRoute_BidirectionalMatchesStandardSearch() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        RouteOptions standardOptions = new RouteOptions();
+        standardOptions.setUseStraightLine(false);
+        RouteOptions bidirectionalOptions = new RouteOptions();
+        bidirectionalOptions.setUseStraightLine(false);
+        bidirectionalOptions.setUseBidirectional(true);
+
+        for (LngLat nextTarget : new LngLat[] { null, NEXT_TARGET }) {
+            CompassDirection[] expected = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                    nextTarget, standardOptions);
+            CompassDirection[] actual = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                    nextTarget, bidirectionalOptions);
+
+            assertEquals("Bidirectional route should be as short as the standard route", expected.length,
+                    actual.length);
+            assertEquals("Route should end with a hover", CompassDirection.HOVER, actual[actual.length - 1]);
+            LatticePoint position = LatticePoint.origin(START);
+            for (CompassDirection direction : actual) {
+                position = position.next(direction);
+            }
+            assertTrue("Bidirectional route should get close to the goal", position.closeTo(GOAL));
+        }
+    }
+
+    @Test
+    public void testCalculateRoute_BidirectionalEndInsideZone() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        // Just inside the zone, so only the forward side can get close to it.
+        LngLat endInZone = new LngLat(-3.1880, 55.94605);
+        RouteOptions standardOptions = new RouteOptions();
+        standardOptions.setUseStraightLine(false);
+        RouteOptions bidirectionalOptions = new RouteOptions();
+        bidirectionalOptions.setUseStraightLine(false);
+        bidirectionalOptions.setUseBidirectional(true);
+
+        CompassDirection[] expected = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), endInZone, null,
+                standardOptions);
+        CompassDirection[] actual = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), endInZone, null,
+                bidirectionalOptions);
+
+        assertNotNull("Standard search should get close to the end", expected);
+        assertNotNull("Bidirectional search should get close to an end inside a zone", actual);
+        assertEquals("Bidirectional route should be as short as the standard route", expected.length,
+                actual.length);
+    }
+
+    @Test
+    public void testCalculateRoute_BidirectionalRandomLegsNoLongerThanStandardSearch() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        RouteOptions standardOptions = new RouteOptions();
+        standardOptions.setUseStraightLine(false);
+        RouteOptions bidirectionalOptions = new RouteOptions();
+        bidirectionalOptions.setUseStraightLine(false);
+        bidirectionalOptions.setUseBidirectional(true);
+
+        Random random = new Random(17);
+        for (int leg = 0; leg < 30; leg++) {
+            LngLat start = new LngLat(-3.1910 + random.nextDouble() * 0.0055, 55.9450 + random.nextDouble() * 0.0030);
+            LngLat end = new LngLat(-3.1910 + random.nextDouble() * 0.0055, 55.9450 + random.nextDouble() * 0.0030);
+            if (LngLat.inNoFlyZone(start.getLng(), start.getLat(), start.getLng(), start.getLat())) {
+                continue;
+            }
+            CompassDirection[] expected = RouteCalculator.calculateRouteFrom(LatticePoint.origin(start), end, null,
+                    standardOptions);
+            CompassDirection[] actual = RouteCalculator.calculateRouteFrom(LatticePoint.origin(start), end, null,
+                    bidirectionalOptions);
+
+            assertEquals("Bidirectional search should find a route when the standard search does",
+                    expected == null, actual == null);
+            if (expected == null) {
+                continue;
+            }
+            // The standard search can close a position that a shorter route goes
+            // through, so the bidirectional route may be shorter but never longer.
+            assertTrue("Bidirectional route should be no longer than the standard route",
+                    actual.length <= expected.length);
+            LatticePoint position = LatticePoint.origin(start);
+            for (CompassDirection direction : actual) {
+                LatticePoint next = position.next(direction);
+                assertTrue("Bidirectional route should not cross a no-fly zone",
+                        !LngLat.inNoFlyZone(next.getLng(), next.getLat(), position.getLng(), position.getLat()));
+                position = next;
+            }
+            assertTrue("Bidirectional route should get close to the end", position.closeTo(end));
+        }
+    }
+
+    @Test
+    public void testCalculateRoute_ParallelRoutesLegalAndCloseToEnd() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        RouteOptions standardOptions = new RouteOptions();
+        standardOptions.setUseStraightLine(false);
+
+        // The first leg ends just inside the zone, and the rest are random.
+        Random random = new Random(5);
+        LngLat[][] legs = new LngLat[8][];
+        legs[0] = new LngLat[] { START, new LngLat(-3.1880, 55.94605) };
+        for (int leg = 1; leg < legs.length; leg++) {
+            legs[leg] = new LngLat[] {
+                    new LngLat(-3.1910 + random.nextDouble() * 0.0055, 55.9450 + random.nextDouble() * 0.0030),
+                    new LngLat(-3.1910 + random.nextDouble() * 0.0055, 55.9450 + random.nextDouble() * 0.0030) };
+        }
+        for (LngLat[] leg : legs) {
+            if (LngLat.inNoFlyZone(leg[0].getLng(), leg[0].getLat(), leg[0].getLng(), leg[0].getLat())) {
+                continue;
+            }
+            CompassDirection[] expected = RouteCalculator.calculateRouteFrom(LatticePoint.origin(leg[0]), leg[1],
+                    null, standardOptions);
+            for (int threads : new int[] { 1, 2, 4 }) {
+                CompassDirection[] actual = RouteCalculator.calculateRouteParallel(LatticePoint.origin(leg[0]),
+                        leg[1], null, new RouteOptions(), threads);
+
+                // The route need not be as short as the standard route, but it must be a
+                // route to the end.
+                assertEquals("Parallel search should find a route when the standard search does",
+                        expected == null, actual == null);
+                if (actual == null) {
+                    continue;
+                }
+                assertEquals("Route should end with a hover", CompassDirection.HOVER, actual[actual.length - 1]);
+                LatticePoint position = LatticePoint.origin(leg[0]);
+                for (CompassDirection direction : actual) {
+                    LatticePoint next = position.next(direction);
+                    assertTrue("Parallel route should not cross a no-fly zone",
+                            !LngLat.inNoFlyZone(next.getLng(), next.getLat(), position.getLng(), position.getLat()));
+                    position = next;
+                }
+                assertTrue("Parallel route should get close to the end", position.closeTo(leg[1]));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelThreadsBelowOne() {
+        RouteCalculator.calculateRouteParallel(LatticePoint.origin(START), GOAL, null, new RouteOptions(), 0);
+    }
+
+    @Test
+    public void testCalculateRoute_CorridorMatchesStandardSearch() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        RouteOptions standardOptions = new RouteOptions();
+        standardOptions.setUseStraightLine(false);
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions corridorOptions = new RouteOptions();
+        corridorOptions.setUseStraightLine(false);
+        corridorOptions.setCorridorMoves(2);
+        corridorOptions.setStatistics(statistics);
+
+        CompassDirection[] expected = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                NEXT_TARGET, standardOptions);
+        CompassDirection[] actual = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                NEXT_TARGET, corridorOptions);
+
+        assertEquals("Corridor route should be as short as the standard route", expected.length, actual.length);
+        assertEquals("Route should be found in the first corridor", 1, statistics.getCorridorSearches());
+    }
+
+    @Test
+    public void testCalculateRoute_CorridorWidenedWhenTooNarrow() {
+        // Two zones which touch at a corner. The shortest path around the zones passes
+        // through the corner, but the drone cannot, so it has to leave the corridor.
+        LngLat corner = new LngLat(-3.1890, 55.9450);
+        LngLat[][] noFlyZones = {
+                { new LngLat(-3.1900, 55.9440), new LngLat(-3.1900, 55.9450), corner, new LngLat(-3.1890, 55.9440) },
+                { corner, new LngLat(-3.1890, 55.9460), new LngLat(-3.1880, 55.9460), new LngLat(-3.1880, 55.9450) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        LngLat start = new LngLat(-3.1898, 55.9458);
+        LngLat goal = new LngLat(-3.1882, 55.9442);
+        RouteOptions standardOptions = new RouteOptions();
+        standardOptions.setUseStraightLine(false);
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions corridorOptions = new RouteOptions();
+        corridorOptions.setUseStraightLine(false);
+        corridorOptions.setCorridorMoves(1);
+        corridorOptions.setStatistics(statistics);
+
+        CompassDirection[] expected = RouteCalculator.calculateRouteFrom(LatticePoint.origin(start), goal, null,
+                standardOptions);
+        CompassDirection[] actual = RouteCalculator.calculateRouteFrom(LatticePoint.origin(start), goal, null,
+                corridorOptions);
+
+        assertNotNull("Route should be found once the corridor is wide enough", actual);
+        assertTrue("Corridor should have been widened", statistics.getCorridorSearches() > 1);
+        assertEquals("Corridor route should be as short as the standard route", expected.length, actual.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCorridorWidth() {
+        new RouteOptions().setCorridorMoves(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWeightBelowOne() {
+        new RouteOptions().setWeight(0.5);
+    }
+
+    @Test
+    public void testCalculateRoute_WeightedRouteWithinBound() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        RouteOptions standardOptions = new RouteOptions();
+        standardOptions.setUseStraightLine(false);
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions weightedOptions = new RouteOptions();
+        weightedOptions.setUseStraightLine(false);
+        weightedOptions.setWeight(2);
+        weightedOptions.setStatistics(statistics);
+
+        CompassDirection[] shortest = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, null,
+                standardOptions);
+        CompassDirection[] weighted = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, null,
+                weightedOptions);
+
+        assertTrue("Weighted route should take at most the weight times as many moves",
+                weighted.length - 1 <= 2 * (shortest.length - 1));
+        assertEquals("Without a time limit only one weighted search should run", 1,
+                statistics.getWeightedSearches());
+        LatticePoint position = LatticePoint.origin(START);
+        for (CompassDirection direction : weighted) {
+            position = position.next(direction);
+        }
+        assertTrue("Weighted route should get close to the goal", position.closeTo(GOAL));
+    }
+
+    @Test
+    public void testCalculateRoute_RepeatedWeightedImprovesToShortestRoute() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        RouteOptions standardOptions = new RouteOptions();
+        standardOptions.setUseStraightLine(false);
+        RouteOptions repeatedOptions = new RouteOptions();
+        repeatedOptions.setUseStraightLine(false);
+        repeatedOptions.setWeight(3);
+        repeatedOptions.setRepeatTimeLimitMillis(60_000);
+
+        for (LngLat nextTarget : new LngLat[] { null, NEXT_TARGET }) {
+            CompassDirection[] shortest = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                    nextTarget, standardOptions);
+            CompassDirection[] repeated = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                    nextTarget, repeatedOptions);
+
+            assertEquals("With enough time the repeated weighted route should be as short as the standard route",
+                    shortest.length, repeated.length);
+            assertEquals("Route should end with a hover", CompassDirection.HOVER, repeated[repeated.length - 1]);
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void testCalculateRoute_UnreachableEndStopsAtRegion() {
+        // The goal is in the middle of a zone, too far from its edges to get close to.
+        LngLat[][] noFlyZones = { { new LngLat(-3.1915, 55.9485), new LngLat(-3.1915, 55.9515),
+                new LngLat(-3.1885, 55.9515), new LngLat(-3.1885, 55.9485) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions options = new RouteOptions();
+        options.setStatistics(statistics);
+
+        assertNull("Unreachable goal should have no route",
+                RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, null, options));
+        assertEquals("Search should stop by filling the region, not by running out of budget", 0,
+                statistics.getBudgetsExhausted());
+    }
+
+    @Test
+    public void testCalculateRoute_ExpansionBudgetExhausted() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions options = new RouteOptions();
+        options.setUseStraightLine(false);
+        options.setExpansionBudget(5);
+        options.setStatistics(statistics);
+
+        assertNull("Search should give up when it runs out of expansions",
+                RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, null, options));
+        assertEquals("Search should record running out of budget", 1, statistics.getBudgetsExhausted());
+        assertTrue("Search should not expand more than its budget", statistics.getExpansions() <= 5);
+    }
+
+    @Test
+    public void testCalculateRoute_GenerousBudgetsDoNotChangeRoute() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        RouteOptions options = new RouteOptions();
+        options.setUseStraightLine(false);
+        options.setExpansionBudget(100_000);
+        options.setTimeBudgetMillis(60_000);
+
+        CompassDirection[] expected = RouteCalculator.calculateRoute(START, GOAL, NEXT_TARGET);
+        CompassDirection[] actual = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, NEXT_TARGET,
+                options);
+        assertArrayEquals("Budgets that are not reached should not change the route", expected, actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeExpansionBudget() {
+        new RouteOptions().setExpansionBudget(-1);
+    }
+
+    @Test
+    public void testCalculateRoute_MoveBudgetBelowLowerBoundIsInfeasible() {
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions options = new RouteOptions();
+        options.setStatistics(statistics);
+
+        assertNull("Route should not fit in a budget below its lower bound",
+                RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, null, options, 5));
+        assertEquals("Route should be shown infeasible", 1, statistics.getInfeasibleRoutes());
+        assertEquals("Infeasible route should not be searched for", 0, statistics.getSearches());
+    }
+
+    @Test
+    public void testPlanRoute_StatusSaysWhyThereIsNoRoute() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+        RouteOptions options = new RouteOptions();
+        options.setUseStraightLine(false);
+
+        RouteResult found = RouteCalculator.planRoute(LatticePoint.origin(START), GOAL, NEXT_TARGET, options,
+                RouteCalculator.NO_MOVE_LIMIT);
+        assertEquals("Route should be found", RouteResult.Status.FOUND, found.getStatus());
+        assertArrayEquals("Found route should be the route calculateRouteFrom gives",
+                RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, NEXT_TARGET, options),
+                found.getRoute());
+
+        RouteResult infeasible = RouteCalculator.planRoute(LatticePoint.origin(START), GOAL, NEXT_TARGET, options,
+                found.getRoute().length - 1);
+        assertEquals("Route should not fit in fewer moves than the shortest", RouteResult.Status.INFEASIBLE,
+                infeasible.getStatus());
+        assertNull("Infeasible result should have no route", infeasible.getRoute());
+
+        // No statistics are needed to tell running out of budget from infeasible.
+        options.setExpansionBudget(5);
+        RouteResult exhausted = RouteCalculator.planRoute(LatticePoint.origin(START), GOAL, NEXT_TARGET, options,
+                RouteCalculator.NO_MOVE_LIMIT);
+        assertEquals("Search should run out of budget", RouteResult.Status.BUDGET_EXHAUSTED, exhausted.getStatus());
+        assertNull("Exhausted result should have no route", exhausted.getRoute());
+    }
+
+    @Test
+    public void testCalculateRoute_MoveBudgetPrunesSearch() {
+        LngLat[][] noFlyZones = { { new LngLat(-3.1895, 55.9460), new LngLat(-3.1895, 55.9470),
+                new LngLat(-3.1870, 55.9470), new LngLat(-3.1870, 55.9460) } };
+        when(mockSingleton.getNoFlyZones()).thenReturn(noFlyZones);
+
+        RouteOptions[] allOptions = new RouteOptions[5];
+        for (int i = 0; i < allOptions.length; i++) {
+            allOptions[i] = new RouteOptions();
+            allOptions[i].setUseStraightLine(false);
+        }
+        allOptions[1].setUseArena(true);
+        allOptions[2].setUseIndexedHeap(true);
+        allOptions[3].setUseBidirectional(true);
+        allOptions[4].setWeight(1.5);
+
+        for (RouteOptions options : allOptions) {
+            CompassDirection[] unlimited = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                    NEXT_TARGET, options);
+            CompassDirection[] fits = RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL,
+                    NEXT_TARGET, options, unlimited.length);
+            assertNotNull("Route should fit in a budget of its own length", fits);
+            assertEquals("Budget should not make the route longer", unlimited.length, fits.length);
+
+            SearchStatistics statistics = new SearchStatistics();
+            options.setStatistics(statistics);
+            // The weighted search may find a longer route than the shortest, so only
+            // check the searches that find the shortest route.
+            if (options.getWeight() == 1) {
+                assertNull("Route should not fit in a budget one shorter than the shortest route",
+                        RouteCalculator.calculateRouteFrom(LatticePoint.origin(START), GOAL, NEXT_TARGET, options,
+                                unlimited.length - 1));
+                assertEquals("Pruned search should not run out of budget", 0, statistics.getBudgetsExhausted());
+            }
+        }
+    }
 }
@@ -0,0 +1,109 @@
+package UnitTests.RouteCalculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.RouteOptions;
+import RouteCalculation.RouteReplanner;
+import RouteCalculation.SearchStatistics;
+
+public class RouteReplannerUnitTest {
+    private static final LngLat START = new LngLat(-3.1920, 55.9440);
+    private static final LngLat GOAL = new LngLat(-3.1860, 55.9440);
+    private static final LngLat FAR_AWAY = new LngLat(-3.1920, 55.9480);
+    // A zone across the straight line from the start to the goal.
+    private static final LngLat[] BLOCKING_ZONE = { new LngLat(-3.1892, 55.9430), new LngLat(-3.1892, 55.9450),
+            new LngLat(-3.1888, 55.9450), new LngLat(-3.1888, 55.9430) };
+
+    @Before
+    public void setupSingleton() {
+        AreaSingleton.resetInstance();
+        AreaSingleton.getInstance().setNoFlyZones(new LngLat[0][]);
+    }
+
+    @After
+    public void resetSingleton() {
+        AreaSingleton.resetInstance();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullOptions() {
+        new RouteReplanner(null);
+    }
+
+    @Test
+    public void testAddNoFlyZone_RepairsOnlyBlockedLegs() {
+        SearchStatistics statistics = new SearchStatistics();
+        RouteOptions options = new RouteOptions();
+        options.setStatistics(statistics);
+        RouteReplanner replanner = new RouteReplanner(options);
+        CompassDirection[] blocked = replanner.planLeg(LatticePoint.origin(START), GOAL, null);
+        CompassDirection[] clear = replanner.planLeg(LatticePoint.origin(START), FAR_AWAY, null);
+
+        assertEquals("Only the blocked leg should change", 1, replanner.addNoFlyZone(BLOCKING_ZONE));
+        assertSame("Clear leg should keep its route", clear, replanner.getRoute(1));
+        CompassDirection[] repaired = replanner.getRoute(0);
+        assertNotNull("Blocked leg should be repaired", repaired);
+        assertTrue("Repaired leg should go around the zone", repaired.length > blocked.length);
+        assertLegal(LatticePoint.origin(START), repaired, GOAL);
+    }
+
+    @Test
+    public void testRemoveNoFlyZone_RestoresShortestRoute() {
+        RouteReplanner replanner = new RouteReplanner(new RouteOptions());
+        CompassDirection[] original = replanner.planLeg(LatticePoint.origin(START), GOAL, null);
+        replanner.addNoFlyZone(BLOCKING_ZONE);
+
+        LngLat[] samePoints = BLOCKING_ZONE.clone();
+        assertEquals("Leg should be searched for again", 1, replanner.removeNoFlyZone(samePoints));
+        assertEquals("Leg should be as short as before the zone was added", original.length,
+                replanner.getRoute(0).length);
+        assertEquals("Removing a zone that is not there should do nothing", -1,
+                replanner.removeNoFlyZone(BLOCKING_ZONE));
+    }
+
+    @Test
+    public void testAddNoFlyZone_FollowingLegMovedWithRepairedLeg() {
+        RouteReplanner replanner = new RouteReplanner(new RouteOptions());
+        LatticePoint position = LatticePoint.origin(START);
+        CompassDirection[] first = replanner.planLeg(position, GOAL, FAR_AWAY);
+        for (CompassDirection direction : first) {
+            position = position.next(direction);
+        }
+        replanner.planLeg(position, FAR_AWAY, null);
+
+        replanner.addNoFlyZone(BLOCKING_ZONE);
+
+        position = LatticePoint.origin(START);
+        assertLegal(position, replanner.getRoute(0), GOAL);
+        for (CompassDirection direction : replanner.getRoute(0)) {
+            position = position.next(direction);
+        }
+        assertLegal(position, replanner.getRoute(1), FAR_AWAY);
+    }
+
+    /**
+     * Check that the route only makes legal moves and ends close to the end.
+     */
+    private static void assertLegal(LatticePoint start, CompassDirection[] route, LngLat end) {
+        LatticePoint position = start;
+        for (CompassDirection direction : route) {
+            LatticePoint next = position.next(direction);
+            assertFalse("Route should not cross a no-fly zone",
+                    LngLat.inNoFlyZone(next.getLng(), next.getLat(), position.getLng(), position.getLat()));
+            position = next;
+        }
+        assertTrue("Route should end close to the end", position.closeTo(end));
+    }
+}
@@ -0,0 +1,180 @@
+package UnitTests.RouteCalculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import RouteCalculation.AreaSingleton;
+import RouteCalculation.CompassDirection;
+import RouteCalculation.LatticePoint;
+import RouteCalculation.LngLat;
+import RouteCalculation.PreparedPolygon;
+import RouteCalculation.RouteCalculator;
+import RouteCalculation.RouteOptions;
+import RouteCalculation.VisibilityGraph;
+
+public class VisibilityGraphUnitTest {
+    private static final double BASE_LNG = -3.190;
+    private static final double BASE_LAT = 55.944;
+    private static final double UNIT = 0.001;
+    private static final double LENGTH_OF_MOVE = 0.00015;
+
+    // A square zone, with its first vertex repeated at the end.
+    private static final LngLat[] SQUARE = { at(0, 0), at(0, 1), at(1, 1), at(1, 0), at(0, 0) };
+    // A tall wall standing on top of the square.
+    private static final LngLat[] WALL = { at(0.4, 1), at(0.4, 3), at(0.6, 3), at(0.6, 1) };
+
+    private static LngLat at(double x, double y) {
+        return new LngLat(BASE_LNG + x * UNIT, BASE_LAT + y * UNIT);
+    }
+
+    @Test
+    public void testVertexCount_RepeatedVerticesMerged() {
+        VisibilityGraph graph = new VisibilityGraph(new LngLat[][] { SQUARE, WALL });
+        assertEquals("Repeated vertices should only be counted once", 8, graph.getVertexCount());
+    }
+
+    @Test
+    public void testForZones_CachedForSameArray() {
+        LngLat[][] zones = { SQUARE };
+        assertSame("The same zone array should give the same graph", VisibilityGraph.forZones(zones),
+                VisibilityGraph.forZones(zones));
+        assertNotSame("A different zone array should give a new graph", VisibilityGraph.forZones(zones),
+                VisibilityGraph.forZones(new LngLat[][] { SQUARE }));
+    }
+
+    @Test
+    public void testIsVisible() {
+        VisibilityGraph graph = new VisibilityGraph(new LngLat[][] { SQUARE });
+        LngLat left = at(-0.5, 0.5);
+        LngLat right = at(1.5, 0.5);
+
+        assertFalse("Line through the square should not be visible",
+                graph.isVisible(left.getLng(), left.getLat(), right.getLng(), right.getLat()));
+        assertFalse("Diagonal of the square should not be visible",
+                graph.isVisible(at(0, 0).getLng(), at(0, 0).getLat(), at(1, 1).getLng(), at(1, 1).getLat()));
+        assertTrue("Line along an edge should be visible",
+                graph.isVisible(at(0, -1).getLng(), at(0, -1).getLat(), at(0, 2).getLng(), at(0, 2).getLat()));
+        assertTrue("Line touching a corner should be visible",
+                graph.isVisible(at(-1, 0).getLng(), at(-1, 0).getLat(), at(1, -2).getLng(), at(1, -2).getLat()));
+        assertTrue("Line above the square should be visible",
+                graph.isVisible(at(-1, 2).getLng(), at(-1, 2).getLat(), at(2, 2).getLng(), at(2, 2).getLat()));
+    }
+
+    @Test
+    public void testLowerBound_VisibleTargetIsStraightLine() {
+        VisibilityGraph graph = new VisibilityGraph(new LngLat[][] { SQUARE });
+        LngLat start = at(-1, 2);
+        LngLat target = at(2, 2);
+
+        assertEquals("Visible target should be the straight line distance", start.distanceTo(target),
+                graph.lowerBound(start.getLng(), start.getLat(), target), 1e-12);
+    }
+
+    @Test
+    public void testLowerBound_AroundOneZone() {
+        VisibilityGraph graph = new VisibilityGraph(new LngLat[][] { SQUARE });
+        LngLat start = at(-0.5, 0.5);
+        LngLat target = at(1.5, 0.5);
+
+        double expected = start.distanceTo(at(0, 1)) + at(0, 1).distanceTo(at(1, 1)) + at(1, 1).distanceTo(target);
+        assertEquals("Bound should be the shortest way around the square", expected,
+                graph.lowerBound(start.getLng(), start.getLat(), target), 1e-12);
+    }
+
+    @Test
+    public void testLowerBound_AroundTouchingZones() {
+        LngLat[][] zones = { SQUARE, WALL };
+        VisibilityGraph graph = new VisibilityGraph(zones);
+        LngLat start = at(-0.5, 0.5);
+        LngLat target = at(1.5, 0.5);
+
+        // The wall blocks the way over the square, so the shortest way goes under it.
+        double expected = start.distanceTo(at(0, 0)) + at(0, 0).distanceTo(at(1, 0)) + at(1, 0).distanceTo(target);
+        double singleZoneDetour = new PreparedPolygon(SQUARE).shortestDetour(start.getLng(), start.getLat(), target);
+        double bound = graph.lowerBound(start.getLng(), start.getLat(), target);
+
+        assertEquals("Bound should be the shortest way around both zones", expected, bound, 1e-12);
+        assertTrue("Bound should be larger than going around the square alone", bound > singleZoneDetour);
+    }
+
+    @Test
+    public void testShortestPath_AroundTouchingZones() {
+        VisibilityGraph graph = new VisibilityGraph(new LngLat[][] { SQUARE, WALL });
+        LngLat start = at(-0.5, 0.5);
+        LngLat target = at(1.5, 0.5);
+
+        LngLat[] path = graph.shortestPath(start.getLng(), start.getLat(), target);
+        assertSame("Path should end at the target", target, path[path.length - 1]);
+        assertEquals("Path should start at the start", start.getLng(), path[0].getLng(), 0);
+        assertEquals("Path should start at the start", start.getLat(), path[0].getLat(), 0);
+        double length = 0;
+        for (int i = 0; i + 1 < path.length; i++) {
+            assertTrue("Each part of the path should avoid the zones", graph.isVisible(path[i].getLng(),
+                    path[i].getLat(), path[i + 1].getLng(), path[i + 1].getLat()));
+            length += LngLat.latticeDistance(path[i].getLng(), path[i].getLat(), path[i + 1].getLng(),
+                    path[i + 1].getLat());
+        }
+        assertEquals("Path should be as long as the lower bound",
+                graph.lowerBound(start.getLng(), start.getLat(), target), length, 1e-12);
+        assertNull("Target inside a zone should have no path",
+                graph.shortestPath(start.getLng(), start.getLat(), at(0.5, 0.5)));
+    }
+
+    @Test
+    public void testLowerBound_TargetInsideZoneIsInfinite() {
+        VisibilityGraph graph = new VisibilityGraph(new LngLat[][] { SQUARE });
+        LngLat start = at(-0.5, 0.5);
+
+        assertEquals("Target inside a zone should not be reachable", Double.POSITIVE_INFINITY,
+                graph.lowerBound(start.getLng(), start.getLat(), at(0.5, 0.5)), 0);
+    }
+
+    @Test
+    public void testLowerBound_NotMoreThanRouteLength() {
+        LngLat[][] zones = { SQUARE, WALL };
+        AreaSingleton mockSingleton = mock(AreaSingleton.class);
+        AreaSingleton.setInstance(mockSingleton);
+        when(mockSingleton.getNoFlyZones()).thenReturn(zones);
+        when(mockSingleton.getCentralAreaBorder()).thenReturn(new LngLat[] { at(-10, -10), at(-10, 10),
+                at(10, 10), at(10, -10) });
+        VisibilityGraph graph = VisibilityGraph.forZones(zones);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10; i++) {
+            LngLat start = randomPointOutside(random, zones);
+            LngLat target = randomPointOutside(random, zones);
+            CompassDirection[] route = RouteCalculator.calculateRouteFrom(LatticePoint.origin(start), target, null,
+                    new RouteOptions());
+            assertNotNull("Route should be found", route);
+
+            // The route stops when it is close to the target rather than on it.
+            double routeLength = route.length * LENGTH_OF_MOVE;
+            assertTrue("Bound should never be more than the length of a route",
+                    graph.lowerBound(start.getLng(), start.getLat(), target) <= routeLength + LENGTH_OF_MOVE);
+        }
+    }
+
+    private static LngLat randomPointOutside(Random random, LngLat[][] zones) {
+        while (true) {
+            LngLat point = at(-1 + random.nextDouble() * 3, -1 + random.nextDouble() * 3);
+            boolean inside = false;
+            for (LngLat[] zone : zones) {
+                inside |= LngLat.inZone(point.getLng(), point.getLat(), zone);
+            }
+            if (!inside) {
+                return point;
+            }
+        }
+    }
+}